@@ -17,9 +17,10 @@ package org.asynchttpclient;
  * For now, those methods are in a dedicated interface in order not to break the existing API,
  * but could be merged into one of the existing ones in AHC 2.
  * 
+ * The phase timing callbacks are in {@link AsyncHandlerTimingExtensions}.
+ * 
  * More additional hooks might come, such as:
  * <ul>
- *   <li>onConnected()</li>
  *   <li>onConnectionClosed()</li>
  *   <li>onBytesSent(long numberOfBytes)</li>
  *   <li>onBytesReceived(long numberOfBytes)</li>
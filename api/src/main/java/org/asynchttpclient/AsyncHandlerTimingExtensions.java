@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient;
+
+/**
+ * {@link AsyncHandlerExtensions} receiving the timestamps of the phases of an exchange.
+ * 
+ * The callbacks receive a {@link System#nanoTime()} timestamp, so the time spent in each phase of an exchange (DNS, connect,
+ * TLS handshake, server processing, body transfer) can be computed from consecutive events. They're called on the I/O threads
+ * and must return quickly. The timestamps are only taken when the handler implements this interface.
+ */
+public interface AsyncHandlerTimingExtensions extends AsyncHandlerExtensions {
+
+    /**
+     * Notify the callback when the host name of a new connection has been resolved.
+     * Not called when the address is already known, e.g. for pooled connections.
+     * 
+     * @param nanoTime when the address was resolved
+     */
+    void onDnsResolved(long nanoTime);
+
+    /**
+     * Notify the callback when a new connection has been opened for the request.
+     * 
+     * @param nanoTime when the TCP connection was established
+     */
+    void onConnectionOpen(long nanoTime);
+
+    /**
+     * Notify the callback when the request is sent on a pooled connection, instead of a new one.
+     * 
+     * @param nanoTime when the connection was taken from the pool
+     */
+    void onConnectionPooled(long nanoTime);
+
+    /**
+     * Notify the callback when the TLS handshake of a new connection is complete.
+     * 
+     * @param nanoTime when the handshake completed
+     */
+    void onTlsHandshakeDone(long nanoTime);
+
+    /**
+     * Notify the callback when the request line and headers have been written on the wire.
+     * 
+     * @param nanoTime when the write completed
+     */
+    void onHeadersWritten(long nanoTime);
+
+    /**
+     * Notify the callback when the response status line has been received, i.e. the server responded.
+     * 
+     * @param nanoTime when the status line was received
+     */
+    void onFirstByteReceived(long nanoTime);
+
+    /**
+     * Notify the callback when the whole response has been received, before {@link AsyncHandler#onCompleted()}.
+     * 
+     * @param nanoTime when the last chunk was received
+     */
+    void onLastByteReceived(long nanoTime);
+}
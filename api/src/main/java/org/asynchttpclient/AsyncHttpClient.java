@@ -16,9 +16,13 @@
  */
 package org.asynchttpclient;
 
+import org.asynchttpclient.cache.CachingAsyncHandler;
+import org.asynchttpclient.coalescing.CoalescingAsyncHandler;
+import org.asynchttpclient.filter.AsyncRequestFilter;
 import org.asynchttpclient.filter.FilterContext;
 import org.asynchttpclient.filter.FilterException;
 import org.asynchttpclient.filter.RequestFilter;
+import org.asynchttpclient.filter.RequestFilterAdapter;
 import org.asynchttpclient.multipart.Part;
 import org.asynchttpclient.resumable.ResumableAsyncHandler;
 
@@ -30,9 +34,12 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -155,6 +162,8 @@ public class AsyncHttpClient implements Closeable {
 
     private final AsyncHttpProvider httpProvider;
     private final AsyncHttpClientConfig config;
+    // the RequestFilters adapted, followed by the AsyncRequestFilters, or null if there's none of the latter
+    private final List<AsyncRequestFilter> asyncRequestFilters;
     private final static Logger logger = LoggerFactory.getLogger(AsyncHttpClient.class);
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
 
@@ -232,6 +241,16 @@ public class AsyncHttpClient implements Closeable {
     public AsyncHttpClient(AsyncHttpProvider httpProvider, AsyncHttpClientConfig config) {
         this.config = config;
         this.httpProvider = httpProvider;
+
+        if (config.hasAsyncRequestFilters()) {
+            asyncRequestFilters = new ArrayList<AsyncRequestFilter>();
+            for (RequestFilter requestFilter : config.getRequestFilters()) {
+                asyncRequestFilters.add(new RequestFilterAdapter(requestFilter));
+            }
+            asyncRequestFilters.addAll(config.getAsyncRequestFilters());
+        } else {
+            asyncRequestFilters = null;
+        }
     }
 
     public class BoundRequestBuilder extends RequestBuilderBase<BoundRequestBuilder> {
@@ -556,9 +575,7 @@ public class AsyncHttpClient implements Closeable {
     public <T> ListenableFuture<T> executeRequest(Request request, AsyncHandler<T> handler) throws IOException {
 
         FilterContext<T> fc = new FilterContext.FilterContextBuilder<T>().asyncHandler(handler).request(request).build();
-        fc = preProcessRequest(fc);
-
-        return httpProvider.execute(fc.getRequest(), fc.getAsyncHandler());
+        return filterAndExecute(fc);
     }
 
     /**
@@ -570,8 +587,123 @@ public class AsyncHttpClient implements Closeable {
      */
     public ListenableFuture<Response> executeRequest(Request request) throws IOException {
         FilterContext<Response> fc = new FilterContext.FilterContextBuilder<Response>().asyncHandler(new AsyncCompletionHandlerBase()).request(request).build();
-        fc = preProcessRequest(fc);
-        return httpProvider.execute(fc.getRequest(), fc.getAsyncHandler());
+        return filterAndExecute(fc);
+    }
+
+    private <T> ListenableFuture<T> filterAndExecute(FilterContext<T> fc) throws IOException {
+        if (asyncRequestFilters == null) {
+            return execute(adjustRequestRange(preProcessRequest(fc)));
+        }
+
+        DeferredListenableFuture<T> future = new DeferredListenableFuture<T>();
+        asyncPreProcessRequest(fc, 0, future);
+        return future;
+    }
+
+    /**
+     * Run the {@link AsyncRequestFilter} at <code>index</code>, and chain the next one, or the request execution, once it has
+     * completed. Nothing blocks: the chain continues on the thread completing each filter's future.
+     */
+    private <T> void asyncPreProcessRequest(final FilterContext<T> fc, final int index, final DeferredListenableFuture<T> future) {
+        if (!future.isPending()) {
+            // cancelled while filtering, let the filters' handlers release what they hold
+            fc.getAsyncHandler().onThrowable(new CancellationException());
+            return;
+        }
+
+        if (index == asyncRequestFilters.size()) {
+            try {
+                if (!future.bind(execute(adjustRequestRange(fc)))) {
+                    logger.debug("Request {} cancelled while being sent", fc.getRequest());
+                }
+            } catch (Throwable t) {
+                // the provider already notified the handler
+                future.fail(t);
+            }
+            return;
+        }
+
+        final ListenableFuture<FilterContext<T>> filterFuture;
+        try {
+            filterFuture = asyncRequestFilters.get(index).filter(fc);
+            if (filterFuture == null) {
+                throw new NullPointerException("FilterContext future is null");
+            }
+        } catch (Throwable t) {
+            failFiltering(fc, t, future);
+            return;
+        }
+
+        if (!future.filtering(filterFuture)) {
+            fc.getAsyncHandler().onThrowable(new CancellationException());
+            return;
+        }
+        filterFuture.addListener(new Runnable() {
+            public void run() {
+                FilterContext<T> next;
+                try {
+                    next = filterFuture.get();
+                    if (next == null) {
+                        throw new NullPointerException("FilterContext is null");
+                    }
+                } catch (CancellationException e) {
+                    failFiltering(fc, e, future);
+                    return;
+                } catch (ExecutionException e) {
+                    failFiltering(fc, e.getCause(), future);
+                    return;
+                } catch (Throwable t) {
+                    failFiltering(fc, t, future);
+                    return;
+                }
+                asyncPreProcessRequest(next, index + 1, future);
+            }
+        }, DeferredListenableFuture.SAME_THREAD_EXECUTOR);
+    }
+
+    private <T> void failFiltering(FilterContext<T> fc, Throwable t, DeferredListenableFuture<T> future) {
+        if (t instanceof FilterException) {
+            IOException ex = new IOException();
+            ex.initCause(t);
+            t = ex;
+        }
+        fc.getAsyncHandler().onThrowable(t);
+        future.fail(t);
+    }
+
+    private <T> ListenableFuture<T> execute(FilterContext<T> fc) throws IOException {
+        CachingAsyncHandler<T> cachingHandler = fc.getCachingAsyncHandler();
+        if (cachingHandler != null && cachingHandler.isFresh()) {
+            // through the handlers which wrap the caching one, e.g. to release a throttling permit
+            return cachingHandler.replay(fc.getAsyncHandler());
+        }
+
+        CoalescingAsyncHandler<T> coalescingHandler = fc.getCoalescingAsyncHandler();
+        if (coalescingHandler != null) {
+            // the follower gets the shared response through the handlers which wrap the coalescing one
+            ListenableFuture<T> future = coalescingHandler.join(fc.getAsyncHandler());
+            if (future != null) {
+                return future;
+            }
+        }
+
+        if (config.getRetryPolicy() != null) {
+            config.getRetryPolicy().onRequest(fc.getRequest());
+        }
+
+        try {
+            return httpProvider.execute(fc.getRequest(), fc.getAsyncHandler());
+        } catch (IOException e) {
+            if (coalescingHandler != null) {
+                coalescingHandler.abandon(e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            if (coalescingHandler != null) {
+                coalescingHandler.abandon(e);
+            }
+            throw e;
+        }
     }
 
     /**
@@ -593,7 +725,10 @@ public class AsyncHttpClient implements Closeable {
                 throw ex;
             }
         }
+        return fc;
+    }
 
+    private <T> FilterContext<T> adjustRequestRange(FilterContext<T> fc) {
         Request request = fc.getRequest();
         if (fc.getAsyncHandler() instanceof ResumableAsyncHandler) {
             request = ResumableAsyncHandler.class.cast(fc.getAsyncHandler()).adjustRequestRange(request);
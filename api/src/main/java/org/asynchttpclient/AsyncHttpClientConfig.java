@@ -15,9 +15,13 @@
  */
 package org.asynchttpclient;
 
+import org.asynchttpclient.compression.ContentDecoderRegistry;
 import org.asynchttpclient.filter.IOExceptionFilter;
+import org.asynchttpclient.filter.AsyncRequestFilter;
 import org.asynchttpclient.filter.RequestFilter;
 import org.asynchttpclient.filter.ResponseFilter;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistry;
+import org.asynchttpclient.retry.RetryPolicy;
 import org.asynchttpclient.util.AllowAllHostnameVerifier;
 import org.asynchttpclient.util.ProxyUtils;
 
@@ -30,6 +34,7 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -97,6 +102,7 @@ public class AsyncHttpClientConfig {
     protected ConnectionsPool<?, ?> connectionsPool;
     protected Realm realm;
     protected List<RequestFilter> requestFilters;
+    protected List<AsyncRequestFilter> asyncRequestFilters;
     protected List<ResponseFilter> responseFilters;
     protected List<IOExceptionFilter> ioExceptionFilters;
     protected int requestCompressionLevel;
@@ -114,6 +120,11 @@ public class AsyncHttpClientConfig {
     protected int spdyMaxConcurrentStreams;
     protected boolean rfc6265CookieEncoding;
     protected boolean asyncConnectMode;
+    protected ContentDecoderRegistry contentDecoderRegistry;
+    protected RetryPolicy retryPolicy;
+    protected CircuitBreakerRegistry circuitBreakerRegistry;
+    protected CallbackExecutionPolicy callbackExecutionPolicy;
+    protected Executor callbackExecutor;
 
     protected AsyncHttpClientConfig() {
     }
@@ -154,7 +165,13 @@ public class AsyncHttpClientConfig {
                                   int spdyInitialWindowSize,
                                   int spdyMaxConcurrentStreams,
                                   boolean rfc6265CookieEncoding,
-                                  boolean asyncConnectMode) {
+                                  boolean asyncConnectMode,
+                                  ContentDecoderRegistry contentDecoderRegistry,
+                                  List<AsyncRequestFilter> asyncRequestFilters,
+                                  RetryPolicy retryPolicy,
+                                  CircuitBreakerRegistry circuitBreakerRegistry,
+                                  CallbackExecutionPolicy callbackExecutionPolicy,
+                                  Executor callbackExecutor) {
 
         this.maxTotalConnections = maxTotalConnections;
         this.maxConnectionPerHost = maxConnectionPerHost;
@@ -194,6 +211,12 @@ public class AsyncHttpClientConfig {
         this.spdyMaxConcurrentStreams = spdyMaxConcurrentStreams;
         this.rfc6265CookieEncoding = rfc6265CookieEncoding;
         this.asyncConnectMode = asyncConnectMode;
+        this.contentDecoderRegistry = contentDecoderRegistry;
+        this.asyncRequestFilters = asyncRequestFilters;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.callbackExecutionPolicy = callbackExecutionPolicy;
+        this.callbackExecutor = callbackExecutor;
     }
 
     /**
@@ -411,6 +434,22 @@ public class AsyncHttpClientConfig {
         return Collections.unmodifiableList(requestFilters);
     }
 
+    /**
+     * @return <code>true</code> if {@link AsyncRequestFilter}s have been defined.
+     */
+    public boolean hasAsyncRequestFilters() {
+        return !asyncRequestFilters.isEmpty();
+    }
+
+    /**
+     * Return the list of {@link AsyncRequestFilter}, invoked after the {@link RequestFilter}s
+     *
+     * @return Unmodifiable list of {@link AsyncRequestFilter}
+     */
+    public List<AsyncRequestFilter> getAsyncRequestFilters() {
+        return Collections.unmodifiableList(asyncRequestFilters);
+    }
+
     /**
      * @return <code>true</code> if {@link ResponseFilter}s have been defined.
      * @since 2.0.0
@@ -455,6 +494,45 @@ public class AsyncHttpClientConfig {
         return maxRequestRetry;
     }
 
+    /**
+     * Return the {@link RetryPolicy} deciding if and when failed requests are retried, or null for retrying right away
+     *
+     * @return the {@link RetryPolicy}, or null
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Return the {@link CircuitBreakerRegistry} failing the requests to unreachable hosts fast, or null if there's no circuit breaking
+     *
+     * @return the {@link CircuitBreakerRegistry}, or null
+     */
+    public CircuitBreakerRegistry getCircuitBreakerRegistry() {
+        return circuitBreakerRegistry;
+    }
+
+    /**
+     * Return the {@link CallbackExecutionPolicy} telling on which thread the futures are completed. Default is
+     * {@link CallbackExecutionPolicy#IO_THREAD}.
+     *
+     * @return the {@link CallbackExecutionPolicy}
+     */
+    public CallbackExecutionPolicy getCallbackExecutionPolicy() {
+        return callbackExecutionPolicy;
+    }
+
+    /**
+     * Return the {@link Executor} the futures are completed on when the {@link CallbackExecutionPolicy} isn't
+     * {@link CallbackExecutionPolicy#IO_THREAD}. If none has been provided, the provider uses a bounded
+     * {@link org.asynchttpclient.util.CallbackExecutor}.
+     *
+     * @return the {@link Executor}, or null
+     */
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
     /**
      * Return true is SSL connection polling is enabled. Default is true.
      *
@@ -590,6 +668,15 @@ public class AsyncHttpClientConfig {
         return asyncConnectMode;
     }
 
+    /**
+     * Return the {@link ContentDecoderRegistry} used for decoding the response bodies when compression is enabled.
+     *
+     * @return the {@link ContentDecoderRegistry}
+     */
+    public ContentDecoderRegistry getContentDecoderRegistry() {
+        return contentDecoderRegistry;
+    }
+
     /**
      * Builder for an {@link AsyncHttpClient}
      */
@@ -621,6 +708,7 @@ public class AsyncHttpClientConfig {
         private int requestCompressionLevel = -1;
         private int maxRequestRetry = 5;
         private final List<RequestFilter> requestFilters = new LinkedList<RequestFilter>();
+        private final List<AsyncRequestFilter> asyncRequestFilters = new LinkedList<AsyncRequestFilter>();
         private final List<ResponseFilter> responseFilters = new LinkedList<ResponseFilter>();
         private final List<IOExceptionFilter> ioExceptionFilters = new LinkedList<IOExceptionFilter>();
         private boolean allowSslConnectionPool = true;
@@ -634,6 +722,11 @@ public class AsyncHttpClientConfig {
         private int spdyMaxConcurrentStreams = 100;
         private boolean rfc6265CookieEncoding;
         private boolean asyncConnectMode;
+        private ContentDecoderRegistry contentDecoderRegistry;
+        private RetryPolicy retryPolicy;
+        private CircuitBreakerRegistry circuitBreakerRegistry;
+        private CallbackExecutionPolicy callbackExecutionPolicy = CallbackExecutionPolicy.IO_THREAD;
+        private Executor callbackExecutor;
 
         public Builder() {
         }
@@ -857,7 +950,7 @@ public class AsyncHttpClientConfig {
         }
 
         /**
-         * Set the {@link ConnectionsPool}
+         * Set the {@link ConnectionsPool}. Its keys are the {@link PoolKey#toString() string form} of the {@link PoolKey}s.
          *
          * @param connectionsPool the {@link ConnectionsPool}
          * @return a {@link Builder}
@@ -900,6 +993,29 @@ public class AsyncHttpClientConfig {
             return this;
         }
 
+        /**
+         * Add an {@link org.asynchttpclient.filter.AsyncRequestFilter} that will be invoked before {@link AsyncHttpClient#executeRequest(Request)},
+         * after the {@link org.asynchttpclient.filter.RequestFilter}s, without blocking the calling thread
+         *
+         * @param asyncRequestFilter {@link org.asynchttpclient.filter.AsyncRequestFilter}
+         * @return this
+         */
+        public Builder addAsyncRequestFilter(AsyncRequestFilter asyncRequestFilter) {
+            asyncRequestFilters.add(asyncRequestFilter);
+            return this;
+        }
+
+        /**
+         * Remove an {@link org.asynchttpclient.filter.AsyncRequestFilter}
+         *
+         * @param asyncRequestFilter {@link org.asynchttpclient.filter.AsyncRequestFilter}
+         * @return this
+         */
+        public Builder removeAsyncRequestFilter(AsyncRequestFilter asyncRequestFilter) {
+            asyncRequestFilters.remove(asyncRequestFilter);
+            return this;
+        }
+
         /**
          * Add an {@link org.asynchttpclient.filter.ResponseFilter} that will be invoked as soon as the response is
          * received, and before {@link AsyncHandler#onStatusReceived(HttpResponseStatus)}.
@@ -979,6 +1095,53 @@ public class AsyncHttpClientConfig {
             return this;
         }
 
+        /**
+         * Set the {@link RetryPolicy} deciding if and when failed requests are retried. The number of retries is still capped by
+         * {@link #setMaxRequestRetry(int)}.
+         *
+         * @param retryPolicy the {@link RetryPolicy}, null for retrying right away
+         * @return this
+         */
+        public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Set the {@link CircuitBreakerRegistry} rejecting the requests to a host right away while its circuit is open, instead of
+         * waiting for a connection timeout.
+         *
+         * @param circuitBreakerRegistry the {@link CircuitBreakerRegistry}, null for no circuit breaking
+         * @return this
+         */
+        public Builder setCircuitBreakerRegistry(CircuitBreakerRegistry circuitBreakerRegistry) {
+            this.circuitBreakerRegistry = circuitBreakerRegistry;
+            return this;
+        }
+
+        /**
+         * Set the {@link CallbackExecutionPolicy} telling on which thread the futures are completed.
+         *
+         * @param callbackExecutionPolicy the {@link CallbackExecutionPolicy}
+         * @return this
+         */
+        public Builder setCallbackExecutionPolicy(CallbackExecutionPolicy callbackExecutionPolicy) {
+            this.callbackExecutionPolicy = callbackExecutionPolicy;
+            return this;
+        }
+
+        /**
+         * Set the {@link Executor} the futures are completed on when the {@link CallbackExecutionPolicy} isn't
+         * {@link CallbackExecutionPolicy#IO_THREAD}. It's not shut down by the client.
+         *
+         * @param callbackExecutor the {@link Executor}, null for a bounded {@link org.asynchttpclient.util.CallbackExecutor}
+         * @return this
+         */
+        public Builder setCallbackExecutor(Executor callbackExecutor) {
+            this.callbackExecutor = callbackExecutor;
+            return this;
+        }
+
         /**
          * Return true is if connections pooling is enabled.
          *
@@ -1170,6 +1333,18 @@ public class AsyncHttpClientConfig {
             return this;
         }
 
+        /**
+         * Set the {@link ContentDecoderRegistry} used for decoding the response bodies when compression is enabled. The codings it
+         * holds are listed in the Accept-Encoding header of the requests.
+         *
+         * @param contentDecoderRegistry the {@link ContentDecoderRegistry}
+         * @return this
+         */
+        public Builder setContentDecoderRegistry(ContentDecoderRegistry contentDecoderRegistry) {
+            this.contentDecoderRegistry = contentDecoderRegistry;
+            return this;
+        }
+
         /**
          * Create a config builder with values taken from the given prototype configuration.
          *
@@ -1198,10 +1373,12 @@ public class AsyncHttpClientConfig {
             applicationThreadPool = prototype.executorService();
 
             requestFilters.clear();
+            asyncRequestFilters.clear();
             responseFilters.clear();
             ioExceptionFilters.clear();
 
             requestFilters.addAll(prototype.getRequestFilters());
+            asyncRequestFilters.addAll(prototype.getAsyncRequestFilters());
             responseFilters.addAll(prototype.getResponseFilters());
             ioExceptionFilters.addAll(prototype.getIOExceptionFilters());
 
@@ -1216,6 +1393,11 @@ public class AsyncHttpClientConfig {
             useRelativeURIsWithSSLProxies = prototype.isUseRelativeURIsWithSSLProxies();
             rfc6265CookieEncoding = prototype.isRfc6265CookieEncoding();
             asyncConnectMode = prototype.isAsyncConnectMode();
+            contentDecoderRegistry = prototype.getContentDecoderRegistry();
+            retryPolicy = prototype.getRetryPolicy();
+            circuitBreakerRegistry = prototype.getCircuitBreakerRegistry();
+            callbackExecutionPolicy = prototype.getCallbackExecutionPolicy();
+            callbackExecutor = prototype.getCallbackExecutor();
         }
 
         /**
@@ -1247,6 +1429,10 @@ public class AsyncHttpClientConfig {
                 proxyServerSelector = ProxyServerSelector.NO_PROXY_SELECTOR;
             }
 
+            if (contentDecoderRegistry == null) {
+                contentDecoderRegistry = new ContentDecoderRegistry();
+            }
+
             return new AsyncHttpClientConfig(defaultMaxTotalConnections,
                     defaultMaxConnectionPerHost,
                     defaultConnectionTimeOutInMs,
@@ -1284,7 +1470,13 @@ public class AsyncHttpClientConfig {
                     spdyInitialWindowSize,
                     spdyMaxConcurrentStreams,
                     rfc6265CookieEncoding,
-                    asyncConnectMode);
+                    asyncConnectMode,
+                    contentDecoderRegistry,
+                    asyncRequestFilters,
+                    retryPolicy,
+                    circuitBreakerRegistry,
+                    callbackExecutionPolicy,
+                    callbackExecutor);
         }
     }
 }
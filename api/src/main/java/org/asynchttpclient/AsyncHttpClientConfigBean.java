@@ -12,15 +12,20 @@
  */
 package org.asynchttpclient;
 
+import org.asynchttpclient.compression.ContentDecoderRegistry;
 import org.asynchttpclient.filter.IOExceptionFilter;
+import org.asynchttpclient.filter.AsyncRequestFilter;
 import org.asynchttpclient.filter.RequestFilter;
 import org.asynchttpclient.filter.ResponseFilter;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistry;
+import org.asynchttpclient.retry.RetryPolicy;
 import org.asynchttpclient.util.ProxyUtils;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
 import java.util.LinkedList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -39,6 +44,7 @@ public class AsyncHttpClientConfigBean extends AsyncHttpClientConfig {
 
     void configureFilters() {
         requestFilters = new LinkedList<RequestFilter>();
+        asyncRequestFilters = new LinkedList<AsyncRequestFilter>();
         responseFilters = new LinkedList<ResponseFilter>();
         ioExceptionFilters = new LinkedList<IOExceptionFilter>();
     }
@@ -55,6 +61,7 @@ public class AsyncHttpClientConfigBean extends AsyncHttpClientConfig {
         compressionEnabled = Boolean.getBoolean(ASYNC_CLIENT + "compressionEnabled");
         userAgent = System.getProperty(ASYNC_CLIENT + "userAgent", "AsyncHttpClient/" + AHC_VERSION);
         ioThreadMultiplier = Integer.getInteger(ASYNC_CLIENT + "ioThreadMultiplier", 2);
+        callbackExecutionPolicy = CallbackExecutionPolicy.IO_THREAD;
         
         boolean useProxySelector = Boolean.getBoolean(ASYNC_CLIENT + "useProxySelector");
         boolean useProxyProperties = Boolean.getBoolean(ASYNC_CLIENT + "useProxyProperties");
@@ -70,6 +77,7 @@ public class AsyncHttpClientConfigBean extends AsyncHttpClientConfig {
         allowSslConnectionPool = true;
         useRawUrl = false;
         removeQueryParamOnRedirect = true;
+        contentDecoderRegistry = new ContentDecoderRegistry();
         hostnameVerifier = new HostnameVerifier() {
 
             public boolean verify(String s, SSLSession sslSession) {
@@ -206,6 +214,11 @@ public class AsyncHttpClientConfigBean extends AsyncHttpClientConfig {
         return this;
     }
 
+    public AsyncHttpClientConfigBean addAsyncRequestFilter(AsyncRequestFilter asyncRequestFilter) {
+        asyncRequestFilters.add(asyncRequestFilter);
+        return this;
+    }
+
     public AsyncHttpClientConfigBean addResponseFilters(ResponseFilter responseFilter) {
         responseFilters.add(responseFilter);
         return this;
@@ -250,4 +263,29 @@ public class AsyncHttpClientConfigBean extends AsyncHttpClientConfig {
         this.ioThreadMultiplier = ioThreadMultiplier;
         return this;
     }
+
+    public AsyncHttpClientConfigBean setContentDecoderRegistry(ContentDecoderRegistry contentDecoderRegistry) {
+        this.contentDecoderRegistry = contentDecoderRegistry;
+        return this;
+    }
+
+    public AsyncHttpClientConfigBean setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public AsyncHttpClientConfigBean setCircuitBreakerRegistry(CircuitBreakerRegistry circuitBreakerRegistry) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        return this;
+    }
+
+    public AsyncHttpClientConfigBean setCallbackExecutionPolicy(CallbackExecutionPolicy callbackExecutionPolicy) {
+        this.callbackExecutionPolicy = callbackExecutionPolicy;
+        return this;
+    }
+
+    public AsyncHttpClientConfigBean setCallbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
 }
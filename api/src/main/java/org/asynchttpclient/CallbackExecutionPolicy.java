@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient;
+
+/**
+ * Where the providers complete the {@link ListenableFuture}s, i.e. call {@link AsyncHandler#onCompleted()} and hand the
+ * listeners over to their {@link java.util.concurrent.Executor}.
+ * <p/>
+ * The other {@link AsyncHandler} callbacks always run on the I/O thread, as their return value drives the reading of the response.
+ */
+public enum CallbackExecutionPolicy {
+
+    /**
+     * Complete on the I/O thread that read the last byte of the response. Cheapest, but a slow callback delays all the other
+     * connections served by that thread.
+     */
+    IO_THREAD,
+
+    /**
+     * Complete on the {@link AsyncHttpClientConfig#getCallbackExecutor() callback executor}, in the order the responses were
+     * read by each I/O thread.
+     */
+    ORDERED,
+
+    /**
+     * Complete on the {@link AsyncHttpClientConfig#getCallbackExecutor() callback executor}, with no ordering.
+     */
+    POOLED
+}
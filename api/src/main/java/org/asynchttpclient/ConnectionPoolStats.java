@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient;
+
+import java.util.Map;
+
+/**
+ * A snapshot view of the state of a provider's connection pool, also exposed as an MXBean named
+ * <code>org.asynchttpclient:type=ConnectionPool,provider=&lt;provider&gt;,name=&lt;n&gt;</code> for every
+ * {@link AsyncHttpClient} instance.
+ * <p/>
+ * The counters are cumulative since the pool was created. They're maintained with striped updates, so reading them is
+ * slightly more expensive than updating them and might not reflect the updates happening concurrently.
+ */
+public interface ConnectionPoolStats {
+
+    /**
+     * @return the number of idle connections currently in the pool
+     */
+    int getIdleConnectionCount();
+
+    /**
+     * @return the number of idle connections currently in the pool, per pool key
+     */
+    Map<String, Integer> getIdleConnectionCountPerHost();
+
+    /**
+     * @return the number of open connections, idle or in use, or -1 if they aren't tracked
+     */
+    int getOpenConnectionCount();
+
+    /**
+     * @return the number of connections that can still be opened before reaching
+     *         {@link AsyncHttpClientConfig#getMaxTotalConnections()}, or -1 if there's no limit
+     */
+    int getAvailablePermits();
+
+    /**
+     * @return the number of connections added back to the pool
+     */
+    long getOfferCount();
+
+    /**
+     * @return the number of requests which got a pooled connection
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of requests which didn't get a pooled connection and had to open a new one
+     */
+    long getMissCount();
+
+    /**
+     * @return {@link #getHitCount()} over the total number of lookups, 0 if there was none
+     */
+    double getHitRatio();
+
+    /**
+     * @return the number of idle connections closed while in the pool, either because they exceeded the idle timeout or
+     *         because the remote peer closed them
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the number of connections not pooled because they exceeded
+     *         {@link AsyncHttpClientConfig#getMaxConnectionLifeTimeInMs()}, always 0 if the provider doesn't support it
+     */
+    long getExpirationCount();
+}
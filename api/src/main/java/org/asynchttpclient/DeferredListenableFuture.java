@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.asynchttpclient.listenable.AbstractListenableFuture;
+import org.asynchttpclient.listenable.ExecutionList;
+
+/**
+ * The {@link ListenableFuture} returned while the {@link org.asynchttpclient.filter.AsyncRequestFilter}s are still running. Once they
+ * have completed, it's bound to the provider's future and delegates to it. Until then, it can be failed by the filters or cancelled
+ * by the caller, in which case the provider's future is never created.
+ */
+class DeferredListenableFuture<V> extends AbstractListenableFuture<V> {
+
+    static final Executor SAME_THREAD_EXECUTOR = ExecutionList.SAME_THREAD_EXECUTOR;
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile ListenableFuture<V> delegate;
+    private volatile Throwable cause;
+    private volatile boolean cancelled;
+    private Future<?> pendingFilter;
+
+    /**
+     * @return false if this future was already cancelled or failed, so the request must not be executed
+     */
+    boolean isPending() {
+        return delegate == null && latch.getCount() != 0;
+    }
+
+    /**
+     * Remember the future of the running filter, so it can be cancelled along with this future.
+     *
+     * @return false if this future was already completed
+     */
+    boolean filtering(Future<?> filterFuture) {
+        synchronized (latch) {
+            if (isPending()) {
+                pendingFilter = filterFuture;
+                return true;
+            }
+        }
+        filterFuture.cancel(false);
+        return false;
+    }
+
+    /**
+     * @return false if this future was already cancelled or failed, in which case the provider's future is cancelled
+     */
+    boolean bind(ListenableFuture<V> future) {
+        synchronized (latch) {
+            if (isPending()) {
+                delegate = future;
+                pendingFilter = null;
+            }
+        }
+        if (delegate != future) {
+            future.cancel(true);
+            return false;
+        }
+        latch.countDown();
+        future.addListener(new Runnable() {
+            public void run() {
+                runListeners();
+            }
+        }, SAME_THREAD_EXECUTOR);
+        return true;
+    }
+
+    /**
+     * @return false if this future was already completed
+     */
+    boolean fail(Throwable t) {
+        synchronized (latch) {
+            if (!isPending()) {
+                return false;
+            }
+            cause = t;
+            pendingFilter = null;
+            latch.countDown();
+        }
+        runListeners();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        Future<?> filterFuture;
+        synchronized (latch) {
+            if (delegate == null) {
+                if (latch.getCount() == 0) {
+                    return false;
+                }
+                cancelled = true;
+                filterFuture = pendingFilter;
+                pendingFilter = null;
+                latch.countDown();
+            } else {
+                filterFuture = null;
+            }
+        }
+        if (delegate != null) {
+            return delegate.cancel(mayInterruptIfRunning);
+        }
+        // e.g. give up waiting for a permit
+        if (filterFuture != null) {
+            filterFuture.cancel(false);
+        }
+        runListeners();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        ListenableFuture<V> future = delegate;
+        return future != null ? future.isCancelled() : cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        ListenableFuture<V> future = delegate;
+        return future != null ? future.isDone() : latch.getCount() == 0;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        latch.await();
+        report();
+        return delegate.get();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        report();
+        return delegate.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private void report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (cause != null) {
+            throw new ExecutionException(cause);
+        }
+    }
+
+    @Override
+    public void done() {
+        ListenableFuture<V> future = delegate;
+        if (future != null) {
+            future.done();
+        }
+    }
+
+    @Override
+    public void abort(Throwable t) {
+        ListenableFuture<V> future = delegate;
+        if (future != null) {
+            future.abort(t);
+        } else {
+            fail(t);
+        }
+    }
+
+    @Override
+    public void touch() {
+        ListenableFuture<V> future = delegate;
+        if (future != null) {
+            future.touch();
+        }
+    }
+
+    @Override
+    public boolean getAndSetWriteHeaders(boolean writeHeader) {
+        ListenableFuture<V> future = delegate;
+        return future != null && future.getAndSetWriteHeaders(writeHeader);
+    }
+
+    @Override
+    public boolean getAndSetWriteBody(boolean writeBody) {
+        ListenableFuture<V> future = delegate;
+        return future != null && future.getAndSetWriteBody(writeBody);
+    }
+}
@@ -165,7 +165,7 @@ public class FluentCaseInsensitiveStringsMap implements Map<String, List<String>
      * @return This object
      */
     public FluentCaseInsensitiveStringsMap replace(final String key, final String... values) {
-        return replace(key, Arrays.asList(values));
+        return replace(key, (Collection<String>) Arrays.asList(values));
     }
 
     /**
@@ -207,7 +207,7 @@ public class FluentCaseInsensitiveStringsMap implements Map<String, List<String>
     public FluentCaseInsensitiveStringsMap replaceAll(FluentCaseInsensitiveStringsMap src) {
         if (src != null) {
             for (Map.Entry<String, List<String>> header : src) {
-                replace(header.getKey(), header.getValue());
+                replace(header.getKey(), (Collection<String>) header.getValue());
             }
         }
         return this;
@@ -240,7 +240,7 @@ public class FluentCaseInsensitiveStringsMap implements Map<String, List<String>
 
         List<String> oldValue = get(key);
 
-        replace(key, value);
+        replace(key, (Collection<String>) value);
         return oldValue;
     }
 
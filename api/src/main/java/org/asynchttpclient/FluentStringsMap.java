@@ -128,7 +128,7 @@ public class FluentStringsMap implements Map<String, List<String>>, Iterable<Map
      * @return This object
      */
     public FluentStringsMap replace(final String key, final String... values) {
-        return replace(key, Arrays.asList(values));
+        return replace(key, (Collection<String>) Arrays.asList(values));
     }
 
     /**
@@ -159,7 +159,7 @@ public class FluentStringsMap implements Map<String, List<String>>, Iterable<Map
     public FluentStringsMap replaceAll(FluentStringsMap src) {
         if (src != null) {
             for (Map.Entry<String, List<String>> header : src) {
-                replace(header.getKey(), header.getValue());
+                replace(header.getKey(), (Collection<String>) header.getValue());
             }
         }
         return this;
@@ -192,7 +192,7 @@ public class FluentStringsMap implements Map<String, List<String>>, Iterable<Map
 
         List<String> oldValue = get(key);
 
-        replace(key, value);
+        replace(key, (Collection<String>) value);
         return oldValue;
     }
 
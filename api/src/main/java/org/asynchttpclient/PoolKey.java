@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient;
+
+import java.net.InetAddress;
+
+/**
+ * The key of the partition of a connections pool the connections of a request belong to: the target host, as returned by the
+ * request's {@link ConnectionPoolKeyStrategy}, the proxy if any and the local address if any.
+ * <p/>
+ * Keys are immutable and their hash code is computed once, so they're cheap to use as map keys. A {@link Request} caches its key,
+ * see {@link Request#getPoolKey(ProxyServer)}, so it's not rebuilt for every pool lookup.
+ */
+public final class PoolKey {
+
+    private final String baseUrl;
+    private final String proxyBaseUrl;
+    private final InetAddress localAddress;
+    private final int hashCode;
+    private final String string;
+
+    /**
+     * @param baseUrl the key of the target host, usually its scheme, host and port
+     * @param proxyBaseUrl the key of the proxy, or null
+     * @param localAddress the local address the connections are bound to, or null
+     */
+    public PoolKey(String baseUrl, String proxyBaseUrl, InetAddress localAddress) {
+        if (baseUrl == null) {
+            throw new NullPointerException("baseUrl");
+        }
+        this.baseUrl = baseUrl;
+        this.proxyBaseUrl = proxyBaseUrl;
+        this.localAddress = localAddress;
+
+        int h = baseUrl.hashCode();
+        h = 31 * h + (proxyBaseUrl != null ? proxyBaseUrl.hashCode() : 0);
+        h = 31 * h + (localAddress != null ? localAddress.hashCode() : 0);
+        hashCode = h;
+
+        if (proxyBaseUrl == null && localAddress == null) {
+            string = baseUrl;
+        } else {
+            StringBuilder sb = new StringBuilder(baseUrl);
+            if (proxyBaseUrl != null) {
+                sb.append(" via ").append(proxyBaseUrl);
+            }
+            if (localAddress != null) {
+                sb.append(" from ").append(localAddress.getHostAddress());
+            }
+            string = sb.toString();
+        }
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getProxyBaseUrl() {
+        return proxyBaseUrl;
+    }
+
+    public InetAddress getLocalAddress() {
+        return localAddress;
+    }
+
+    /**
+     * @return the key of the host the connections are opened to, i.e. the proxy's if any, the target's otherwise
+     */
+    public String getConnectionKey() {
+        return proxyBaseUrl != null ? proxyBaseUrl : baseUrl;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PoolKey))
+            return false;
+        PoolKey other = (PoolKey) o;
+        return hashCode == other.hashCode && baseUrl.equals(other.baseUrl)
+                && (proxyBaseUrl != null ? proxyBaseUrl.equals(other.proxyBaseUrl) : other.proxyBaseUrl == null)
+                && (localAddress != null ? localAddress.equals(other.localAddress) : other.localAddress == null);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    /**
+     * @return the base url of the target, followed by the proxy and the local address if any
+     */
+    @Override
+    public String toString() {
+        return string;
+    }
+}
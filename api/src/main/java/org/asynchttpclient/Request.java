@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.List;
 
 import org.asynchttpclient.multipart.Part;
+import org.asynchttpclient.uri.Uri;
 
 /**
  * The Request class can be used to construct HTTP request:
@@ -56,6 +57,20 @@ public interface Request {
     public URI getURI();
     public URI getRawURI();
 
+    /**
+     * Return the encoded url with the query parameters, computed once
+     *
+     * @return the encoded url with the query parameters
+     */
+    public Uri getUri();
+
+    /**
+     * Return the undecoded url with the query parameters, computed once
+     *
+     * @return the undecoded url with the query parameters
+     */
+    public Uri getRawUri();
+
     /**
      * Return the InetAddress to override
      *
@@ -216,4 +231,12 @@ public interface Request {
     public boolean isUseRawUrl();
 
     ConnectionPoolKeyStrategy getConnectionPoolKeyStrategy();
+
+    /**
+     * Return the key of the connections pool partition of this request, computed once for a given proxy
+     *
+     * @param proxyServer the proxy the request goes through, or null
+     * @return the key of the connections pool partition of this request
+     */
+    PoolKey getPoolKey(ProxyServer proxyServer);
 }
@@ -18,6 +18,7 @@ package org.asynchttpclient;
 import static org.asynchttpclient.util.MiscUtil.isNonEmpty;
 
 import org.asynchttpclient.multipart.Part;
+import org.asynchttpclient.uri.Uri;
 import org.asynchttpclient.util.AsyncHttpProviderUtils;
 import org.asynchttpclient.util.UTF8UrlEncoder;
 import org.slf4j.Logger;
@@ -50,8 +51,10 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
     private static final class RequestImpl implements Request {
         private String method;
         private URI originalUri;
-        private URI uri;
-        private URI rawUri;
+        private Uri uri;
+        private Uri rawUri;
+        private String url;
+        private String rawUrl;
         private InetAddress address;
         private InetAddress localAddress;
         private FluentCaseInsensitiveStringsMap headers;
@@ -74,6 +77,7 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
         public String charset;
         private boolean useRawUrl;
         private ConnectionPoolKeyStrategy connectionPoolKeyStrategy = DefaultConnectionPoolStrategy.INSTANCE;
+        private volatile CachedPoolKey cachedPoolKey;
 
         public RequestImpl(boolean useRawUrl) {
             this.useRawUrl = useRawUrl;
@@ -123,8 +127,8 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
             return localAddress;
         }
 
-        private String removeTrailingSlash(URI uri) {
-            String uriString = uri.toString();
+        private String removeTrailingSlash(Uri uri) {
+            String uriString = uri.toUrl();
             if (uriString.endsWith("/")) {
                 return uriString.substring(0, uriString.length() - 1);
             } else {
@@ -134,12 +138,16 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
 
         @Override
         public String getUrl() {
-            return removeTrailingSlash(getURI());
+            if (url == null)
+                url = removeTrailingSlash(getUri());
+            return url;
         }
 
         @Override
         public String getRawUrl() {
-            return removeTrailingSlash(getRawURI());
+            if (rawUrl == null)
+                rawUrl = removeTrailingSlash(getRawUri());
+            return rawUrl;
         }
 
         public URI getOriginalURI() {
@@ -147,18 +155,34 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
         }
 
         public URI getURI() {
+            return getUri().toJavaNetURI();
+        }
+
+        public URI getRawURI() {
+            return getRawUri().toJavaNetURI();
+        }
+
+        public Uri getUri() {
             if (uri == null)
-                uri = toURI(true);
+                uri = toUri(true);
             return uri;
         }
 
-        public URI getRawURI() {
+        public Uri getRawUri() {
             if (rawUri == null)
-                rawUri = toURI(false);
+                rawUri = toUri(false);
             return rawUri;
         }
 
-        private URI toURI(boolean encode) {
+        private void resetUris() {
+            uri = null;
+            rawUri = null;
+            url = null;
+            rawUrl = null;
+            cachedPoolKey = null;
+        }
+
+        private Uri toUri(boolean encode) {
 
             if (originalUri == null) {
                 logger.debug("setUrl hasn't been invoked. Using http://localhost");
@@ -167,47 +191,40 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
 
             AsyncHttpProviderUtils.validateSupportedScheme(originalUri);
 
-            StringBuilder builder = new StringBuilder();
-            builder.append(originalUri.getScheme()).append("://").append(originalUri.getAuthority());
-            if (isNonEmpty(originalUri.getRawPath())) {
-                builder.append(originalUri.getRawPath());
-            } else {
-                builder.append("/");
+            if (!isNonEmpty(queryParams)) {
+                // no need to parse the original uri again
+                return new Uri(originalUri.getScheme(), originalUri.getAuthority(), originalUri.getHost(), originalUri.getPort(), originalUri.getRawPath(), null);
             }
 
-            if (isNonEmpty(queryParams)) {
-
-                builder.append("?");
-
-                for (Iterator<Entry<String, List<String>>> i = queryParams.iterator(); i.hasNext();) {
-                    Map.Entry<String, List<String>> param = i.next();
-                    String name = param.getKey();
-                    for (Iterator<String> j = param.getValue().iterator(); j.hasNext();) {
-                        String value = j.next();
+            StringBuilder builder = new StringBuilder();
+            for (Iterator<Entry<String, List<String>>> i = queryParams.iterator(); i.hasNext();) {
+                Map.Entry<String, List<String>> param = i.next();
+                String name = param.getKey();
+                for (Iterator<String> j = param.getValue().iterator(); j.hasNext();) {
+                    String value = j.next();
+                    if (encode) {
+                        UTF8UrlEncoder.appendEncoded(builder, name);
+                    } else {
+                        builder.append(name);
+                    }
+                    if (value != null) {
+                        builder.append('=');
                         if (encode) {
-                            UTF8UrlEncoder.appendEncoded(builder, name);
+                            UTF8UrlEncoder.appendEncoded(builder, value);
                         } else {
-                            builder.append(name);
-                        }
-                        if (value != null) {
-                            builder.append('=');
-                            if (encode) {
-                                UTF8UrlEncoder.appendEncoded(builder, value);
-                            } else {
-                                builder.append(value);
-                            }
-                        }
-                        if (j.hasNext()) {
-                            builder.append('&');
+                            builder.append(value);
                         }
                     }
-                    if (i.hasNext()) {
+                    if (j.hasNext()) {
                         builder.append('&');
                     }
                 }
+                if (i.hasNext()) {
+                    builder.append('&');
+                }
             }
 
-            return URI.create(builder.toString());
+            return new Uri(originalUri.getScheme(), originalUri.getAuthority(), originalUri.getHost(), originalUri.getPort(), originalUri.getRawPath(), builder.toString());
         }
 
         @Override
@@ -318,9 +335,28 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
             return connectionPoolKeyStrategy;
         }
 
+        public PoolKey getPoolKey(ProxyServer proxyServer) {
+            CachedPoolKey cached = cachedPoolKey;
+            if (cached == null || cached.proxyServer != proxyServer) {
+                // the proxy is usually the same for all the executions of a request
+                cached = new CachedPoolKey(proxyServer, newPoolKey(proxyServer));
+                cachedPoolKey = cached;
+            }
+            return cached.poolKey;
+        }
+
+        private PoolKey newPoolKey(ProxyServer proxyServer) {
+            // custom strategies keep partitioning the pools with their own keys, the default one would only recompute the base url
+            // that the Uri already holds
+            String key = connectionPoolKeyStrategy == DefaultConnectionPoolStrategy.INSTANCE ? getUri().getBaseUrl()
+                    : connectionPoolKeyStrategy.getKey(getURI());
+            String proxyKey = proxyServer != null ? connectionPoolKeyStrategy.getKey(proxyServer.getURI()) : null;
+            return new PoolKey(key, proxyKey, localAddress);
+        }
+
         @Override
         public String toString() {
-            StringBuilder sb = new StringBuilder(getURI().toString());
+            StringBuilder sb = new StringBuilder(getUri().toUrl());
 
             sb.append("\t");
             sb.append(method);
@@ -378,8 +414,7 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
             throw new IllegalArgumentException("Unsupported uri format: " + uri);
         request.originalUri = uri;
         addQueryParameters(request.originalUri);
-        request.uri = null;
-        request.rawUri = null;
+        request.resetUris();
         return derived.cast(this);
     }
 
@@ -390,6 +425,7 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
 
     public T setLocalInetAddress(InetAddress address) {
         request.localAddress = address;
+        request.cachedPoolKey = null;
         return derived.cast(this);
     }
 
@@ -528,6 +564,7 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
             request.queryParams = new FluentStringsMap();
         }
         request.queryParams.add(name, value);
+        request.resetUris();
         return derived.cast(this);
     }
 
@@ -537,6 +574,7 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
         } else {
             request.queryParams = new FluentStringsMap(parameters);
         }
+        request.resetUris();
         return derived.cast(this);
     }
 
@@ -611,9 +649,20 @@ public abstract class RequestBuilderBase<T extends RequestBuilderBase<T>> {
 
     public T setConnectionPoolKeyStrategy(ConnectionPoolKeyStrategy connectionPoolKeyStrategy) {
         request.connectionPoolKeyStrategy = connectionPoolKeyStrategy;
+        request.cachedPoolKey = null;
         return derived.cast(this);
     }
 
+    private static final class CachedPoolKey {
+        private final ProxyServer proxyServer;
+        private final PoolKey poolKey;
+
+        private CachedPoolKey(ProxyServer proxyServer, PoolKey poolKey) {
+            this.proxyServer = proxyServer;
+            this.poolKey = poolKey;
+        }
+    }
+
     public Request build() {
         if (request.length < 0 && request.streamData == null) {
             // can't concatenate content-length
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.util.List;
+
+import org.asynchttpclient.FluentCaseInsensitiveStringsMap;
+
+/**
+ * The Cache-Control directives of a request or a response, see RFC 7234 section 5.2. Unknown directives are ignored.
+ */
+public final class CacheControl {
+
+    private boolean noCache;
+    private boolean noStore;
+    private boolean mustRevalidate;
+    private boolean isPublic;
+    private boolean isPrivate;
+    private long maxAge = -1L;
+    private long sMaxAge = -1L;
+    private long maxStale = -1L;
+    private long minFresh = -1L;
+
+    private CacheControl() {
+    }
+
+    /**
+     * Parse the Cache-Control headers, and the HTTP/1.0 <code>Pragma: no-cache</code>.
+     *
+     * @param headers request or response headers
+     * @return the parsed directives
+     */
+    public static CacheControl parse(FluentCaseInsensitiveStringsMap headers) {
+        CacheControl cacheControl = new CacheControl();
+        List<String> values = headers.get("Cache-Control");
+        if (values != null) {
+            for (String value : values) {
+                for (String directive : value.split(",")) {
+                    cacheControl.parseDirective(directive.trim());
+                }
+            }
+        } else {
+            String pragma = headers.getFirstValue("Pragma");
+            cacheControl.noCache = pragma != null && pragma.toLowerCase().contains("no-cache");
+        }
+        return cacheControl;
+    }
+
+    private void parseDirective(String directive) {
+        String name = directive;
+        String value = null;
+        int eq = directive.indexOf('=');
+        if (eq > 0) {
+            name = directive.substring(0, eq).trim();
+            value = directive.substring(eq + 1).trim();
+            if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+        }
+        name = name.toLowerCase();
+
+        if (name.equals("no-cache")) {
+            noCache = true;
+        } else if (name.equals("no-store")) {
+            noStore = true;
+        } else if (name.equals("must-revalidate") || name.equals("proxy-revalidate")) {
+            mustRevalidate = true;
+        } else if (name.equals("public")) {
+            isPublic = true;
+        } else if (name.equals("private")) {
+            isPrivate = true;
+        } else if (name.equals("max-age")) {
+            maxAge = seconds(value, -1L);
+        } else if (name.equals("s-maxage")) {
+            sMaxAge = seconds(value, -1L);
+        } else if (name.equals("max-stale")) {
+            // without a value, any staleness is accepted
+            maxStale = seconds(value, Long.MAX_VALUE);
+        } else if (name.equals("min-fresh")) {
+            minFresh = seconds(value, -1L);
+        }
+    }
+
+    private static long seconds(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(0L, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            // invalid delta-seconds, see RFC 7234 section 1.2.1
+            return 0L;
+        }
+    }
+
+    public boolean isNoCache() {
+        return noCache;
+    }
+
+    public boolean isNoStore() {
+        return noStore;
+    }
+
+    public boolean isMustRevalidate() {
+        return mustRevalidate;
+    }
+
+    public boolean isPublic() {
+        return isPublic;
+    }
+
+    public boolean isPrivate() {
+        return isPrivate;
+    }
+
+    /**
+     * @return the max-age in seconds, or -1 if absent
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @return the s-maxage in seconds, or -1 if absent
+     */
+    public long getSMaxAge() {
+        return sMaxAge;
+    }
+
+    /**
+     * @return the max-stale in seconds, {@link Long#MAX_VALUE} if present without a value, or -1 if absent
+     */
+    public long getMaxStale() {
+        return maxStale;
+    }
+
+    /**
+     * @return the min-fresh in seconds, or -1 if absent
+     */
+    public long getMinFresh() {
+        return minFresh;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.asynchttpclient.FluentCaseInsensitiveStringsMap;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.util.DateUtil;
+import org.asynchttpclient.util.DateUtil.DateParseException;
+
+/**
+ * A stored response, with the freshness and age calculations of RFC 7234 section 4.2.
+ */
+public class CacheEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Upper bound of the heuristic freshness computed from Last-Modified.
+     */
+    public static final long MAX_HEURISTIC_FRESHNESS_MS = 24L * 60L * 60L * 1000L;
+
+    private final String url;
+    private final int statusCode;
+    private final String statusText;
+    private final LinkedHashMap<String, ArrayList<String>> headers;
+    private final LinkedHashMap<String, String> varyHeaders;
+    private final byte[] body;
+    private final long requestTime;
+    private final long responseTime;
+    private transient FluentCaseInsensitiveStringsMap fluentHeaders;
+    private transient CacheControl cacheControl;
+
+    /**
+     * @param request the request the response is an answer to
+     * @param statusCode the response status code
+     * @param statusText the response status text
+     * @param headers the response headers
+     * @param body the response body
+     * @param requestTime when the request was sent, in ms
+     * @param responseTime when the response was received, in ms
+     */
+    public CacheEntry(Request request, int statusCode, String statusText, FluentCaseInsensitiveStringsMap headers, byte[] body,
+            long requestTime, long responseTime) {
+        this.url = request.getUrl();
+        this.statusCode = statusCode;
+        this.statusText = statusText;
+        this.headers = copy(headers);
+        this.varyHeaders = new LinkedHashMap<String, String>();
+        for (String name : varyHeaderNames(headers)) {
+            varyHeaders.put(name.toLowerCase(), join(request.getHeaders().get(name)));
+        }
+        this.body = body;
+        this.requestTime = requestTime;
+        this.responseTime = responseTime;
+    }
+
+    private CacheEntry(CacheEntry stored, FluentCaseInsensitiveStringsMap headers, long requestTime, long responseTime) {
+        this.url = stored.url;
+        this.statusCode = stored.statusCode;
+        this.statusText = stored.statusText;
+        this.headers = copy(headers);
+        this.varyHeaders = stored.varyHeaders;
+        this.body = stored.body;
+        this.requestTime = requestTime;
+        this.responseTime = responseTime;
+    }
+
+    /**
+     * Update this entry from a 304 Not Modified response, see RFC 7234 section 4.3.4.
+     *
+     * @param notModifiedHeaders the headers of the 304 response
+     * @param requestTime when the conditional request was sent, in ms
+     * @param responseTime when the 304 response was received, in ms
+     * @return the updated entry
+     */
+    public CacheEntry revalidate(FluentCaseInsensitiveStringsMap notModifiedHeaders, long requestTime, long responseTime) {
+        FluentCaseInsensitiveStringsMap merged = new FluentCaseInsensitiveStringsMap(getHeaders());
+        for (Map.Entry<String, List<String>> header : notModifiedHeaders) {
+            // the 304 doesn't describe the stored body
+            if (!header.getKey().equalsIgnoreCase("Content-Length")) {
+                Collection<String> values = header.getValue();
+                merged.replace(header.getKey(), values);
+            }
+        }
+        return new CacheEntry(this, merged, requestTime, responseTime);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusText() {
+        return statusText;
+    }
+
+    public FluentCaseInsensitiveStringsMap getHeaders() {
+        if (fluentHeaders == null) {
+            FluentCaseInsensitiveStringsMap map = new FluentCaseInsensitiveStringsMap();
+            for (Map.Entry<String, ArrayList<String>> header : headers.entrySet()) {
+                map.add(header.getKey(), header.getValue());
+            }
+            fluentHeaders = map;
+        }
+        return fluentHeaders;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return the approximate memory footprint of this entry
+     */
+    public int size() {
+        int size = body.length + url.length();
+        for (Map.Entry<String, ArrayList<String>> header : headers.entrySet()) {
+            size += header.getKey().length();
+            for (String value : header.getValue()) {
+                size += value.length();
+            }
+        }
+        return size;
+    }
+
+    public CacheControl getCacheControl() {
+        if (cacheControl == null) {
+            cacheControl = CacheControl.parse(getHeaders());
+        }
+        return cacheControl;
+    }
+
+    public String getETag() {
+        return getHeaders().getFirstValue("ETag");
+    }
+
+    public String getLastModified() {
+        return getHeaders().getFirstValue("Last-Modified");
+    }
+
+    /**
+     * @return true if a conditional request can be made for revalidating this entry
+     */
+    public boolean hasValidators() {
+        return getETag() != null || getLastModified() != null;
+    }
+
+    /**
+     * @param request a request for the same url
+     * @return true if the request headers nominated by the Vary response header match the stored ones
+     */
+    public boolean matches(Request request) {
+        for (Map.Entry<String, String> vary : varyHeaders.entrySet()) {
+            if (!vary.getValue().equals(join(request.getHeaders().get(vary.getKey())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the freshness lifetime in ms, see RFC 7234 section 4.2.1
+     */
+    public long getFreshnessLifetime() {
+        CacheControl cc = getCacheControl();
+        if (cc.getMaxAge() >= 0L) {
+            return cc.getMaxAge() * 1000L;
+        }
+
+        String expires = getHeaders().getFirstValue("Expires");
+        if (expires != null) {
+            long expiresTime = parseDate(expires);
+            // an invalid date represents a time in the past
+            return expiresTime < 0L ? 0L : Math.max(0L, expiresTime - getDateValue());
+        }
+
+        String lastModified = getLastModified();
+        if (lastModified != null) {
+            long lastModifiedTime = parseDate(lastModified);
+            if (lastModifiedTime >= 0L) {
+                return Math.min(MAX_HEURISTIC_FRESHNESS_MS, Math.max(0L, (getDateValue() - lastModifiedTime) / 10L));
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * @param now the current time in ms
+     * @return the current age in ms, see RFC 7234 section 4.2.3
+     */
+    public long getCurrentAge(long now) {
+        long apparentAge = Math.max(0L, responseTime - getDateValue());
+        long ageValue = 0L;
+        String age = getHeaders().getFirstValue("Age");
+        if (age != null) {
+            try {
+                ageValue = Math.max(0L, Long.parseLong(age.trim())) * 1000L;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        long correctedAgeValue = ageValue + (responseTime - requestTime);
+        long correctedInitialAge = Math.max(apparentAge, correctedAgeValue);
+        return correctedInitialAge + Math.max(0L, now - responseTime);
+    }
+
+    /**
+     * @param now the current time in ms
+     * @param requestCacheControl the directives of the request
+     * @return true if this entry can be served without revalidation
+     */
+    public boolean isFresh(long now, CacheControl requestCacheControl) {
+        CacheControl responseCacheControl = getCacheControl();
+        if (responseCacheControl.isNoCache() || requestCacheControl.isNoCache()) {
+            return false;
+        }
+
+        long lifetime = getFreshnessLifetime();
+        if (requestCacheControl.getMaxAge() >= 0L) {
+            lifetime = Math.min(lifetime, requestCacheControl.getMaxAge() * 1000L);
+        }
+        long age = getCurrentAge(now);
+        if (requestCacheControl.getMinFresh() >= 0L) {
+            age += requestCacheControl.getMinFresh() * 1000L;
+        }
+        if (age < lifetime) {
+            return true;
+        }
+
+        long maxStale = requestCacheControl.getMaxStale();
+        if (maxStale >= 0L && !responseCacheControl.isMustRevalidate()) {
+            return maxStale == Long.MAX_VALUE || age - lifetime <= maxStale * 1000L;
+        }
+        return false;
+    }
+
+    private long getDateValue() {
+        String date = getHeaders().getFirstValue("Date");
+        if (date != null) {
+            long dateValue = parseDate(date);
+            if (dateValue >= 0L) {
+                return dateValue;
+            }
+        }
+        return responseTime;
+    }
+
+    private static long parseDate(String value) {
+        try {
+            Date date = DateUtil.parseDate(value.trim());
+            return date.getTime();
+        } catch (DateParseException e) {
+            return -1L;
+        }
+    }
+
+    static List<String> varyHeaderNames(FluentCaseInsensitiveStringsMap headers) {
+        List<String> names = new ArrayList<String>();
+        List<String> values = headers.get("Vary");
+        if (values != null) {
+            for (String value : values) {
+                for (String name : value.split(",")) {
+                    name = name.trim();
+                    if (name.length() > 0) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    private static String join(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String value : values) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(value.trim());
+        }
+        return sb.toString();
+    }
+
+    private static LinkedHashMap<String, ArrayList<String>> copy(FluentCaseInsensitiveStringsMap headers) {
+        LinkedHashMap<String, ArrayList<String>> copy = new LinkedHashMap<String, ArrayList<String>>();
+        for (Map.Entry<String, List<String>> header : headers) {
+            copy.put(header.getKey(), new ArrayList<String>(header.getValue()));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of an {@link HttpCache}. Latencies are measured from the request filter to the completion of the handler.
+ */
+public class CacheMetrics {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong hitNanos = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong revalidationNanos = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong missNanos = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+
+    void recordHit(long nanos) {
+        hits.incrementAndGet();
+        hitNanos.addAndGet(nanos);
+    }
+
+    void recordRevalidation(long nanos) {
+        revalidations.incrementAndGet();
+        revalidationNanos.addAndGet(nanos);
+    }
+
+    void recordMiss(long nanos) {
+        misses.incrementAndGet();
+        missNanos.addAndGet(nanos);
+    }
+
+    void recordStore() {
+        stores.incrementAndGet();
+    }
+
+    /**
+     * @return the number of responses served from the cache without contacting the server
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of responses served from the cache after a 304 Not Modified
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return the number of responses fully received from the server
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of responses stored into the cache
+     */
+    public long getStores() {
+        return stores.get();
+    }
+
+    /**
+     * @return the ratio of the responses whose body was served from the cache, hits and revalidations
+     */
+    public double getHitRatio() {
+        long served = hits.get() + revalidations.get();
+        long total = served + misses.get();
+        return total == 0L ? 0.0 : (double) served / total;
+    }
+
+    public long getAverageHitLatencyNanos() {
+        return average(hitNanos, hits);
+    }
+
+    public long getAverageRevalidationLatencyNanos() {
+        return average(revalidationNanos, revalidations);
+    }
+
+    public long getAverageMissLatencyNanos() {
+        return average(missNanos, misses);
+    }
+
+    private static long average(AtomicLong nanos, AtomicLong count) {
+        long c = count.get();
+        return c == 0L ? 0L : nanos.get() / c;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheMetrics[hits=%d, revalidations=%d, misses=%d, stores=%d, hitRatio=%.3f]", getHits(), getRevalidations(),
+                getMisses(), getStores(), getHitRatio());
+    }
+}
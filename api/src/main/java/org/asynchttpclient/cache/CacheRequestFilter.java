@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.filter.FilterContext;
+import org.asynchttpclient.filter.FilterException;
+import org.asynchttpclient.filter.RequestFilter;
+import org.asynchttpclient.hedging.RequestHedger;
+
+/**
+ * A {@link RequestFilter} looking requests up in an {@link HttpCache}. Its {@link CachingAsyncHandler} is kept in the
+ * {@link FilterContext}, so {@link org.asynchttpclient.AsyncHttpClient} finds it even if the filters which run after this one wrap it.
+ * <p/>
+ * When both are used, this filter must be added before the {@link org.asynchttpclient.coalescing.CoalescingRequestFilter}, so the
+ * requests served from the cache aren't coalesced and the revalidations are coalesced with their validators. The other order is
+ * rejected with a {@link FilterException}.
+ * <p/>
+ * The duplicates sent by a {@link RequestHedger} aren't looked up.
+ * <p/>
+ * A fresh entry is served without sending the request. A stale entry with an ETag or a Last-Modified date turns the request
+ * into a conditional one, see RFC 7232.
+ */
+public class CacheRequestFilter implements RequestFilter {
+
+    private final HttpCache cache;
+
+    public CacheRequestFilter(HttpCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> FilterContext<T> filter(FilterContext<T> ctx) throws FilterException {
+        if (ctx.getCoalescingAsyncHandler() != null) {
+            throw new FilterException("The CacheRequestFilter must be added before the CoalescingRequestFilter");
+        }
+
+        Request request = ctx.getRequest();
+        // the original of a hedge already went through the cache
+        if (!cache.isLookupAllowed(request) || RequestHedger.isHedge(ctx.getAsyncHandler())) {
+            return ctx;
+        }
+
+        CacheEntry entry = cache.lookup(request);
+        boolean fresh = false;
+        if (entry != null) {
+            fresh = entry.isFresh(System.currentTimeMillis(), CacheControl.parse(request.getHeaders()));
+            if (!fresh) {
+                if (entry.hasValidators()) {
+                    RequestBuilder builder = new RequestBuilder(request);
+                    if (entry.getETag() != null) {
+                        builder.setHeader("If-None-Match", entry.getETag());
+                    }
+                    if (entry.getLastModified() != null) {
+                        builder.setHeader("If-Modified-Since", entry.getLastModified());
+                    }
+                    request = builder.build();
+                } else {
+                    entry = null;
+                }
+            }
+        }
+
+        // the storability of the response is checked against the original request, not the conditional one
+        CachingAsyncHandler<T> handler = CachingAsyncHandler.wrap(cache, ctx.getRequest(), ctx.getAsyncHandler(), entry, fresh);
+        return new FilterContext.FilterContextBuilder<T>(ctx).request(request).asyncHandler(handler).cachingAsyncHandler(handler)
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.net.URI;
+
+import org.asynchttpclient.Request;
+import org.asynchttpclient.filter.FilterContext;
+import org.asynchttpclient.filter.FilterException;
+import org.asynchttpclient.filter.ResponseFilter;
+
+/**
+ * A {@link ResponseFilter} invalidating the entries of an {@link HttpCache} when an unsafe request succeeds, see RFC 7234
+ * section 4.4. The urls in the Location and Content-Location headers are invalidated too when they're on the same host.
+ */
+public class CacheResponseFilter implements ResponseFilter {
+
+    private final HttpCache cache;
+
+    public CacheResponseFilter(HttpCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> FilterContext<T> filter(FilterContext<T> ctx) throws FilterException {
+        Request request = ctx.getRequest();
+        String method = request.getMethod();
+        int statusCode = ctx.getResponseStatus().getStatusCode();
+        if (isUnsafe(method) && statusCode >= 200 && statusCode < 400) {
+            cache.invalidate(request.getUrl());
+            if (ctx.getResponseHeaders() != null) {
+                invalidate(request.getURI(), ctx.getResponseHeaders().getHeaders().getFirstValue("Location"));
+                invalidate(request.getURI(), ctx.getResponseHeaders().getHeaders().getFirstValue("Content-Location"));
+            }
+        }
+        return ctx;
+    }
+
+    private void invalidate(URI requestUri, String location) {
+        if (location != null) {
+            try {
+                URI uri = requestUri.resolve(location.trim());
+                if (requestUri.getHost() != null && requestUri.getHost().equalsIgnoreCase(uri.getHost())) {
+                    cache.invalidate(uri.toString());
+                }
+            } catch (IllegalArgumentException ignored) {
+                // not a valid uri
+            }
+        }
+    }
+
+    private static boolean isUnsafe(String method) {
+        return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method) || "TRACE".equals(method));
+    }
+}
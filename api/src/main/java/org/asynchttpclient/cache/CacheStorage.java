@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+/**
+ * Where the {@link HttpCache} keeps its {@link CacheEntry}s. Implementations must be thread safe.
+ */
+public interface CacheStorage {
+
+    /**
+     * @param key the cache key
+     * @return the entry, or null
+     */
+    CacheEntry get(String key);
+
+    /**
+     * Store an entry, replacing the previous one with the same key.
+     *
+     * @param key the cache key
+     * @param entry the entry
+     */
+    void put(String key, CacheEntry entry);
+
+    /**
+     * @param key the cache key
+     */
+    void remove(String key);
+}
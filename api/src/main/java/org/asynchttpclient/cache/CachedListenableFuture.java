@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.asynchttpclient.listenable.AbstractListenableFuture;
+
+/**
+ * An already completed {@link org.asynchttpclient.ListenableFuture}, for responses served from the cache.
+ */
+class CachedListenableFuture<V> extends AbstractListenableFuture<V> {
+
+    private final V value;
+    private final Throwable cause;
+
+    CachedListenableFuture(V value, Throwable cause) {
+        this.value = value;
+        this.cause = cause;
+        runListeners();
+    }
+
+    @Override
+    public void done() {
+    }
+
+    @Override
+    public void abort(Throwable t) {
+    }
+
+    @Override
+    public void touch() {
+    }
+
+    @Override
+    public boolean getAndSetWriteHeaders(boolean writeHeader) {
+        return false;
+    }
+
+    @Override
+    public boolean getAndSetWriteBody(boolean writeBody) {
+        return false;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+    @Override
+    public V get() throws ExecutionException {
+        if (cause != null) {
+            throw new ExecutionException(cause);
+        }
+        return value;
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+}
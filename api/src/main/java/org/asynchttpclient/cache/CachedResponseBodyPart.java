@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.asynchttpclient.HttpResponseBodyPart;
+
+/**
+ * The body of a {@link CacheEntry}, as a single {@link HttpResponseBodyPart}.
+ */
+class CachedResponseBodyPart extends HttpResponseBodyPart {
+
+    private final byte[] bytes;
+
+    CachedResponseBodyPart(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int length() {
+        return bytes.length;
+    }
+
+    @Override
+    public byte[] getBodyPartBytes() {
+        return bytes;
+    }
+
+    @Override
+    public InputStream readBodyPartBytes() {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public int writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(bytes);
+        return bytes.length;
+    }
+
+    @Override
+    public ByteBuffer getBodyByteBuffer() {
+        return ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public boolean isLast() {
+        return true;
+    }
+
+    @Override
+    public void markUnderlyingConnectionAsToBeClosed() {
+    }
+
+    @Override
+    public boolean isUnderlyingConnectionToBeClosed() {
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import org.asynchttpclient.FluentCaseInsensitiveStringsMap;
+import org.asynchttpclient.HttpResponseHeaders;
+
+/**
+ * The {@link HttpResponseHeaders} of a {@link CacheEntry}, with an Age header as required by RFC 7234 section 4.
+ */
+class CachedResponseHeaders extends HttpResponseHeaders {
+
+    private final FluentCaseInsensitiveStringsMap headers;
+
+    CachedResponseHeaders(CacheEntry entry, long now) {
+        headers = new FluentCaseInsensitiveStringsMap(entry.getHeaders());
+        headers.replace("Age", String.valueOf(entry.getCurrentAge(now) / 1000L));
+    }
+
+    @Override
+    public FluentCaseInsensitiveStringsMap getHeaders() {
+        return headers;
+    }
+}
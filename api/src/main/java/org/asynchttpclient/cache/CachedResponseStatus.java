@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.net.URI;
+import java.util.List;
+
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.Response;
+
+/**
+ * The {@link HttpResponseStatus} of a {@link CacheEntry}.
+ */
+class CachedResponseStatus extends HttpResponseStatus {
+
+    private final CacheEntry entry;
+
+    CachedResponseStatus(URI uri, CacheEntry entry) {
+        super(uri, null);
+        this.entry = entry;
+    }
+
+    @Override
+    public Response prepareResponse(HttpResponseHeaders headers, List<HttpResponseBodyPart> bodyParts) {
+        return new CachedResponse(this, headers, bodyParts);
+    }
+
+    @Override
+    public int getStatusCode() {
+        return entry.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() {
+        return entry.getStatusText();
+    }
+
+    @Override
+    public String getProtocolName() {
+        return "HTTP";
+    }
+
+    @Override
+    public int getProtocolMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getProtocolMinorVersion() {
+        return 1;
+    }
+
+    @Override
+    public String getProtocolText() {
+        return "HTTP/1.1";
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandlerExtensions;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.ProgressAsyncHandler;
+import org.asynchttpclient.Request;
+
+/**
+ * An {@link AsyncHandler} wrapper installed by the {@link CacheRequestFilter}.
+ * <p/>
+ * When the stored entry is fresh, {@link org.asynchttpclient.AsyncHttpClient} doesn't send the request and calls {@link #replay(AsyncHandler)},
+ * which feeds the entry to the wrapped handler. When the request is a revalidation, a 304 Not Modified response is replaced with
+ * the stored entry. Otherwise, the response is passed through and stored if it's cacheable.
+ */
+public class CachingAsyncHandler<T> implements ProgressAsyncHandler<T>, AsyncHandlerExtensions {
+
+    private final HttpCache cache;
+    private final Request request;
+    private final AsyncHandler<T> asyncHandler;
+    private final CacheEntry storedEntry;
+    private final boolean fresh;
+    private final long startNanos = System.nanoTime();
+    private final long requestTime = System.currentTimeMillis();
+    private HttpResponseStatus status;
+    private HttpResponseHeaders headers;
+    private boolean notModified;
+    private ByteArrayOutputStream body;
+
+    /**
+     * @param cache the cache
+     * @param request the request, without the validators of the stored entry when revalidating
+     * @param asyncHandler the wrapped handler
+     * @param storedEntry the stored entry, or null
+     * @param fresh true if the stored entry can be served without contacting the server
+     */
+    public CachingAsyncHandler(HttpCache cache, Request request, AsyncHandler<T> asyncHandler, CacheEntry storedEntry, boolean fresh) {
+        this.cache = cache;
+        this.request = request;
+        this.asyncHandler = asyncHandler;
+        this.storedEntry = storedEntry;
+        this.fresh = fresh && storedEntry != null;
+    }
+
+    public AsyncHandler<T> getAsyncHandler() {
+        return asyncHandler;
+    }
+
+    /**
+     * @return true if the request doesn't need to be sent
+     */
+    public boolean isFresh() {
+        return fresh;
+    }
+
+    /**
+     * Serve the fresh stored entry to the wrapped handler, in the calling thread.
+     *
+     * @return a completed future
+     */
+    public ListenableFuture<T> replay() {
+        return replay(asyncHandler);
+    }
+
+    /**
+     * Serve the fresh stored entry through the given handler, in the calling thread.
+     *
+     * @param handler this handler, or one of the handlers wrapping it
+     * @return a completed future
+     */
+    public ListenableFuture<T> replay(AsyncHandler<T> handler) {
+        try {
+            replay(handler, storedEntry);
+            T value = handler.onCompleted();
+            cache.getMetrics().recordHit(System.nanoTime() - startNanos);
+            return new CachedListenableFuture<T>(value, null);
+        } catch (Throwable t) {
+            handler.onThrowable(t);
+            return new CachedListenableFuture<T>(null, t);
+        }
+    }
+
+    private STATE replay(AsyncHandler<T> handler, CacheEntry entry) throws Exception {
+        URI uri = request.getURI();
+        STATE state = handler.onStatusReceived(new CachedResponseStatus(uri, entry));
+        if (state == STATE.CONTINUE) {
+            state = handler.onHeadersReceived(new CachedResponseHeaders(entry, System.currentTimeMillis()));
+        }
+        if (state == STATE.CONTINUE && entry.getBody().length > 0) {
+            state = handler.onBodyPartReceived(new CachedResponseBodyPart(entry.getBody()));
+        }
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        status = responseStatus;
+        if (responseStatus.getStatusCode() == 304 && storedEntry != null) {
+            notModified = true;
+            return STATE.CONTINUE;
+        }
+        return asyncHandler.onStatusReceived(responseStatus);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onHeadersReceived(HttpResponseHeaders responseHeaders) throws Exception {
+        if (fresh) {
+            // the stored entry, replayed by an outer handler
+            return asyncHandler.onHeadersReceived(responseHeaders);
+        }
+        if (headers != null) {
+            // trailing headers
+            return notModified ? STATE.CONTINUE : asyncHandler.onHeadersReceived(responseHeaders);
+        }
+        headers = responseHeaders;
+
+        if (notModified) {
+            CacheEntry updated = storedEntry.revalidate(responseHeaders.getHeaders(), requestTime, System.currentTimeMillis());
+            cache.store(updated);
+            return replay(asyncHandler, updated);
+        }
+
+        if (cache.isStorable(request, status.getStatusCode(), responseHeaders.getHeaders())) {
+            body = new ByteArrayOutputStream();
+        }
+        STATE state = asyncHandler.onHeadersReceived(responseHeaders);
+        if (state != STATE.CONTINUE) {
+            body = null;
+        }
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        if (notModified) {
+            return STATE.CONTINUE;
+        }
+        if (body != null) {
+            ByteBuffer buffer = bodyPart.getBodyByteBuffer();
+            if (body.size() + buffer.remaining() > cache.getMaxEntrySize()) {
+                body = null;
+            } else if (buffer.hasArray()) {
+                body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            } else {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                body.write(bytes);
+            }
+        }
+        STATE state = asyncHandler.onBodyPartReceived(bodyPart);
+        if (state != STATE.CONTINUE) {
+            body = null;
+        }
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T onCompleted() throws Exception {
+        if (fresh) {
+            return asyncHandler.onCompleted();
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        if (notModified) {
+            cache.getMetrics().recordRevalidation(elapsed);
+        } else {
+            cache.getMetrics().recordMiss(elapsed);
+            if (body != null) {
+                cache.store(new CacheEntry(request, status.getStatusCode(), status.getStatusText(), headers.getHeaders(), body.toByteArray(),
+                        requestTime, System.currentTimeMillis()));
+            }
+        }
+        return asyncHandler.onCompleted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onThrowable(Throwable t) {
+        body = null;
+        asyncHandler.onThrowable(t);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onHeaderWriteCompleted() {
+        return asyncHandler instanceof ProgressAsyncHandler ? ProgressAsyncHandler.class.cast(asyncHandler).onHeaderWriteCompleted() : STATE.CONTINUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onContentWriteCompleted() {
+        return asyncHandler instanceof ProgressAsyncHandler ? ProgressAsyncHandler.class.cast(asyncHandler).onContentWriteCompleted() : STATE.CONTINUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onContentWriteProgress(long amount, long current, long total) {
+        return asyncHandler instanceof ProgressAsyncHandler ? ProgressAsyncHandler.class.cast(asyncHandler).onContentWriteProgress(amount, current, total)
+                : STATE.CONTINUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRequestSent() {
+        if (asyncHandler instanceof AsyncHandlerExtensions) {
+            AsyncHandlerExtensions.class.cast(asyncHandler).onRequestSent();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRetry() {
+        if (asyncHandler instanceof AsyncHandlerExtensions) {
+            AsyncHandlerExtensions.class.cast(asyncHandler).onRetry();
+        }
+    }
+
+    /**
+     * @return a {@link CachingAsyncHandler} which also forwards the {@link AsyncHandlerTimingExtensions} callbacks if the handler
+     *         implements them, so the providers only take the timestamps when they're wanted
+     */
+    public static <T> CachingAsyncHandler<T> wrap(HttpCache cache, Request request, AsyncHandler<T> asyncHandler, CacheEntry storedEntry,
+            boolean fresh) {
+        return asyncHandler instanceof AsyncHandlerTimingExtensions ? new Timed<T>(cache, request, asyncHandler, storedEntry, fresh)
+                : new CachingAsyncHandler<T>(cache, request, asyncHandler, storedEntry, fresh);
+    }
+
+    private static class Timed<T> extends CachingAsyncHandler<T> implements AsyncHandlerTimingExtensions {
+
+        private final AsyncHandlerTimingExtensions timing;
+
+        private Timed(HttpCache cache, Request request, AsyncHandler<T> asyncHandler, CacheEntry storedEntry, boolean fresh) {
+            super(cache, request, asyncHandler, storedEntry, fresh);
+            timing = AsyncHandlerTimingExtensions.class.cast(asyncHandler);
+        }
+
+        @Override
+        public void onDnsResolved(long nanoTime) {
+            timing.onDnsResolved(nanoTime);
+        }
+
+        @Override
+        public void onConnectionOpen(long nanoTime) {
+            timing.onConnectionOpen(nanoTime);
+        }
+
+        @Override
+        public void onConnectionPooled(long nanoTime) {
+            timing.onConnectionPooled(nanoTime);
+        }
+
+        @Override
+        public void onTlsHandshakeDone(long nanoTime) {
+            timing.onTlsHandshakeDone(nanoTime);
+        }
+
+        @Override
+        public void onHeadersWritten(long nanoTime) {
+            timing.onHeadersWritten(nanoTime);
+        }
+
+        @Override
+        public void onFirstByteReceived(long nanoTime) {
+            timing.onFirstByteReceived(nanoTime);
+        }
+
+        @Override
+        public void onLastByteReceived(long nanoTime) {
+            timing.onLastByteReceived(nanoTime);
+        }
+    }
+}
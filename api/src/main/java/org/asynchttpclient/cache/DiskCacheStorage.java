@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.asynchttpclient.util.StandardCharsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link CacheStorage} keeping one serialized file per entry in a directory, bounded by the total size of the files.
+ * The least recently used files are deleted first. Entries written by a previous instance are picked up.
+ */
+public class DiskCacheStorage implements CacheStorage {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(DiskCacheStorage.class);
+    private final static String SUFFIX = ".entry";
+    private final static String TMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxSize;
+    // file name -> file length, in access order
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long size;
+
+    public DiskCacheStorage(File directory, long maxSize) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory: " + directory.getAbsolutePath());
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        File[] existing = directory.listFiles();
+        if (existing != null) {
+            Arrays.sort(existing, new Comparator<File>() {
+                public int compare(File f1, File f2) {
+                    long m1 = f1.lastModified();
+                    long m2 = f2.lastModified();
+                    return m1 < m2 ? -1 : m1 == m2 ? 0 : 1;
+                }
+            });
+            for (File file : existing) {
+                if (file.getName().endsWith(SUFFIX)) {
+                    files.put(file.getName(), file.length());
+                    size += file.length();
+                } else if (file.getName().endsWith(TMP_SUFFIX)) {
+                    // left by an interrupted write
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    @Override
+    public CacheEntry get(String key) {
+        String name = fileName(key);
+        synchronized (this) {
+            if (files.get(name) == null) {
+                return null;
+            }
+        }
+
+        File file = new File(directory, name);
+        try {
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                return (CacheEntry) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Unable to read {}", file, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, CacheEntry entry) {
+        String name = fileName(key);
+        File file = new File(directory, name);
+        File tmp = null;
+        try {
+            // unique, as concurrent writes of the same key may happen outside of the lock
+            tmp = File.createTempFile(name, TMP_SUFFIX, directory);
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeObject(entry);
+            } finally {
+                out.close();
+            }
+            synchronized (this) {
+                if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                    throw new IOException("Unable to rename " + tmp);
+                }
+                Long previous = files.put(name, file.length());
+                if (previous != null) {
+                    size -= previous;
+                }
+                size += file.length();
+                evict();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Unable to write {}", file, e);
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        String name = fileName(key);
+        synchronized (this) {
+            Long previous = files.remove(name);
+            if (previous != null) {
+                size -= previous;
+                new File(directory, name).delete();
+            }
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            size -= eldest.getValue();
+            it.remove();
+            new File(directory, eldest.getKey()).delete();
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2 + SUFFIX.length());
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.asynchttpclient.FluentCaseInsensitiveStringsMap;
+import org.asynchttpclient.Request;
+
+/**
+ * A private HTTP cache following RFC 7234, made of a size bounded in-memory LRU and an optional disk tier.
+ * <p/>
+ * Plug it into a client with a {@link CacheRequestFilter}, added before the
+ * {@link org.asynchttpclient.coalescing.CoalescingRequestFilter} if any, and a {@link CacheResponseFilter}:
+ * <pre>
+ * HttpCache cache = new HttpCache(64 * 1024 * 1024);
+ * AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()
+ *     .addRequestFilter(new CacheRequestFilter(cache))
+ *     .addResponseFilter(new CacheResponseFilter(cache))
+ *     .build();
+ * </pre>
+ * Only GET responses are stored. Range and conditional requests from the user bypass the cache.
+ * <p/>
+ * Responses are stored from the provider's I/O threads, so the writes and removals of the disk tier are handed off to an executor.
+ */
+public class HttpCache {
+
+    public static final int DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private final CacheStorage memory;
+    private final CacheStorage disk;
+    private final Executor diskExecutor;
+    private final int maxEntrySize;
+    private final CacheMetrics metrics = new CacheMetrics();
+
+    /**
+     * @param maxMemorySize the maximum total size of the entries kept in memory
+     */
+    public HttpCache(long maxMemorySize) {
+        this(new MemoryCacheStorage(maxMemorySize), null, DEFAULT_MAX_ENTRY_SIZE);
+    }
+
+    /**
+     * @param maxMemorySize the maximum total size of the entries kept in memory
+     * @param directory the directory of the disk tier
+     * @param maxDiskSize the maximum total size of the disk tier
+     * @throws IOException if the directory can't be created
+     */
+    public HttpCache(long maxMemorySize, File directory, long maxDiskSize) throws IOException {
+        this(new MemoryCacheStorage(maxMemorySize), new DiskCacheStorage(directory, maxDiskSize), DEFAULT_MAX_ENTRY_SIZE);
+    }
+
+    /**
+     * @param memory the first tier
+     * @param disk the second tier, may be null
+     * @param maxEntrySize responses with a larger body are not stored
+     */
+    public HttpCache(CacheStorage memory, CacheStorage disk, int maxEntrySize) {
+        this(memory, disk, maxEntrySize, disk != null ? newDiskExecutor() : null);
+    }
+
+    /**
+     * @param memory the first tier
+     * @param disk the second tier, may be null
+     * @param maxEntrySize responses with a larger body are not stored
+     * @param diskExecutor runs the writes and removals of the second tier, in order, e.g. a single thread
+     */
+    public HttpCache(CacheStorage memory, CacheStorage disk, int maxEntrySize, Executor diskExecutor) {
+        this.memory = memory;
+        this.disk = disk;
+        this.maxEntrySize = maxEntrySize;
+        this.diskExecutor = diskExecutor;
+    }
+
+    private static Executor newDiskExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AsyncHttpClient-HttpCache");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * @param request a request
+     * @return true if the request can be answered from the cache, see RFC 7234 section 4
+     */
+    public boolean isLookupAllowed(Request request) {
+        FluentCaseInsensitiveStringsMap headers = request.getHeaders();
+        return "GET".equals(request.getMethod())//
+                && request.getRangeOffset() == 0L//
+                && !headers.containsKey("Range")//
+                && !headers.containsKey("If-None-Match")//
+                && !headers.containsKey("If-Modified-Since")//
+                && !CacheControl.parse(headers).isNoStore();
+    }
+
+    /**
+     * @param request the request
+     * @param statusCode the response status code
+     * @param headers the response headers
+     * @return true if the response can be stored, see RFC 7234 section 3
+     */
+    public boolean isStorable(Request request, int statusCode, FluentCaseInsensitiveStringsMap headers) {
+        if (!isLookupAllowed(request)) {
+            return false;
+        }
+
+        CacheControl cc = CacheControl.parse(headers);
+        if (cc.isNoStore()) {
+            return false;
+        }
+        for (String vary : CacheEntry.varyHeaderNames(headers)) {
+            if (vary.equals("*")) {
+                return false;
+            }
+        }
+        if (request.getHeaders().containsKey("Authorization") && !(cc.isPublic() || cc.isMustRevalidate() || cc.getSMaxAge() >= 0L)) {
+            return false;
+        }
+
+        boolean explicitFreshness = cc.getMaxAge() >= 0L || headers.containsKey("Expires");
+        boolean validators = headers.containsKey("ETag") || headers.containsKey("Last-Modified");
+        if (!explicitFreshness && !validators) {
+            // would never be served
+            return false;
+        }
+        return isCacheableByDefault(statusCode) || (explicitFreshness && statusCode != 206 && statusCode < 500);
+    }
+
+    private static boolean isCacheableByDefault(int statusCode) {
+        switch (statusCode) {
+        case 200:
+        case 203:
+        case 204:
+        case 300:
+        case 301:
+        case 404:
+        case 405:
+        case 410:
+        case 414:
+        case 501:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @param request a request
+     * @return the stored entry for this request, or null
+     */
+    public CacheEntry lookup(Request request) {
+        String key = request.getUrl();
+        CacheEntry entry = memory.get(key);
+        if (entry == null && disk != null) {
+            entry = disk.get(key);
+            if (entry != null) {
+                memory.put(key, entry);
+            }
+        }
+        return entry != null && entry.matches(request) ? entry : null;
+    }
+
+    /**
+     * Store an entry in memory, and asynchronously on disk.
+     *
+     * @param entry the entry to store
+     */
+    public void store(final CacheEntry entry) {
+        memory.put(entry.getUrl(), entry);
+        if (disk != null) {
+            diskExecutor.execute(new Runnable() {
+                public void run() {
+                    disk.put(entry.getUrl(), entry);
+                }
+            });
+        }
+        metrics.recordStore();
+    }
+
+    /**
+     * Remove an entry from memory, and asynchronously from disk.
+     *
+     * @param url the url whose entry must be removed
+     */
+    public void invalidate(final String url) {
+        memory.remove(url);
+        if (disk != null) {
+            // after the writes already handed off
+            diskExecutor.execute(new Runnable() {
+                public void run() {
+                    disk.remove(url);
+                }
+            });
+        }
+    }
+}
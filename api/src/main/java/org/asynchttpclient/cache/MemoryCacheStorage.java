@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used {@link CacheStorage} bounded by the size of its entries.
+ */
+public class MemoryCacheStorage implements CacheStorage {
+
+    private final long maxSize;
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+    private long size;
+    private long evictions;
+
+    /**
+     * @param maxSize the maximum total size of the entries, see {@link CacheEntry#size()}
+     */
+    public MemoryCacheStorage(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized CacheEntry get(String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(String key, CacheEntry entry) {
+        int entrySize = entry.size();
+        if (entrySize > maxSize) {
+            remove(key);
+            return;
+        }
+        CacheEntry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.size();
+        }
+        size += entrySize;
+
+        Iterator<Map.Entry<String, CacheEntry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, CacheEntry> eldest = it.next();
+            size -= eldest.getValue().size();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        CacheEntry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.size();
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int count() {
+        return entries.size();
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.circuitbreaker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The circuit breaker of a single host, identified by its connection pool key.
+ * <p/>
+ * While {@link State#CLOSED}, connections are obtained as usual and the outcome of every attempt is recorded. The circuit trips
+ * {@link State#OPEN} after a number of consecutive failures, or once the ratio of failed attempts in the current window reaches a
+ * threshold. While open, requests are rejected right away. After the open duration, the circuit is {@link State#HALF_OPEN} and lets a
+ * limited number of probes through: the first success closes it, a failure opens it again. Probes that never report back are replaced
+ * after another open duration.
+ * <p/>
+ * Instances are created by a {@link CircuitBreakerRegistry}, which holds the thresholds. Checking a closed circuit is a single volatile
+ * read.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String key;
+    private final CircuitBreakerRegistry registry;
+    private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger windowAttempts = new AtomicInteger();
+    private final AtomicInteger windowFailures = new AtomicInteger();
+    private final AtomicInteger probes = new AtomicInteger();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private volatile long windowStart;
+    // when the current state was entered
+    private volatile long stateSince;
+
+    CircuitBreaker(String key, CircuitBreakerRegistry registry) {
+        this.key = key;
+        this.registry = registry;
+        windowStart = stateSince = System.nanoTime();
+    }
+
+    /**
+     * Check if a request can go on and obtain a connection. In {@link State#HALF_OPEN}, this takes one of the probes, so the outcome of
+     * the connection attempt must be reported with {@link #onSuccess()} or {@link #onFailure()}.
+     * 
+     * @return false if the request should fail right away
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            State current = state.get();
+            if (current == State.CLOSED) {
+                return true;
+            }
+
+            long now = System.nanoTime();
+            if (current == State.OPEN) {
+                if (now - stateSince < registry.getOpenDurationNanos()) {
+                    reject();
+                    return false;
+                }
+                transition(State.OPEN, State.HALF_OPEN, now);
+                continue;
+            }
+
+            int taken = probes.get();
+            if (taken < registry.getHalfOpenProbes()) {
+                if (probes.compareAndSet(taken, taken + 1)) {
+                    return true;
+                }
+            } else if (now - stateSince >= registry.getOpenDurationNanos()) {
+                // the probes never reported back, e.g. they were cancelled before connecting
+                synchronized (this) {
+                    if (state.get() == State.HALF_OPEN && now - stateSince >= registry.getOpenDurationNanos()) {
+                        probes.set(0);
+                        stateSince = now;
+                    }
+                }
+            } else {
+                reject();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Record a connection that was successfully obtained.
+     */
+    public void onSuccess() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+            record(false);
+        } else if (current == State.HALF_OPEN) {
+            transition(State.HALF_OPEN, State.CLOSED, System.nanoTime());
+        }
+        // late outcomes of attempts made before the circuit opened are ignored
+    }
+
+    /**
+     * Record a connection that couldn't be obtained, e.g. a refused or timed out connect.
+     */
+    public void onFailure() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            int consecutive = consecutiveFailures.incrementAndGet();
+            record(true);
+            if (consecutive >= registry.getFailureThreshold() || isFailureRatioReached()) {
+                transition(State.CLOSED, State.OPEN, System.nanoTime());
+            }
+        } else if (current == State.HALF_OPEN) {
+            transition(State.HALF_OPEN, State.OPEN, System.nanoTime());
+        }
+    }
+
+    /**
+     * Close the circuit, whatever its state.
+     */
+    public void reset() {
+        State current = state.get();
+        if (current != State.CLOSED) {
+            transition(current, State.CLOSED, System.nanoTime());
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * @return the number of requests rejected by this circuit breaker
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker[" + key + ", " + state.get() + "]";
+    }
+
+    private void reject() {
+        rejectedCount.incrementAndGet();
+        registry.onRejected();
+    }
+
+    private void record(boolean failed) {
+        long now = System.nanoTime();
+        if (now - windowStart >= registry.getWindowNanos()) {
+            synchronized (this) {
+                if (now - windowStart >= registry.getWindowNanos()) {
+                    windowAttempts.set(0);
+                    windowFailures.set(0);
+                    windowStart = now;
+                }
+            }
+        }
+        windowAttempts.incrementAndGet();
+        if (failed) {
+            windowFailures.incrementAndGet();
+        }
+    }
+
+    private boolean isFailureRatioReached() {
+        int attempts = windowAttempts.get();
+        return attempts >= registry.getMinimumAttempts() && windowFailures.get() >= registry.getFailureRatio() * attempts;
+    }
+
+    private void transition(State from, State to, long now) {
+        synchronized (this) {
+            if (state.get() != from) {
+                return;
+            }
+            stateSince = now;
+            probes.set(0);
+            consecutiveFailures.set(0);
+            windowAttempts.set(0);
+            windowFailures.set(0);
+            windowStart = now;
+            state.set(to);
+        }
+        registry.fireStateChange(this, from, to);
+    }
+}
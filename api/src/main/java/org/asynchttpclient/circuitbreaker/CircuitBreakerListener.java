@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.circuitbreaker;
+
+/**
+ * Notified of the state transitions of the {@link CircuitBreaker}s of a {@link CircuitBreakerRegistry}. Listeners are called on the
+ * thread causing the transition, usually an I/O thread, so they must not block.
+ */
+public interface CircuitBreakerListener {
+
+    /**
+     * @param circuitBreaker the circuit breaker, which holds the pool key of the host
+     * @param from the previous state
+     * @param to the new state
+     */
+    void onStateChange(CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to);
+}
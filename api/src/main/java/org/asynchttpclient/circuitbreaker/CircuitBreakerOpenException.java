@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.circuitbreaker;
+
+import java.net.ConnectException;
+
+/**
+ * Thrown, and passed to {@link org.asynchttpclient.AsyncHandler#onThrowable(Throwable)}, when a request is rejected because the
+ * circuit of its host is open.
+ */
+@SuppressWarnings("serial")
+public class CircuitBreakerOpenException extends ConnectException {
+
+    private final String key;
+
+    public CircuitBreakerOpenException(String key) {
+        super("Circuit breaker open for " + key);
+        this.key = key;
+    }
+
+    /**
+     * @return the pool key of the host
+     */
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.circuitbreaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link CircuitBreaker}s of the hosts a client talks to, keyed by connection pool key, and their thresholds.
+ * <p/>
+ * Set with {@link org.asynchttpclient.AsyncHttpClientConfig.Builder#setCircuitBreakerRegistry(CircuitBreakerRegistry)}, the providers
+ * check the circuit of the host before obtaining a connection for a new request, and reject it with a
+ * {@link CircuitBreakerOpenException} while it's open, without acquiring a connection permit or connecting. They record whether each
+ * connection could be obtained: taking a pooled connection or connecting succeeds, a refused or timed out connect fails.
+ */
+public class CircuitBreakerRegistry implements CircuitBreakerRegistryMXBean {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(CircuitBreakerRegistry.class);
+
+    private final int failureThreshold;
+    private final double failureRatio;
+    private final int minimumAttempts;
+    private final long windowNanos;
+    private final long openDurationNanos;
+    private final int halfOpenProbes;
+    private final ConcurrentHashMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+    private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<CircuitBreakerListener>();
+    private final AtomicLong tripCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private CircuitBreakerRegistry(Builder builder) {
+        this.failureThreshold = builder.failureThreshold;
+        this.failureRatio = builder.failureRatio;
+        this.minimumAttempts = builder.minimumAttempts;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(builder.windowInMs);
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(builder.openDurationInMs);
+        this.halfOpenProbes = builder.halfOpenProbes;
+        listeners.addAll(builder.listeners);
+    }
+
+    /**
+     * @param key the connection pool key of a host
+     * @return the {@link CircuitBreaker} of the host, created closed if needed
+     */
+    public CircuitBreaker getCircuitBreaker(String key) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(key);
+        if (circuitBreaker == null) {
+            CircuitBreaker newCircuitBreaker = new CircuitBreaker(key, this);
+            circuitBreaker = circuitBreakers.putIfAbsent(key, newCircuitBreaker);
+            if (circuitBreaker == null) {
+                circuitBreaker = newCircuitBreaker;
+            }
+        }
+        return circuitBreaker;
+    }
+
+    public CircuitBreakerRegistry addListener(CircuitBreakerListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public CircuitBreakerRegistry removeListener(CircuitBreakerListener listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getStates() {
+        Map<String, String> states = new TreeMap<String, String>();
+        for (CircuitBreaker circuitBreaker : circuitBreakers.values()) {
+            states.put(circuitBreaker.getKey(), circuitBreaker.getState().name());
+        }
+        return states;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getOpenCount() {
+        int open = 0;
+        for (CircuitBreaker circuitBreaker : circuitBreakers.values()) {
+            if (circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTripCount() {
+        return tripCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset(String key) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(key);
+        if (circuitBreaker != null) {
+            circuitBreaker.reset();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resetAll() {
+        for (CircuitBreaker circuitBreaker : circuitBreakers.values()) {
+            circuitBreaker.reset();
+        }
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public double getFailureRatio() {
+        return failureRatio;
+    }
+
+    public int getMinimumAttempts() {
+        return minimumAttempts;
+    }
+
+    public long getWindowNanos() {
+        return windowNanos;
+    }
+
+    public long getOpenDurationNanos() {
+        return openDurationNanos;
+    }
+
+    public int getHalfOpenProbes() {
+        return halfOpenProbes;
+    }
+
+    void onRejected() {
+        rejectedCount.incrementAndGet();
+    }
+
+    void fireStateChange(CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to) {
+        if (to == CircuitBreaker.State.OPEN) {
+            tripCount.incrementAndGet();
+            LOGGER.warn("Circuit breaker open for {}", circuitBreaker.getKey());
+        } else {
+            LOGGER.debug("Circuit breaker for {} went from {} to {}", circuitBreaker.getKey(), from, to);
+        }
+        for (CircuitBreakerListener listener : listeners) {
+            try {
+                listener.onStateChange(circuitBreaker, from, to);
+            } catch (Throwable t) {
+                LOGGER.warn("CircuitBreakerListener failed", t);
+            }
+        }
+    }
+
+    public static class Builder {
+        private int failureThreshold = 5;
+        private double failureRatio = 0.5;
+        private int minimumAttempts = 20;
+        private long windowInMs = 10000L;
+        private long openDurationInMs = 5000L;
+        private int halfOpenProbes = 1;
+        private List<CircuitBreakerListener> listeners = new ArrayList<CircuitBreakerListener>();
+
+        /**
+         * Set the number of consecutive failures opening a circuit, 5 by default.
+         */
+        public Builder setFailureThreshold(int failureThreshold) {
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("failureThreshold must be at least 1");
+            }
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * Set the ratio of failed attempts in a window opening a circuit, 0.5 by default, more than 1 for never opening on the ratio.
+         */
+        public Builder setFailureRatio(double failureRatio) {
+            if (failureRatio <= 0.0) {
+                throw new IllegalArgumentException("failureRatio must be positive");
+            }
+            this.failureRatio = failureRatio;
+            return this;
+        }
+
+        /**
+         * Set the number of attempts a window needs before its failure ratio is considered, 20 by default.
+         */
+        public Builder setMinimumAttempts(int minimumAttempts) {
+            this.minimumAttempts = minimumAttempts;
+            return this;
+        }
+
+        /**
+         * Set the length of the windows the failure ratio is computed on, 10 seconds by default.
+         */
+        public Builder setWindowInMs(long windowInMs) {
+            this.windowInMs = windowInMs;
+            return this;
+        }
+
+        /**
+         * Set how long a circuit stays open before letting probes through, 5 seconds by default.
+         */
+        public Builder setOpenDurationInMs(long openDurationInMs) {
+            this.openDurationInMs = openDurationInMs;
+            return this;
+        }
+
+        /**
+         * Set the number of requests let through at once by a half open circuit, 1 by default.
+         */
+        public Builder setHalfOpenProbes(int halfOpenProbes) {
+            if (halfOpenProbes < 1) {
+                throw new IllegalArgumentException("halfOpenProbes must be at least 1");
+            }
+            this.halfOpenProbes = halfOpenProbes;
+            return this;
+        }
+
+        public Builder addListener(CircuitBreakerListener listener) {
+            listeners.add(listener);
+            return this;
+        }
+
+        public CircuitBreakerRegistry build() {
+            return new CircuitBreakerRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.circuitbreaker;
+
+import java.util.Map;
+
+/**
+ * The management interface of a {@link CircuitBreakerRegistry}, registered by the providers with
+ * {@link org.asynchttpclient.util.JmxUtils#registerCircuitBreakers(String, CircuitBreakerRegistryMXBean)}.
+ */
+public interface CircuitBreakerRegistryMXBean {
+
+    /**
+     * @return the state of the circuit of every known host, by pool key
+     */
+    Map<String, String> getStates();
+
+    /**
+     * @return the number of circuits currently open or half open
+     */
+    int getOpenCount();
+
+    /**
+     * @return the number of times a circuit opened
+     */
+    long getTripCount();
+
+    /**
+     * @return the number of requests rejected because their circuit was open
+     */
+    long getRejectedCount();
+
+    /**
+     * Close the circuit of a host.
+     * 
+     * @param key the pool key of the host
+     */
+    void reset(String key);
+
+    /**
+     * Close all the circuits.
+     */
+    void resetAll();
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.coalescing;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandler.STATE;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.listenable.AbstractListenableFuture;
+
+/**
+ * The future of a request that joined the exchange of another one. The callback methods are invoked while holding the lock of the
+ * flight and return false once the handler doesn't want more callbacks.
+ */
+class CoalescedFuture<V> extends AbstractListenableFuture<V> {
+
+    private final Flight flight;
+    private final AsyncHandler<V> asyncHandler;
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private V value;
+    private Throwable cause;
+
+    CoalescedFuture(Flight flight, AsyncHandler<V> asyncHandler) {
+        this.flight = flight;
+        this.asyncHandler = asyncHandler;
+    }
+
+    boolean onStatusReceived(HttpResponseStatus status) {
+        if (done) {
+            return false;
+        }
+        try {
+            return proceed(asyncHandler.onStatusReceived(status));
+        } catch (Throwable t) {
+            fail(t);
+            return false;
+        }
+    }
+
+    boolean onHeadersReceived(HttpResponseHeaders headers) {
+        if (done) {
+            return false;
+        }
+        try {
+            return proceed(asyncHandler.onHeadersReceived(headers));
+        } catch (Throwable t) {
+            fail(t);
+            return false;
+        }
+    }
+
+    boolean onBodyPartReceived(HttpResponseBodyPart bodyPart) {
+        if (done) {
+            return false;
+        }
+        try {
+            return proceed(asyncHandler.onBodyPartReceived(bodyPart));
+        } catch (Throwable t) {
+            fail(t);
+            return false;
+        }
+    }
+
+    void onCompleted() {
+        if (!done) {
+            complete();
+        }
+    }
+
+    void onThrowable(Throwable t) {
+        if (!done) {
+            fail(t);
+        }
+    }
+
+    private boolean proceed(STATE state) {
+        if (state == STATE.CONTINUE) {
+            return true;
+        }
+        // same as the providers, an aborted handler is completed right away
+        complete();
+        return false;
+    }
+
+    private void complete() {
+        try {
+            set(asyncHandler.onCompleted(), null);
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+
+    private void fail(Throwable t) {
+        try {
+            asyncHandler.onThrowable(t);
+        } finally {
+            set(null, t);
+        }
+    }
+
+    private void set(V value, Throwable cause) {
+        this.value = value;
+        this.cause = cause;
+        done = true;
+        latch.countDown();
+        runListeners();
+    }
+
+    @Override
+    public void done() {
+    }
+
+    @Override
+    public void abort(Throwable t) {
+        synchronized (flight) {
+            onThrowable(t);
+        }
+    }
+
+    @Override
+    public void touch() {
+    }
+
+    @Override
+    public boolean getAndSetWriteHeaders(boolean writeHeader) {
+        return false;
+    }
+
+    @Override
+    public boolean getAndSetWriteBody(boolean writeBody) {
+        return false;
+    }
+
+    /**
+     * Detach this request from the exchange, which goes on for the other requests.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (flight) {
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            fail(new CancellationException());
+            return true;
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return report();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    private V report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (cause != null) {
+            throw new ExecutionException(cause);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.coalescing;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandlerExtensions;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.ProgressAsyncHandler;
+import org.asynchttpclient.Request;
+
+/**
+ * An {@link AsyncHandler} which lets identical concurrent requests share the exchange of the first one.
+ * <p/>
+ * {@link org.asynchttpclient.AsyncHttpClient} calls {@link #join(AsyncHandler)} before sending the request. If an identical request is in flight,
+ * the wrapped handler is attached to its exchange and nothing is sent. Otherwise, this request is sent and the requests which join
+ * it receive the same {@link HttpResponseStatus}, {@link HttpResponseHeaders} and {@link HttpResponseBodyPart} instances as the
+ * wrapped handler.
+ * <p/>
+ * The exchange goes on as long as one of the handlers wants it. An exception thrown by the wrapped handler only fails this request,
+ * while a network failure or the cancellation of this request fails all of them.
+ */
+public class CoalescingAsyncHandler<T> implements ProgressAsyncHandler<T>, AsyncHandlerExtensions {
+
+    private final RequestCoalescer coalescer;
+    private final String key;
+    private final AsyncHandler<T> asyncHandler;
+    private final Flight flight;
+    private boolean active = true;
+    private Exception failure;
+
+    public CoalescingAsyncHandler(RequestCoalescer coalescer, Request request, AsyncHandler<T> asyncHandler) {
+        this.coalescer = coalescer;
+        this.key = coalescer.key(request);
+        this.asyncHandler = asyncHandler;
+        this.flight = new Flight(coalescer, key);
+    }
+
+    public AsyncHandler<T> getAsyncHandler() {
+        return asyncHandler;
+    }
+
+    /**
+     * Join the exchange of an identical in-flight request, or register this request as the one to join.
+     *
+     * @return the future of the wrapped handler if it joined another exchange, or null if this request must be sent
+     */
+    public ListenableFuture<T> join() {
+        return join(asyncHandler);
+    }
+
+    /**
+     * Join the exchange of an identical in-flight request, or register this request as the one to join.
+     *
+     * @param handler the handler receiving the shared response: this handler, or one of the handlers wrapping it
+     * @return the future of the handler if it joined another exchange, or null if this request must be sent
+     */
+    public ListenableFuture<T> join(AsyncHandler<T> handler) {
+        // when nothing wraps this handler, skip it: its own flight is never sent
+        AsyncHandler<T> follower = handler == this ? asyncHandler : handler;
+        while (true) {
+            Flight existing = coalescer.register(key, flight);
+            if (existing == null) {
+                return null;
+            }
+            ListenableFuture<T> future = existing.join(follower);
+            if (future != null) {
+                return future;
+            }
+            // the exchange is already receiving its body
+            coalescer.unregister(key, existing);
+        }
+    }
+
+    /**
+     * Fail the requests that joined this one, when it couldn't be sent. Does nothing if they were already notified, e.g. when the
+     * provider called {@link #onThrowable(Throwable)} before throwing.
+     *
+     * @param t the cause
+     */
+    public void abandon(Throwable t) {
+        flight.onThrowable(t);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        if (active) {
+            try {
+                active = asyncHandler.onStatusReceived(responseStatus) == STATE.CONTINUE;
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+        return next(flight.onStatusReceived(responseStatus));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+        if (active) {
+            try {
+                active = asyncHandler.onHeadersReceived(headers) == STATE.CONTINUE;
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+        return next(flight.onHeadersReceived(headers));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        if (active) {
+            try {
+                active = asyncHandler.onBodyPartReceived(bodyPart) == STATE.CONTINUE;
+            } catch (Exception e) {
+                fail(e);
+            }
+        }
+        return next(flight.onBodyPartReceived(bodyPart));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T onCompleted() throws Exception {
+        flight.onCompleted();
+        if (failure != null) {
+            throw failure;
+        }
+        return asyncHandler.onCompleted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onThrowable(Throwable t) {
+        flight.onThrowable(t);
+        asyncHandler.onThrowable(t);
+    }
+
+    private void fail(Exception e) {
+        // keep the exchange going for the other requests, the provider will get the exception on completion
+        active = false;
+        failure = e;
+    }
+
+    private STATE next(boolean followersActive) {
+        return active || followersActive ? STATE.CONTINUE : STATE.ABORT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onHeaderWriteCompleted() {
+        return asyncHandler instanceof ProgressAsyncHandler ? ProgressAsyncHandler.class.cast(asyncHandler).onHeaderWriteCompleted() : STATE.CONTINUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onContentWriteCompleted() {
+        return asyncHandler instanceof ProgressAsyncHandler ? ProgressAsyncHandler.class.cast(asyncHandler).onContentWriteCompleted() : STATE.CONTINUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onContentWriteProgress(long amount, long current, long total) {
+        return asyncHandler instanceof ProgressAsyncHandler ? ProgressAsyncHandler.class.cast(asyncHandler).onContentWriteProgress(amount, current, total)
+                : STATE.CONTINUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRequestSent() {
+        if (asyncHandler instanceof AsyncHandlerExtensions) {
+            AsyncHandlerExtensions.class.cast(asyncHandler).onRequestSent();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRetry() {
+        if (asyncHandler instanceof AsyncHandlerExtensions) {
+            AsyncHandlerExtensions.class.cast(asyncHandler).onRetry();
+        }
+    }
+
+    /**
+     * @return a {@link CoalescingAsyncHandler} which also forwards the {@link AsyncHandlerTimingExtensions} callbacks if the handler
+     *         implements them, so the providers only take the timestamps when they're wanted
+     */
+    public static <T> CoalescingAsyncHandler<T> wrap(RequestCoalescer coalescer, Request request, AsyncHandler<T> asyncHandler) {
+        return asyncHandler instanceof AsyncHandlerTimingExtensions ? new Timed<T>(coalescer, request, asyncHandler)
+                : new CoalescingAsyncHandler<T>(coalescer, request, asyncHandler);
+    }
+
+    private static class Timed<T> extends CoalescingAsyncHandler<T> implements AsyncHandlerTimingExtensions {
+
+        private final AsyncHandlerTimingExtensions timing;
+
+        private Timed(RequestCoalescer coalescer, Request request, AsyncHandler<T> asyncHandler) {
+            super(coalescer, request, asyncHandler);
+            timing = AsyncHandlerTimingExtensions.class.cast(asyncHandler);
+        }
+
+        @Override
+        public void onDnsResolved(long nanoTime) {
+            timing.onDnsResolved(nanoTime);
+        }
+
+        @Override
+        public void onConnectionOpen(long nanoTime) {
+            timing.onConnectionOpen(nanoTime);
+        }
+
+        @Override
+        public void onConnectionPooled(long nanoTime) {
+            timing.onConnectionPooled(nanoTime);
+        }
+
+        @Override
+        public void onTlsHandshakeDone(long nanoTime) {
+            timing.onTlsHandshakeDone(nanoTime);
+        }
+
+        @Override
+        public void onHeadersWritten(long nanoTime) {
+            timing.onHeadersWritten(nanoTime);
+        }
+
+        @Override
+        public void onFirstByteReceived(long nanoTime) {
+            timing.onFirstByteReceived(nanoTime);
+        }
+
+        @Override
+        public void onLastByteReceived(long nanoTime) {
+            timing.onLastByteReceived(nanoTime);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.coalescing;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.cache.CachingAsyncHandler;
+import org.asynchttpclient.filter.FilterContext;
+import org.asynchttpclient.filter.FilterException;
+import org.asynchttpclient.filter.RequestFilter;
+import org.asynchttpclient.hedging.RequestHedger;
+import org.asynchttpclient.resumable.ResumableAsyncHandler;
+
+/**
+ * A {@link RequestFilter} which lets identical concurrent GET and HEAD requests share a single network exchange, e.g. during a
+ * cache miss storm. All the callers receive the same status, headers and body parts.
+ * <p/>
+ * This filter should be added after the other request filters, so the request is complete when its identity is computed. In
+ * particular, it must be added after the {@link org.asynchttpclient.cache.CacheRequestFilter}, which rejects the other order. Requests
+ * served from the cache, resumable downloads and the duplicates sent by a {@link RequestHedger} are left alone.
+ * <p/>
+ * The body parts are shared by the handlers, so they shouldn't be modified. With the Netty provider's LazyResponseBodyPartFactory,
+ * they're only valid during the callback, as usual.
+ */
+public class CoalescingRequestFilter implements RequestFilter {
+
+    private final RequestCoalescer coalescer;
+
+    public CoalescingRequestFilter(RequestCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> FilterContext<T> filter(FilterContext<T> ctx) throws FilterException {
+        AsyncHandler<T> handler = ctx.getAsyncHandler();
+        CachingAsyncHandler<T> cachingHandler = ctx.getCachingAsyncHandler();
+        // a hedge would only join the flight of its original
+        if (!coalescer.isCoalescable(ctx.getRequest())//
+                || handler instanceof ResumableAsyncHandler//
+                || RequestHedger.isHedge(handler)//
+                || (cachingHandler != null && cachingHandler.isFresh())) {
+            return ctx;
+        }
+        CoalescingAsyncHandler<T> coalescingHandler = CoalescingAsyncHandler.wrap(coalescer, ctx.getRequest(), handler);
+        return new FilterContext.FilterContextBuilder<T>(ctx).asyncHandler(coalescingHandler).coalescingAsyncHandler(coalescingHandler)
+                .build();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.coalescing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
+
+/**
+ * A network exchange shared by identical requests. The callbacks of the exchange are forwarded to the requests that joined it.
+ * <p/>
+ * The body parts aren't kept, so requests can only join until the first body part is received. All the callbacks of the followers
+ * are invoked while holding the lock of the flight, so they're never concurrent.
+ */
+class Flight {
+
+    private final RequestCoalescer coalescer;
+    private final String key;
+    private final List<CoalescedFuture<?>> followers = new ArrayList<CoalescedFuture<?>>();
+    private final List<HttpResponseHeaders> headers = new ArrayList<HttpResponseHeaders>();
+    private HttpResponseStatus status;
+    private boolean closed;
+    private boolean finished;
+
+    Flight(RequestCoalescer coalescer, String key) {
+        this.coalescer = coalescer;
+        this.key = key;
+    }
+
+    /**
+     * @return the future of the joining request, or null if the flight can't be joined anymore
+     */
+    synchronized <T> ListenableFuture<T> join(AsyncHandler<T> asyncHandler) {
+        if (closed) {
+            return null;
+        }
+        CoalescedFuture<T> follower = new CoalescedFuture<T>(this, asyncHandler);
+        // catch up with the callbacks already received
+        if (status != null) {
+            follower.onStatusReceived(status);
+        }
+        for (HttpResponseHeaders h : headers) {
+            follower.onHeadersReceived(h);
+        }
+        followers.add(follower);
+        coalescer.recordCoalesced();
+        return follower;
+    }
+
+    /**
+     * @return true if a follower still wants the response
+     */
+    synchronized boolean onStatusReceived(HttpResponseStatus responseStatus) {
+        if (!closed) {
+            status = responseStatus;
+        }
+        boolean active = false;
+        for (CoalescedFuture<?> follower : followers) {
+            active |= follower.onStatusReceived(responseStatus);
+        }
+        return active;
+    }
+
+    synchronized boolean onHeadersReceived(HttpResponseHeaders responseHeaders) {
+        if (!closed) {
+            headers.add(responseHeaders);
+        }
+        boolean active = false;
+        for (CoalescedFuture<?> follower : followers) {
+            active |= follower.onHeadersReceived(responseHeaders);
+        }
+        return active;
+    }
+
+    synchronized boolean onBodyPartReceived(HttpResponseBodyPart bodyPart) {
+        close();
+        boolean active = false;
+        for (CoalescedFuture<?> follower : followers) {
+            active |= follower.onBodyPartReceived(bodyPart);
+        }
+        return active;
+    }
+
+    synchronized void onCompleted() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        close();
+        for (CoalescedFuture<?> follower : followers) {
+            follower.onCompleted();
+        }
+    }
+
+    /**
+     * Fail the followers, unless the flight is already over: a request rejected by the provider is reported through
+     * {@link CoalescingAsyncHandler#onThrowable(Throwable)} and then {@link CoalescingAsyncHandler#abandon(Throwable)}.
+     */
+    synchronized void onThrowable(Throwable t) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        close();
+        for (CoalescedFuture<?> follower : followers) {
+            follower.onThrowable(t);
+        }
+    }
+
+    private void close() {
+        if (!closed) {
+            closed = true;
+            status = null;
+            headers.clear();
+            coalescer.unregister(key, this);
+        }
+    }
+}
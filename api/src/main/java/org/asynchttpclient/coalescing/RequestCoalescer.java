@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.coalescing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.asynchttpclient.Cookie;
+import org.asynchttpclient.Realm;
+import org.asynchttpclient.Request;
+
+/**
+ * Tracks the in-flight GET and HEAD requests, so that identical concurrent requests share a single network exchange.
+ * <p/>
+ * Two requests are identical when they have the same method, url, virtual host, proxy, realm principal, headers and cookies.
+ * Headers that don't change the response, e.g. tracing ids, can be ignored.
+ *
+ * @see CoalescingRequestFilter
+ */
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+    private final Set<String> ignoredHeaders = new HashSet<String>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param ignoredHeaders the names of the request headers that aren't part of the identity of a request
+     */
+    public RequestCoalescer(String... ignoredHeaders) {
+        for (String name : ignoredHeaders) {
+            this.ignoredHeaders.add(name.toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * @param request the request
+     * @return true if the request is safe and has no body, so it can share the response of another one
+     */
+    public boolean isCoalescable(Request request) {
+        String method = request.getMethod();
+        return ("GET".equals(method) || "HEAD".equals(method))//
+                && request.getByteData() == null//
+                && request.getStringData() == null//
+                && request.getStreamData() == null//
+                && request.getBodyGenerator() == null//
+                && request.getFile() == null//
+                && (request.getParts() == null || request.getParts().isEmpty());
+    }
+
+    /**
+     * @param request the request
+     * @return the identity of the request
+     */
+    public String key(Request request) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(request.getMethod()).append(' ').append(request.getUrl());
+        if (request.getVirtualHost() != null) {
+            sb.append("\nvhost:").append(request.getVirtualHost());
+        }
+        if (request.getProxyServer() != null) {
+            sb.append("\nproxy:").append(request.getProxyServer());
+        }
+        Realm realm = request.getRealm();
+        if (realm != null) {
+            sb.append("\nrealm:").append(realm.getAuthScheme()).append(' ').append(realm.getPrincipal());
+        }
+        if (request.getRangeOffset() > 0L) {
+            sb.append("\nrange:").append(request.getRangeOffset());
+        }
+
+        List<String> headers = new ArrayList<String>();
+        for (Map.Entry<String, List<String>> header : request.getHeaders()) {
+            String name = header.getKey().toLowerCase(Locale.ENGLISH);
+            if (!ignoredHeaders.contains(name)) {
+                headers.add(name + ": " + header.getValue());
+            }
+        }
+        Collections.sort(headers);
+        for (String header : headers) {
+            sb.append('\n').append(header);
+        }
+
+        if (request.getCookies() != null) {
+            List<String> cookies = new ArrayList<String>();
+            for (Cookie cookie : request.getCookies()) {
+                cookies.add(cookie.getName() + "=" + cookie.getValue());
+            }
+            Collections.sort(cookies);
+            for (String cookie : cookies) {
+                sb.append("\ncookie:").append(cookie);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the number of requests that were served by another request's exchange
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of exchanges that can currently be joined
+     */
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    /**
+     * Register the flight, or return the one already registered for the same key.
+     */
+    Flight register(String key, Flight flight) {
+        return flights.putIfAbsent(key, flight);
+    }
+
+    void unregister(String key, Flight flight) {
+        flights.remove(key, flight);
+    }
+
+    void recordCoalesced() {
+        coalesced.incrementAndGet();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Decodes the body of one response, chunk by chunk, as they're received.
+ * <p/>
+ * A decoder is only used by one thread at a time and is always closed, even when the response doesn't complete.
+ */
+public interface ContentDecoder {
+
+    /**
+     * Decode a chunk of the encoded body.
+     *
+     * @param bytes the encoded bytes, which may be reused by the caller once this method returns
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     * @param out where the decoded bytes are written, if any is available
+     * @throws IOException if the content is corrupted
+     */
+    void decode(byte[] bytes, int offset, int length, OutputStream out) throws IOException;
+
+    /**
+     * Write the decoded bytes still buffered, once the whole body is received.
+     *
+     * @param out where the decoded bytes are written
+     * @throws IOException if the content is corrupted
+     */
+    void finish(OutputStream out) throws IOException;
+
+    /**
+     * Release the resources of this decoder. May be called several times.
+     */
+    void close();
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The content codings the client accepts for response bodies.
+ * <p/>
+ * A new registry supports gzip (and its x-gzip alias) and deflate with pooled {@link java.util.zip.Inflater}s. Other codings, e.g.
+ * a Brotli decoder, can be registered with {@link #register(ContentDecoderFactory)}. The Accept-Encoding header of the requests
+ * lists the registered codings, in registration order.
+ * <p/>
+ * The registry should be complete before the client is created, as the Grizzly provider installs a decoder per registered coding when
+ * it starts. Codings unregistered afterwards are no longer requested nor decoded.
+ */
+public class ContentDecoderRegistry {
+
+    private final Object lock = new Object();
+    private volatile Map<String, ContentDecoderFactory> factories = Collections.emptyMap();
+    private volatile Map<String, String> aliases = Collections.emptyMap();
+    private volatile String acceptEncoding = "";
+
+    public ContentDecoderRegistry() {
+        this(InflaterPool.getDefault());
+    }
+
+    /**
+     * @param inflaterPool the pool used by the gzip and deflate decoders
+     */
+    public ContentDecoderRegistry(InflaterPool inflaterPool) {
+        register(new InflatingContentDecoderFactory(InflatingContentDecoderFactory.GZIP, inflaterPool));
+        register(new InflatingContentDecoderFactory(InflatingContentDecoderFactory.DEFLATE, inflaterPool));
+        registerAlias("x-gzip", InflatingContentDecoderFactory.GZIP);
+    }
+
+    /**
+     * Register a content coding, replacing the factory already registered for it, if any.
+     *
+     * @param factory the factory of the decoders
+     * @return this registry
+     */
+    public ContentDecoderRegistry register(ContentDecoderFactory factory) {
+        synchronized (lock) {
+            Map<String, ContentDecoderFactory> copy = new LinkedHashMap<String, ContentDecoderFactory>(factories);
+            copy.put(normalize(factory.getEncoding()), factory);
+            update(copy, aliases);
+        }
+        return this;
+    }
+
+    /**
+     * Decode another name of a content coding, without advertising it in the Accept-Encoding header.
+     *
+     * @param alias the other name
+     * @param encoding the registered content coding
+     * @return this registry
+     */
+    public ContentDecoderRegistry registerAlias(String alias, String encoding) {
+        synchronized (lock) {
+            Map<String, String> copy = new LinkedHashMap<String, String>(aliases);
+            copy.put(normalize(alias), normalize(encoding));
+            update(factories, copy);
+        }
+        return this;
+    }
+
+    /**
+     * @param encoding the content coding to remove
+     * @return this registry
+     */
+    public ContentDecoderRegistry unregister(String encoding) {
+        synchronized (lock) {
+            Map<String, ContentDecoderFactory> copy = new LinkedHashMap<String, ContentDecoderFactory>(factories);
+            copy.remove(normalize(encoding));
+            update(copy, aliases);
+        }
+        return this;
+    }
+
+    /**
+     * @param encoding a content coding or one of its aliases, as found in the Content-Encoding header
+     * @return the factory of the decoders, or null if the coding isn't supported
+     */
+    public ContentDecoderFactory get(String encoding) {
+        if (encoding == null) {
+            return null;
+        }
+        String name = normalize(encoding);
+        String aliased = aliases.get(name);
+        return factories.get(aliased != null ? aliased : name);
+    }
+
+    /**
+     * @param encoding a registered content coding
+     * @return the aliases registered for it
+     */
+    public List<String> getAliases(String encoding) {
+        String name = normalize(encoding);
+        List<String> list = new ArrayList<String>();
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            if (alias.getValue().equals(name)) {
+                list.add(alias.getKey());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return the registered content codings, in registration order
+     */
+    public List<String> getEncodings() {
+        return new ArrayList<String>(factories.keySet());
+    }
+
+    /**
+     * @return the value of the Accept-Encoding header, empty if no coding is registered
+     */
+    public String getAcceptEncoding() {
+        return acceptEncoding;
+    }
+
+    private void update(Map<String, ContentDecoderFactory> factories, Map<String, String> aliases) {
+        StringBuilder sb = new StringBuilder();
+        for (String encoding : factories.keySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(encoding);
+        }
+        this.factories = factories;
+        this.aliases = aliases;
+        this.acceptEncoding = sb.toString();
+    }
+
+    private static String normalize(String encoding) {
+        return encoding.trim().toLowerCase(Locale.ENGLISH);
+    }
+}
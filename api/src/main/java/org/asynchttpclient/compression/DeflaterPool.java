@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * A pool of {@link Deflater}s, so compressing request bodies doesn't allocate and free native zlib streams for every request.
+ * <p/>
+ * Deflaters are pooled by compression level and format. At most <code>maxIdle</code> idle instances are kept for each of them,
+ * the other ones are ended when released.
+ */
+public class DeflaterPool {
+
+    public static final int DEFAULT_MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final DeflaterPool DEFAULT = new DeflaterPool(DEFAULT_MAX_IDLE);
+
+    // levels go from -1 (Deflater.DEFAULT_COMPRESSION) to 9, with or without the zlib wrapper
+    private static final int LEVELS = 11;
+
+    private final int maxIdle;
+    private final List<ConcurrentLinkedQueue<Deflater>> idle = new ArrayList<ConcurrentLinkedQueue<Deflater>>(LEVELS * 2);
+    private final AtomicInteger[] idleCounts = new AtomicInteger[LEVELS * 2];
+    private final AtomicInteger created = new AtomicInteger();
+
+    public static DeflaterPool getDefault() {
+        return DEFAULT;
+    }
+
+    public DeflaterPool(int maxIdle) {
+        this.maxIdle = maxIdle;
+        for (int i = 0; i < idleCounts.length; i++) {
+            idle.add(new ConcurrentLinkedQueue<Deflater>());
+            idleCounts[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * @param level the compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param nowrap true for raw deflate data, as used by gzip, false for the zlib format
+     * @return an idle {@link Deflater}, or a new one
+     */
+    public Deflater acquire(int level, boolean nowrap) {
+        int index = index(level, nowrap);
+        Deflater deflater = idle.get(index).poll();
+        if (deflater != null) {
+            idleCounts[index].decrementAndGet();
+            return deflater;
+        }
+        created.incrementAndGet();
+        return new Deflater(level, nowrap);
+    }
+
+    /**
+     * Give a {@link Deflater} back to the pool. It must not be used anymore by the caller.
+     *
+     * @param deflater a deflater obtained from {@link #acquire(int, boolean)}
+     * @param level the level it was acquired with
+     * @param nowrap the format it was acquired with
+     */
+    public void release(Deflater deflater, int level, boolean nowrap) {
+        int index = index(level, nowrap);
+        if (idleCounts[index].incrementAndGet() <= maxIdle) {
+            deflater.reset();
+            idle.get(index).offer(deflater);
+        } else {
+            idleCounts[index].decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return the number of {@link Deflater}s created by this pool
+     */
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    private static int index(int level, boolean nowrap) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        return (level + 1) * 2 + (nowrap ? 1 : 0);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.asynchttpclient.Body;
+
+/**
+ * A {@link Body} which compresses another one on the fly, in the gzip or deflate (zlib) format.
+ * <p/>
+ * The wrapped body is read in small chunks, so the whole payload is never held in memory. The {@link Deflater} is borrowed from a
+ * {@link DeflaterPool} on the first read and given back as soon as the compressed stream is complete, or when the body is closed.
+ */
+public class DeflatingBody implements Body {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final int INPUT_SIZE = 8 * 1024;
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private final Body body;
+    private final boolean gzip;
+    private final int level;
+    private final DeflaterPool pool;
+    private final ByteBuffer input = ByteBuffer.allocate(INPUT_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer pending = ByteBuffer.allocate(GZIP_HEADER.length);
+    private Deflater deflater;
+    private byte[] output;
+    private long inputLength;
+    private boolean endOfInput;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * @param body the body to compress
+     * @param encoding {@link #GZIP} or {@link #DEFLATE}
+     * @param level the compression level
+     * @param pool the pool the {@link Deflater} is borrowed from
+     */
+    public DeflatingBody(Body body, String encoding, int level, DeflaterPool pool) {
+        if (!GZIP.equals(encoding) && !DEFLATE.equals(encoding)) {
+            throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+        }
+        this.body = body;
+        this.gzip = GZIP.equals(encoding);
+        this.level = level;
+        this.pool = pool;
+        if (gzip) {
+            pending.put(GZIP_HEADER);
+        }
+        pending.flip();
+    }
+
+    /**
+     * @return -1, the compressed length isn't known in advance
+     */
+    @Override
+    public long getContentLength() {
+        return -1L;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long read(ByteBuffer buffer) throws IOException {
+        if (closed) {
+            throw new IOException("Body closed");
+        }
+        if (deflater == null && !finished) {
+            deflater = pool.acquire(level, gzip);
+        }
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (pending.hasRemaining()) {
+                transfer(pending, buffer);
+
+            } else if (finished) {
+                break;
+
+            } else if (deflater.needsInput() && !endOfInput) {
+                if (!fill()) {
+                    // the wrapped body has nothing to offer right now
+                    break;
+                }
+
+            } else {
+                deflate(buffer);
+                if (deflater.finished()) {
+                    finished = true;
+                    if (gzip) {
+                        writeTrailer();
+                    }
+                    releaseDeflater();
+                }
+            }
+        }
+
+        int written = buffer.position() - start;
+        return written == 0 && finished && !pending.hasRemaining() ? -1L : written;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        releaseDeflater();
+        body.close();
+    }
+
+    private boolean fill() throws IOException {
+        input.clear();
+        long read = body.read(input);
+        if (read < 0L) {
+            endOfInput = true;
+            deflater.finish();
+            return true;
+        }
+        input.flip();
+        if (!input.hasRemaining()) {
+            return false;
+        }
+        crc.update(input.array(), input.arrayOffset(), input.remaining());
+        inputLength += input.remaining();
+        deflater.setInput(input.array(), input.arrayOffset(), input.remaining());
+        return true;
+    }
+
+    private void deflate(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int n = deflater.deflate(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.position() + n);
+        } else {
+            if (output == null) {
+                output = new byte[INPUT_SIZE];
+            }
+            int n = deflater.deflate(output, 0, Math.min(output.length, buffer.remaining()));
+            buffer.put(output, 0, n);
+        }
+    }
+
+    private void writeTrailer() {
+        pending.clear();
+        writeIntLE(pending, (int) crc.getValue());
+        writeIntLE(pending, (int) inputLength);
+        pending.flip();
+    }
+
+    private static void writeIntLE(ByteBuffer buffer, int value) {
+        buffer.put((byte) value);
+        buffer.put((byte) (value >>> 8));
+        buffer.put((byte) (value >>> 16));
+        buffer.put((byte) (value >>> 24));
+    }
+
+    private static void transfer(ByteBuffer from, ByteBuffer to) {
+        int n = Math.min(from.remaining(), to.remaining());
+        for (int i = 0; i < n; i++) {
+            to.put(from.get());
+        }
+    }
+
+    private void releaseDeflater() {
+        if (deflater != null) {
+            pool.release(deflater, level, gzip);
+            deflater = null;
+        }
+    }
+}
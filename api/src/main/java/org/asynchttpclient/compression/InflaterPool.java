@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * A pool of {@link Inflater}s, so decoding response bodies doesn't allocate and free native zlib streams for every response.
+ * <p/>
+ * Responses are decoded by the I/O threads, so the idle inflaters are kept per thread, i.e. per event loop, and acquiring or releasing
+ * one doesn't require any synchronization. At most <code>maxIdlePerThread</code> idle instances of each format are kept by a thread,
+ * the other ones are ended when released.
+ */
+public class InflaterPool {
+
+    public static final int DEFAULT_MAX_IDLE_PER_THREAD = 4;
+
+    private static final InflaterPool DEFAULT = new InflaterPool(DEFAULT_MAX_IDLE_PER_THREAD);
+
+    private final int maxIdlePerThread;
+    private final AtomicInteger created = new AtomicInteger();
+    private final ThreadLocal<IdleInflaters> idle = new ThreadLocal<IdleInflaters>() {
+        @Override
+        protected IdleInflaters initialValue() {
+            return new IdleInflaters();
+        }
+    };
+
+    public static InflaterPool getDefault() {
+        return DEFAULT;
+    }
+
+    public InflaterPool(int maxIdlePerThread) {
+        this.maxIdlePerThread = maxIdlePerThread;
+    }
+
+    /**
+     * @param nowrap true for raw deflate data, as used by gzip, false for the zlib format
+     * @return an idle {@link Inflater} of the calling thread, or a new one
+     */
+    public Inflater acquire(boolean nowrap) {
+        Inflater inflater = idle.get().get(nowrap).poll();
+        if (inflater == null) {
+            created.incrementAndGet();
+            inflater = new Inflater(nowrap);
+        }
+        return inflater;
+    }
+
+    /**
+     * Give an {@link Inflater} back to the pool of the calling thread. It must not be used anymore by the caller.
+     *
+     * @param inflater an inflater obtained from {@link #acquire(boolean)}
+     * @param nowrap the format it was acquired with
+     */
+    public void release(Inflater inflater, boolean nowrap) {
+        ArrayDeque<Inflater> inflaters = idle.get().get(nowrap);
+        if (inflaters.size() < maxIdlePerThread) {
+            inflater.reset();
+            inflaters.push(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+
+    /**
+     * @return the number of {@link Inflater}s created by this pool
+     */
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    private static class IdleInflaters {
+        private final ArrayDeque<Inflater> wrapped = new ArrayDeque<Inflater>();
+        private final ArrayDeque<Inflater> nowrap = new ArrayDeque<Inflater>();
+
+        private ArrayDeque<Inflater> get(boolean nowrap) {
+            return nowrap ? this.nowrap : wrapped;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The {@link ContentDecoderFactory} of the gzip and deflate codings, backed by an {@link InflaterPool}.
+ * <p/>
+ * The gzip header and trailer are parsed by the decoder so a raw {@link Inflater} can be reused across responses. For deflate, both
+ * the zlib format (RFC 1950) and the raw format that some servers wrongly send are accepted, based on the first two bytes.
+ */
+public class InflatingContentDecoderFactory implements ContentDecoderFactory {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private final String encoding;
+    private final InflaterPool pool;
+
+    /**
+     * @param encoding {@link #GZIP} or {@link #DEFLATE}
+     * @param pool the pool of the {@link Inflater}s
+     */
+    public InflatingContentDecoderFactory(String encoding, InflaterPool pool) {
+        if (!GZIP.equals(encoding) && !DEFLATE.equals(encoding)) {
+            throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+        }
+        this.encoding = encoding;
+        this.pool = pool;
+    }
+
+    @Override
+    public String getEncoding() {
+        return encoding;
+    }
+
+    @Override
+    public ContentDecoder newDecoder() {
+        return new InflatingContentDecoder(GZIP.equals(encoding), pool);
+    }
+
+    static class InflatingContentDecoder implements ContentDecoder {
+
+        private static final int BUFFER_SIZE = 8192;
+
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private enum State {
+            HEADER, HEADER_EXTRA_LENGTH, HEADER_EXTRA, HEADER_NAME, HEADER_COMMENT, HEADER_CRC, BODY, TRAILER, DONE
+        }
+
+        private final boolean gzip;
+        private final InflaterPool pool;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final CRC32 crc;
+        private Inflater inflater;
+        private boolean nowrap;
+        private State state = State.HEADER;
+        private long totalOut;
+
+        // bytes of a gzip header field, of the zlib header or of the gzip trailer, that can be split across chunks
+        private final byte[] pending = new byte[10];
+        private int pendingLength;
+        private int flags;
+        private int extraRemaining;
+
+        InflatingContentDecoder(boolean gzip, InflaterPool pool) {
+            this.gzip = gzip;
+            this.pool = pool;
+            this.crc = gzip ? new CRC32() : null;
+        }
+
+        @Override
+        public void decode(byte[] bytes, int offset, int length, OutputStream out) throws IOException {
+            int end = offset + length;
+            while (offset < end && state != State.DONE) {
+                switch (state) {
+                case HEADER:
+                    if (gzip) {
+                        offset = readGzipHeader(bytes, offset, end);
+                    } else {
+                        offset = fill(bytes, offset, end, 2);
+                        if (pendingLength == 2) {
+                            readZlibHeader(out);
+                        }
+                    }
+                    break;
+                case HEADER_EXTRA_LENGTH:
+                    offset = fill(bytes, offset, end, 2);
+                    if (pendingLength == 2) {
+                        extraRemaining = (pending[0] & 0xff) | ((pending[1] & 0xff) << 8);
+                        pendingLength = 0;
+                        state = State.HEADER_EXTRA;
+                    }
+                    break;
+                case HEADER_EXTRA:
+                    int skipped = Math.min(extraRemaining, end - offset);
+                    extraRemaining -= skipped;
+                    offset += skipped;
+                    if (extraRemaining == 0) {
+                        nextHeaderField(FEXTRA);
+                    }
+                    break;
+                case HEADER_NAME:
+                case HEADER_COMMENT:
+                    // zero terminated strings
+                    boolean terminated = false;
+                    while (offset < end && !terminated) {
+                        terminated = bytes[offset++] == 0;
+                    }
+                    if (terminated) {
+                        nextHeaderField(state == State.HEADER_NAME ? FNAME : FCOMMENT);
+                    }
+                    break;
+                case HEADER_CRC:
+                    offset = fill(bytes, offset, end, 2);
+                    if (pendingLength == 2) {
+                        pendingLength = 0;
+                        nextHeaderField(FHCRC);
+                    }
+                    break;
+                case BODY:
+                    offset = inflate(bytes, offset, end, out);
+                    break;
+                case TRAILER:
+                    offset = fill(bytes, offset, end, 8);
+                    if (pendingLength == 8) {
+                        checkTrailer();
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException(state.toString());
+                }
+            }
+        }
+
+        @Override
+        public void finish(OutputStream out) throws IOException {
+            // servers sometimes omit the end of the stream or the trailer, be lenient and keep what was decoded
+            close();
+        }
+
+        @Override
+        public void close() {
+            if (inflater != null) {
+                pool.release(inflater, nowrap);
+                inflater = null;
+            }
+        }
+
+        private int readGzipHeader(byte[] bytes, int offset, int end) throws IOException {
+            offset = fill(bytes, offset, end, 10);
+            if (pendingLength == 10) {
+                if ((pending[0] & 0xff) != 0x1f || (pending[1] & 0xff) != 0x8b) {
+                    throw new ZipException("Not in GZIP format");
+                }
+                if (pending[2] != 8) {
+                    throw new ZipException("Unsupported compression method: " + pending[2]);
+                }
+                flags = pending[3] & 0xff;
+                pendingLength = 0;
+                nextHeaderField(0);
+            }
+            return offset;
+        }
+
+        private void readZlibHeader(OutputStream out) throws IOException {
+            int cmf = pending[0] & 0xff;
+            int flg = pending[1] & 0xff;
+            // a zlib header declares the deflate method and is a multiple of 31, otherwise it's raw deflate
+            boolean zlib = (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+            startBody(!zlib);
+            pendingLength = 0;
+            // the inflater keeps a reference to its input, so it gets a copy of the 2 bytes it has to read
+            inflate(new byte[] { pending[0], pending[1] }, 0, 2, out);
+        }
+
+        private void nextHeaderField(int done) {
+            flags &= ~done;
+            if ((flags & FEXTRA) != 0) {
+                state = State.HEADER_EXTRA_LENGTH;
+            } else if ((flags & FNAME) != 0) {
+                state = State.HEADER_NAME;
+            } else if ((flags & FCOMMENT) != 0) {
+                state = State.HEADER_COMMENT;
+            } else if ((flags & FHCRC) != 0) {
+                state = State.HEADER_CRC;
+            } else {
+                startBody(true);
+            }
+        }
+
+        private void startBody(boolean nowrap) {
+            this.nowrap = nowrap;
+            inflater = pool.acquire(nowrap);
+            state = State.BODY;
+        }
+
+        /**
+         * Inflate the whole chunk, the inflater never holds on input between two calls.
+         */
+        private int inflate(byte[] bytes, int offset, int end, OutputStream out) throws IOException {
+            inflater.setInput(bytes, offset, end - offset);
+            try {
+                while (true) {
+                    int n = inflater.inflate(buffer);
+                    if (n > 0) {
+                        out.write(buffer, 0, n);
+                        totalOut += n;
+                        if (crc != null) {
+                            crc.update(buffer, 0, n);
+                        }
+                    } else if (inflater.finished()) {
+                        break;
+                    } else if (inflater.needsDictionary()) {
+                        throw new ZipException("Deflate dictionaries are not supported");
+                    } else if (inflater.needsInput()) {
+                        return end;
+                    }
+                }
+            } catch (DataFormatException e) {
+                ZipException ze = new ZipException(e.getMessage());
+                ze.initCause(e);
+                throw ze;
+            }
+
+            // the end of the deflate stream, what the inflater didn't read is the gzip trailer
+            int unread = inflater.getRemaining();
+            close();
+            state = gzip ? State.TRAILER : State.DONE;
+            return end - unread;
+        }
+
+        private void checkTrailer() throws IOException {
+            if (readInt(0) != crc.getValue() || readInt(4) != (totalOut & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+            state = State.DONE;
+        }
+
+        private long readInt(int offset) {
+            return (pending[offset] & 0xffL) | ((pending[offset + 1] & 0xffL) << 8) | ((pending[offset + 2] & 0xffL) << 16)
+                    | ((pending[offset + 3] & 0xffL) << 24);
+        }
+
+        private int fill(byte[] bytes, int offset, int end, int length) {
+            int n = Math.min(length - pendingLength, end - offset);
+            System.arraycopy(bytes, offset, pending, pendingLength, n);
+            pendingLength += n;
+            return offset + n;
+        }
+    }
+}
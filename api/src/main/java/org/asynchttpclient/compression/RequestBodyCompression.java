@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.asynchttpclient.FluentCaseInsensitiveStringsMap;
+
+/**
+ * Decides if a request body is worth compressing: bodies that are small, already encoded or made of an already compressed format
+ * are sent as is.
+ */
+public final class RequestBodyCompression {
+
+    public static final int DEFAULT_MIN_SIZE = 1024;
+
+    private static final Set<String> COMPRESSED_TYPES = new HashSet<String>(Arrays.asList(//
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-compress", "application/x-compressed",//
+            "application/x-bzip2", "application/x-xz", "application/x-7z-compressed", "application/x-rar-compressed",//
+            "application/java-archive", "application/zstd", "font/woff", "font/woff2"));
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(//
+            "gz", "tgz", "zip", "jar", "war", "bz2", "xz", "7z", "rar", "zst",//
+            "jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "m4a", "ogg", "avi", "mov", "mkv", "webm", "woff", "woff2"));
+
+    private RequestBodyCompression() {
+    }
+
+    /**
+     * @param headers the request headers
+     * @param contentLength the body length, or -1 if unknown
+     * @param contentType the body content type, or null to use the Content-Type header
+     * @param minSize the minimum length of a body to compress
+     * @return true if the body should be compressed
+     */
+    public static boolean shouldCompress(FluentCaseInsensitiveStringsMap headers, long contentLength, String contentType, int minSize) {
+        if (headers.containsKey("Content-Encoding")) {
+            return false;
+        }
+        if (contentLength >= 0L && contentLength < minSize) {
+            return false;
+        }
+        return isCompressible(contentType != null ? contentType : headers.getFirstValue("Content-Type"));
+    }
+
+    /**
+     * @param contentType a content type, may be null
+     * @return false if the content type is an already compressed format
+     */
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String mimeType = contentType.toLowerCase(Locale.ENGLISH);
+        int semicolon = mimeType.indexOf(';');
+        if (semicolon >= 0) {
+            mimeType = mimeType.substring(0, semicolon);
+        }
+        mimeType = mimeType.trim();
+
+        if (mimeType.startsWith("image/")) {
+            return mimeType.equals("image/svg+xml") || mimeType.equals("image/bmp");
+        }
+        return !mimeType.startsWith("video/") && !mimeType.startsWith("audio/") && !COMPRESSED_TYPES.contains(mimeType);
+    }
+
+    /**
+     * @param file a file
+     * @return false if the file name has the extension of an already compressed format
+     */
+    public static boolean isCompressible(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 || !COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+    }
+}
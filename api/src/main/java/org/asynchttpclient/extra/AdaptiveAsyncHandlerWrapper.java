@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandlerExtensions;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+
+/**
+ * An {@link AsyncHandler} wrapper which releases the slot acquired by {@link AdaptiveThrottleRequestFilter} once the response is
+ * complete, and feeds the {@link AdaptiveConcurrencyLimit} with the round-trip time, or with a drop on errors and on 429 and 503
+ * responses. Cancelled requests say nothing about the backend and only release their slot.
+ */
+public class AdaptiveAsyncHandlerWrapper<T> implements AsyncHandler<T>, AsyncHandlerExtensions {
+
+    private final AsyncHandler<T> asyncHandler;
+    private final AdaptiveConcurrencyLimit limit;
+    private final long startNanos = System.nanoTime();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile boolean overloaded;
+
+    public AdaptiveAsyncHandlerWrapper(AsyncHandler<T> asyncHandler, AdaptiveConcurrencyLimit limit) {
+        this.asyncHandler = asyncHandler;
+        this.limit = limit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onThrowable(Throwable t) {
+        try {
+            asyncHandler.onThrowable(t);
+        } finally {
+            if (released.compareAndSet(false, true)) {
+                if (t instanceof CancellationException) {
+                    limit.onIgnore();
+                } else {
+                    limit.onDrop();
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        return asyncHandler.onBodyPartReceived(bodyPart);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        int statusCode = responseStatus.getStatusCode();
+        overloaded = statusCode == 429 || statusCode == 503;
+        return asyncHandler.onStatusReceived(responseStatus);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+        return asyncHandler.onHeadersReceived(headers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T onCompleted() throws Exception {
+        if (released.compareAndSet(false, true)) {
+            if (overloaded) {
+                limit.onDrop();
+            } else {
+                limit.onSample(System.nanoTime() - startNanos);
+            }
+        }
+        return asyncHandler.onCompleted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRequestSent() {
+        if (asyncHandler instanceof AsyncHandlerExtensions) {
+            AsyncHandlerExtensions.class.cast(asyncHandler).onRequestSent();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRetry() {
+        if (asyncHandler instanceof AsyncHandlerExtensions) {
+            AsyncHandlerExtensions.class.cast(asyncHandler).onRetry();
+        }
+    }
+
+    /**
+     * @return an {@link AdaptiveAsyncHandlerWrapper} which also forwards the {@link AsyncHandlerTimingExtensions} callbacks if the
+     *         handler implements them
+     */
+    public static <T> AdaptiveAsyncHandlerWrapper<T> wrap(AsyncHandler<T> asyncHandler, AdaptiveConcurrencyLimit limit) {
+        return asyncHandler instanceof AsyncHandlerTimingExtensions ? new Timed<T>(asyncHandler, limit)
+                : new AdaptiveAsyncHandlerWrapper<T>(asyncHandler, limit);
+    }
+
+    private static class Timed<T> extends AdaptiveAsyncHandlerWrapper<T> implements AsyncHandlerTimingExtensions {
+
+        private final AsyncHandlerTimingExtensions timing;
+
+        private Timed(AsyncHandler<T> asyncHandler, AdaptiveConcurrencyLimit limit) {
+            super(asyncHandler, limit);
+            timing = AsyncHandlerTimingExtensions.class.cast(asyncHandler);
+        }
+
+        @Override
+        public void onDnsResolved(long nanoTime) {
+            timing.onDnsResolved(nanoTime);
+        }
+
+        @Override
+        public void onConnectionOpen(long nanoTime) {
+            timing.onConnectionOpen(nanoTime);
+        }
+
+        @Override
+        public void onConnectionPooled(long nanoTime) {
+            timing.onConnectionPooled(nanoTime);
+        }
+
+        @Override
+        public void onTlsHandshakeDone(long nanoTime) {
+            timing.onTlsHandshakeDone(nanoTime);
+        }
+
+        @Override
+        public void onHeadersWritten(long nanoTime) {
+            timing.onHeadersWritten(nanoTime);
+        }
+
+        @Override
+        public void onFirstByteReceived(long nanoTime) {
+            timing.onFirstByteReceived(nanoTime);
+        }
+
+        @Override
+        public void onLastByteReceived(long nanoTime) {
+            timing.onLastByteReceived(nanoTime);
+        }
+    }
+}
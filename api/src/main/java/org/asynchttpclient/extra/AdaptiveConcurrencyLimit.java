@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrency limit adjusted from the observed round-trip times, in the spirit of TCP Vegas.
+ * <p/>
+ * The limit is compared against a baseline, the minimum round-trip time seen over the last <code>baselineWindow</code> samples.
+ * As long as the round-trip time stays within <code>tolerance</code> times the baseline, the backend isn't queuing and the
+ * limit grows by about its square root on every sample; when the round-trip time rises above it, the limit shrinks
+ * proportionally. Errors and overload responses (429, 503) cut the limit multiplicatively, like AIMD. The limit only grows
+ * while it's actually used, so an idle host doesn't end up with a huge limit.
+ * <p/>
+ * Callers must {@link #acquire(long)} before sending a request and call {@link #onSample(long)} or {@link #onDrop()} once it's
+ * done.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final int baselineWindow;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long windowMinRttNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private long rejected;
+
+    /**
+     * @param initialLimit the limit before any sample
+     * @param minLimit the limit never goes below, at least 1
+     * @param maxLimit the limit never goes above
+     * @param tolerance how much the round-trip time can exceed the baseline before the limit shrinks, e.g. 2.0
+     * @param backoffRatio the factor applied to the limit on errors, e.g. 0.9
+     * @param baselineWindow the number of samples after which the baseline is reset to the window's minimum, so it follows
+     *            a backend getting permanently slower
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoffRatio, int baselineWindow) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits " + minLimit + " - " + maxLimit);
+        }
+        if (tolerance < 1.0 || backoffRatio <= 0.0 || backoffRatio >= 1.0) {
+            throw new IllegalArgumentException("Invalid tolerance " + tolerance + " or backoff ratio " + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.baselineWindow = baselineWindow;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Wait until the number of requests in flight is below the limit.
+     * 
+     * @param maxWaitInMs how long to wait for a slot, 0 to fail immediately
+     * @return true if a slot was acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(long maxWaitInMs) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitInMs);
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0L) {
+                    rejected++;
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a slot and adjust the limit from the round-trip time of a successful request.
+     */
+    public void onSample(long rttNanos) {
+        lock.lock();
+        try {
+            int used = inFlight;
+            release();
+
+            windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+            if (++windowSamples >= baselineWindow) {
+                minRttNanos = windowMinRttNanos;
+                windowMinRttNanos = Long.MAX_VALUE;
+                windowSamples = 0;
+            } else {
+                minRttNanos = Math.min(minRttNanos, rttNanos);
+            }
+
+            double gradient = Math.max(0.5, Math.min(1.0, tolerance * minRttNanos / Math.max(1L, rttNanos)));
+            double newLimit = limit * gradient;
+            // only grow when the limit is the bottleneck
+            if (gradient == 1.0 && used * 2 >= limit) {
+                newLimit += Math.sqrt(limit);
+            }
+            setLimit(newLimit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a slot and shrink the limit after an error or an overload response.
+     */
+    public void onDrop() {
+        lock.lock();
+        try {
+            release();
+            setLimit(limit * backoffRatio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a slot without adjusting the limit, e.g. for a request that was cancelled.
+     */
+    public void onIgnore() {
+        lock.lock();
+        try {
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        inFlight--;
+        released.signal();
+    }
+
+    private void setLimit(double newLimit) {
+        double oldLimit = limit;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        if ((int) limit > (int) oldLimit) {
+            released.signalAll();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of {@link #acquire(long)} that timed out
+     */
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("AdaptiveConcurrencyLimit: {limit: %d, inFlight: %d, minRtt: %dus}", (int) limit, inFlight,
+                    minRttNanos == Long.MAX_VALUE ? -1L : TimeUnit.NANOSECONDS.toMicros(minRttNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.asynchttpclient.Request;
+import org.asynchttpclient.filter.FilterContext;
+import org.asynchttpclient.filter.FilterException;
+import org.asynchttpclient.filter.RequestFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link RequestFilter} which throttles the requests to each host with an {@link AdaptiveConcurrencyLimit}, instead of the fixed
+ * number of permits of {@link ThrottleRequestFilter}.
+ * <p/>
+ * Requests exceeding a host's current limit wait up to <code>maxWait</code> milliseconds for a slot, 0 to reject them right
+ * away, and fail with a {@link FilterException} otherwise. The limit is adjusted by an {@link AdaptiveAsyncHandlerWrapper} from
+ * the round-trip time of every response.
+ */
+public class AdaptiveThrottleRequestFilter implements RequestFilter {
+
+    private final static Logger logger = LoggerFactory.getLogger(AdaptiveThrottleRequestFilter.class);
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final double DEFAULT_TOLERANCE = 2.0;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final int DEFAULT_BASELINE_WINDOW = 1000;
+
+    private final ConcurrentHashMap<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<String, AdaptiveConcurrencyLimit>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxWait;
+
+    public AdaptiveThrottleRequestFilter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param initialLimit the limit of a host before any response
+     * @param minLimit the minimum limit of a host
+     * @param maxLimit the maximum limit of a host
+     * @param maxWait how long a request waits for a slot, in milliseconds
+     */
+    public AdaptiveThrottleRequestFilter(int initialLimit, int minLimit, int maxLimit, int maxWait) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> FilterContext<T> filter(FilterContext<T> ctx) throws FilterException {
+        AdaptiveConcurrencyLimit limit = getOrCreateLimit(key(ctx.getRequest()));
+        try {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Current Throttling Status {}", limit);
+            }
+            if (!limit.acquire(maxWait)) {
+                throw new FilterException(String.format("No slot available for processing Request %s with AsyncHandler %s, %s",
+                        ctx.getRequest(), ctx.getAsyncHandler(), limit));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FilterException(String.format("Interrupted Request %s with AsyncHandler %s", ctx.getRequest(), ctx.getAsyncHandler()));
+        }
+
+        return new FilterContext.FilterContextBuilder<T>(ctx).asyncHandler(AdaptiveAsyncHandlerWrapper.wrap(ctx.getAsyncHandler(), limit))
+                .build();
+    }
+
+    /**
+     * @return the limit of the host of the given request, or null if no request was sent to it yet
+     */
+    public AdaptiveConcurrencyLimit getLimit(Request request) {
+        return limits.get(key(request));
+    }
+
+    /**
+     * Create the limit of a new host, override for tuning the tolerance, back-off ratio or baseline window.
+     */
+    protected AdaptiveConcurrencyLimit newLimit(String key) {
+        return new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, DEFAULT_TOLERANCE, DEFAULT_BACKOFF_RATIO,
+                DEFAULT_BASELINE_WINDOW);
+    }
+
+    private AdaptiveConcurrencyLimit getOrCreateLimit(String key) {
+        AdaptiveConcurrencyLimit limit = limits.get(key);
+        if (limit == null) {
+            AdaptiveConcurrencyLimit newLimit = newLimit(key);
+            limit = limits.putIfAbsent(key, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+            }
+        }
+        return limit;
+    }
+
+    private static String key(Request request) {
+        return request.getConnectionPoolKeyStrategy().getKey(request.getURI());
+    }
+}
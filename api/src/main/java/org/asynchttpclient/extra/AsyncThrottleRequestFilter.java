@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandlerExtensions;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.filter.AsyncRequestFilter;
+import org.asynchttpclient.filter.FilterContext;
+import org.asynchttpclient.filter.FilterException;
+import org.asynchttpclient.listenable.SettableListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The non blocking counterpart of {@link ThrottleRequestFilter}: when all the permits are taken, the request is queued instead of
+ * blocking the calling thread, and it's sent once a response, or a failure, releases a permit.
+ * <p/>
+ * Queued requests are resumed on the thread releasing the permit, which is usually an I/O thread, unless an {@link Executor} is
+ * provided. A request cancelled while queued is dropped from the queue.
+ */
+public class AsyncThrottleRequestFilter implements AsyncRequestFilter {
+    private final static Logger logger = LoggerFactory.getLogger(AsyncThrottleRequestFilter.class);
+
+    private final int maxQueued;
+    private final Executor executor;
+    private final LinkedList<Waiter<?>> waiters = new LinkedList<Waiter<?>>();
+    private int available;
+
+    public AsyncThrottleRequestFilter(int maxConnections) {
+        this(maxConnections, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * @param maxConnections the number of concurrent requests
+     * @param maxQueued the number of requests that can wait for a permit, further ones fail with a {@link FilterException}
+     * @param executor where the queued requests are resumed, null for the thread releasing the permit
+     */
+    public AsyncThrottleRequestFilter(int maxConnections, int maxQueued, Executor executor) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1");
+        }
+        this.available = maxConnections;
+        this.maxQueued = maxQueued;
+        this.executor = executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> ListenableFuture<FilterContext<T>> filter(FilterContext<T> ctx) {
+        SettableListenableFuture<FilterContext<T>> future = new SettableListenableFuture<FilterContext<T>>();
+        synchronized (waiters) {
+            if (available > 0) {
+                available--;
+            } else if (waiters.size() < maxQueued) {
+                waiters.add(new Waiter<T>(ctx, future));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Queued Request {}, {} waiting", ctx.getRequest(), waiters.size());
+                }
+                return future;
+            } else {
+                future.setException(new FilterException(String.format("No slot available for processing Request %s with AsyncHandler %s",
+                        ctx.getRequest(), ctx.getAsyncHandler())));
+                return future;
+            }
+        }
+        future.set(permitted(ctx));
+        return future;
+    }
+
+    /**
+     * @return the number of permits left
+     */
+    public int getAvailablePermits() {
+        synchronized (waiters) {
+            return available;
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for a permit
+     */
+    public int getQueueLength() {
+        synchronized (waiters) {
+            return waiters.size();
+        }
+    }
+
+    private <T> FilterContext<T> permitted(FilterContext<T> ctx) {
+        return new FilterContext.FilterContextBuilder<T>(ctx).asyncHandler(releasing(ctx.getAsyncHandler())).build();
+    }
+
+    private <T> ReleasingAsyncHandler<T> releasing(AsyncHandler<T> asyncHandler) {
+        return asyncHandler instanceof AsyncHandlerTimingExtensions ? new TimedReleasingAsyncHandler<T>(asyncHandler)
+                : new ReleasingAsyncHandler<T>(asyncHandler);
+    }
+
+    private void release() {
+        while (true) {
+            final Waiter<?> waiter;
+            synchronized (waiters) {
+                waiter = waiters.poll();
+                if (waiter == null) {
+                    available++;
+                    return;
+                }
+            }
+            // the permit goes to the waiter unless it was cancelled meanwhile
+            if (!waiter.future.isCancelled()) {
+                if (executor == null) {
+                    waiter.resume();
+                } else {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            waiter.resume();
+                        }
+                    });
+                }
+                return;
+            }
+        }
+    }
+
+    private class Waiter<T> {
+        private final FilterContext<T> ctx;
+        private final SettableListenableFuture<FilterContext<T>> future;
+
+        private Waiter(FilterContext<T> ctx, SettableListenableFuture<FilterContext<T>> future) {
+            this.ctx = ctx;
+            this.future = future;
+        }
+
+        private void resume() {
+            if (!future.set(permitted(ctx))) {
+                // cancelled after being dequeued
+                release();
+            }
+        }
+    }
+
+    private class ReleasingAsyncHandler<T> implements AsyncHandler<T>, AsyncHandlerExtensions {
+        private final AsyncHandler<T> asyncHandler;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingAsyncHandler(AsyncHandler<T> asyncHandler) {
+            this.asyncHandler = asyncHandler;
+        }
+
+        private void releaseOnce() {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+            try {
+                asyncHandler.onThrowable(t);
+            } finally {
+                releaseOnce();
+            }
+        }
+
+        @Override
+        public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+            return asyncHandler.onBodyPartReceived(bodyPart);
+        }
+
+        @Override
+        public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+            return asyncHandler.onStatusReceived(responseStatus);
+        }
+
+        @Override
+        public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+            return asyncHandler.onHeadersReceived(headers);
+        }
+
+        @Override
+        public T onCompleted() throws Exception {
+            releaseOnce();
+            return asyncHandler.onCompleted();
+        }
+
+        @Override
+        public void onRequestSent() {
+            if (asyncHandler instanceof AsyncHandlerExtensions) {
+                AsyncHandlerExtensions.class.cast(asyncHandler).onRequestSent();
+            }
+        }
+
+        @Override
+        public void onRetry() {
+            if (asyncHandler instanceof AsyncHandlerExtensions) {
+                AsyncHandlerExtensions.class.cast(asyncHandler).onRetry();
+            }
+        }
+    }
+
+    private class TimedReleasingAsyncHandler<T> extends ReleasingAsyncHandler<T> implements AsyncHandlerTimingExtensions {
+        private final AsyncHandlerTimingExtensions timing;
+
+        private TimedReleasingAsyncHandler(AsyncHandler<T> asyncHandler) {
+            super(asyncHandler);
+            timing = AsyncHandlerTimingExtensions.class.cast(asyncHandler);
+        }
+
+        @Override
+        public void onDnsResolved(long nanoTime) {
+            timing.onDnsResolved(nanoTime);
+        }
+
+        @Override
+        public void onConnectionOpen(long nanoTime) {
+            timing.onConnectionOpen(nanoTime);
+        }
+
+        @Override
+        public void onConnectionPooled(long nanoTime) {
+            timing.onConnectionPooled(nanoTime);
+        }
+
+        @Override
+        public void onTlsHandshakeDone(long nanoTime) {
+            timing.onTlsHandshakeDone(nanoTime);
+        }
+
+        @Override
+        public void onHeadersWritten(long nanoTime) {
+            timing.onHeadersWritten(nanoTime);
+        }
+
+        @Override
+        public void onFirstByteReceived(long nanoTime) {
+            timing.onFirstByteReceived(nanoTime);
+        }
+
+        @Override
+        public void onLastByteReceived(long nanoTime) {
+            timing.onLastByteReceived(nanoTime);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.Response.ResponseBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link AsyncHandler} that streams the response body into a {@link FileChannel}, writing at explicit positions so the channel
+ * position is never used.
+ * <p/>
+ * Body parts are read through {@link HttpResponseBodyPart#getBodyByteBuffer()}, which is a view over the network buffer with the
+ * Grizzly provider and with the Netty provider's LazyResponseBodyPartFactory, so no intermediate byte array is created. Small parts
+ * are coalesced into a direct buffer and written in batches in order to reduce the number of write syscalls, larger ones are
+ * written as is. The file can optionally be sized up front from the Content-Length header.
+ * <p/>
+ * The returned {@link Response} holds the status and the headers, the body is in the file. The {@link FileChannel} is not closed by
+ * this handler.
+ */
+public class FileChannelAsyncHandler implements AsyncHandler<Response> {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(FileChannelAsyncHandler.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final long startPosition;
+    private final ByteBuffer batch;
+    private final boolean preallocate;
+    private final ResponseBuilder responseBuilder = new ResponseBuilder();
+    private long position;
+    private long startNanos;
+    private long endNanos;
+    private boolean preallocated;
+
+    public FileChannelAsyncHandler(FileChannel channel) {
+        this(channel, 0L, DEFAULT_BATCH_SIZE, false);
+    }
+
+    /**
+     * @param channel the channel to write to
+     * @param startPosition the file position of the first received byte, e.g. when resuming with a Range request
+     * @param batchSize size of the direct buffer used for coalescing small body parts, 0 to disable batching
+     * @param preallocate if the file should be sized from the Content-Length header before receiving the body
+     */
+    public FileChannelAsyncHandler(FileChannel channel, long startPosition, int batchSize, boolean preallocate) {
+        if (channel == null) {
+            throw new NullPointerException("channel");
+        }
+        this.channel = channel;
+        this.startPosition = startPosition;
+        this.position = startPosition;
+        this.batch = batchSize > 0 ? ByteBuffer.allocateDirect(batchSize) : null;
+        this.preallocate = preallocate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onStatusReceived(HttpResponseStatus status) throws Exception {
+        startNanos = System.nanoTime();
+        responseBuilder.accumulate(status);
+        int statusCode = status.getStatusCode();
+        return statusCode == 200 || statusCode == 206 ? STATE.CONTINUE : STATE.ABORT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+        responseBuilder.accumulate(headers);
+        if (preallocate) {
+            String contentLength = headers.getHeaders().getFirstValue("Content-Length");
+            if (contentLength != null) {
+                long size = startPosition + Long.parseLong(contentLength.trim());
+                if (size > channel.size()) {
+                    // writing the last byte sizes the file without writing the whole content twice
+                    channel.write(ByteBuffer.allocate(1), size - 1);
+                    preallocated = true;
+                }
+            }
+        }
+        return STATE.CONTINUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        ByteBuffer buffer = bodyPart.getBodyByteBuffer();
+        if (batch == null || buffer.remaining() >= batch.capacity()) {
+            flush();
+            write(buffer);
+        } else {
+            if (buffer.remaining() > batch.remaining()) {
+                flush();
+            }
+            batch.put(buffer);
+        }
+        return STATE.CONTINUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response onCompleted() throws Exception {
+        flush();
+        if (preallocated && channel.size() > position) {
+            // the server sent less than announced
+            channel.truncate(position);
+        }
+        endNanos = System.nanoTime();
+        LOGGER.debug("Wrote {} bytes in {} ms ({} bytes/s)", getBytesWritten(), getElapsedNanos() / 1000000, (long) getThroughput());
+        return responseBuilder.build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onThrowable(Throwable t) {
+        endNanos = System.nanoTime();
+        try {
+            // keep what was received so the transfer can be resumed
+            flush();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to flush received bytes", e);
+        }
+        LOGGER.debug("Download failed after {} bytes", getBytesWritten(), t);
+    }
+
+    /**
+     * @return the number of bytes written into the file so far
+     */
+    public long getBytesWritten() {
+        return position - startPosition;
+    }
+
+    /**
+     * @return the time between the status being received and the transfer ending, or now if it's still going
+     */
+    public long getElapsedNanos() {
+        if (startNanos == 0L) {
+            return 0L;
+        }
+        return (endNanos != 0L ? endNanos : System.nanoTime()) - startNanos;
+    }
+
+    /**
+     * @return the transfer rate in bytes per second
+     */
+    public double getThroughput() {
+        long elapsed = getElapsedNanos();
+        return elapsed > 0L ? getBytesWritten() * 1000000000.0 / elapsed : 0.0;
+    }
+
+    private void flush() throws IOException {
+        if (batch != null && batch.position() > 0) {
+            batch.flip();
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock free token bucket, refilled with <code>permitsPerSecond</code> tokens per second up to <code>burst</code> tokens.
+ * <p/>
+ * Instead of counting tokens, it only keeps the time at which the bucket will be full again, and a permit is taken by moving that
+ * time forward with a single CAS. A permit can be reserved in advance: {@link #reserve(long)} returns how long the caller must wait
+ * before using it, so the caller can schedule its work instead of sleeping.
+ */
+public class TokenBucket {
+
+    private final double permitsPerSecond;
+    private final int burst;
+    private final long intervalNanos;
+    private final long burstNanos;
+    // when the bucket will be full again, in System.nanoTime() time
+    private final AtomicLong fullAt;
+
+    /**
+     * @param permitsPerSecond the refill rate
+     * @param burst the number of permits that can be taken at once after being idle
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0.0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Take a permit if one is available right now.
+     *
+     * @return true if the permit was taken
+     */
+    public boolean tryAcquire() {
+        return reserve(0L) == 0L;
+    }
+
+    /**
+     * Reserve the next permit, unless it's not available within <code>maxWaitNanos</code>.
+     *
+     * @return how long to wait before using the permit in nanoseconds, 0 to use it right away, or -1 if it wasn't reserved
+     */
+    public long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            // an idle bucket doesn't accumulate more than the burst
+            long next = (current - now < 0L ? now : current) + intervalNanos;
+            long wait = next - burstNanos - now;
+            if (wait > maxWaitNanos) {
+                return -1L;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return Math.max(0L, wait);
+            }
+        }
+    }
+
+    /**
+     * @return the number of permits that can be taken right now
+     */
+    public int getAvailablePermits() {
+        long pending = fullAt.get() - System.nanoTime();
+        if (pending <= 0L) {
+            return burst;
+        }
+        return (int) Math.max(0L, (burstNanos - pending) / intervalNanos);
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucket[permitsPerSecond=" + permitsPerSecond + ", burst=" + burst + ", available=" + getAvailablePermits() + "]";
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.filter.AsyncRequestFilter;
+import org.asynchttpclient.filter.FilterContext;
+import org.asynchttpclient.filter.FilterException;
+import org.asynchttpclient.listenable.SettableListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link AsyncRequestFilter} which limits the rate of the requests to each host with a {@link TokenBucket}, without any
+ * dependency nor blocked thread.
+ * <p/>
+ * Hosts are identified with the request's {@link org.asynchttpclient.ConnectionPoolKeyStrategy} key, e.g.
+ * <code>https://api.example.com:443</code> with the default strategy, and each one can have its own rate with
+ * {@link #setRate(String, double, int)}. Other hosts get the default rate, or aren't limited when it's not positive.
+ * <p/>
+ * A request exceeding its host's rate is delayed with the given {@link ScheduledExecutorService}, typically the client's one set
+ * with {@link org.asynchttpclient.AsyncHttpClientConfig.Builder#setScheduledExecutorService(ScheduledExecutorService)}. It fails
+ * with a {@link FilterException} when it would have to wait more than <code>maxWaitMs</code>.
+ */
+public class TokenBucketRequestFilter implements AsyncRequestFilter {
+
+    private final static Logger logger = LoggerFactory.getLogger(TokenBucketRequestFilter.class);
+
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+    private final ScheduledExecutorService timer;
+    private final double defaultPermitsPerSecond;
+    private final int defaultBurst;
+    private final long maxWaitNanos;
+
+    /**
+     * @param timer the scheduler delaying the requests
+     * @param defaultPermitsPerSecond the rate of the hosts without their own, 0 for not limiting them
+     * @param defaultBurst the burst of the hosts without their own
+     * @param maxWaitMs how long a request can be delayed, in milliseconds
+     */
+    public TokenBucketRequestFilter(ScheduledExecutorService timer, double defaultPermitsPerSecond, int defaultBurst, long maxWaitMs) {
+        if (timer == null) {
+            throw new NullPointerException("timer");
+        }
+        this.timer = timer;
+        this.defaultPermitsPerSecond = defaultPermitsPerSecond;
+        this.defaultBurst = defaultBurst;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+    }
+
+    /**
+     * Set the rate of a host, replacing its current one.
+     *
+     * @param key the host's {@link org.asynchttpclient.ConnectionPoolKeyStrategy} key
+     * @param permitsPerSecond the number of requests per second
+     * @param burst the number of requests that can be sent at once after being idle
+     * @return this
+     */
+    public TokenBucketRequestFilter setRate(String key, double permitsPerSecond, int burst) {
+        buckets.put(key, new TokenBucket(permitsPerSecond, burst));
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> ListenableFuture<FilterContext<T>> filter(final FilterContext<T> ctx) {
+        final SettableListenableFuture<FilterContext<T>> future = new SettableListenableFuture<FilterContext<T>>();
+        TokenBucket bucket = getOrCreateBucket(key(ctx.getRequest()));
+        long wait = bucket == null ? 0L : bucket.reserve(maxWaitNanos);
+
+        if (wait == 0L) {
+            future.set(ctx);
+        } else if (wait < 0L) {
+            future.setException(new FilterException(String.format("Rate limit exceeded for Request %s with AsyncHandler %s, %s",
+                    ctx.getRequest(), ctx.getAsyncHandler(), bucket)));
+        } else {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Delaying Request {} by {} ms", ctx.getRequest(), TimeUnit.NANOSECONDS.toMillis(wait));
+            }
+            try {
+                timer.schedule(new Runnable() {
+                    public void run() {
+                        future.set(ctx);
+                    }
+                }, wait, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                future.setException(e);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * @return the bucket of the host of the given request, or null if it isn't limited or no request was sent to it yet
+     */
+    public TokenBucket getBucket(Request request) {
+        return buckets.get(key(request));
+    }
+
+    private TokenBucket getOrCreateBucket(String key) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null && defaultPermitsPerSecond > 0.0) {
+            TokenBucket newBucket = new TokenBucket(defaultPermitsPerSecond, defaultBurst);
+            bucket = buckets.putIfAbsent(key, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+            }
+        }
+        return bucket;
+    }
+
+    private static String key(Request request) {
+        return request.getConnectionPoolKeyStrategy().getKey(request.getURI());
+    }
+}
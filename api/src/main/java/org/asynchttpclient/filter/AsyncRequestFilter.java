@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.filter;
+
+import org.asynchttpclient.ListenableFuture;
+
+/**
+ * A non blocking {@link RequestFilter}: instead of returning the {@link FilterContext}, it returns a future of it, so the filter can
+ * wait for a permit, a token or a rate limiter without parking the thread executing the request.
+ * <p/>
+ * When a client has some, {@link org.asynchttpclient.AsyncHttpClient#executeRequest(org.asynchttpclient.Request, org.asynchttpclient.AsyncHandler)}
+ * returns right away and the request is sent once every filter has completed, on the thread completing the last one. The
+ * {@link RequestFilter}s run first, adapted with {@link RequestFilterAdapter}. Failures, e.g. a {@link FilterException}, are
+ * reported to the {@link org.asynchttpclient.AsyncHandler} and to the returned future instead of being thrown.
+ */
+public interface AsyncRequestFilter {
+
+    /**
+     * @param ctx a {@link FilterContext}
+     * @return a future of the {@link FilterContext} to continue with, which may not be the same as the original one. It can
+     *         fail with a {@link FilterException} to interrupt the filter processing, and is cancelled when the request is.
+     */
+    public <T> ListenableFuture<FilterContext<T>> filter(FilterContext<T> ctx);
+}
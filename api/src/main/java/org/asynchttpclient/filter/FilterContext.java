@@ -16,6 +16,8 @@ import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.HttpResponseHeaders;
 import org.asynchttpclient.HttpResponseStatus;
 import org.asynchttpclient.Request;
+import org.asynchttpclient.cache.CachingAsyncHandler;
+import org.asynchttpclient.coalescing.CoalescingAsyncHandler;
 
 import java.io.IOException;
 
@@ -53,6 +55,26 @@ public class FilterContext<T> {
         return b.asyncHandler;
     }
 
+    /**
+     * Return the {@link CachingAsyncHandler} installed by the {@link org.asynchttpclient.cache.CacheRequestFilter}, even if other
+     * filters wrapped it since
+     *
+     * @return the {@link CachingAsyncHandler}, or null
+     */
+    public CachingAsyncHandler<T> getCachingAsyncHandler() {
+        return b.cachingAsyncHandler;
+    }
+
+    /**
+     * Return the {@link CoalescingAsyncHandler} installed by the {@link org.asynchttpclient.coalescing.CoalescingRequestFilter}, even if
+     * other filters wrapped it since
+     *
+     * @return the {@link CoalescingAsyncHandler}, or null
+     */
+    public CoalescingAsyncHandler<T> getCoalescingAsyncHandler() {
+        return b.coalescingAsyncHandler;
+    }
+
     /**
      * Return the original or decorated {@link Request}
      *
@@ -103,6 +125,8 @@ public class FilterContext<T> {
         private boolean replayRequest = false;
         private IOException ioException = null;
         private HttpResponseHeaders headers;
+        private CachingAsyncHandler<T> cachingAsyncHandler;
+        private CoalescingAsyncHandler<T> coalescingAsyncHandler;
 
         public FilterContextBuilder() {
         }
@@ -113,6 +137,8 @@ public class FilterContext<T> {
             responseStatus = clone.getResponseStatus();
             replayRequest = clone.replayRequest();
             ioException = clone.getIOException();
+            cachingAsyncHandler = clone.getCachingAsyncHandler();
+            coalescingAsyncHandler = clone.getCoalescingAsyncHandler();
         }
 
         public AsyncHandler<T> getAsyncHandler() {
@@ -124,6 +150,16 @@ public class FilterContext<T> {
             return this;
         }
 
+        public FilterContextBuilder<T> cachingAsyncHandler(CachingAsyncHandler<T> cachingAsyncHandler) {
+            this.cachingAsyncHandler = cachingAsyncHandler;
+            return this;
+        }
+
+        public FilterContextBuilder<T> coalescingAsyncHandler(CoalescingAsyncHandler<T> coalescingAsyncHandler) {
+            this.coalescingAsyncHandler = coalescingAsyncHandler;
+            return this;
+        }
+
         public Request getRequest() {
             return request;
         }
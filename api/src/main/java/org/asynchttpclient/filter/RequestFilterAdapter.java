@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.filter;
+
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.listenable.SettableListenableFuture;
+
+/**
+ * Adapts a {@link RequestFilter} to the {@link AsyncRequestFilter} SPI. The filter runs on the calling thread and the returned future
+ * is already complete.
+ */
+public class RequestFilterAdapter implements AsyncRequestFilter {
+
+    private final RequestFilter requestFilter;
+
+    public RequestFilterAdapter(RequestFilter requestFilter) {
+        this.requestFilter = requestFilter;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> ListenableFuture<FilterContext<T>> filter(FilterContext<T> ctx) {
+        SettableListenableFuture<FilterContext<T>> future = new SettableListenableFuture<FilterContext<T>>();
+        try {
+            future.set(requestFilter.filter(ctx));
+        } catch (Throwable t) {
+            future.setException(t);
+        }
+        return future;
+    }
+
+    public RequestFilter getRequestFilter() {
+        return requestFilter;
+    }
+}
@@ -72,6 +72,8 @@ public class FileBodyGenerator implements BodyGenerator {
 
         private final long length;
 
+        private long read;
+
         private FileBody(File file, long regionSeek, long regionLength) throws IOException {
             raf = new RandomAccessFile(file, "r");
             channel = raf.getChannel();
@@ -87,7 +89,24 @@ public class FileBodyGenerator implements BodyGenerator {
 
         public long read(ByteBuffer buffer)
                 throws IOException {
-            return channel.read(buffer);
+            long remaining = length - read;
+            if (remaining <= 0) {
+                return -1;
+            }
+            // don't read past the region
+            int limit = buffer.limit();
+            if (buffer.remaining() > remaining) {
+                buffer.limit(buffer.position() + (int) remaining);
+            }
+            try {
+                int r = channel.read(buffer);
+                if (r > 0) {
+                    read += r;
+                }
+                return r;
+            } finally {
+                buffer.limit(limit);
+            }
         }
 
         public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.hedging;
+
+import org.asynchttpclient.Request;
+
+/**
+ * A {@link HedgingPolicy} sending the duplicates at a fixed interval.
+ */
+public class FixedDelayHedgingPolicy implements HedgingPolicy {
+
+    private final long delayInMs;
+
+    /**
+     * @param delayInMs the delay of the first duplicate, the n-th one is sent after n times that delay
+     */
+    public FixedDelayHedgingPolicy(long delayInMs) {
+        this.delayInMs = delayInMs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long hedgeDelayInMs(Request request, int hedge) {
+        return delayInMs * hedge;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onResponse(Request request, long latencyNanos) {
+    }
+}
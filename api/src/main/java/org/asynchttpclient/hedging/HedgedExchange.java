@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.hedging;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandler.STATE;
+import org.asynchttpclient.AsyncHandlerExtensions;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseHeaders;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.listenable.SettableListenableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hedged request: the original exchange and its duplicates, racing for delivering their response to the original
+ * {@link AsyncHandler}.
+ */
+class HedgedExchange<T> {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(HedgedExchange.class);
+
+    private final RequestHedger hedger;
+    private final Request request;
+    private final AsyncHandler<T> asyncHandler;
+    private final SettableListenableFuture<T> future = new SettableListenableFuture<T>() {
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!super.cancel(mayInterruptIfRunning)) {
+                return false;
+            }
+            if (close()) {
+                asyncHandler.onThrowable(new CancellationException());
+            }
+            return true;
+        }
+    };
+
+    // guarded by this
+    private final List<Attempt> attempts = new ArrayList<Attempt>();
+    private final List<Future<?>> scheduledHedges = new ArrayList<Future<?>>();
+    private int inFlight;
+    private boolean done;
+
+    HedgedExchange(RequestHedger hedger, Request request, AsyncHandler<T> asyncHandler) {
+        this.hedger = hedger;
+        this.request = request;
+        this.asyncHandler = asyncHandler;
+    }
+
+    ListenableFuture<T> getFuture() {
+        return future;
+    }
+
+    synchronized boolean isDone() {
+        return done;
+    }
+
+    synchronized void hedgeScheduled(Future<?> scheduledHedge) {
+        if (done) {
+            scheduledHedge.cancel(false);
+        } else {
+            scheduledHedges.add(scheduledHedge);
+        }
+    }
+
+    void sendHedge(int hedge) {
+        try {
+            send(hedge);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to send hedge {} of {}", hedge, request, e);
+        }
+    }
+
+    void send(int hedge) throws IOException {
+        Request attemptRequest = hedge == 0 ? request : hedger.hedgeRequest(request, hedge);
+        Attempt attempt = asyncHandler instanceof AsyncHandlerTimingExtensions ? new TimedAttempt(hedge, attemptRequest)
+                : new Attempt(hedge, attemptRequest);
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            attempts.add(attempt);
+            inFlight++;
+        }
+        if (hedge > 0) {
+            hedger.onHedgeSent();
+            LOGGER.debug("Sending hedge {} of {}", hedge, attemptRequest);
+        }
+
+        try {
+            attempt.setFuture(hedger.send(attemptRequest, attempt));
+        } catch (IOException e) {
+            attempt.onThrowable(e);
+            if (hedge == 0) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Stop all the exchanges.
+     *
+     * @return false if it was already done
+     */
+    private boolean close() {
+        List<Attempt> toCancel;
+        List<Future<?>> hedgesToCancel;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            toCancel = new ArrayList<Attempt>(attempts);
+            hedgesToCancel = new ArrayList<Future<?>>(scheduledHedges);
+            attempts.clear();
+            scheduledHedges.clear();
+        }
+        for (Future<?> scheduledHedge : hedgesToCancel) {
+            scheduledHedge.cancel(false);
+        }
+        for (Attempt attempt : toCancel) {
+            attempt.cancel();
+        }
+        return true;
+    }
+
+    private void completed(Attempt winner) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            attempts.remove(winner);
+        }
+        close();
+
+        hedger.getPolicy().onResponse(winner.request, System.nanoTime() - winner.start);
+        if (winner.hedge > 0) {
+            hedger.onHedgeWon();
+        }
+
+        try {
+            future.set(replay(winner));
+        } catch (Throwable t) {
+            asyncHandler.onThrowable(t);
+            future.setException(t);
+        }
+    }
+
+    private T replay(Attempt winner) throws Exception {
+        TimedAttempt timed = winner instanceof HedgedExchange<?>.TimedAttempt ? (TimedAttempt) winner : null;
+        if (timed != null) {
+            timed.replayPhases();
+        }
+        STATE state = winner.status != null ? asyncHandler.onStatusReceived(winner.status) : STATE.CONTINUE;
+        for (int i = 0; state == STATE.CONTINUE && i < winner.headers.size(); i++) {
+            state = asyncHandler.onHeadersReceived(winner.headers.get(i));
+        }
+        for (int i = 0; state == STATE.CONTINUE && i < winner.bodyParts.size(); i++) {
+            state = asyncHandler.onBodyPartReceived(winner.bodyParts.get(i));
+        }
+        if (timed != null && timed.lastByte != 0L) {
+            AsyncHandlerTimingExtensions.class.cast(asyncHandler).onLastByteReceived(timed.lastByte);
+        }
+        return asyncHandler.onCompleted();
+    }
+
+    private void failed(Attempt attempt, Throwable t) {
+        synchronized (this) {
+            inFlight--;
+            if (done || inFlight > 0) {
+                // another exchange may still succeed
+                return;
+            }
+        }
+        if (close()) {
+            asyncHandler.onThrowable(t);
+            future.setException(t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HedgedExchange[" + request + "]";
+    }
+
+    class Attempt implements AsyncHandler<Void>, AsyncHandlerExtensions {
+
+        private final int hedge;
+        private final Request request;
+        private final long start = System.nanoTime();
+        private final List<HttpResponseHeaders> headers = new ArrayList<HttpResponseHeaders>();
+        private final List<HttpResponseBodyPart> bodyParts = new ArrayList<HttpResponseBodyPart>();
+        private HttpResponseStatus status;
+        private ListenableFuture<Void> future;
+        private boolean cancelled;
+
+        private Attempt(int hedge, Request request) {
+            this.hedge = hedge;
+            this.request = request;
+        }
+
+        boolean isHedge() {
+            return hedge > 0;
+        }
+
+        private void setFuture(ListenableFuture<Void> future) {
+            boolean cancel;
+            synchronized (this) {
+                this.future = future;
+                cancel = cancelled;
+            }
+            if (cancel) {
+                future.cancel(true);
+            }
+        }
+
+        private void cancel() {
+            ListenableFuture<Void> f;
+            synchronized (this) {
+                cancelled = true;
+                f = future;
+            }
+            if (f != null) {
+                f.cancel(true);
+            }
+        }
+
+        private STATE next() {
+            return isDone() ? STATE.ABORT : STATE.CONTINUE;
+        }
+
+        @Override
+        public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+            status = responseStatus;
+            return next();
+        }
+
+        @Override
+        public STATE onHeadersReceived(HttpResponseHeaders responseHeaders) throws Exception {
+            headers.add(responseHeaders);
+            return next();
+        }
+
+        @Override
+        public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+            // kept like a Response.ResponseBuilder does
+            bodyParts.add(bodyPart);
+            return next();
+        }
+
+        @Override
+        public Void onCompleted() throws Exception {
+            completed(this);
+            return null;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+            failed(this, t);
+        }
+
+        @Override
+        public void onRequestSent() {
+            if (asyncHandler instanceof AsyncHandlerExtensions) {
+                AsyncHandlerExtensions.class.cast(asyncHandler).onRequestSent();
+            }
+        }
+
+        @Override
+        public void onRetry() {
+            if (asyncHandler instanceof AsyncHandlerExtensions) {
+                AsyncHandlerExtensions.class.cast(asyncHandler).onRetry();
+            }
+        }
+    }
+
+    /**
+     * An attempt keeping the timestamps of its phases, so the ones of the winner are reported to the original handler, not the
+     * interleaved phases of all the attempts. 0 means the phase wasn't reported.
+     */
+    private class TimedAttempt extends Attempt implements AsyncHandlerTimingExtensions {
+
+        private volatile long dnsResolved;
+        private volatile long connectionOpen;
+        private volatile long connectionPooled;
+        private volatile long tlsHandshakeDone;
+        private volatile long headersWritten;
+        private volatile long firstByte;
+        private volatile long lastByte;
+
+        private TimedAttempt(int hedge, Request request) {
+            super(hedge, request);
+        }
+
+        private void replayPhases() {
+            AsyncHandlerTimingExtensions timing = AsyncHandlerTimingExtensions.class.cast(asyncHandler);
+            if (dnsResolved != 0L) {
+                timing.onDnsResolved(dnsResolved);
+            }
+            if (connectionOpen != 0L) {
+                timing.onConnectionOpen(connectionOpen);
+            }
+            if (connectionPooled != 0L) {
+                timing.onConnectionPooled(connectionPooled);
+            }
+            if (tlsHandshakeDone != 0L) {
+                timing.onTlsHandshakeDone(tlsHandshakeDone);
+            }
+            if (headersWritten != 0L) {
+                timing.onHeadersWritten(headersWritten);
+            }
+            if (firstByte != 0L) {
+                timing.onFirstByteReceived(firstByte);
+            }
+        }
+
+        @Override
+        public void onDnsResolved(long nanoTime) {
+            dnsResolved = nanoTime;
+        }
+
+        @Override
+        public void onConnectionOpen(long nanoTime) {
+            connectionOpen = nanoTime;
+        }
+
+        @Override
+        public void onConnectionPooled(long nanoTime) {
+            connectionPooled = nanoTime;
+        }
+
+        @Override
+        public void onTlsHandshakeDone(long nanoTime) {
+            tlsHandshakeDone = nanoTime;
+        }
+
+        @Override
+        public void onHeadersWritten(long nanoTime) {
+            headersWritten = nanoTime;
+        }
+
+        @Override
+        public void onFirstByteReceived(long nanoTime) {
+            firstByte = nanoTime;
+        }
+
+        @Override
+        public void onLastByteReceived(long nanoTime) {
+            lastByte = nanoTime;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.hedging;
+
+import org.asynchttpclient.Request;
+
+/**
+ * Decides when the {@link RequestHedger} sends a duplicate of a request that hasn't completed yet.
+ */
+public interface HedgingPolicy {
+
+    /**
+     * @param request the original request
+     * @param hedge the number of the duplicate, starting at 1
+     * @return how long after the original request the duplicate is sent in milliseconds, or a negative value for not sending it
+     */
+    long hedgeDelayInMs(Request request, int hedge);
+
+    /**
+     * Invoked with the latency of every winning response, e.g. for tracking the latency percentiles of the hosts.
+     *
+     * @param request the request of the winning response
+     * @param latencyNanos the time between the request being executed and the response being complete
+     */
+    void onResponse(Request request, long latencyNanos);
+}
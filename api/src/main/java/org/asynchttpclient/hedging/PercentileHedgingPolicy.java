@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.hedging;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.asynchttpclient.Request;
+
+/**
+ * A {@link HedgingPolicy} sending a duplicate once a request is slower than a given percentile of the recent latencies of its host,
+ * e.g. the 95th, so only the slowest requests are hedged.
+ * <p/>
+ * Each host, identified with the request's {@link org.asynchttpclient.ConnectionPoolKeyStrategy} key, keeps its last
+ * <code>windowSize</code> latencies. The percentile is recomputed every few samples rather than on every request. Until a host has
+ * enough samples, the default delay is used.
+ */
+public class PercentileHedgingPolicy implements HedgingPolicy {
+
+    private final ConcurrentHashMap<String, LatencyWindow> windows = new ConcurrentHashMap<String, LatencyWindow>();
+    private final double percentile;
+    private final long minDelayInMs;
+    private final long defaultDelayInMs;
+    private final int windowSize;
+
+    /**
+     * @param percentile the latency percentile, between 0 and 100
+     * @param minDelayInMs the minimum delay, so fast hosts don't get every request duplicated
+     * @param defaultDelayInMs the delay used until a host has enough samples
+     * @param windowSize the number of latencies kept for each host
+     */
+    public PercentileHedgingPolicy(double percentile, long minDelayInMs, long defaultDelayInMs, int windowSize) {
+        if (percentile <= 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be at least 1");
+        }
+        this.percentile = percentile;
+        this.minDelayInMs = minDelayInMs;
+        this.defaultDelayInMs = defaultDelayInMs;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long hedgeDelayInMs(Request request, int hedge) {
+        LatencyWindow window = windows.get(key(request));
+        long delay = window == null ? -1L : window.percentileInMs();
+        if (delay < 0L) {
+            delay = defaultDelayInMs;
+        }
+        return Math.max(minDelayInMs, delay) * hedge;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onResponse(Request request, long latencyNanos) {
+        String key = key(request);
+        LatencyWindow window = windows.get(key);
+        if (window == null) {
+            LatencyWindow newWindow = new LatencyWindow();
+            window = windows.putIfAbsent(key, newWindow);
+            if (window == null) {
+                window = newWindow;
+            }
+        }
+        window.record(latencyNanos);
+    }
+
+    /**
+     * @return the current latency percentile of the request's host in milliseconds, or -1 if it doesn't have enough samples
+     */
+    public long getPercentileInMs(Request request) {
+        LatencyWindow window = windows.get(key(request));
+        return window == null ? -1L : window.percentileInMs();
+    }
+
+    private static String key(Request request) {
+        return request.getConnectionPoolKeyStrategy().getKey(request.getURI());
+    }
+
+    private class LatencyWindow {
+        private final long[] samples = new long[windowSize];
+        // recomputing the percentile means sorting the window, don't do it on every sample
+        private final int recomputeInterval = Math.max(1, windowSize / 16);
+        private int count;
+        private int next;
+        private int sinceRecompute;
+        private volatile long percentileInMs = -1L;
+
+        private synchronized void record(long latencyNanos) {
+            samples[next] = latencyNanos;
+            next = (next + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+            // wait for a few samples before trusting the window
+            if (++sinceRecompute >= recomputeInterval && count >= Math.min(samples.length, 10)) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.min(count - 1, Math.ceil(percentile / 100.0 * count) - 1);
+                percentileInMs = TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, index)]);
+            }
+        }
+
+        private long percentileInMs() {
+            return percentileInMs;
+        }
+    }
+}
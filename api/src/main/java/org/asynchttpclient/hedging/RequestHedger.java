@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.hedging;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes read-only requests with hedging: if a request hasn't completed after the delay given by the {@link HedgingPolicy}, a
+ * duplicate is sent, on another connection, and the first complete response wins. This cuts the tail latency caused by a single
+ * slow server of a replicated backend.
+ * <p/>
+ * Every exchange is buffered, and the winning one is replayed into the original {@link AsyncHandler}, so the handler sees a single
+ * response. The other exchanges are cancelled, which closes their connections. The duplicates can target another server by
+ * overriding {@link #hedgeRequest(Request, int)}.
+ * <p/>
+ * Only GET, HEAD and OPTIONS requests without a body are hedged, the others are executed as is. If an exchange fails while no
+ * other one is in flight, the request fails. The duplicates bypass the cache and the request coalescing, so they're actually sent.
+ */
+public class RequestHedger {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(RequestHedger.class);
+
+    private final AsyncHttpClient client;
+    private final ScheduledExecutorService timer;
+    private final HedgingPolicy policy;
+    private final int maxHedges;
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * @param client the client executing the requests
+     * @param timer the scheduler sending the duplicates, typically the client's one
+     * @param policy when the duplicates are sent
+     * @param maxHedges the maximum number of duplicates of a request
+     */
+    public RequestHedger(AsyncHttpClient client, ScheduledExecutorService timer, HedgingPolicy policy, int maxHedges) {
+        this.client = client;
+        this.timer = timer;
+        this.policy = policy;
+        this.maxHedges = maxHedges;
+    }
+
+    /**
+     * Execute a request, with hedging if it's read-only.
+     *
+     * @param request the request
+     * @param asyncHandler the handler receiving the winning response
+     * @return the future of the winning response
+     * @throws IOException if the original request can't be sent
+     */
+    public <T> ListenableFuture<T> execute(Request request, AsyncHandler<T> asyncHandler) throws IOException {
+        if (maxHedges < 1 || !isHedgeable(request)) {
+            return client.executeRequest(request, asyncHandler);
+        }
+
+        HedgedExchange<T> exchange = new HedgedExchange<T>(this, request, asyncHandler);
+        exchange.send(0);
+        for (int hedge = 1; hedge <= maxHedges; hedge++) {
+            long delay = policy.hedgeDelayInMs(request, hedge);
+            if (delay < 0L) {
+                break;
+            }
+            scheduleHedge(exchange, hedge, delay);
+        }
+        return exchange.getFuture();
+    }
+
+    /**
+     * @param request the request
+     * @return true if the request is read-only and has no body, so it can be sent several times
+     */
+    public boolean isHedgeable(Request request) {
+        String method = request.getMethod();
+        return ("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method))//
+                && request.getByteData() == null//
+                && request.getStringData() == null//
+                && request.getStreamData() == null//
+                && request.getBodyGenerator() == null//
+                && request.getFile() == null//
+                && (request.getParts() == null || request.getParts().isEmpty());
+    }
+
+    /**
+     * @param asyncHandler the handler of a request going through the request filters
+     * @return true if the request is a duplicate sent by a {@link RequestHedger}, which must reach the network: the
+     *         {@link org.asynchttpclient.cache.CacheRequestFilter} and the {@link org.asynchttpclient.coalescing.CoalescingRequestFilter}
+     *         leave it alone
+     */
+    public static boolean isHedge(AsyncHandler<?> asyncHandler) {
+        return asyncHandler instanceof HedgedExchange<?>.Attempt && ((HedgedExchange<?>.Attempt) asyncHandler).isHedge();
+    }
+
+    /**
+     * Create a duplicate of a request, override for sending it to another server.
+     *
+     * @param request the original request
+     * @param hedge the number of the duplicate, starting at 1
+     * @return the duplicate
+     */
+    protected Request hedgeRequest(Request request, int hedge) {
+        return request;
+    }
+
+    /**
+     * @return the number of duplicates sent
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * @return the number of requests whose response came from a duplicate
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    public HedgingPolicy getPolicy() {
+        return policy;
+    }
+
+    ListenableFuture<Void> send(Request request, AsyncHandler<Void> attempt) throws IOException {
+        return client.executeRequest(request, attempt);
+    }
+
+    void onHedgeSent() {
+        hedges.incrementAndGet();
+    }
+
+    void onHedgeWon() {
+        hedgeWins.incrementAndGet();
+    }
+
+    private void scheduleHedge(final HedgedExchange<?> exchange, final int hedge, long delay) {
+        try {
+            exchange.hedgeScheduled(timer.schedule(new Runnable() {
+                public void run() {
+                    if (!exchange.isDone()) {
+                        exchange.sendHedge(hedge);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Unable to schedule hedge {} of {}", hedge, exchange);
+        }
+    }
+}
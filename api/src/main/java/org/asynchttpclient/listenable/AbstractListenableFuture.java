@@ -40,7 +40,8 @@ import java.util.concurrent.Executor;
  * they were added, but because of thread scheduling issues there is no
  * guarantee that the JVM will execute them in order. In addition, listeners
  * added after the task is complete will be executed immediately, even if some
- * previously added listeners have not yet been executed.
+ * previously added listeners have not yet been executed. Neither adding nor
+ * running listeners takes a lock.
  *
  * @author Sven Mawson
  * @since 1
@@ -28,9 +28,8 @@
 
 package org.asynchttpclient.listenable;
 
-import java.util.Queue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,6 +39,10 @@ import java.util.logging.Logger;
  * executed in its associated {@code Executor} after {@link #run()} is called.
  * {@code Runnable}s added after {@code run} is called are still guaranteed to
  * execute.
+ * <p>The pairs are pushed on a lock-free stack, so neither adding nor running
+ * ever blocks, and a list nobody listens to costs a single field. Cheap
+ * listeners can be added with {@link #SAME_THREAD_EXECUTOR} so they run inline
+ * on the thread completing the future, instead of being dispatched.
  *
  * @author Nishant Thakkar
  * @author Sven Mawson
@@ -47,16 +50,29 @@ import java.util.logging.Logger;
  */
 public final class ExecutionList implements Runnable {
 
+    /**
+     * An {@link Executor} running the listeners on the thread calling
+     * {@link #run()}, or on the one adding them once the list has run.
+     */
+    public static final Executor SAME_THREAD_EXECUTOR = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
     // Logger to log exceptions caught when running runnables.
     private static final Logger log =
             Logger.getLogger(ExecutionList.class.getName());
 
-    // The runnable,executor pairs to execute.
-    private final Queue<RunnableExecutorPair> runnables = new LinkedBlockingQueue<RunnableExecutorPair>();
+    // Replaces the stack once execution has started.
+    private static final RunnableExecutorPair EXECUTED = new RunnableExecutorPair(null, null);
 
-    // Boolean we use mark when execution has started.  Only accessed from within
-    // synchronized blocks.
-    private boolean executed = false;
+    private static final AtomicReferenceFieldUpdater<ExecutionList, RunnableExecutorPair> HEAD_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ExecutionList.class, RunnableExecutorPair.class, "head");
+
+    // The runnable,executor pairs to execute, most recently added first, or
+    // EXECUTED.
+    private volatile RunnableExecutorPair head;
 
     /**
      * Add the runnable/executor pair to the list of pairs to execute.  Executes
@@ -72,25 +88,23 @@ public final class ExecutionList implements Runnable {
             throw new NullPointerException("Executor is null");
         }
 
-        boolean executeImmediate = false;
-
-        // Lock while we check state.  We must maintain the lock while adding the
-        // new pair so that another thread can't run the list out from under us.
-        // We only add to the list if we have not yet started execution.
-        synchronized (runnables) {
-            if (!executed) {
-                runnables.add(new RunnableExecutorPair(runnable, executor));
-            } else {
-                executeImmediate = true;
+        RunnableExecutorPair pair = null;
+        for (;;) {
+            RunnableExecutorPair current = head;
+            if (current == EXECUTED) {
+                // Execute the runnable immediately.  Because of scheduling this
+                // may end up getting called before some of the previously added
+                // runnables, but we're ok with that.
+                executor.execute(runnable);
+                return;
+            }
+            if (pair == null) {
+                pair = new RunnableExecutorPair(runnable, executor);
+            }
+            pair.next = current;
+            if (HEAD_UPDATER.compareAndSet(this, current, pair)) {
+                return;
             }
-        }
-
-        // Execute the runnable immediately.  Because of scheduling this may end up
-        // getting called before some of the previously added runnables, but we're
-        // ok with that.  If we want to change the contract to guarantee ordering
-        // among runnables we'd have to modify the logic here to allow it.
-        if (executeImmediate) {
-            executor.execute(runnable);
         }
     }
 
@@ -101,22 +115,30 @@ public final class ExecutionList implements Runnable {
      */
     public void run() {
 
-        // Lock while we update our state so the add method above will finish adding
-        // any listeners before we start to run them.
-        synchronized (runnables) {
-            executed = true;
+        // From now on, add executes the pairs itself, so the stack we take
+        // will never be modified by another thread.
+        RunnableExecutorPair stack = HEAD_UPDATER.getAndSet(this, EXECUTED);
+        if (stack == EXECUTED) {
+            return;
+        }
+
+        RunnableExecutorPair reversed = null;
+        while (stack != null) {
+            RunnableExecutorPair next = stack.next;
+            stack.next = reversed;
+            reversed = stack;
+            stack = next;
         }
 
-        // At this point the runnables will never be modified by another
-        // thread, so we are safe using it outside of the synchronized block.
-        while (!runnables.isEmpty()) {
-            runnables.poll().execute();
+        for (RunnableExecutorPair pair = reversed; pair != null; pair = pair.next) {
+            pair.execute();
         }
     }
 
     private static class RunnableExecutorPair {
         final Runnable runnable;
         final Executor executor;
+        RunnableExecutorPair next;
 
         RunnableExecutorPair(Runnable runnable, Executor executor) {
             this.runnable = runnable;
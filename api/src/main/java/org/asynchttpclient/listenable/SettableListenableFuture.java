@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.listenable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link org.asynchttpclient.ListenableFuture} completed by calling {@link #set(Object)} or {@link #setException(Throwable)}, e.g.
+ * from an {@link org.asynchttpclient.filter.AsyncRequestFilter}. Only the first completion is taken into account.
+ */
+public class SettableListenableFuture<V> extends AbstractListenableFuture<V> {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private boolean completed;
+    private volatile boolean cancelled;
+    private V value;
+    private Throwable cause;
+
+    /**
+     * @return true if this call completed the future
+     */
+    public boolean set(V value) {
+        return complete(value, null, false);
+    }
+
+    /**
+     * @return true if this call completed the future
+     */
+    public boolean setException(Throwable cause) {
+        return complete(null, cause, false);
+    }
+
+    private boolean complete(V value, Throwable cause, boolean cancel) {
+        synchronized (latch) {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            this.value = value;
+            this.cause = cause;
+            this.cancelled = cancel;
+        }
+        latch.countDown();
+        runListeners();
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(null, null, true);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return report();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    private V report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (cause != null) {
+            throw new ExecutionException(cause);
+        }
+        return value;
+    }
+
+    @Override
+    public void done() {
+    }
+
+    @Override
+    public void abort(Throwable t) {
+        setException(t);
+    }
+
+    @Override
+    public void touch() {
+    }
+
+    @Override
+    public boolean getAndSetWriteHeaders(boolean writeHeader) {
+        return false;
+    }
+
+    @Override
+    public boolean getAndSetWriteBody(boolean writeBody) {
+        return false;
+    }
+}
@@ -76,6 +76,14 @@ public class MultipartBody implements RandomAccessBody {
         return contentType;
     }
 
+    public List<Part> getParts() {
+        return parts;
+    }
+
+    public byte[] getBoundary() {
+        return boundary;
+    }
+
     public long read(ByteBuffer buffer) throws IOException {
         try {
             int overallLength = 0;
@@ -266,7 +274,7 @@ public class MultipartBody implements RandomAccessBody {
     private ByteArrayOutputStream generateFileEnd(AbstractFilePart filePart) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         OutputStreamPartVisitor visitor = new OutputStreamPartVisitor(out);
-        filePart.visitEnd(visitor);
+        filePart.visitTrailer(visitor);
         return out;
     }
 
@@ -278,13 +286,7 @@ public class MultipartBody implements RandomAccessBody {
     private ByteArrayOutputStream generateFileStart(AbstractFilePart filePart) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         OutputStreamPartVisitor visitor = new OutputStreamPartVisitor(out);
-        filePart.visitStart(visitor, boundary);
-        filePart.visitDispositionHeader(visitor);
-        filePart.visitContentTypeHeader(visitor);
-        filePart.visitTransferEncodingHeader(visitor);
-        filePart.visitContentIdHeader(visitor);
-        filePart.visitEndOfHeader(visitor);
-
+        filePart.visitHeaders(visitor, boundary);
         return out;
     }
 
@@ -185,13 +185,40 @@ public abstract class Part {
 
         OutputStreamPartVisitor visitor = new OutputStreamPartVisitor(out);
 
+        visitHeaders(visitor, boundary);
+        sendData(visitor.getOutputStream());
+        visitTrailer(visitor);
+    }
+
+    /**
+     * Visit everything that precedes the part data: the boundary delimiter and the part headers.
+     * This lets a provider write the data itself, e.g. with a zero-copy file transfer.
+     * 
+     * @param visitor
+     *            the visitor
+     * @param boundary
+     *            the boundary
+     * @throws IOException
+     *             If an IO problem occurs.
+     */
+    public void visitHeaders(PartVisitor visitor, byte[] boundary) throws IOException {
         visitStart(visitor, boundary);
         visitDispositionHeader(visitor);
         visitContentTypeHeader(visitor);
         visitTransferEncodingHeader(visitor);
         visitContentIdHeader(visitor);
         visitEndOfHeader(visitor);
-        sendData(visitor.getOutputStream());
+    }
+
+    /**
+     * Visit everything that follows the part data.
+     * 
+     * @param visitor
+     *            the visitor
+     * @throws IOException
+     *             If an IO problem occurs.
+     */
+    public void visitTrailer(PartVisitor visitor) throws IOException {
         visitEnd(visitor);
     }
 
@@ -209,13 +236,8 @@ public abstract class Part {
                 return -1L;
             } else {
                 CounterPartVisitor visitor = new CounterPartVisitor();
-                visitStart(visitor, boundary);
-                visitDispositionHeader(visitor);
-                visitContentTypeHeader(visitor);
-                visitTransferEncodingHeader(visitor);
-                visitContentIdHeader(visitor);
-                visitEndOfHeader(visitor);
-                visitEnd(visitor);
+                visitHeaders(visitor, boundary);
+                visitTrailer(visitor);
                 return dataLength + visitor.getCount();
             }
         } catch (IOException e) {
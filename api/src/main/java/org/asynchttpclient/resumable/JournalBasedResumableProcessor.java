@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.resumable;
+
+import org.asynchttpclient.util.StandardCharsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link org.asynchttpclient.resumable.ResumableAsyncHandler.ResumableProcessor} which appends every change to a journal
+ * file instead of rewriting the whole index.
+ * <p/>
+ * {@link #put(String, long)} and {@link #remove(String)} only update the in-memory index and append a small checksummed
+ * record to a buffer. The buffer is written and fsynced in batches, every <code>syncIntervalInMs</code> by a daemon thread,
+ * or on every change when the interval is 0. Once the journal holds much more records than live entries, it's compacted
+ * by writing a snapshot of the index to a new file that replaces the journal.
+ * <p/>
+ * The journal is replayed once when the processor is created, so {@link #load()} is cheap. A truncated or corrupted record at
+ * the end of the journal, e.g. after a crash, is discarded.
+ */
+public class JournalBasedResumableProcessor implements ResumableAsyncHandler.ResumableProcessor, Closeable {
+    private final static Logger log = LoggerFactory.getLogger(JournalBasedResumableProcessor.class);
+    private final static File TMP = new File(System.getProperty("java.io.tmpdir"), "ahc");
+    private final static String storeName = "ResumableAsyncHandler.journal";
+
+    public static final long DEFAULT_SYNC_INTERVAL_MS = 1000L;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 10000;
+
+    private final File journal;
+    private final ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<String, Long>();
+
+    // guards the index mutations and the pending records, so they're always consistent
+    private final Object recordLock = new Object();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private final CRC32 crc = new CRC32();
+    private long records;
+
+    // guards the journal file and the records that failed to be written
+    private final Object fileLock = new Object();
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private byte[] unsynced;
+    private long syncedLength;
+    private final ScheduledExecutorService syncer;
+
+    public JournalBasedResumableProcessor() throws IOException {
+        this(new File(TMP, storeName), DEFAULT_SYNC_INTERVAL_MS);
+    }
+
+    /**
+     * @param journal the journal file, created if missing
+     * @param syncIntervalInMs how often changes are written and fsynced, 0 for every change
+     * @throws IOException if the journal can't be read or opened
+     */
+    public JournalBasedResumableProcessor(File journal, long syncIntervalInMs) throws IOException {
+        this.journal = journal;
+
+        File dir = journal.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory: " + dir.getAbsolutePath());
+        }
+
+        long validLength = replay();
+        open();
+        if (channel.size() > validLength) {
+            log.warn("Discarding {} bytes of incomplete records at the end of {}", channel.size() - validLength, journal);
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+        syncedLength = validLength;
+
+        if (syncIntervalInMs > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "AsyncHttpClient-ResumableJournal");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            syncer.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    sync();
+                }
+            }, syncIntervalInMs, syncIntervalInMs, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, long transferredBytes) {
+        synchronized (recordLock) {
+            index.put(key, transferredBytes);
+            append(PUT, key, transferredBytes);
+        }
+        if (syncer == null) {
+            sync();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(String key) {
+        if (key != null) {
+            synchronized (recordLock) {
+                if (index.remove(key) != null) {
+                    append(REMOVE, key, 0L);
+                }
+            }
+            if (syncer == null) {
+                sync();
+            }
+        }
+    }
+
+    /**
+     * Write and fsync the pending changes. The index is already in the journal, so the map is ignored.
+     */
+    @Override
+    public void save(Map<String, Long> map) {
+        sync();
+    }
+
+    /**
+     * @return a snapshot of the index
+     */
+    @Override
+    public Map<String, Long> load() {
+        return new HashMap<String, Long>(index);
+    }
+
+    /**
+     * Write the pending changes and close the journal.
+     *
+     * @throws IOException if the pending changes can't be written, the journal is closed anyway
+     */
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        synchronized (fileLock) {
+            try {
+                write();
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Write and fsync the pending changes, and compact the journal if needed. Changes that fail to be written are kept and
+     * written again by the next call.
+     */
+    public void sync() {
+        synchronized (fileLock) {
+            try {
+                write();
+            } catch (Throwable e) {
+                log.warn("Unable to write " + journal.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        if (needsCompaction()) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // the records still go to the old journal
+                log.warn("Unable to compact " + journal.getAbsolutePath(), e);
+            }
+        }
+
+        byte[] bytes;
+        synchronized (recordLock) {
+            if (pending.size() == 0 && unsynced == null) {
+                return;
+            }
+            bytes = pending.toByteArray();
+            pending.reset();
+        }
+        if (unsynced != null) {
+            byte[] all = new byte[unsynced.length + bytes.length];
+            System.arraycopy(unsynced, 0, all, 0, unsynced.length);
+            System.arraycopy(bytes, 0, all, unsynced.length, bytes.length);
+            bytes = all;
+        }
+
+        // kept until they're on disk, a partial write is overwritten by the next try
+        unsynced = bytes;
+        channel.position(syncedLength);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        syncedLength += bytes.length;
+        unsynced = null;
+    }
+
+    private boolean needsCompaction() {
+        synchronized (recordLock) {
+            return records > MIN_RECORDS_BEFORE_COMPACTION && records > 2L * index.size();
+        }
+    }
+
+    private void compact() throws IOException {
+        Map<String, Long> snapshot;
+        int supersededBytes;
+        long supersededRecords;
+        synchronized (recordLock) {
+            // the snapshot supersedes the records so far, but they're only dropped once it has replaced the journal
+            snapshot = new HashMap<String, Long>(index);
+            supersededBytes = pending.size();
+            supersededRecords = records;
+        }
+
+        File compacted = new File(journal.getPath() + ".compact");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        CRC32 snapshotCrc = new CRC32();
+        for (Map.Entry<String, Long> e : snapshot.entrySet()) {
+            writeRecord(out, snapshotCrc, PUT, e.getKey(), e.getValue());
+        }
+        RandomAccessFile raf = new RandomAccessFile(compacted, "rw");
+        try {
+            raf.setLength(0L);
+            raf.write(bytes.toByteArray());
+            raf.getChannel().force(false);
+        } finally {
+            raf.close();
+        }
+
+        boolean replaced = false;
+        file.close();
+        try {
+            replaced = rename(compacted, journal);
+        } finally {
+            // the new journal, or the old one if it couldn't be replaced
+            open();
+        }
+        if (replaced) {
+            syncedLength = channel.size();
+            unsynced = null;
+        } else if (channel.size() < syncedLength) {
+            // the old journal was deleted, the snapshot is written to the new one like pending records
+            syncedLength = 0L;
+            unsynced = bytes.toByteArray();
+        } else {
+            compacted.delete();
+            throw new IOException("Unable to replace " + journal.getAbsolutePath());
+        }
+
+        synchronized (recordLock) {
+            byte[] later = pending.toByteArray();
+            pending.reset();
+            pending.write(later, supersededBytes, later.length - supersededBytes);
+            records = snapshot.size() + records - supersededRecords;
+        }
+        log.debug("Compacted {} to {} entries", journal, snapshot.size());
+    }
+
+    /**
+     * Replace the journal with the compacted file. Package private, so the tests can make it fail.
+     */
+    boolean rename(File compacted, File journal) {
+        return compacted.renameTo(journal) || (journal.delete() && compacted.renameTo(journal));
+    }
+
+    private void open() throws IOException {
+        file = new RandomAccessFile(journal, "rw");
+        channel = file.getChannel();
+    }
+
+    private void append(byte op, String key, long value) {
+        try {
+            writeRecord(pendingOut, crc, op, key, value);
+            records++;
+        } catch (IOException e) {
+            // can't happen with a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, CRC32 crc, byte op, String key, long value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(op);
+        out.writeInt(keyBytes.length);
+        out.write(keyBytes);
+        out.writeLong(value);
+        out.writeInt(checksum(crc, op, keyBytes, value));
+    }
+
+    private static int checksum(CRC32 crc, byte op, byte[] keyBytes, long value) {
+        crc.reset();
+        crc.update(op);
+        crc.update(keyBytes);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (value >>> shift));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return the length of the valid records
+     */
+    private long replay() throws IOException {
+        if (!journal.exists()) {
+            return 0L;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+        CRC32 replayCrc = new CRC32();
+        long validLength = 0L;
+        try {
+            while (true) {
+                byte op = in.readByte();
+                int keyLength = in.readInt();
+                if ((op != PUT && op != REMOVE) || keyLength < 0 || keyLength > journal.length()) {
+                    break;
+                }
+                byte[] keyBytes = new byte[keyLength];
+                in.readFully(keyBytes);
+                long value = in.readLong();
+                int checksum = in.readInt();
+
+                if (checksum != checksum(replayCrc, op, keyBytes, value)) {
+                    break;
+                }
+
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                if (op == PUT) {
+                    index.put(key, value);
+                } else {
+                    index.remove(key);
+                }
+                records++;
+                validLength += 1 + 4 + keyLength + 8 + 4;
+            }
+        } catch (EOFException ignored) {
+            // incomplete last record
+        } finally {
+            in.close();
+        }
+        log.debug("Loaded {} entries from {}", index.size(), journal);
+        return validLength;
+    }
+}
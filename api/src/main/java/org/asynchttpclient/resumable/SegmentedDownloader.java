@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.resumable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.HttpResponseBodyPart;
+import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.extra.FileChannelAsyncHandler;
+import org.asynchttpclient.resumable.ResumableAsyncHandler.ResumableProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads a resource into a file with several concurrent HTTP Range requests.
+ * <p/>
+ * The resource is first probed with a HEAD request. If the server announces a Content-Length and <code>Accept-Ranges: bytes</code>,
+ * the file is split into segments that are downloaded concurrently, each one on its own pooled connection, and written at their
+ * offset into the file with a {@link FileChannelAsyncHandler}. Otherwise, the resource is downloaded with a single GET.
+ * <p/>
+ * A segment that fails or ends early is retried from its last written byte, up to <code>maxRetries</code> times. The progress
+ * of every segment is recorded into a {@link ResumableProcessor}, so calling {@link #download(Request)} again for the same
+ * url, file and number of segments after an interruption only fetches the missing bytes.
+ * <p/>
+ * The client's maximum number of connections per host should allow for the number of segments.
+ */
+public class SegmentedDownloader {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(SegmentedDownloader.class);
+
+    private final AsyncHttpClient client;
+    private final File file;
+    private final int segments;
+    private final int maxRetries;
+    private final ResumableProcessor resumableProcessor;
+    private final Map<String, Long> progress = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * @param client the client used for executing the requests
+     * @param file the file to write to
+     * @param segments the number of concurrent Range requests
+     * @param maxRetries the number of times a single segment can be retried
+     * @param resumableProcessor where the progress of the segments is recorded, may be null
+     */
+    public SegmentedDownloader(AsyncHttpClient client, File file, int segments, int maxRetries, ResumableProcessor resumableProcessor) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("segments must be at least 1");
+        }
+        this.client = client;
+        this.file = file;
+        this.segments = segments;
+        this.maxRetries = maxRetries;
+        this.resumableProcessor = resumableProcessor;
+        if (resumableProcessor != null) {
+            progress.putAll(resumableProcessor.load());
+        }
+    }
+
+    /**
+     * Download the resource, blocking until all the segments are complete.
+     *
+     * @param request a GET {@link Request}
+     * @return the number of bytes of the resource
+     * @throws IOException if a segment still fails after all its retries
+     * @throws InterruptedException if the calling thread is interrupted, the progress is saved before
+     */
+    public long download(Request request) throws IOException, InterruptedException {
+        long contentLength = probe(request);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (contentLength < 0L) {
+                LOGGER.debug("{} doesn't support Range requests, downloading with a single request", request.getUrl());
+                raf.setLength(0L);
+                FileChannelAsyncHandler handler = new FileChannelAsyncHandler(channel);
+                Response response = get(client.executeRequest(request, handler));
+                if (!isSuccess(response.getStatusCode())) {
+                    throw new IOException("Unexpected status " + response.getStatusCode() + " for " + request.getUrl());
+                }
+                return handler.getBytesWritten();
+            }
+
+            raf.setLength(contentLength);
+            List<Segment> all = segments(request.getUrl(), contentLength);
+            try {
+                downloadSegments(request, channel, all);
+            } finally {
+                saveProgress();
+            }
+            // the download is over, forget about the segments
+            for (Segment segment : all) {
+                progress.remove(segment.key);
+                if (resumableProcessor != null) {
+                    resumableProcessor.remove(segment.key);
+                }
+            }
+            saveProgress();
+            return contentLength;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void downloadSegments(Request request, FileChannel channel, List<Segment> all) throws IOException, InterruptedException {
+        List<Segment> pending = new ArrayList<Segment>();
+        for (Segment segment : all) {
+            if (!segment.isComplete()) {
+                pending.add(segment);
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            List<ListenableFuture<Response>> futures = new ArrayList<ListenableFuture<Response>>(pending.size());
+            for (Segment segment : pending) {
+                futures.add(client.executeRequest(segment.request(request), new SegmentHandler(channel, segment)));
+            }
+
+            List<Segment> failed = new ArrayList<Segment>();
+            IOException exhausted = null;
+            for (int i = 0; i < pending.size(); i++) {
+                Segment segment = pending.get(i);
+                Throwable cause = null;
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    cause = e.getCause();
+                } catch (InterruptedException e) {
+                    for (ListenableFuture<Response> future : futures) {
+                        future.cancel(true);
+                    }
+                    throw e;
+                }
+
+                if (segment.isComplete()) {
+                    LOGGER.debug("Segment {} complete", segment.key);
+                } else if (++segment.retries > maxRetries) {
+                    // wait for the other segments so their progress is recorded
+                    if (exhausted == null) {
+                        exhausted = new IOException("Segment " + segment.key + " failed after " + maxRetries + " retries", cause);
+                    }
+                } else {
+                    LOGGER.debug("Retrying segment {} from position {}", segment.key, segment.position());
+                    failed.add(segment);
+                }
+            }
+            // keep the progress before retrying
+            saveProgress();
+            if (exhausted != null) {
+                throw exhausted;
+            }
+            pending = failed;
+        }
+    }
+
+    private long probe(Request request) throws IOException, InterruptedException {
+        Response response = get(client.executeRequest(new RequestBuilder(request).setMethod("HEAD").build()));
+        if (!isSuccess(response.getStatusCode())) {
+            throw new IOException("Unexpected status " + response.getStatusCode() + " for " + request.getUrl());
+        }
+        String acceptRanges = response.getHeader("Accept-Ranges");
+        String contentLength = response.getHeader("Content-Length");
+        if (contentLength == null || acceptRanges == null || !acceptRanges.trim().equalsIgnoreCase("bytes")) {
+            return -1L;
+        }
+        return Long.parseLong(contentLength.trim());
+    }
+
+    private List<Segment> segments(String url, long contentLength) {
+        int count = (int) Math.max(1L, Math.min(segments, contentLength));
+        long segmentLength = contentLength / count;
+        List<Segment> list = new ArrayList<Segment>(count);
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentLength;
+            long end = i == count - 1 ? contentLength - 1 : start + segmentLength - 1;
+            Segment segment = new Segment(url, start, end);
+            Long transferred = progress.get(segment.key);
+            if (transferred != null) {
+                segment.transferred = Math.min(transferred, segment.length());
+            }
+            list.add(segment);
+        }
+        return list;
+    }
+
+    private void saveProgress() {
+        if (resumableProcessor != null) {
+            resumableProcessor.save(progress);
+        }
+    }
+
+    private static boolean isSuccess(int statusCode) {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    private static <T> T get(ListenableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static class Segment {
+
+        private final String key;
+        private final long start;
+        private final long end;
+        private volatile long transferred;
+        private int retries;
+
+        private Segment(String url, long start, long end) {
+            this.key = url + "#" + start + "-" + end;
+            this.start = start;
+            this.end = end;
+        }
+
+        private long length() {
+            return end - start + 1;
+        }
+
+        private long position() {
+            return start + transferred;
+        }
+
+        private boolean isComplete() {
+            return transferred >= length();
+        }
+
+        private Request request(Request request) {
+            return new RequestBuilder(request).setHeader("Range", "bytes=" + position() + "-" + end).build();
+        }
+    }
+
+    private class SegmentHandler extends FileChannelAsyncHandler {
+
+        private final Segment segment;
+        private final long alreadyTransferred;
+
+        private SegmentHandler(FileChannel channel, Segment segment) {
+            super(channel, segment.position(), DEFAULT_BATCH_SIZE, false);
+            this.segment = segment;
+            this.alreadyTransferred = segment.transferred;
+        }
+
+        @Override
+        public STATE onStatusReceived(HttpResponseStatus status) throws Exception {
+            super.onStatusReceived(status);
+            // a 200 means the Range header was ignored and the whole resource is coming
+            return status.getStatusCode() == 206 ? STATE.CONTINUE : STATE.ABORT;
+        }
+
+        @Override
+        public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+            STATE state = super.onBodyPartReceived(bodyPart);
+            record();
+            return state;
+        }
+
+        @Override
+        public Response onCompleted() throws Exception {
+            Response response = super.onCompleted();
+            record();
+            return response;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+            super.onThrowable(t);
+            record();
+        }
+
+        private void record() {
+            // only count the bytes actually written into the file, not the ones still batched
+            segment.transferred = alreadyTransferred + getBytesWritten();
+            progress.put(segment.key, segment.transferred);
+            if (resumableProcessor != null) {
+                resumableProcessor.put(segment.key, segment.transferred);
+            }
+        }
+    }
+}
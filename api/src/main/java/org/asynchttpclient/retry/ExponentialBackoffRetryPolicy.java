@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.retry;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.asynchttpclient.Request;
+
+/**
+ * A {@link RetryPolicy} retrying idempotent requests that failed with an {@link IOException} or a given status, after an exponential
+ * backoff with jitter, as long as the {@link RetryBudget} of their host allows it.
+ * <p/>
+ * The n-th retry waits <code>initialDelayInMs * multiplier^n</code>, capped at <code>maxDelayInMs</code>, minus a random fraction of
+ * up to <code>jitter</code> of it, so the retries of many clients don't all hit the server at once.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    private final int maxRetries;
+    private final long initialDelayInMs;
+    private final long maxDelayInMs;
+    private final double multiplier;
+    private final double jitter;
+    private final Set<String> methods;
+    private final Set<Integer> statusCodes;
+    private final RetryBudget retryBudget;
+    private final Random random = new Random();
+
+    private ExponentialBackoffRetryPolicy(Builder builder) {
+        this.maxRetries = builder.maxRetries;
+        this.initialDelayInMs = builder.initialDelayInMs;
+        this.maxDelayInMs = builder.maxDelayInMs;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.methods = Collections.unmodifiableSet(new HashSet<String>(builder.methods));
+        this.statusCodes = Collections.unmodifiableSet(new HashSet<Integer>(builder.statusCodes));
+        this.retryBudget = builder.retryBudget;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onRequest(Request request) {
+        if (retryBudget != null) {
+            retryBudget.deposit(request);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long retryDelayInMs(Request request, int statusCode, Throwable cause, int retries) {
+        if (retries >= maxRetries || !methods.contains(request.getMethod())) {
+            return -1L;
+        }
+        if (cause != null ? !(cause instanceof IOException) : !statusCodes.contains(statusCode)) {
+            return -1L;
+        }
+        if (retryBudget != null && !retryBudget.tryWithdraw(request)) {
+            return -1L;
+        }
+        return backoff(retries);
+    }
+
+    /**
+     * @return the delay before the given retry, jitter included
+     */
+    protected long backoff(int retries) {
+        double delay = Math.min(maxDelayInMs, initialDelayInMs * Math.pow(multiplier, retries));
+        double randomFactor;
+        synchronized (random) {
+            randomFactor = random.nextDouble();
+        }
+        return (long) (delay * (1.0 - jitter * randomFactor));
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public Set<String> getMethods() {
+        return methods;
+    }
+
+    public Set<Integer> getStatusCodes() {
+        return statusCodes;
+    }
+
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    public static class Builder {
+        private int maxRetries = 3;
+        private long initialDelayInMs = 100L;
+        private long maxDelayInMs = 10000L;
+        private double multiplier = 2.0;
+        private double jitter = 0.5;
+        private Set<String> methods = new HashSet<String>(Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE"));
+        private Set<Integer> statusCodes = new HashSet<Integer>(Arrays.asList(502, 503, 504));
+        private RetryBudget retryBudget = new RetryBudget(0.2, 10.0, 100);
+
+        /**
+         * Set the maximum number of retries of a request, still capped by the client's maximum number of retries.
+         */
+        public Builder setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder setInitialDelayInMs(long initialDelayInMs) {
+            this.initialDelayInMs = initialDelayInMs;
+            return this;
+        }
+
+        public Builder setMaxDelayInMs(long maxDelayInMs) {
+            this.maxDelayInMs = maxDelayInMs;
+            return this;
+        }
+
+        public Builder setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Set the maximum fraction of the delay that's randomly removed, 0 for no jitter and 1 for a delay anywhere between 0 and the
+         * backoff.
+         */
+        public Builder setJitter(double jitter) {
+            if (jitter < 0.0 || jitter > 1.0) {
+                throw new IllegalArgumentException("jitter must be between 0 and 1");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Set the methods that can be retried, the idempotent ones by default.
+         */
+        public Builder setMethods(String... methods) {
+            this.methods = new HashSet<String>(Arrays.asList(methods));
+            return this;
+        }
+
+        /**
+         * Set the response status codes that are retried, 502, 503 and 504 by default.
+         */
+        public Builder setStatusCodes(Integer... statusCodes) {
+            this.statusCodes = new HashSet<Integer>(Arrays.asList(statusCodes));
+            return this;
+        }
+
+        /**
+         * Set the budget limiting the retries to each host, null for no limit.
+         */
+        public Builder setRetryBudget(RetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+
+        public ExponentialBackoffRetryPolicy build() {
+            return new ExponentialBackoffRetryPolicy(this);
+        }
+    }
+}
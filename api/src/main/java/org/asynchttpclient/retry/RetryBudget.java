@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.retry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.asynchttpclient.Request;
+import org.asynchttpclient.extra.TokenBucket;
+
+/**
+ * Caps the retries sent to each host to a fraction of its live traffic, so retries can't multiply the load of a struggling server.
+ * <p/>
+ * Every request deposits <code>retryRatio</code> of a token into its host's account, which can hold up to <code>maxBalance</code>
+ * tokens, and every retry withdraws a whole one. A few retries per second are always allowed, so hosts with little traffic can
+ * still retry. Hosts are identified with the request's {@link org.asynchttpclient.ConnectionPoolKeyStrategy} key. The accounts are
+ * lock free.
+ */
+public class RetryBudget {
+
+    // balances are in thousandths of a token
+    private static final long TOKEN = 1000L;
+
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<String, Account>();
+    private final long deposit;
+    private final long maxBalance;
+    private final double minRetriesPerSecond;
+
+    /**
+     * @param retryRatio the fraction of the live requests that can be retried, e.g. 0.1 for 10%
+     * @param minRetriesPerSecond the number of retries per second allowed regardless of the traffic, 0 for none
+     * @param maxBalance the maximum number of retries that can be saved up
+     */
+    public RetryBudget(double retryRatio, double minRetriesPerSecond, int maxBalance) {
+        if (retryRatio < 0.0) {
+            throw new IllegalArgumentException("retryRatio must be positive");
+        }
+        this.deposit = (long) (retryRatio * TOKEN);
+        this.maxBalance = maxBalance * TOKEN;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+    }
+
+    /**
+     * Record a live request.
+     */
+    public void deposit(Request request) {
+        if (deposit > 0L) {
+            getOrCreateAccount(key(request)).deposit();
+        }
+    }
+
+    /**
+     * Take a retry out of the budget of the request's host.
+     *
+     * @return false if the budget is exhausted and the request must not be retried
+     */
+    public boolean tryWithdraw(Request request) {
+        return getOrCreateAccount(key(request)).tryWithdraw();
+    }
+
+    /**
+     * @return the number of retries the request's host can currently spend, not counting the minimum rate
+     */
+    public double getBalance(Request request) {
+        Account account = accounts.get(key(request));
+        return account == null ? 0.0 : account.balance.get() / (double) TOKEN;
+    }
+
+    private Account getOrCreateAccount(String key) {
+        Account account = accounts.get(key);
+        if (account == null) {
+            Account newAccount = new Account();
+            account = accounts.putIfAbsent(key, newAccount);
+            if (account == null) {
+                account = newAccount;
+            }
+        }
+        return account;
+    }
+
+    private static String key(Request request) {
+        return request.getConnectionPoolKeyStrategy().getKey(request.getURI());
+    }
+
+    private class Account {
+        private final AtomicLong balance = new AtomicLong();
+        private final TokenBucket minRate = minRetriesPerSecond > 0.0 ? new TokenBucket(minRetriesPerSecond, 1) : null;
+
+        private void deposit() {
+            while (true) {
+                long current = balance.get();
+                if (current >= maxBalance || balance.compareAndSet(current, Math.min(maxBalance, current + deposit))) {
+                    return;
+                }
+            }
+        }
+
+        private boolean tryWithdraw() {
+            if (minRate != null && minRate.tryAcquire()) {
+                return true;
+            }
+            while (true) {
+                long current = balance.get();
+                if (current < TOKEN) {
+                    return false;
+                }
+                if (balance.compareAndSet(current, current - TOKEN)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
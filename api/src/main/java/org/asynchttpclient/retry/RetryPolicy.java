@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.retry;
+
+import org.asynchttpclient.Request;
+
+/**
+ * Decides if, and when, a failed request is retried.
+ * <p/>
+ * Without a policy, the providers retry requests on a closed connection right away, up to
+ * {@link org.asynchttpclient.AsyncHttpClientConfig#getMaxRequestRetry()} times. With one, the policy is asked before every retry,
+ * and may also retry requests on some response statuses. Retries are delayed with the client's
+ * {@link java.util.concurrent.ScheduledExecutorService}, and never exceed the client's maximum number of retries.
+ */
+public interface RetryPolicy {
+
+    /**
+     * Invoked for every request executed by the client, retries excluded, e.g. for funding a {@link RetryBudget}.
+     *
+     * @param request the request about to be sent
+     */
+    void onRequest(Request request);
+
+    /**
+     * @param request the request that failed
+     * @param statusCode the response status code, or -1 if the request failed with an exception
+     * @param cause the exception, or null if a response was received
+     * @param retries how many times the request was already retried
+     * @return how long to wait before retrying in milliseconds, 0 to retry right away, or a negative value for not retrying
+     */
+    long retryDelayInMs(Request request, int statusCode, Throwable cause, int retries);
+}
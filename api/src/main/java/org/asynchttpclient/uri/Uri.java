@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.uri;
+
+import static org.asynchttpclient.util.MiscUtil.isNonEmpty;
+
+import java.net.URI;
+
+import org.asynchttpclient.util.AsyncHttpProviderUtils;
+
+/**
+ * An immutable request URI, split into its components once, and caching the values the providers derive from it for
+ * every request: the url, the request target, the base url used as the default connection pool key, and the
+ * equivalent {@link URI}.
+ * <p/>
+ * The components are kept as they are, already encoded. The path is never empty, a missing path is "/".
+ */
+public final class Uri {
+
+    private final String scheme;
+    private final String authority;
+    private final String host;
+    private final int port;
+    private final String path;
+    private final String query;
+
+    private final int explicitPort;
+    private final String url;
+    private final String requestTarget;
+    private final String baseUrl;
+    private volatile URI javaNetUri;
+
+    /**
+     * @param scheme the scheme, http, https, ws or wss
+     * @param authority the authority, i.e. the host, the port and the user info, as they appear in the url
+     * @param host the host
+     * @param port the port, or -1 for the default port of the scheme
+     * @param path the encoded path, "/" if empty
+     * @param query the encoded query, without the '?', or null
+     */
+    public Uri(String scheme, String authority, String host, int port, String path, String query) {
+        if (scheme == null || !scheme.equalsIgnoreCase("http") && !scheme.equalsIgnoreCase("https") && !scheme.equalsIgnoreCase("ws")
+                && !scheme.equalsIgnoreCase("wss")) {
+            throw new IllegalArgumentException("The URI scheme, of the URI " + scheme + "://" + authority
+                    + ", must be equal (ignoring case) to 'http', 'https', 'ws', or 'wss'");
+        }
+        this.scheme = scheme;
+        this.authority = authority;
+        this.host = host != null ? host : authority;
+        this.port = port;
+        this.path = isNonEmpty(path) ? path : "/";
+        this.query = query;
+
+        explicitPort = port != -1 ? port : scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("ws") ? 80 : 443;
+        requestTarget = query != null ? this.path + "?" + query : this.path;
+        String schemeAndAuthority = scheme + "://" + authority;
+        url = schemeAndAuthority + requestTarget;
+        baseUrl = port != -1 ? schemeAndAuthority : schemeAndAuthority + ":" + explicitPort;
+    }
+
+    /**
+     * Split a {@link URI}, which is kept as the equivalent {@link URI} when it already has a path.
+     */
+    public static Uri create(URI uri) {
+        Uri u = new Uri(uri.getScheme(), uri.getAuthority(), uri.getHost(), uri.getPort(), uri.getRawPath(), uri.getRawQuery());
+        if (u.url.equals(uri.toString())) {
+            u.javaNetUri = uri;
+        }
+        return u;
+    }
+
+    public static Uri create(String url) {
+        return create(URI.create(url));
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+
+    public String getAuthority() {
+        return authority;
+    }
+
+    /**
+     * @return the host, or the authority if the host can't be parsed out of it
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the port of the url, or -1 if there's none
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return the port of the url, or the default port of the scheme if there's none
+     */
+    public int getExplicitPort() {
+        return explicitPort;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public boolean isSecure() {
+        return scheme.equalsIgnoreCase("https") || scheme.equalsIgnoreCase("wss");
+    }
+
+    public boolean isWebSocket() {
+        return scheme.equalsIgnoreCase("ws") || scheme.equalsIgnoreCase("wss");
+    }
+
+    /**
+     * @return the path and the query, as sent in the request line
+     */
+    public String getRequestTarget() {
+        return requestTarget;
+    }
+
+    /**
+     * @return the scheme, the authority and the port, even if it's the default one, as computed by
+     *         {@link AsyncHttpProviderUtils#getBaseUrl(URI)}
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String toUrl() {
+        return url;
+    }
+
+    /**
+     * @return the equivalent {@link URI}, parsed on the first call only
+     */
+    public URI toJavaNetURI() {
+        // concurrent first calls may parse more than once, which is harmless
+        URI u = javaNetUri;
+        if (u == null) {
+            u = URI.create(url);
+            javaNetUri = u;
+        }
+        return u;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Uri && url.equals(((Uri) o).url);
+    }
+
+    @Override
+    public int hashCode() {
+        return url.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
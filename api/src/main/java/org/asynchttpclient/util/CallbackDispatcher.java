@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.CallbackExecutionPolicy;
+
+/**
+ * Runs the completion callbacks of a provider according to the {@link CallbackExecutionPolicy} of its config.
+ * <p/>
+ * When the policy isn't {@link CallbackExecutionPolicy#IO_THREAD} and no callback executor is configured, the dispatcher creates
+ * a {@link CallbackExecutor} and shuts it down on {@link #close()}. A callback rejected by the executor, e.g. after it has been
+ * shut down, runs on the calling thread so the future is always completed.
+ */
+public class CallbackDispatcher {
+
+    private final CallbackExecutionPolicy policy;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final ThreadLocal<SerialExecutor> serialExecutors;
+
+    public CallbackDispatcher(AsyncHttpClientConfig config) {
+        CallbackExecutionPolicy policy = config.getCallbackExecutionPolicy();
+        this.policy = policy != null ? policy : CallbackExecutionPolicy.IO_THREAD;
+
+        if (this.policy == CallbackExecutionPolicy.IO_THREAD) {
+            executor = null;
+            ownsExecutor = false;
+        } else if (config.getCallbackExecutor() != null) {
+            executor = config.getCallbackExecutor();
+            ownsExecutor = false;
+        } else {
+            executor = new CallbackExecutor();
+            ownsExecutor = true;
+        }
+
+        if (this.policy == CallbackExecutionPolicy.ORDERED) {
+            // one queue per I/O thread, so the callbacks of a thread run in the order it read the responses
+            serialExecutors = new ThreadLocal<SerialExecutor>() {
+                @Override
+                protected SerialExecutor initialValue() {
+                    return new SerialExecutor(executor);
+                }
+            };
+        } else {
+            serialExecutors = null;
+        }
+    }
+
+    /**
+     * @return true if the callbacks run on the calling thread
+     */
+    public boolean isInline() {
+        return policy == CallbackExecutionPolicy.IO_THREAD;
+    }
+
+    /**
+     * @return the executor the callbacks are dispatched to, or null if they run on the calling thread
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void dispatch(Runnable callback) {
+        switch (policy) {
+        case IO_THREAD:
+            callback.run();
+            break;
+        case ORDERED:
+            serialExecutors.get().execute(callback);
+            break;
+        default:
+            try {
+                executor.execute(callback);
+            } catch (RejectedExecutionException e) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * Shut down the executor if it was created by this dispatcher. Pending callbacks still run.
+     */
+    public void close() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.util;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded {@link ThreadPoolExecutor} for running the callbacks off the I/O threads.
+ * <p/>
+ * Both the number of threads and the queue are bounded. Idle threads are stopped after a minute. Once the queue is full, the
+ * callbacks run on the submitting thread, which slows down the producer instead of growing the pool without limit or dropping
+ * them.
+ */
+public class CallbackExecutor extends ThreadPoolExecutor implements CallbackExecutorMXBean {
+
+    public static final int DEFAULT_MAX_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private final AtomicLong callerRunsCount = new AtomicLong();
+
+    public CallbackExecutor() {
+        this("AsyncHttpClient-Callback", DEFAULT_MAX_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @param maxThreads the maximum number of threads
+     * @param queueCapacity the maximum number of callbacks waiting for a thread
+     */
+    public CallbackExecutor(final String name, int maxThreads, int queueCapacity) {
+        super(maxThreads, maxThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        allowCoreThreadTimeOut(true);
+        setRejectedExecutionHandler(new RejectedExecutionHandler() {
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("Executor has been shutdown");
+                }
+                callerRunsCount.incrementAndGet();
+                r.run();
+            }
+        });
+    }
+
+    @Override
+    public int getQueueLength() {
+        return getQueue().size();
+    }
+
+    @Override
+    public int getQueueRemainingCapacity() {
+        return getQueue().remainingCapacity();
+    }
+
+    @Override
+    public long getCallerRunsCount() {
+        return callerRunsCount.get();
+    }
+}
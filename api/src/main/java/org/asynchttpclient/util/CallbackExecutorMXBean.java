@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.util;
+
+/**
+ * JMX view of a {@link CallbackExecutor}.
+ */
+public interface CallbackExecutorMXBean {
+
+    /**
+     * @return the number of callbacks waiting for a thread
+     */
+    int getQueueLength();
+
+    /**
+     * @return the number of callbacks that can still be queued before they run on the submitting thread
+     */
+    int getQueueRemainingCapacity();
+
+    /**
+     * @return the number of threads running a callback
+     */
+    int getActiveCount();
+
+    /**
+     * @return the current number of threads
+     */
+    int getPoolSize();
+
+    /**
+     * @return the maximum number of threads
+     */
+    int getMaximumPoolSize();
+
+    /**
+     * @return the number of callbacks run by the pool so far
+     */
+    long getCompletedTaskCount();
+
+    /**
+     * @return the number of callbacks that ran on the submitting thread because the queue was full
+     */
+    long getCallerRunsCount();
+}
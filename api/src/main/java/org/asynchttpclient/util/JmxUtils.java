@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.asynchttpclient.ConnectionPoolStats;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistry;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistryMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers the providers' MBeans in the platform {@link MBeanServer}. Failing to register is logged and otherwise ignored,
+ * so JMX never prevents a client from working.
+ */
+public class JmxUtils {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(JmxUtils.class);
+
+    public static final String DOMAIN = "org.asynchttpclient";
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private JmxUtils() {
+    }
+
+    /**
+     * Register the {@link ConnectionPoolStats} of a client as an MXBean.
+     * 
+     * @param provider the provider name, e.g. netty
+     * @param stats the pool statistics
+     * @return the name it was registered under, to be passed to {@link #unregister(ObjectName)}, or null if it couldn't be
+     *         registered
+     */
+    public static ObjectName registerConnectionPoolStats(String provider, ConnectionPoolStats stats) {
+        return register("ConnectionPool", provider, stats, ConnectionPoolStats.class);
+    }
+
+    /**
+     * Register the {@link CircuitBreakerRegistry} of a client as an MXBean.
+     * 
+     * @param provider the provider name, e.g. netty
+     * @param circuitBreakers the circuit breakers
+     * @return the name it was registered under, to be passed to {@link #unregister(ObjectName)}, or null if it couldn't be
+     *         registered
+     */
+    public static ObjectName registerCircuitBreakers(String provider, CircuitBreakerRegistryMXBean circuitBreakers) {
+        return register("CircuitBreakers", provider, circuitBreakers, CircuitBreakerRegistryMXBean.class);
+    }
+
+    /**
+     * Register the {@link CallbackExecutorMXBean} of a client.
+     * 
+     * @param provider the provider name, e.g. netty
+     * @param callbackExecutor the executor the callbacks run on
+     * @return the name it was registered under, to be passed to {@link #unregister(ObjectName)}, or null if it couldn't be
+     *         registered
+     */
+    public static ObjectName registerCallbackExecutor(String provider, CallbackExecutorMXBean callbackExecutor) {
+        return register("CallbackExecutor", provider, callbackExecutor, CallbackExecutorMXBean.class);
+    }
+
+    private static <T> ObjectName register(String type, String provider, T mbean, Class<T> mbeanInterface) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=" + type + ",provider=" + provider + ",name="
+                    + INSTANCES.incrementAndGet());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new StandardMBean(mbean, mbeanInterface, true), name);
+            return name;
+        } catch (Exception e) {
+            LOGGER.warn("Unable to register the " + type + " MBean", e);
+            return null;
+        } catch (LinkageError e) {
+            // e.g. on platforms without java.lang.management
+            LOGGER.debug("Unable to register the {} MBean", type, e);
+            return null;
+        }
+    }
+
+    /**
+     * Unregister an MBean registered by this class. Does nothing if the name is null.
+     */
+    public static void unregister(ObjectName name) {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (Exception e) {
+                LOGGER.debug("Unable to unregister MBean {}", name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link Executor} running its tasks one at a time, in submission order, on a shared {@link Executor}.
+ * <p/>
+ * At most one drain task is submitted to the shared executor at any time, and it runs all the tasks queued in the meantime.
+ */
+public class SerialExecutor implements Executor {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    // the number of queued tasks, the one that takes it from 0 schedules the drain
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Executor executor;
+
+    private final Runnable drain = new Runnable() {
+        public void run() {
+            do {
+                Runnable task = tasks.poll();
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    LOGGER.warn("Task failed", t);
+                }
+            } while (pending.decrementAndGet() > 0);
+        }
+    };
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        if (pending.getAndIncrement() == 0) {
+            try {
+                executor.execute(drain);
+            } catch (RejectedExecutionException e) {
+                // the shared executor is gone, don't lose the queued tasks
+                drain.run();
+            }
+        }
+    }
+
+    /**
+     * @return the number of tasks queued or running
+     */
+    public int getQueueLength() {
+        return pending.get();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which spreads its updates over several cells picked from the updating thread's id, so threads incrementing it
+ * concurrently rarely contend on the same cache line. Reading it sums all the cells.
+ * <p/>
+ * This is a lightweight take on Java 8's LongAdder, which isn't available on the Java versions supported here.
+ */
+public class StripedCounter {
+
+    // a cell is 8 longs apart from the next one, so two cells never share a 64 bytes cache line
+    private static final int PADDING_SHIFT = 3;
+    private static final int STRIPES;
+
+    static {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+            stripes <<= 1;
+        }
+        STRIPES = Math.min(stripes, 64);
+    }
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES << PADDING_SHIFT);
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(index(), delta);
+    }
+
+    /**
+     * @return the current value, which might miss some updates happening concurrently
+     */
+    public long sum() {
+        long sum = 0L;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i << PADDING_SHIFT);
+        }
+        return sum;
+    }
+
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        // thread ids are sequential, mix them so neighbours don't collide
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & (STRIPES - 1)) << PADDING_SHIFT;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient;
+
+import static org.testng.Assert.*;
+
+import java.net.InetAddress;
+import java.net.URI;
+
+import org.testng.annotations.Test;
+
+public class PoolKeyTest {
+
+    @Test(groups = "fast")
+    public void defaultKeyIsTheLegacyStringKey() throws Exception {
+        Request request = new RequestBuilder("GET").setUrl("http://example.com/a?b=c").build();
+        PoolKey poolKey = request.getPoolKey(null);
+        assertEquals(poolKey.getBaseUrl(), DefaultConnectionPoolStrategy.INSTANCE.getKey(new URI("http://example.com/a?b=c")));
+        assertEquals(poolKey.getConnectionKey(), "http://example.com:80");
+        assertEquals(poolKey.toString(), "http://example.com:80");
+    }
+
+    @Test(groups = "fast")
+    public void keyIsCachedPerProxy() {
+        ProxyServer proxy = new ProxyServer("proxy.example.com", 3128);
+        Request request = new RequestBuilder("GET").setUrl("https://example.com/a").build();
+
+        PoolKey direct = request.getPoolKey(null);
+        assertSame(request.getPoolKey(null), direct);
+
+        PoolKey proxied = request.getPoolKey(proxy);
+        assertSame(request.getPoolKey(proxy), proxied);
+        assertNotEquals(proxied, direct);
+        assertEquals(proxied.getBaseUrl(), "https://example.com:443");
+        assertEquals(proxied.getConnectionKey(), "http://proxy.example.com:3128");
+    }
+
+    @Test(groups = "fast")
+    public void keysOfTheSameHostAreEqual() throws Exception {
+        InetAddress localAddress = InetAddress.getByName("127.0.0.1");
+        PoolKey a = new RequestBuilder("GET").setUrl("http://example.com/a").setLocalInetAddress(localAddress).build().getPoolKey(null);
+        PoolKey b = new RequestBuilder("POST").setUrl("http://example.com:80/b?c=d").setLocalInetAddress(localAddress).build().getPoolKey(null);
+        PoolKey c = new RequestBuilder("GET").setUrl("http://example.com/a").build().getPoolKey(null);
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, c);
+        assertEquals(a.toString(), "http://example.com:80 from 127.0.0.1");
+    }
+
+    @Test(groups = "fast")
+    public void changingTheRequestResetsTheKey() {
+        RequestBuilder builder = new RequestBuilder("GET").setUrl("http://example.com/a");
+        PoolKey before = builder.build().getPoolKey(null);
+        PoolKey after = builder.setUrl("http://other.example.com/a").build().getPoolKey(null);
+        assertEquals(after.getBaseUrl(), "http://other.example.com:80");
+        assertNotEquals(after, before);
+    }
+
+    @Test(groups = "fast")
+    public void customStrategyKeysThePartition() {
+        ConnectionPoolKeyStrategy perHost = new ConnectionPoolKeyStrategy() {
+            public String getKey(URI uri) {
+                return uri.getHost();
+            }
+        };
+        PoolKey a = new RequestBuilder("GET").setUrl("http://example.com/a").setConnectionPoolKeyStrategy(perHost).build().getPoolKey(null);
+        PoolKey b = new RequestBuilder("GET").setUrl("https://example.com:8443/b").setConnectionPoolKeyStrategy(perHost).build()
+                .getPoolKey(new ProxyServer("proxy.example.com", 3128));
+
+        assertEquals(a.getBaseUrl(), "example.com");
+        assertEquals(b.getBaseUrl(), "example.com");
+        assertEquals(b.getConnectionKey(), "proxy.example.com");
+    }
+}
@@ -29,6 +29,8 @@ import javax.servlet.http.HttpServletResponse;
 import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.AsyncHttpClientConfig.Builder;
 import org.asynchttpclient.Response;
+import org.asynchttpclient.multipart.FilePart;
+import org.asynchttpclient.multipart.StringPart;
 import org.testng.annotations.Test;
 
 public abstract class BasicHttpsTest extends AbstractBasicHttpsTest {
@@ -51,6 +53,25 @@ public abstract class BasicHttpsTest extends AbstractBasicHttpsTest {
         }
     }
 
+    @Test(groups = { "standalone", "default_provider" })
+    public void multipartPostTest() throws Exception {
+
+        final AsyncHttpClient client = getAsyncHttpClient(new Builder().setSSLContext(createSSLContext(new AtomicBoolean(true))).build());
+        try {
+            Response resp = client.preparePost(getTargetUrl())//
+                    .addBodyPart(new StringPart("name", "value", "UTF-8"))//
+                    .addBodyPart(new FilePart("file", SIMPLE_TEXT_FILE, "text/plain", "UTF-8"))//
+                    .execute().get(TIMEOUT, TimeUnit.SECONDS);
+            assertNotNull(resp);
+            assertEquals(resp.getStatusCode(), HttpServletResponse.SC_OK);
+            String body = resp.getResponseBody();
+            assertTrue(body.contains("value"));
+            assertTrue(body.contains(SIMPLE_TEXT_FILE_STRING));
+        } finally {
+            client.close();
+        }
+    }
+
     @Test(groups = { "standalone", "default_provider" })
     public void multipleSSLRequestsTest() throws Exception {
         final AsyncHttpClient c = getAsyncHttpClient(new Builder().setSSLContext(createSSLContext(new AtomicBoolean(true))).build());
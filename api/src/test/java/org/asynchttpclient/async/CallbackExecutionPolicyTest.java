@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.asynchttpclient.AsyncCompletionHandler;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.CallbackExecutionPolicy;
+import org.asynchttpclient.Response;
+import org.testng.annotations.Test;
+
+public abstract class CallbackExecutionPolicyTest extends AbstractBasicTest {
+
+    private String completingThread(AsyncHttpClientConfig config) throws Exception {
+        AsyncHttpClient client = getAsyncHttpClient(config);
+        try {
+            final AtomicReference<String> thread = new AtomicReference<String>();
+            Response response = client.prepareGet(getTargetUrl()).execute(new AsyncCompletionHandler<Response>() {
+                @Override
+                public Response onCompleted(Response response) throws Exception {
+                    thread.set(Thread.currentThread().getName());
+                    return response;
+                }
+            }).get();
+            assertEquals(response.getStatusCode(), 200);
+            return thread.get();
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void completesOnIoThreadByDefault() throws Exception {
+        String thread = completingThread(new AsyncHttpClientConfig.Builder().build());
+        assertNotNull(thread);
+        assertFalse(thread.startsWith("AsyncHttpClient-Callback"), thread);
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void completesOnDefaultCallbackExecutor() throws Exception {
+        for (CallbackExecutionPolicy policy : new CallbackExecutionPolicy[] { CallbackExecutionPolicy.POOLED, CallbackExecutionPolicy.ORDERED }) {
+            String thread = completingThread(new AsyncHttpClientConfig.Builder().setCallbackExecutionPolicy(policy).build());
+            assertNotNull(thread, policy.name());
+            assertTrue(thread.startsWith("AsyncHttpClient-Callback"), policy + " completed on " + thread);
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void completesOnProvidedExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "provided-callback");
+            }
+        });
+        try {
+            String thread = completingThread(new AsyncHttpClientConfig.Builder().setCallbackExecutionPolicy(CallbackExecutionPolicy.POOLED)
+                    .setCallbackExecutor(executor).build());
+            assertEquals(thread, "provided-callback");
+            // not owned by the client
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
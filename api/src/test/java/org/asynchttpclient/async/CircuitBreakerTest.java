@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.asynchttpclient.async.util.TestUtils.findFreePort;
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.DefaultConnectionPoolStrategy;
+import org.asynchttpclient.circuitbreaker.CircuitBreaker;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerOpenException;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistry;
+import org.testng.annotations.Test;
+
+public abstract class CircuitBreakerTest extends AbstractBasicTest {
+
+    private static Throwable failure(AsyncHttpClient client, String url) throws InterruptedException {
+        try {
+            client.prepareGet(url).execute().get();
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (IOException e) {
+            return e;
+        }
+        fail("Request to " + url + " should have failed");
+        return null;
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void failsFastOnceOpen() throws Exception {
+        CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry.Builder().setFailureThreshold(2).setOpenDurationInMs(60000)
+                .build();
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setCircuitBreakerRegistry(circuitBreakers).build());
+        try {
+            // nothing listens there
+            String url = "http://127.0.0.1:" + findFreePort() + "/foo/test";
+            for (int i = 0; i < 2; i++) {
+                Throwable t = failure(client, url);
+                assertTrue(t instanceof ConnectException, "unexpected " + t);
+                assertFalse(t instanceof CircuitBreakerOpenException, "unexpected " + t);
+            }
+            assertEquals(circuitBreakers.getOpenCount(), 1);
+
+            Throwable t = failure(client, url);
+            assertTrue(t instanceof CircuitBreakerOpenException, "unexpected " + t);
+            assertEquals(circuitBreakers.getRejectedCount(), 1L);
+
+            // other hosts aren't affected
+            assertEquals(client.prepareGet(getTargetUrl()).execute().get().getStatusCode(), 200);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void closesAfterSuccessfulProbe() throws Exception {
+        CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry.Builder().setFailureThreshold(1).setOpenDurationInMs(200)
+                .build();
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setCircuitBreakerRegistry(circuitBreakers).build());
+        try {
+            CircuitBreaker circuitBreaker = circuitBreakers.getCircuitBreaker(DefaultConnectionPoolStrategy.INSTANCE.getKey(new URI(getTargetUrl())));
+            circuitBreaker.onFailure();
+            assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+            assertTrue(failure(client, getTargetUrl()) instanceof CircuitBreakerOpenException);
+
+            Thread.sleep(300);
+            assertEquals(client.prepareGet(getTargetUrl()).execute().get().getStatusCode(), 200);
+            assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+        } finally {
+            client.close();
+        }
+    }
+}
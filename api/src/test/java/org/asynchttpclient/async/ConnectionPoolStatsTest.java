@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.ConnectionPoolStats;
+import org.asynchttpclient.Response;
+import org.testng.annotations.Test;
+
+public abstract class ConnectionPoolStatsTest extends AbstractBasicTest {
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void statsAreExposedThroughJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName("org.asynchttpclient:type=ConnectionPool,*");
+        Set<ObjectName> before = server.queryNames(pattern, null);
+
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setMaximumConnectionsTotal(10).build());
+        ObjectName name;
+        try {
+            Set<ObjectName> registered = new HashSet<ObjectName>(server.queryNames(pattern, null));
+            registered.removeAll(before);
+            assertEquals(registered.size(), 1);
+            name = registered.iterator().next();
+            ConnectionPoolStats stats = JMX.newMXBeanProxy(server, name, ConnectionPoolStats.class);
+
+            for (int i = 0; i < 3; i++) {
+                Response response = client.prepareGet(getTargetUrl()).execute().get();
+                assertEquals(response.getStatusCode(), 200);
+            }
+
+            // the connection is offered back asynchronously
+            long deadline = System.currentTimeMillis() + 5000;
+            while (stats.getIdleConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(stats.getIdleConnectionCount(), 1);
+            assertEquals(stats.getIdleConnectionCountPerHost().size(), 1);
+            assertEquals(stats.getOpenConnectionCount(), 1);
+            assertEquals(stats.getAvailablePermits(), 9);
+            assertEquals(stats.getMissCount(), 1L);
+            assertEquals(stats.getHitCount(), 2L);
+            assertEquals(stats.getOfferCount(), 3L);
+            assertEquals(stats.getHitRatio(), 2.0 / 3.0, 0.001);
+            assertEquals(stats.getEvictionCount(), 0L);
+        } finally {
+            client.close();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
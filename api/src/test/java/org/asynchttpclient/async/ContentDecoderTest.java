@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.compression.ContentDecoder;
+import org.asynchttpclient.compression.ContentDecoderFactory;
+import org.asynchttpclient.compression.ContentDecoderRegistry;
+import org.asynchttpclient.compression.InflaterPool;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.Test;
+
+public abstract class ContentDecoderTest extends AbstractBasicTest {
+
+    private static final String BODY;
+
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        BODY = sb.toString();
+    }
+
+    /**
+     * A toy coding flipping the bits of every byte.
+     */
+    private static class FlipDecoderFactory implements ContentDecoderFactory {
+        public String getEncoding() {
+            return "x-flip";
+        }
+
+        public ContentDecoder newDecoder() {
+            return new ContentDecoder() {
+                public void decode(byte[] bytes, int offset, int length, OutputStream out) throws IOException {
+                    for (int i = offset; i < offset + length; i++) {
+                        out.write(~bytes[i]);
+                    }
+                }
+
+                public void finish(OutputStream out) {
+                }
+
+                public void close() {
+                }
+            };
+        }
+    }
+
+    private static class EncodingHandler extends AbstractHandler {
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            String encoding = request.getHeader("X-Encode-With");
+            byte[] bytes = BODY.getBytes("UTF-8");
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            if ("gzip".equals(encoding)) {
+                GZIPOutputStream out = new GZIPOutputStream(encoded);
+                out.write(bytes);
+                out.close();
+            } else if ("deflate".equals(encoding) || "raw-deflate".equals(encoding)) {
+                DeflaterOutputStream out = new DeflaterOutputStream(encoded, new Deflater(Deflater.DEFAULT_COMPRESSION, "raw-deflate".equals(encoding)));
+                out.write(bytes);
+                out.close();
+                encoding = "deflate";
+            } else if ("x-flip".equals(encoding)) {
+                for (byte b : bytes) {
+                    encoded.write(~b);
+                }
+            } else {
+                encoded.write(bytes);
+            }
+
+            baseRequest.setHandled(true);
+            response.setStatus(200);
+            response.setContentType("text/plain");
+            if (encoding != null) {
+                response.setHeader("Content-Encoding", encoding);
+            }
+            String acceptEncoding = request.getHeader("Accept-Encoding");
+            response.setHeader("X-Accept-Encoding", acceptEncoding != null ? acceptEncoding : "none");
+            // send it in several chunks
+            OutputStream out = response.getOutputStream();
+            byte[] body = encoded.toByteArray();
+            for (int offset = 0; offset < body.length; offset += 1000) {
+                out.write(body, offset, Math.min(1000, body.length - offset));
+                out.flush();
+            }
+        }
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new EncodingHandler();
+    }
+
+    private AsyncHttpClient client(ContentDecoderRegistry registry) {
+        return getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setCompressionEnabled(true).setContentDecoderRegistry(registry).build());
+    }
+
+    private Response get(AsyncHttpClient client, String encoding) throws Exception {
+        return client.prepareGet(getTargetUrl()).addHeader("X-Encode-With", encoding).execute().get();
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void decodesWithPooledInflaters() throws Exception {
+        InflaterPool pool = new InflaterPool(4);
+        AsyncHttpClient client = client(new ContentDecoderRegistry(pool));
+        try {
+            for (String encoding : new String[] { "gzip", "deflate", "raw-deflate", "gzip", "deflate" }) {
+                Response response = get(client, encoding);
+                assertEquals(response.getStatusCode(), 200);
+                assertEquals(response.getHeader("X-Accept-Encoding"), "gzip,deflate");
+                assertEquals(response.getResponseBody("UTF-8"), BODY, encoding);
+            }
+            // the inflaters come from the configured pool, how many are reused depends on the provider's threads
+            assertTrue(pool.getCreatedCount() > 0 && pool.getCreatedCount() <= 5, "created " + pool.getCreatedCount());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void decodesWithRegisteredCoding() throws Exception {
+        ContentDecoderRegistry registry = new ContentDecoderRegistry().register(new FlipDecoderFactory());
+        AsyncHttpClient client = client(registry);
+        try {
+            Response response = get(client, "x-flip");
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(response.getHeader("X-Accept-Encoding"), "gzip,deflate,x-flip");
+            assertEquals(response.getResponseBody("UTF-8"), BODY);
+
+            response = get(client, "gzip");
+            assertEquals(response.getResponseBody("UTF-8"), BODY);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void passesThroughUnregisteredCoding() throws Exception {
+        AsyncHttpClient client = client(new ContentDecoderRegistry().unregister("deflate"));
+        try {
+            Response response = get(client, "x-flip");
+            assertEquals(response.getHeader("X-Accept-Encoding"), "gzip");
+            assertEquals(response.getHeader("Content-Encoding"), "x-flip");
+            assertEquals(response.getResponseBodyAsBytes().length, BODY.length());
+            assertFalse(response.getResponseBody("UTF-8").equals(BODY));
+        } finally {
+            client.close();
+        }
+    }
+}
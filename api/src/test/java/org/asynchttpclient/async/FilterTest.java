@@ -12,15 +12,25 @@
  */
 package org.asynchttpclient.async;
 
+import org.asynchttpclient.AsyncCompletionHandlerBase;
 import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.Request;
 import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.util.AsyncHttpProviderUtils;
 import org.asynchttpclient.Response;
+import org.asynchttpclient.extra.AdaptiveConcurrencyLimit;
+import org.asynchttpclient.extra.AdaptiveThrottleRequestFilter;
+import org.asynchttpclient.extra.AsyncThrottleRequestFilter;
 import org.asynchttpclient.extra.ThrottleRequestFilter;
+import org.asynchttpclient.extra.TokenBucketRequestFilter;
+import org.asynchttpclient.filter.AsyncRequestFilter;
 import org.asynchttpclient.filter.FilterContext;
 import org.asynchttpclient.filter.FilterException;
+import org.asynchttpclient.filter.RequestFilter;
 import org.asynchttpclient.filter.ResponseFilter;
+import org.asynchttpclient.listenable.SettableListenableFuture;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.testng.annotations.Test;
 
@@ -31,11 +41,19 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public abstract class FilterTest extends AbstractBasicTest {
@@ -103,6 +121,192 @@ public abstract class FilterTest extends AbstractBasicTest {
         }
     }
 
+    @Test(groups = { "standalone", "default_provider" })
+    public void adaptiveThrottleTest() throws Exception {
+        AdaptiveThrottleRequestFilter filter = new AdaptiveThrottleRequestFilter(5, 1, 50, 10000);
+        AsyncHttpClientConfig.Builder b = new AsyncHttpClientConfig.Builder();
+        b.addRequestFilter(filter);
+
+        AsyncHttpClient c = getAsyncHttpClient(b.build());
+        try {
+            List<Future<Response>> futures = new ArrayList<Future<Response>>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(c.preparePost(getTargetUrl()).execute());
+            }
+
+            for (Future<Response> f : futures) {
+                Response r = f.get();
+                assertNotNull(r);
+                assertEquals(r.getStatusCode(), 200);
+            }
+
+            AdaptiveConcurrencyLimit limit = filter.getLimit(new RequestBuilder("GET").setUrl(getTargetUrl()).build());
+            assertNotNull(limit);
+            assertEquals(limit.getInFlight(), 0);
+            assertTrue(limit.getLimit() >= 1 && limit.getLimit() <= 50);
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void asyncThrottleTest() throws Exception {
+        AsyncThrottleRequestFilter filter = new AsyncThrottleRequestFilter(10);
+        AsyncHttpClientConfig.Builder b = new AsyncHttpClientConfig.Builder();
+        b.addAsyncRequestFilter(filter);
+
+        AsyncHttpClient c = getAsyncHttpClient(b.build());
+        try {
+            List<Future<Response>> futures = new ArrayList<Future<Response>>();
+            for (int i = 0; i < 200; i++) {
+                futures.add(c.preparePost(getTargetUrl()).execute());
+            }
+
+            for (Future<Response> f : futures) {
+                Response r = f.get();
+                assertNotNull(r);
+                assertEquals(r.getStatusCode(), 200);
+            }
+            assertEquals(filter.getQueueLength(), 0);
+            assertEquals(filter.getAvailablePermits(), 10);
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void asyncRequestFilterTest() throws Exception {
+        final SettableListenableFuture<Boolean> token = new SettableListenableFuture<Boolean>();
+        AsyncHttpClientConfig.Builder b = new AsyncHttpClientConfig.Builder();
+        b.addRequestFilter(new RequestFilter() {
+            public <T> FilterContext<T> filter(FilterContext<T> ctx) throws FilterException {
+                Request request = new RequestBuilder(ctx.getRequest()).addHeader("X-Sync", "true").build();
+                return new FilterContext.FilterContextBuilder<T>(ctx).request(request).build();
+            }
+        });
+        b.addAsyncRequestFilter(new AsyncRequestFilter() {
+            public <T> ListenableFuture<FilterContext<T>> filter(final FilterContext<T> ctx) {
+                final SettableListenableFuture<FilterContext<T>> future = new SettableListenableFuture<FilterContext<T>>();
+                // the sync filters come first
+                assertEquals(ctx.getRequest().getHeaders().getFirstValue("X-Sync"), "true");
+                token.addListener(new Runnable() {
+                    public void run() {
+                        Request request = new RequestBuilder(ctx.getRequest()).addHeader("X-Async", "true").build();
+                        future.set(new FilterContext.FilterContextBuilder<T>(ctx).request(request).build());
+                    }
+                }, new Executor() {
+                    public void execute(Runnable command) {
+                        new Thread(command).start();
+                    }
+                });
+                return future;
+            }
+        });
+
+        AsyncHttpClient c = getAsyncHttpClient(b.build());
+        try {
+            Future<Response> f = c.preparePost(getTargetUrl()).execute();
+            try {
+                f.get(500, TimeUnit.MILLISECONDS);
+                fail("The request shouldn't have been sent yet");
+            } catch (TimeoutException expected) {
+            }
+            assertFalse(f.isDone());
+
+            token.set(true);
+            Response response = f.get(10, TimeUnit.SECONDS);
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(response.getHeader("X-Sync"), "true");
+            assertEquals(response.getHeader("X-Async"), "true");
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void asyncRequestFilterFailureTest() throws Exception {
+        final AtomicBoolean onThrowable = new AtomicBoolean();
+        AsyncHttpClientConfig.Builder b = new AsyncHttpClientConfig.Builder();
+        b.addAsyncRequestFilter(new AsyncRequestFilter() {
+            public <T> ListenableFuture<FilterContext<T>> filter(FilterContext<T> ctx) {
+                SettableListenableFuture<FilterContext<T>> future = new SettableListenableFuture<FilterContext<T>>();
+                future.setException(new FilterException("No token"));
+                return future;
+            }
+        });
+
+        AsyncHttpClient c = getAsyncHttpClient(b.build());
+        try {
+            Future<Response> f = c.preparePost(getTargetUrl()).execute(new AsyncCompletionHandlerBase() {
+                @Override
+                public void onThrowable(Throwable t) {
+                    onThrowable.set(true);
+                }
+            });
+            f.get();
+            fail("Should have failed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+            assertEquals(ex.getCause().getCause().getClass(), FilterException.class);
+            assertTrue(onThrowable.get());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void asyncRequestFilterCancelTest() throws Exception {
+        final SettableListenableFuture<FilterContext<?>> pending = new SettableListenableFuture<FilterContext<?>>();
+        AsyncHttpClientConfig.Builder b = new AsyncHttpClientConfig.Builder();
+        b.addAsyncRequestFilter(new AsyncRequestFilter() {
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            public <T> ListenableFuture<FilterContext<T>> filter(FilterContext<T> ctx) {
+                return (ListenableFuture) pending;
+            }
+        });
+
+        AsyncHttpClient c = getAsyncHttpClient(b.build());
+        try {
+            Future<Response> f = c.preparePost(getTargetUrl()).execute();
+            assertTrue(f.cancel(true));
+            assertTrue(f.isCancelled());
+            assertTrue(pending.isCancelled());
+        } finally {
+            c.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void tokenBucketTest() throws Exception {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        TokenBucketRequestFilter filter = new TokenBucketRequestFilter(timer, 0.0, 1, 10000);
+        filter.setRate(AsyncHttpProviderUtils.getBaseUrl(getTargetUrl()), 20.0, 1);
+        AsyncHttpClientConfig.Builder b = new AsyncHttpClientConfig.Builder().setScheduledExecutorService(timer);
+        b.addAsyncRequestFilter(filter);
+
+        AsyncHttpClient c = getAsyncHttpClient(b.build());
+        try {
+            long start = System.currentTimeMillis();
+            List<Future<Response>> futures = new ArrayList<Future<Response>>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(c.preparePost(getTargetUrl()).execute());
+            }
+            // the calling thread isn't blocked
+            assertTrue(System.currentTimeMillis() - start < 400);
+
+            for (Future<Response> f : futures) {
+                Response r = f.get();
+                assertNotNull(r);
+                assertEquals(r.getStatusCode(), 200);
+            }
+            // 9 requests had to wait for a token, 50 ms each
+            assertTrue(System.currentTimeMillis() - start >= 400);
+            assertNotNull(filter.getBucket(new RequestBuilder("GET").setUrl(getTargetUrl()).build()));
+        } finally {
+            c.close();
+        }
+    }
+
     @Test(groups = { "standalone", "default_provider" })
     public void maxConnectionsText() throws Exception {
         AsyncHttpClientConfig.Builder b = new AsyncHttpClientConfig.Builder();
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.cache.CacheRequestFilter;
+import org.asynchttpclient.cache.CacheResponseFilter;
+import org.asynchttpclient.cache.DiskCacheStorage;
+import org.asynchttpclient.cache.HttpCache;
+import org.asynchttpclient.cache.MemoryCacheStorage;
+import org.asynchttpclient.extra.AsyncThrottleRequestFilter;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.Test;
+
+public abstract class HttpCacheTest extends AbstractBasicTest {
+
+    private final AtomicInteger served = new AtomicInteger();
+
+    private class CacheHandler extends AbstractHandler {
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            baseRequest.setHandled(true);
+            if (!request.getMethod().equals("GET")) {
+                response.setStatus(204);
+                return;
+            }
+
+            int count = served.incrementAndGet();
+            if (target.endsWith("/fresh")) {
+                response.setHeader("Cache-Control", "max-age=60");
+            } else if (target.endsWith("/etag")) {
+                response.setHeader("Cache-Control", "no-cache");
+                response.setHeader("ETag", "\"v1\"");
+                if ("\"v1\"".equals(request.getHeader("If-None-Match"))) {
+                    response.setStatus(304);
+                    return;
+                }
+            } else if (target.endsWith("/changing")) {
+                // the revalidation gets the new version of the resource
+                if (request.getHeader("If-None-Match") != null) {
+                    response.setHeader("Cache-Control", "max-age=60");
+                    response.setHeader("ETag", "\"v2\"");
+                } else {
+                    response.setHeader("Cache-Control", "max-age=0");
+                    response.setHeader("ETag", "\"v1\"");
+                }
+            } else {
+                response.setHeader("Cache-Control", "no-store");
+            }
+            response.setStatus(200);
+            response.setContentType("text/plain");
+            response.getOutputStream().write(("response " + count).getBytes("UTF-8"));
+        }
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new CacheHandler();
+    }
+
+    private AsyncHttpClient cachingClient(HttpCache cache) {
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()//
+                .addRequestFilter(new CacheRequestFilter(cache))//
+                .addResponseFilter(new CacheResponseFilter(cache))//
+                .build();
+        return getAsyncHttpClient(config);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + port1 + path;
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void freshResponseIsServedFromCache() throws Exception {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        AsyncHttpClient client = cachingClient(cache);
+        try {
+            served.set(0);
+            Response first = client.prepareGet(url("/fresh")).execute().get();
+            Response second = client.prepareGet(url("/fresh")).execute().get();
+            assertEquals(first.getStatusCode(), 200);
+            assertEquals(second.getStatusCode(), 200);
+            assertEquals(second.getResponseBody(), first.getResponseBody());
+            assertEquals(second.getContentType(), first.getContentType());
+            assertNotNull(second.getHeader("Age"));
+            assertEquals(served.get(), 1);
+            assertEquals(cache.getMetrics().getHits(), 1);
+            assertEquals(cache.getMetrics().getMisses(), 1);
+            assertEquals(cache.getMetrics().getHitRatio(), 0.5);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void freshResponseIsServedFromCacheBehindThrottle() throws Exception {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        AsyncThrottleRequestFilter throttle = new AsyncThrottleRequestFilter(1);
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()//
+                .addRequestFilter(new CacheRequestFilter(cache))//
+                .addResponseFilter(new CacheResponseFilter(cache))//
+                .addAsyncRequestFilter(throttle)//
+                .build();
+        AsyncHttpClient client = getAsyncHttpClient(config);
+        try {
+            served.set(0);
+            Response first = client.prepareGet(url("/fresh")).execute().get(5, TimeUnit.SECONDS);
+            // the throttle wraps the caching handler, the replays must release its permit too
+            for (int i = 0; i < 2; i++) {
+                Response cached = client.prepareGet(url("/fresh")).execute().get(5, TimeUnit.SECONDS);
+                assertEquals(cached.getResponseBody(), first.getResponseBody());
+            }
+            assertEquals(served.get(), 1);
+            assertEquals(cache.getMetrics().getHits(), 2);
+            assertEquals(throttle.getAvailablePermits(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void diskTierIsWrittenByItsExecutor() throws Exception {
+        File directory = File.createTempFile("httpcache", "");
+        directory.delete();
+        final List<Runnable> diskTasks = new ArrayList<Runnable>();
+        Executor diskExecutor = new Executor() {
+            public void execute(Runnable command) {
+                diskTasks.add(command);
+            }
+        };
+        HttpCache cache = new HttpCache(new MemoryCacheStorage(1024 * 1024), new DiskCacheStorage(directory, 1024 * 1024),
+                HttpCache.DEFAULT_MAX_ENTRY_SIZE, diskExecutor);
+        AsyncHttpClient client = cachingClient(cache);
+        Response first;
+        try {
+            served.set(0);
+            first = client.prepareGet(url("/fresh")).execute().get();
+            assertEquals(diskTasks.size(), 1);
+            assertEquals(directory.list().length, 0);
+            diskTasks.get(0).run();
+        } finally {
+            client.close();
+        }
+
+        // a new cache with an empty memory tier finds the entry on disk
+        client = cachingClient(new HttpCache(1024 * 1024, directory, 1024 * 1024));
+        try {
+            Response second = client.prepareGet(url("/fresh")).execute().get();
+            assertEquals(second.getResponseBody(), first.getResponseBody());
+            assertEquals(served.get(), 1);
+        } finally {
+            client.close();
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void staleResponseIsRevalidated() throws Exception {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        AsyncHttpClient client = cachingClient(cache);
+        try {
+            served.set(0);
+            Response first = client.prepareGet(url("/etag")).execute().get();
+            Response second = client.prepareGet(url("/etag")).execute().get();
+            assertEquals(second.getStatusCode(), 200);
+            assertEquals(second.getResponseBody(), first.getResponseBody());
+            assertEquals(served.get(), 2);
+            assertEquals(cache.getMetrics().getRevalidations(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void changedResponseToRevalidationIsStored() throws Exception {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        AsyncHttpClient client = cachingClient(cache);
+        try {
+            served.set(0);
+            Response first = client.prepareGet(url("/changing")).execute().get();
+            Response second = client.prepareGet(url("/changing")).execute().get();
+            Response third = client.prepareGet(url("/changing")).execute().get();
+            assertEquals(second.getStatusCode(), 200);
+            assertNotEquals(second.getResponseBody(), first.getResponseBody());
+            assertEquals(second.getHeader("ETag"), "\"v2\"");
+            assertEquals(third.getResponseBody(), second.getResponseBody());
+            assertEquals(served.get(), 2);
+            assertEquals(cache.getMetrics().getHits(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void noStoreResponseIsNotCached() throws Exception {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        AsyncHttpClient client = cachingClient(cache);
+        try {
+            served.set(0);
+            Response first = client.prepareGet(url("/nostore")).execute().get();
+            Response second = client.prepareGet(url("/nostore")).execute().get();
+            assertNotEquals(second.getResponseBody(), first.getResponseBody());
+            assertEquals(served.get(), 2);
+            assertEquals(cache.getMetrics().getStores(), 0);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void unsafeRequestInvalidatesEntry() throws Exception {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        AsyncHttpClient client = cachingClient(cache);
+        try {
+            served.set(0);
+            client.prepareGet(url("/fresh")).execute().get();
+            assertEquals(client.preparePost(url("/fresh")).execute().get().getStatusCode(), 204);
+            client.prepareGet(url("/fresh")).execute().get();
+            assertEquals(served.get(), 2);
+            assertEquals(cache.getMetrics().getHits(), 0);
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.asynchttpclient.AsyncCompletionHandlerBase;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.cache.CacheRequestFilter;
+import org.asynchttpclient.cache.CacheResponseFilter;
+import org.asynchttpclient.cache.CachingAsyncHandler;
+import org.asynchttpclient.cache.HttpCache;
+import org.asynchttpclient.coalescing.CoalescingRequestFilter;
+import org.asynchttpclient.coalescing.RequestCoalescer;
+import org.asynchttpclient.extra.AdaptiveThrottleRequestFilter;
+import org.asynchttpclient.extra.AsyncThrottleRequestFilter;
+import org.asynchttpclient.hedging.FixedDelayHedgingPolicy;
+import org.asynchttpclient.hedging.RequestHedger;
+import org.testng.annotations.Test;
+
+public abstract class PhaseTimingTest extends AbstractBasicTest {
+
+    private static class PhaseRecorder extends AsyncCompletionHandlerBase implements AsyncHandlerTimingExtensions {
+
+        private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+        private synchronized void record(String phase, long nanoTime) {
+            phases.put(phase, nanoTime);
+        }
+
+        synchronized Long get(String phase) {
+            return phases.get(phase);
+        }
+
+        public void onRequestSent() {
+        }
+
+        public void onRetry() {
+        }
+
+        public void onDnsResolved(long nanoTime) {
+            record("dns", nanoTime);
+        }
+
+        public void onConnectionOpen(long nanoTime) {
+            record("open", nanoTime);
+        }
+
+        public void onConnectionPooled(long nanoTime) {
+            record("pooled", nanoTime);
+        }
+
+        public void onTlsHandshakeDone(long nanoTime) {
+            record("tls", nanoTime);
+        }
+
+        public void onHeadersWritten(long nanoTime) {
+            record("headers", nanoTime);
+        }
+
+        public void onFirstByteReceived(long nanoTime) {
+            record("firstByte", nanoTime);
+        }
+
+        public void onLastByteReceived(long nanoTime) {
+            record("lastByte", nanoTime);
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void phasesAreReportedInOrder() throws Exception {
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        try {
+            PhaseRecorder first = new PhaseRecorder();
+            Response response = client.prepareGet(getTargetUrl()).execute(first).get();
+            assertEquals(response.getStatusCode(), 200);
+
+            assertNotNull(first.get("open"));
+            assertNull(first.get("pooled"));
+            assertNull(first.get("tls"));
+            assertTrue(first.get("open") <= first.get("headers"));
+            assertTrue(first.get("headers") <= first.get("firstByte"));
+            assertTrue(first.get("firstByte") <= first.get("lastByte"));
+            if (first.get("dns") != null) {
+                assertTrue(first.get("dns") <= first.get("headers"));
+            }
+
+            PhaseRecorder second = new PhaseRecorder();
+            response = client.prepareGet(getTargetUrl()).execute(second).get();
+            assertEquals(response.getStatusCode(), 200);
+
+            assertNotNull(second.get("pooled"));
+            assertNull(second.get("open"));
+            assertTrue(second.get("pooled") <= second.get("headers"));
+            assertTrue(second.get("headers") <= second.get("firstByte"));
+            assertTrue(second.get("firstByte") <= second.get("lastByte"));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void phasesReachWrappedHandlers() throws Exception {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()//
+                .addRequestFilter(new CacheRequestFilter(cache))//
+                .addResponseFilter(new CacheResponseFilter(cache))//
+                .addRequestFilter(new CoalescingRequestFilter(new RequestCoalescer()))//
+                .addRequestFilter(new AdaptiveThrottleRequestFilter())//
+                .addAsyncRequestFilter(new AsyncThrottleRequestFilter(10))//
+                .build();
+        AsyncHttpClient client = getAsyncHttpClient(config);
+        try {
+            PhaseRecorder recorder = new PhaseRecorder();
+            Response response = client.prepareGet(getTargetUrl()).execute(recorder).get();
+            assertEquals(response.getStatusCode(), 200);
+
+            assertNotNull(recorder.get("open"));
+            assertNotNull(recorder.get("headers"));
+            assertNotNull(recorder.get("firstByte"));
+            assertNotNull(recorder.get("lastByte"));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void phasesOfTheWinningAttemptAreReported() throws Exception {
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RequestHedger hedger = new RequestHedger(client, timer, new FixedDelayHedgingPolicy(10000), 1);
+            PhaseRecorder recorder = new PhaseRecorder();
+            Response response = hedger.execute(new RequestBuilder("GET").setUrl(getTargetUrl()).build(), recorder).get();
+            assertEquals(response.getStatusCode(), 200);
+
+            assertNotNull(recorder.get("open"));
+            assertTrue(recorder.get("open") <= recorder.get("headers"));
+            assertTrue(recorder.get("headers") <= recorder.get("firstByte"));
+            assertTrue(recorder.get("firstByte") <= recorder.get("lastByte"));
+        } finally {
+            client.close();
+            timer.shutdownNow();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void wrappersOnlyTakeTimestampsWhenWanted() {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        RequestBuilder request = new RequestBuilder("GET").setUrl(getTargetUrl());
+        assertFalse(CachingAsyncHandler.wrap(cache, request.build(), new AsyncCompletionHandlerBase(), null, false) instanceof AsyncHandlerTimingExtensions);
+        assertTrue(CachingAsyncHandler.wrap(cache, request.build(), new PhaseRecorder(), null, false) instanceof AsyncHandlerTimingExtensions);
+    }
+}
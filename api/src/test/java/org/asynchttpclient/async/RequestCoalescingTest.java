@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncCompletionHandlerBase;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.cache.CacheRequestFilter;
+import org.asynchttpclient.cache.HttpCache;
+import org.asynchttpclient.coalescing.CoalescingAsyncHandler;
+import org.asynchttpclient.coalescing.CoalescingRequestFilter;
+import org.asynchttpclient.coalescing.RequestCoalescer;
+import org.asynchttpclient.extra.AsyncThrottleRequestFilter;
+import org.asynchttpclient.filter.FilterException;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.Test;
+
+public abstract class RequestCoalescingTest extends AbstractBasicTest {
+
+    private final AtomicInteger served = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    private class SlowHandler extends AbstractHandler {
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            int count = served.incrementAndGet();
+            try {
+                // hold the response until all the requests are sent
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new ServletException(e);
+            }
+            baseRequest.setHandled(true);
+            response.setStatus(200);
+            response.setContentType("text/plain");
+            response.setHeader("X-Count", String.valueOf(count));
+            response.getOutputStream().write(("response " + count + " " + request.getMethod()).getBytes("UTF-8"));
+        }
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new SlowHandler();
+    }
+
+    private AsyncHttpClient coalescingClient(RequestCoalescer coalescer) {
+        return getAsyncHttpClient(new AsyncHttpClientConfig.Builder().addRequestFilter(new CoalescingRequestFilter(coalescer)).build());
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void identicalRequestsShareOneExchange() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AsyncHttpClient client = coalescingClient(coalescer);
+        try {
+            served.set(0);
+            release = new CountDownLatch(1);
+            List<ListenableFuture<Response>> futures = new ArrayList<ListenableFuture<Response>>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(client.prepareGet(getTargetUrl()).execute());
+            }
+            assertEquals(coalescer.getInFlightCount(), 1);
+            release.countDown();
+
+            for (ListenableFuture<Response> future : futures) {
+                Response response = future.get(10, TimeUnit.SECONDS);
+                assertEquals(response.getStatusCode(), 200);
+                assertEquals(response.getHeader("X-Count"), "1");
+                assertEquals(response.getResponseBody(), "response 1 GET");
+            }
+            assertEquals(served.get(), 1);
+            assertEquals(coalescer.getCoalescedCount(), 9);
+            assertEquals(coalescer.getInFlightCount(), 0);
+
+            // the exchange is over, the next request is sent
+            assertEquals(client.prepareGet(getTargetUrl()).execute().get().getResponseBody(), "response 2 GET");
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void differentRequestsAreNotCoalesced() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer("X-Request-Id");
+        AsyncHttpClient client = coalescingClient(coalescer);
+        try {
+            served.set(0);
+            release = new CountDownLatch(1);
+            ListenableFuture<Response> json = client.prepareGet(getTargetUrl()).setHeader("Accept", "application/json").setHeader("X-Request-Id", "1").execute();
+            ListenableFuture<Response> sameJson = client.prepareGet(getTargetUrl()).setHeader("Accept", "application/json").setHeader("X-Request-Id", "2").execute();
+            ListenableFuture<Response> xml = client.prepareGet(getTargetUrl()).setHeader("Accept", "application/xml").execute();
+            ListenableFuture<Response> post = client.preparePost(getTargetUrl()).execute();
+            release.countDown();
+
+            assertEquals(sameJson.get(10, TimeUnit.SECONDS).getResponseBody(), json.get(10, TimeUnit.SECONDS).getResponseBody());
+            assertNotEquals(xml.get(10, TimeUnit.SECONDS).getResponseBody(), json.get().getResponseBody());
+            assertTrue(post.get(10, TimeUnit.SECONDS).getResponseBody().endsWith("POST"));
+            assertEquals(served.get(), 3);
+            assertEquals(coalescer.getCoalescedCount(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void cancelledFollowerDoesNotAbortExchange() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AsyncHttpClient client = coalescingClient(coalescer);
+        try {
+            served.set(0);
+            release = new CountDownLatch(1);
+            ListenableFuture<Response> leader = client.prepareGet(getTargetUrl()).execute();
+            ListenableFuture<Response> follower = client.prepareGet(getTargetUrl()).execute();
+            assertTrue(follower.cancel(true));
+            release.countDown();
+
+            assertTrue(follower.isCancelled());
+            assertEquals(leader.get(10, TimeUnit.SECONDS).getResponseBody(), "response 1 GET");
+            assertEquals(served.get(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void requestsAreCoalescedBehindThrottle() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AsyncThrottleRequestFilter throttle = new AsyncThrottleRequestFilter(10);
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder()//
+                .addRequestFilter(new CoalescingRequestFilter(coalescer))//
+                .addAsyncRequestFilter(throttle)//
+                .build());
+        try {
+            served.set(0);
+            release = new CountDownLatch(1);
+            List<ListenableFuture<Response>> futures = new ArrayList<ListenableFuture<Response>>();
+            for (int i = 0; i < 5; i++) {
+                futures.add(client.prepareGet(getTargetUrl()).execute());
+            }
+            release.countDown();
+
+            for (ListenableFuture<Response> future : futures) {
+                assertEquals(future.get(10, TimeUnit.SECONDS).getResponseBody(), "response 1 GET");
+            }
+            assertEquals(served.get(), 1);
+            assertEquals(coalescer.getCoalescedCount(), 4);
+            // the followers got the response through the throttle's handlers
+            assertEquals(throttle.getAvailablePermits(), 10);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void cacheFilterAfterCoalescingFilterIsRejected() throws Exception {
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder()//
+                .addRequestFilter(new CoalescingRequestFilter(new RequestCoalescer()))//
+                .addRequestFilter(new CacheRequestFilter(new HttpCache(1024 * 1024)))//
+                .build());
+        try {
+            client.prepareGet(getTargetUrl()).execute().get(10, TimeUnit.SECONDS);
+            fail("The filters are in the wrong order");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof FilterException);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void abandonAfterFailureNotifiesFollowersOnce() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        org.asynchttpclient.Request request = new RequestBuilder("GET").setUrl(getTargetUrl()).build();
+        final AtomicInteger failures = new AtomicInteger();
+
+        CoalescingAsyncHandler<Response> leader = new CoalescingAsyncHandler<Response>(coalescer, request, new AsyncCompletionHandlerBase());
+        assertNull(leader.join());
+        CoalescingAsyncHandler<Response> follower = new CoalescingAsyncHandler<Response>(coalescer, request, new AsyncCompletionHandlerBase() {
+            @Override
+            public void onThrowable(Throwable t) {
+                failures.incrementAndGet();
+            }
+        });
+        ListenableFuture<Response> future = follower.join();
+        assertNotNull(future);
+
+        // what AsyncHttpClient does when the provider rejects the request after notifying the handler
+        IOException rejection = new IOException("Rejected");
+        leader.onThrowable(rejection);
+        leader.abandon(rejection);
+
+        assertTrue(future.isDone());
+        assertEquals(failures.get(), 1);
+        assertEquals(coalescer.getInFlightCount(), 0);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncCompletionHandlerBase;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.cache.CacheRequestFilter;
+import org.asynchttpclient.cache.CacheResponseFilter;
+import org.asynchttpclient.cache.HttpCache;
+import org.asynchttpclient.coalescing.CoalescingRequestFilter;
+import org.asynchttpclient.coalescing.RequestCoalescer;
+import org.asynchttpclient.hedging.FixedDelayHedgingPolicy;
+import org.asynchttpclient.hedging.RequestHedger;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public abstract class RequestHedgerTest extends AbstractBasicTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    private class SlowReplicaHandler extends AbstractHandler {
+        public void handle(String s, org.eclipse.jetty.server.Request r, HttpServletRequest request, HttpServletResponse response) throws IOException,
+                ServletException {
+            boolean slow = requests.incrementAndGet() == 1 && request.getHeader("X-Slow-First") != null;
+            if (slow) {
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            response.setStatus(200);
+            response.getOutputStream().write((slow ? "slow" : "fast").getBytes("UTF-8"));
+            response.getOutputStream().flush();
+            response.getOutputStream().close();
+            r.setHandled(true);
+        }
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new SlowReplicaHandler();
+    }
+
+    @BeforeMethod(alwaysRun = true)
+    public void reset() {
+        requests.set(0);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopTimer() {
+        timer.shutdownNow();
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void hedgeWinsOverSlowReplica() throws Exception {
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        try {
+            RequestHedger hedger = new RequestHedger(client, timer, new FixedDelayHedgingPolicy(100), 1);
+            long start = System.currentTimeMillis();
+            Response response = hedger.execute(new RequestBuilder("GET").setUrl(getTargetUrl()).addHeader("X-Slow-First", "true").build(),
+                    new AsyncCompletionHandlerBase()).get();
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(response.getResponseBody(), "fast");
+            assertTrue(elapsed < 2000, "took " + elapsed + " ms");
+            assertEquals(hedger.getHedgeCount(), 1L);
+            assertEquals(hedger.getHedgeWinCount(), 1L);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void hedgeBypassesCacheAndCoalescing() throws Exception {
+        HttpCache cache = new HttpCache(1024 * 1024);
+        RequestCoalescer coalescer = new RequestCoalescer();
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder()//
+                .addRequestFilter(new CacheRequestFilter(cache))//
+                .addResponseFilter(new CacheResponseFilter(cache))//
+                .addRequestFilter(new CoalescingRequestFilter(coalescer))//
+                .build());
+        try {
+            RequestHedger hedger = new RequestHedger(client, timer, new FixedDelayHedgingPolicy(100), 1);
+            long start = System.currentTimeMillis();
+            Response response = hedger.execute(new RequestBuilder("GET").setUrl(getTargetUrl()).addHeader("X-Slow-First", "true").build(),
+                    new AsyncCompletionHandlerBase()).get();
+            long elapsed = System.currentTimeMillis() - start;
+
+            // the hedge didn't join the flight of the slow original
+            assertEquals(response.getResponseBody(), "fast");
+            assertTrue(elapsed < 2000, "took " + elapsed + " ms");
+            assertEquals(requests.get(), 2);
+            assertEquals(coalescer.getCoalescedCount(), 0L);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void fastResponseIsntHedged() throws Exception {
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        try {
+            RequestHedger hedger = new RequestHedger(client, timer, new FixedDelayHedgingPolicy(1000), 2);
+            Response response = hedger.execute(new RequestBuilder("GET").setUrl(getTargetUrl()).build(), new AsyncCompletionHandlerBase()).get();
+            assertEquals(response.getResponseBody(), "fast");
+            Thread.sleep(1500);
+            assertEquals(hedger.getHedgeCount(), 0L);
+            assertEquals(requests.get(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void nonIdempotentRequestIsntHedged() throws Exception {
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        try {
+            RequestHedger hedger = new RequestHedger(client, timer, new FixedDelayHedgingPolicy(0), 1);
+            Response response = hedger.execute(new RequestBuilder("POST").setUrl(getTargetUrl()).setBody("foo").build(),
+                    new AsyncCompletionHandlerBase()).get();
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(hedger.getHedgeCount(), 0L);
+            assertEquals(requests.get(), 1);
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.retry.ExponentialBackoffRetryPolicy;
+import org.asynchttpclient.retry.RetryBudget;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public abstract class RetryPolicyTest extends AbstractBasicTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int failures;
+    private final AtomicInteger closes = new AtomicInteger();
+
+    private class BrownoutHandler extends AbstractHandler {
+        public void handle(String s, org.eclipse.jetty.server.Request r, HttpServletRequest request, HttpServletResponse response) throws IOException,
+                ServletException {
+            if (request.getRequestURI().equals("/redirect")) {
+                response.setStatus(302);
+                response.setHeader("Location", request.getParameter("to"));
+                r.setHandled(true);
+                return;
+            }
+            if (request.getRequestURI().equals("/close") && closes.getAndIncrement() == 0) {
+                // drop the connection without a response
+                r.getHttpChannel().getEndPoint().close();
+                r.setHandled(true);
+                return;
+            }
+            int count = requests.incrementAndGet();
+            response.setStatus(count <= failures ? 503 : 200);
+            response.addHeader("X-Request-Count", String.valueOf(count));
+            response.getOutputStream().flush();
+            response.getOutputStream().close();
+            r.setHandled(true);
+        }
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new BrownoutHandler();
+    }
+
+    @BeforeMethod(alwaysRun = true)
+    public void reset() {
+        requests.set(0);
+        closes.set(0);
+    }
+
+    private ExponentialBackoffRetryPolicy policy(RetryBudget budget) {
+        return new ExponentialBackoffRetryPolicy.Builder()//
+                .setInitialDelayInMs(100)//
+                .setJitter(0.0)//
+                .setRetryBudget(budget)//
+                .build();
+    }
+
+    private AsyncHttpClient client(RetryBudget budget) {
+        return getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setRetryPolicy(policy(budget)).build());
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void retriesWithBackoff() throws Exception {
+        failures = 2;
+        AsyncHttpClient client = client(null);
+        try {
+            long start = System.currentTimeMillis();
+            Response response = client.prepareGet(getTargetUrl()).execute().get();
+            long elapsed = System.currentTimeMillis() - start;
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(response.getHeader("X-Request-Count"), "3");
+            // 100 ms then 200 ms
+            assertTrue(elapsed >= 300, "retried after " + elapsed + " ms");
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void givesUpAfterMaxRetries() throws Exception {
+        failures = 100;
+        AsyncHttpClient client = client(null);
+        try {
+            Response response = client.prepareGet(getTargetUrl()).execute().get();
+            assertEquals(response.getStatusCode(), 503);
+            // the first request and 3 retries
+            assertEquals(requests.get(), 4);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void doesntRetryNonIdempotentRequests() throws Exception {
+        failures = 1;
+        AsyncHttpClient client = client(null);
+        try {
+            Response response = client.preparePost(getTargetUrl()).setBody("foo").execute().get();
+            assertEquals(response.getStatusCode(), 503);
+            assertEquals(requests.get(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void retryBudgetLimitsRetries() throws Exception {
+        failures = 100;
+        // half a retry per request and no minimum rate
+        AsyncHttpClient client = client(new RetryBudget(0.5, 0.0, 100));
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertEquals(client.prepareGet(getTargetUrl()).execute().get().getStatusCode(), 503);
+            }
+            // 4 requests funded 2 retries
+            assertEquals(requests.get(), 6);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void requestsWithoutRetriesLeftDontSpendTheBudget() throws Exception {
+        failures = 100;
+        RetryBudget budget = new RetryBudget(1.0, 0.0, 100);
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setRetryPolicy(policy(budget)).setMaxRequestRetry(0).build());
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(client.prepareGet(getTargetUrl()).execute().get().getStatusCode(), 503);
+            }
+            assertEquals(requests.get(), 3);
+            assertEquals(budget.getBalance(new RequestBuilder("GET").setUrl(getTargetUrl()).build()), 3.0);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void responsesThatArentRetriedDontCountAsRetries() throws Exception {
+        failures = 3;
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setRetryPolicy(policy(null)).setMaxRequestRetry(3)
+                .setFollowRedirects(true).build());
+        try {
+            // the redirect doesn't take one of the 3 retries
+            Response response = client.prepareGet("http://127.0.0.1:" + port1 + "/redirect").addQueryParameter("to", getTargetUrl()).execute().get();
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(requests.get(), 4);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void closedConnectionIsRetriedAfterARedirect() throws Exception {
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setRetryPolicy(policy(null)).setMaxRequestRetry(1)
+                .setFollowRedirects(true).build());
+        try {
+            Response response = client.prepareGet("http://127.0.0.1:" + port1 + "/redirect")
+                    .addQueryParameter("to", "http://127.0.0.1:" + port1 + "/close").execute().get();
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(closes.get(), 2);
+        } finally {
+            client.close();
+        }
+    }
+}
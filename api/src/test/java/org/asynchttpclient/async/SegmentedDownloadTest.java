@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.async;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.resumable.ResumableAsyncHandler.ResumableProcessor;
+import org.asynchttpclient.resumable.SegmentedDownloader;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public abstract class SegmentedDownloadTest extends AbstractBasicTest {
+
+    private static final byte[] CONTENT = new byte[1024 * 1024 + 17];
+
+    static {
+        new Random(42).nextBytes(CONTENT);
+    }
+
+    // the Range start of the segment that fails, and how many times it still has to fail
+    private static final long FAILING_START = CONTENT.length / 4 * 2;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger gets = new AtomicInteger();
+
+    private class RangeHandler extends AbstractHandler {
+        public void handle(String target, org.eclipse.jetty.server.Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            baseRequest.setHandled(true);
+            boolean ranges = !target.contains("norange");
+            if (ranges) {
+                response.setHeader("Accept-Ranges", "bytes");
+            }
+
+            if (request.getMethod().equals("GET")) {
+                gets.incrementAndGet();
+            }
+
+            int start = 0;
+            int end = CONTENT.length - 1;
+            String range = request.getHeader("Range");
+            if (ranges && range != null) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(bounds[0]);
+                end = Integer.parseInt(bounds[1]);
+                if (start == FAILING_START && failures.getAndDecrement() > 0) {
+                    response.sendError(503);
+                    return;
+                }
+                response.setStatus(206);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + CONTENT.length);
+            } else {
+                response.setStatus(200);
+            }
+            response.setContentLength(end - start + 1);
+            if (request.getMethod().equals("GET")) {
+                // Jetty may reuse the written array for its own buffers, so never hand it CONTENT
+                response.getOutputStream().write(Arrays.copyOfRange(CONTENT, start, end + 1));
+            }
+        }
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new RangeHandler();
+    }
+
+    @BeforeMethod
+    public void reset() {
+        failures.set(0);
+        gets.set(0);
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void segmentedDownloadRetriesFailedSegment() throws Exception {
+        failures.set(1);
+        File file = File.createTempFile("segmented", ".bin");
+        file.deleteOnExit();
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        try {
+            Request request = new RequestBuilder("GET").setUrl(getTargetUrl()).build();
+            long length = new SegmentedDownloader(client, file, 4, 2, new ConcurrentResumableProcessor()).download(request);
+            assertEquals(length, CONTENT.length);
+            assertTrue(Arrays.equals(FileUtils.readFileToByteArray(file), CONTENT));
+            assertEquals(gets.get(), 5);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void segmentedDownloadResumesFromProgress() throws Exception {
+        failures.set(1);
+        File file = File.createTempFile("segmented", ".bin");
+        file.deleteOnExit();
+        ResumableProcessor processor = new ConcurrentResumableProcessor();
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        try {
+            Request request = new RequestBuilder("GET").setUrl(getTargetUrl()).build();
+            try {
+                new SegmentedDownloader(client, file, 4, 0, processor).download(request);
+                fail("The failing segment shouldn't have been retried");
+            } catch (IOException expected) {
+            }
+            assertEquals(processor.load().size(), 4);
+
+            gets.set(0);
+            long length = new SegmentedDownloader(client, file, 4, 0, processor).download(request);
+            assertEquals(length, CONTENT.length);
+            assertTrue(Arrays.equals(FileUtils.readFileToByteArray(file), CONTENT));
+            assertEquals(gets.get(), 1);
+            assertTrue(processor.load().isEmpty());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void downloadWithoutRangeSupport() throws Exception {
+        File file = File.createTempFile("segmented", ".bin");
+        file.deleteOnExit();
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        try {
+            Request request = new RequestBuilder("GET").setUrl(getTargetUrl() + "/norange").build();
+            long length = new SegmentedDownloader(client, file, 4, 0, null).download(request);
+            assertEquals(length, CONTENT.length);
+            assertTrue(Arrays.equals(FileUtils.readFileToByteArray(file), CONTENT));
+            assertEquals(gets.get(), 1);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static class ConcurrentResumableProcessor implements ResumableProcessor {
+
+        private final Map<String, Long> map = new ConcurrentHashMap<String, Long>();
+
+        public void put(String key, long transferredBytes) {
+            map.put(key, transferredBytes);
+        }
+
+        public void remove(String key) {
+            map.remove(key);
+        }
+
+        public void save(Map<String, Long> map) {
+        }
+
+        public Map<String, Long> load() {
+            return map;
+        }
+    }
+}
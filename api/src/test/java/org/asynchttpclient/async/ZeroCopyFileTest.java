@@ -18,6 +18,7 @@ import static org.testng.Assert.*;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.URISyntaxException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -35,6 +36,7 @@ import org.asynchttpclient.HttpResponseBodyPart;
 import org.asynchttpclient.HttpResponseHeaders;
 import org.asynchttpclient.HttpResponseStatus;
 import org.asynchttpclient.Response;
+import org.asynchttpclient.extra.FileChannelAsyncHandler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.testng.annotations.Test;
@@ -192,4 +194,30 @@ public abstract class ZeroCopyFileTest extends AbstractBasicTest {
             client.close();
         }
     }
+
+    @Test(groups = { "standalone", "default_provider" })
+    public void fileChannelDownloadTest() throws IOException, ExecutionException, TimeoutException, InterruptedException, URISyntaxException {
+        AsyncHttpClient client = getAsyncHttpClient(null);
+        File tmp = new File(System.getProperty("java.io.tmpdir") + File.separator + "zeroCopyChannel.txt");
+        tmp.deleteOnExit();
+        RandomAccessFile file = new RandomAccessFile(tmp, "rw");
+        try {
+            file.setLength(0);
+            // a tiny batch forces both the batched and the direct write paths
+            FileChannelAsyncHandler handler = new FileChannelAsyncHandler(file.getChannel(), 0L, 16, true);
+            Response resp = client.preparePost("http://127.0.0.1:" + port1 + "/").setBody(SIMPLE_TEXT_FILE).execute(handler).get();
+            assertNotNull(resp);
+            assertEquals(resp.getStatusCode(), HttpServletResponse.SC_OK);
+            assertEquals(handler.getBytesWritten(), SIMPLE_TEXT_FILE.length());
+            assertEquals(tmp.length(), SIMPLE_TEXT_FILE.length());
+
+            byte[] bytes = new byte[(int) tmp.length()];
+            file.seek(0);
+            file.readFully(bytes);
+            assertEquals(new String(bytes, "UTF-8"), SIMPLE_TEXT_FILE_STRING);
+        } finally {
+            file.close();
+            client.close();
+        }
+    }
 }
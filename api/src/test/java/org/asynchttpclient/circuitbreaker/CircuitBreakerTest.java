@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.circuitbreaker;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.asynchttpclient.circuitbreaker.CircuitBreaker.State;
+import org.testng.annotations.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry.Builder().setFailureThreshold(3).setFailureRatio(2.0).build();
+        CircuitBreaker circuitBreaker = registry.getCircuitBreaker("http://foo.com:80");
+        assertSame(registry.getCircuitBreaker("http://foo.com:80"), circuitBreaker);
+
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        // a success resets the count
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertEquals(circuitBreaker.getState(), State.CLOSED);
+        assertTrue(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onFailure();
+        assertEquals(circuitBreaker.getState(), State.OPEN);
+        assertFalse(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+        assertEquals(circuitBreaker.getRejectedCount(), 2L);
+        assertEquals(registry.getRejectedCount(), 2L);
+        assertEquals(registry.getTripCount(), 1L);
+        assertEquals(registry.getOpenCount(), 1);
+        assertEquals(registry.getStates().get("http://foo.com:80"), "OPEN");
+    }
+
+    @Test
+    public void opensOnFailureRatio() {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry.Builder().setFailureThreshold(100).setFailureRatio(0.5)
+                .setMinimumAttempts(10).build();
+        CircuitBreaker circuitBreaker = registry.getCircuitBreaker("http://foo.com:80");
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onSuccess();
+            circuitBreaker.onFailure();
+        }
+        // 4 failures out of 8 attempts, not enough attempts yet
+        assertEquals(circuitBreaker.getState(), State.CLOSED);
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        assertEquals(circuitBreaker.getState(), State.OPEN);
+    }
+
+    @Test
+    public void halfOpenLetsProbesThrough() throws InterruptedException {
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry.Builder().setFailureThreshold(1).setOpenDurationInMs(100)
+                .setHalfOpenProbes(2).build();
+        CircuitBreaker circuitBreaker = registry.getCircuitBreaker("http://foo.com:80");
+        circuitBreaker.onFailure();
+        assertFalse(circuitBreaker.tryAcquire());
+
+        Thread.sleep(150);
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(circuitBreaker.getState(), State.HALF_OPEN);
+        assertTrue(circuitBreaker.tryAcquire());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        // a failed probe opens the circuit again
+        circuitBreaker.onFailure();
+        assertEquals(circuitBreaker.getState(), State.OPEN);
+        assertFalse(circuitBreaker.tryAcquire());
+
+        Thread.sleep(150);
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess();
+        assertEquals(circuitBreaker.getState(), State.CLOSED);
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void notifiesListeners() {
+        final List<String> transitions = new ArrayList<String>();
+        CircuitBreakerRegistry registry = new CircuitBreakerRegistry.Builder().setFailureThreshold(1).addListener(new CircuitBreakerListener() {
+            public void onStateChange(CircuitBreaker circuitBreaker, State from, State to) {
+                transitions.add(circuitBreaker.getKey() + " " + from + "->" + to);
+            }
+        }).build();
+        registry.getCircuitBreaker("http://foo.com:80").onFailure();
+        registry.reset("http://foo.com:80");
+        assertEquals(transitions, Arrays.asList("http://foo.com:80 CLOSED->OPEN", "http://foo.com:80 OPEN->CLOSED"));
+        assertEquals(registry.getOpenCount(), 0);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.asynchttpclient.Body;
+import org.asynchttpclient.FluentCaseInsensitiveStringsMap;
+import org.asynchttpclient.generators.ByteArrayBodyGenerator;
+import org.testng.annotations.Test;
+
+public class DeflatingBodyTest {
+
+    private static byte[] payload(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ("0123456789abcdef".charAt(i % 16) + i / 4096);
+        }
+        return bytes;
+    }
+
+    private static byte[] drain(Body body, ByteBuffer chunk) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long read;
+        while ((read = body.read(chunk)) >= 0L) {
+            assertTrue(read > 0L, "no empty chunk before the end");
+            chunk.flip();
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            out.write(bytes);
+            chunk.clear();
+        }
+        body.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test(groups = "standalone")
+    public void gzipRoundTrip() throws IOException {
+        byte[] payload = payload(100 * 1024 + 17);
+        DeflaterPool pool = new DeflaterPool(1);
+        Body body = new DeflatingBody(new ByteArrayBodyGenerator(payload).createBody(), DeflatingBody.GZIP, Deflater.BEST_SPEED, pool);
+        byte[] compressed = drain(body, ByteBuffer.allocate(1000));
+
+        assertTrue(compressed.length < payload.length);
+        assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(compressed))), payload);
+    }
+
+    @Test(groups = "standalone")
+    public void deflateRoundTripWithDirectBuffer() throws IOException {
+        byte[] payload = payload(20 * 1024);
+        DeflaterPool pool = new DeflaterPool(1);
+        Body body = new DeflatingBody(new ByteArrayBodyGenerator(payload).createBody(), DeflatingBody.DEFLATE, 6, pool);
+        byte[] compressed = drain(body, ByteBuffer.allocateDirect(64));
+
+        assertEquals(inflate(new InflaterInputStream(new ByteArrayInputStream(compressed))), payload);
+    }
+
+    @Test(groups = "standalone")
+    public void emptyBody() throws IOException {
+        Body body = new DeflatingBody(new ByteArrayBodyGenerator(new byte[0]).createBody(), DeflatingBody.GZIP, 6, new DeflaterPool(1));
+        byte[] compressed = drain(body, ByteBuffer.allocate(8192));
+
+        assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(compressed))).length, 0);
+    }
+
+    @Test(groups = "standalone")
+    public void deflatersAreReused() throws IOException {
+        DeflaterPool pool = new DeflaterPool(2);
+        for (int i = 0; i < 10; i++) {
+            byte[] payload = payload(10 * 1024 + i);
+            Body body = new DeflatingBody(new ByteArrayBodyGenerator(payload).createBody(), DeflatingBody.GZIP, 6, pool);
+            byte[] compressed = drain(body, ByteBuffer.allocate(8192));
+            assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(compressed))), payload);
+        }
+        assertEquals(pool.getCreatedCount(), 1);
+
+        // closing before the end gives the deflater back too
+        Body body = new DeflatingBody(new ByteArrayBodyGenerator(payload(1024)).createBody(), DeflatingBody.GZIP, 6, pool);
+        body.close();
+        assertEquals(pool.getCreatedCount(), 1);
+    }
+
+    @Test(groups = "standalone")
+    public void deflaterIsAcquiredOnFirstRead() throws IOException {
+        DeflaterPool pool = new DeflaterPool(1);
+        Body unread = new DeflatingBody(new ByteArrayBodyGenerator(payload(1024)).createBody(), DeflatingBody.GZIP, 6, pool);
+        unread.close();
+        assertEquals(pool.getCreatedCount(), 0);
+
+        Body body = new DeflatingBody(new ByteArrayBodyGenerator(payload(1024)).createBody(), DeflatingBody.GZIP, 6, pool);
+        assertEquals(pool.getCreatedCount(), 0);
+        body.read(ByteBuffer.allocate(8192));
+        assertEquals(pool.getCreatedCount(), 1);
+        body.close();
+
+        try {
+            body.read(ByteBuffer.allocate(8192));
+            fail("A closed body can't be read");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test(groups = "standalone")
+    public void skipsSmallAndCompressedBodies() {
+        FluentCaseInsensitiveStringsMap headers = new FluentCaseInsensitiveStringsMap();
+        assertTrue(RequestBodyCompression.shouldCompress(headers, 4096, "application/json; charset=UTF-8", 1024));
+        assertTrue(RequestBodyCompression.shouldCompress(headers, -1L, null, 1024));
+        assertFalse(RequestBodyCompression.shouldCompress(headers, 100, "application/json", 1024));
+        assertFalse(RequestBodyCompression.shouldCompress(headers, 4096, "image/png", 1024));
+        assertFalse(RequestBodyCompression.shouldCompress(headers, 4096, "application/zip", 1024));
+        assertTrue(RequestBodyCompression.shouldCompress(headers, 4096, "image/svg+xml", 1024));
+
+        headers.add("Content-Encoding", "br");
+        assertFalse(RequestBodyCompression.shouldCompress(headers, 4096, "application/json", 1024));
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.compression;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.testng.annotations.Test;
+
+public class InflatingContentDecoderTest {
+
+    private static byte[] payload(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) ("0123456789abcdef".charAt(i % 16) + i / 4096);
+        }
+        return bytes;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(bytes);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes, boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap));
+        deflate.write(bytes);
+        deflate.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] decode(ContentDecoder decoder, byte[] encoded, int chunkSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (int offset = 0; offset < encoded.length; offset += chunkSize) {
+                decoder.decode(encoded, offset, Math.min(chunkSize, encoded.length - offset), out);
+            }
+            decoder.finish(out);
+        } finally {
+            decoder.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static ContentDecoder decoder(String encoding, InflaterPool pool) {
+        return new InflatingContentDecoderFactory(encoding, pool).newDecoder();
+    }
+
+    @Test(groups = "fast")
+    public void decodesGzipInChunksOfAnySize() throws IOException {
+        byte[] payload = payload(100000);
+        byte[] encoded = gzip(payload);
+        InflaterPool pool = new InflaterPool(2);
+        for (int chunkSize : new int[] { 1, 3, 7, 512, encoded.length }) {
+            assertTrue(Arrays.equals(decode(decoder("gzip", pool), encoded, chunkSize), payload), "chunk size " + chunkSize);
+        }
+        assertEquals(pool.getCreatedCount(), 1);
+    }
+
+    @Test(groups = "fast")
+    public void decodesGzipHeaderFields() throws IOException {
+        byte[] payload = payload(1000);
+        byte[] deflated = deflate(payload, true);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // FHCRC | FEXTRA | FNAME | FCOMMENT
+        out.write(new byte[] { 0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, (byte) 0xff });
+        out.write(new byte[] { 3, 0, 'a', 'b', 'c' });
+        out.write("name.txt\0".getBytes("ISO-8859-1"));
+        out.write("a comment\0".getBytes("ISO-8859-1"));
+        out.write(new byte[] { 0, 0 });
+        out.write(deflated);
+        long value = crc.getValue();
+        for (long v : new long[] { value, payload.length }) {
+            for (int i = 0; i < 4; i++) {
+                out.write((int) (v >>> (8 * i)));
+            }
+        }
+        byte[] encoded = out.toByteArray();
+
+        assertTrue(Arrays.equals(decode(decoder("gzip", new InflaterPool(1)), encoded, 1), payload));
+        assertTrue(Arrays.equals(decode(decoder("gzip", new InflaterPool(1)), encoded, encoded.length), payload));
+    }
+
+    @Test(groups = "fast")
+    public void decodesZlibAndRawDeflate() throws IOException {
+        byte[] payload = payload(50000);
+        InflaterPool pool = new InflaterPool(2);
+        for (boolean nowrap : new boolean[] { false, true }) {
+            byte[] encoded = deflate(payload, nowrap);
+            for (int chunkSize : new int[] { 1, 2, 1000, encoded.length }) {
+                assertTrue(Arrays.equals(decode(decoder("deflate", pool), encoded, chunkSize), payload), "nowrap " + nowrap + " chunk size " + chunkSize);
+            }
+        }
+        assertEquals(pool.getCreatedCount(), 2);
+    }
+
+    @Test(groups = "fast", expectedExceptions = ZipException.class)
+    public void rejectsCorruptedTrailer() throws IOException {
+        byte[] encoded = gzip(payload(1000));
+        encoded[encoded.length - 5]++;
+        decode(decoder("gzip", new InflaterPool(1)), encoded, encoded.length);
+    }
+
+    @Test(groups = "fast")
+    public void releasesInflaterOfAbandonedResponses() throws IOException {
+        InflaterPool pool = new InflaterPool(1);
+        byte[] encoded = gzip(payload(100000));
+        ContentDecoder decoder = decoder("gzip", pool);
+        decoder.decode(encoded, 0, encoded.length / 2, new ByteArrayOutputStream());
+        decoder.close();
+        decoder.close();
+
+        assertTrue(Arrays.equals(decode(decoder("gzip", pool), encoded, 4096), payload(100000)));
+        assertEquals(pool.getCreatedCount(), 1);
+    }
+
+    @Test(groups = "fast")
+    public void registryBuildsAcceptEncoding() {
+        ContentDecoderRegistry registry = new ContentDecoderRegistry();
+        assertEquals(registry.getAcceptEncoding(), "gzip,deflate");
+        assertNotNull(registry.get("X-GZIP"));
+        assertEquals(registry.getAliases("gzip"), Arrays.asList("x-gzip"));
+        assertNull(registry.get("br"));
+
+        ContentDecoderFactory br = new ContentDecoderFactory() {
+            public String getEncoding() {
+                return "br";
+            }
+
+            public ContentDecoder newDecoder() {
+                return null;
+            }
+        };
+        registry.register(br).unregister("deflate");
+        assertEquals(registry.getAcceptEncoding(), "gzip,br");
+        assertSame(registry.get(" BR "), br);
+        assertEquals(registry.getEncodings(), Arrays.asList("gzip", "br"));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import org.asynchttpclient.AsyncCompletionHandlerBase;
+import org.asynchttpclient.Response;
+import org.testng.annotations.Test;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static void runBatch(AdaptiveConcurrencyLimit limit, long rttNanos) throws InterruptedException {
+        int slots = limit.getLimit();
+        for (int i = 0; i < slots; i++) {
+            assertTrue(limit.acquire(0));
+        }
+        for (int i = 0; i < slots; i++) {
+            limit.onSample(rttNanos);
+        }
+    }
+
+    @Test
+    public void rejectsAboveTheLimit() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0, 0.9, 100);
+        assertTrue(limit.acquire(0));
+        assertTrue(limit.acquire(0));
+        assertFalse(limit.acquire(0));
+        assertFalse(limit.acquire(10));
+        assertEquals(limit.getRejectedCount(), 2L);
+        limit.onIgnore();
+        assertTrue(limit.acquire(0));
+        assertEquals(limit.getInFlight(), 2);
+    }
+
+    @Test
+    public void growsWhileLatencyIsStable() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 100, 2.0, 0.9, 1000);
+        for (int i = 0; i < 10; i++) {
+            runBatch(limit, 10 * MS);
+        }
+        assertEquals(limit.getLimit(), 100);
+        assertEquals(limit.getInFlight(), 0);
+    }
+
+    @Test
+    public void doesntGrowWhenUnused() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100, 2.0, 0.9, 1000);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.acquire(0));
+            limit.onSample(10 * MS);
+        }
+        assertEquals(limit.getLimit(), 20);
+    }
+
+    @Test
+    public void shrinksWhenLatencyRises() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 1, 100, 2.0, 0.9, 1000);
+        runBatch(limit, 10 * MS);
+        int before = limit.getLimit();
+        // the backend is queuing: 5 times the baseline
+        runBatch(limit, 50 * MS);
+        assertTrue(limit.getLimit() < before, limit.toString());
+        for (int i = 0; i < 20; i++) {
+            runBatch(limit, 50 * MS);
+        }
+        assertEquals(limit.getLimit(), 1);
+    }
+
+    @Test
+    public void baselineFollowsAPermanentlySlowerBackend() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, 2.0, 0.9, 10);
+        runBatch(limit, 10 * MS);
+        for (int i = 0; i < 50; i++) {
+            runBatch(limit, 50 * MS);
+        }
+        // once the window is over, 50 ms is the new baseline and the limit grows again
+        assertTrue(limit.getLimit() > 10, limit.toString());
+    }
+
+    @Test
+    public void backsOffOnDrops() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100, 2.0, 0.5, 1000);
+        assertTrue(limit.acquire(0));
+        limit.onDrop();
+        assertEquals(limit.getLimit(), 5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.acquire(0));
+            limit.onDrop();
+        }
+        assertEquals(limit.getLimit(), 2);
+        assertEquals(limit.getInFlight(), 0);
+    }
+
+    @Test
+    public void cancellationsDontShrinkTheLimit() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 100, 2.0, 0.5, 1000);
+        assertTrue(limit.acquire(0));
+        new AdaptiveAsyncHandlerWrapper<Response>(new AsyncCompletionHandlerBase(), limit).onThrowable(new CancellationException());
+        assertEquals(limit.getLimit(), 10);
+        assertEquals(limit.getInFlight(), 0);
+
+        assertTrue(limit.acquire(0));
+        new AdaptiveAsyncHandlerWrapper<Response>(new AsyncCompletionHandlerBase(), limit).onThrowable(new IOException());
+        assertEquals(limit.getLimit(), 5);
+        assertEquals(limit.getInFlight(), 0);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import static org.testng.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void allowsTheBurstThenLimits() {
+        TokenBucket bucket = new TokenBucket(1.0, 3);
+        assertEquals(bucket.getAvailablePermits(), 3);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertEquals(bucket.getAvailablePermits(), 0);
+    }
+
+    @Test
+    public void reservesAhead() {
+        TokenBucket bucket = new TokenBucket(10.0, 1);
+        assertEquals(bucket.reserve(0L), 0L);
+        long first = bucket.reserve(SECOND);
+        long second = bucket.reserve(SECOND);
+        assertTrue(first > 0L && first <= SECOND / 10, "first wait " + first);
+        assertTrue(second > first && second <= 2 * SECOND / 10, "second wait " + second);
+    }
+
+    @Test
+    public void doesntReserveBeyondMaxWait() {
+        TokenBucket bucket = new TokenBucket(1.0, 1);
+        assertEquals(bucket.reserve(0L), 0L);
+        assertEquals(bucket.reserve(SECOND / 10), -1L);
+        // the refused reservation didn't take a permit
+        long wait = bucket.reserve(SECOND);
+        assertTrue(wait > 0L && wait <= SECOND, "wait " + wait);
+    }
+
+    @Test
+    public void refillsOverTime() throws Exception {
+        TokenBucket bucket = new TokenBucket(100.0, 2);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        Thread.sleep(50);
+        // an idle bucket doesn't accumulate more than the burst
+        assertEquals(bucket.getAvailablePermits(), 2);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void concurrentAcquisitionsDontExceedTheBurst() throws Exception {
+        final TokenBucket bucket = new TokenBucket(0.001, 100);
+        final AtomicInteger acquired = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            new Thread() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        if (bucket.tryAcquire()) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(acquired.get(), 100);
+    }
+}
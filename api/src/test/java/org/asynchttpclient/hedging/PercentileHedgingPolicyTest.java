@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.hedging;
+
+import static org.testng.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.testng.annotations.Test;
+
+public class PercentileHedgingPolicyTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static Request request(String url) {
+        return new RequestBuilder("GET").setUrl(url).build();
+    }
+
+    @Test
+    public void usesTheDefaultDelayWithoutEnoughSamples() {
+        PercentileHedgingPolicy policy = new PercentileHedgingPolicy(95.0, 5, 50, 100);
+        Request request = request("http://foo.com/a");
+        assertEquals(policy.hedgeDelayInMs(request, 1), 50L);
+        policy.onResponse(request, 10 * MS);
+        assertEquals(policy.hedgeDelayInMs(request, 1), 50L);
+        assertEquals(policy.hedgeDelayInMs(request, 2), 100L);
+    }
+
+    @Test
+    public void tracksThePercentileOfEachHost() {
+        PercentileHedgingPolicy policy = new PercentileHedgingPolicy(90.0, 5, 50, 100);
+        Request foo = request("http://foo.com/a");
+        for (int i = 1; i <= 100; i++) {
+            policy.onResponse(foo, i * MS);
+        }
+        assertEquals(policy.getPercentileInMs(foo), 90L);
+        assertEquals(policy.hedgeDelayInMs(request("http://foo.com/b"), 1), 90L);
+        // another host
+        assertEquals(policy.hedgeDelayInMs(request("http://bar.com/a"), 1), 50L);
+    }
+
+    @Test
+    public void forgetsOldSamplesAndHonorsTheMinimum() {
+        PercentileHedgingPolicy policy = new PercentileHedgingPolicy(50.0, 5, 50, 16);
+        Request foo = request("http://foo.com/a");
+        for (int i = 0; i < 16; i++) {
+            policy.onResponse(foo, 1000 * MS);
+        }
+        assertEquals(policy.hedgeDelayInMs(foo, 1), 1000L);
+        for (int i = 0; i < 16; i++) {
+            policy.onResponse(foo, MS);
+        }
+        assertEquals(policy.getPercentileInMs(foo), 1L);
+        assertEquals(policy.hedgeDelayInMs(foo, 1), 5L);
+    }
+}
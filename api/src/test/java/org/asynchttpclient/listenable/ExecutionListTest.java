@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.listenable;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class ExecutionListTest {
+
+    private static Runnable add(final List<Integer> ran, final int i) {
+        return new Runnable() {
+            public void run() {
+                ran.add(i);
+            }
+        };
+    }
+
+    @Test
+    public void runsInTheOrderAdded() {
+        ExecutionList list = new ExecutionList();
+        List<Integer> ran = new ArrayList<Integer>();
+        for (int i = 0; i < 3; i++) {
+            list.add(add(ran, i), ExecutionList.SAME_THREAD_EXECUTOR);
+        }
+        assertTrue(ran.isEmpty());
+        list.run();
+        assertEquals(ran, Arrays.asList(0, 1, 2));
+
+        // running again doesn't run them twice, adding after runs right away
+        list.run();
+        list.add(add(ran, 3), ExecutionList.SAME_THREAD_EXECUTOR);
+        assertEquals(ran, Arrays.asList(0, 1, 2, 3));
+    }
+
+    @Test
+    public void badListenerDoesntStopTheOthers() {
+        ExecutionList list = new ExecutionList();
+        List<Integer> ran = new ArrayList<Integer>();
+        list.add(new Runnable() {
+            public void run() {
+                throw new IllegalStateException("bad listener");
+            }
+        }, ExecutionList.SAME_THREAD_EXECUTOR);
+        list.add(add(ran, 1), ExecutionList.SAME_THREAD_EXECUTOR);
+        list.run();
+        assertEquals(ran, Arrays.asList(1));
+    }
+
+    @Test
+    public void concurrentAddsAreAllRun() throws InterruptedException {
+        final ExecutionList list = new ExecutionList();
+        final AtomicInteger ran = new AtomicInteger();
+        final Runnable listener = new Runnable() {
+            public void run() {
+                ran.incrementAndGet();
+            }
+        };
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 10000; j++) {
+                        list.add(listener, ExecutionList.SAME_THREAD_EXECUTOR);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        list.run();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(ran.get(), 40000);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.resumable;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.Test;
+
+public class JournalBasedResumableProcessorTest {
+
+    private static File newJournal() throws Exception {
+        File journal = File.createTempFile("resumable", ".journal");
+        journal.delete();
+        journal.deleteOnExit();
+        return journal;
+    }
+
+    @Test
+    public void testSaveLoad() throws Exception {
+        File journal = newJournal();
+        JournalBasedResumableProcessor p = new JournalBasedResumableProcessor(journal, 1000L);
+        p.put("http://localhost/test.url", 15L);
+        p.put("http://localhost/test2.url", 50L);
+        p.put("http://localhost/test3.url", 5L);
+        p.put("http://localhost/test.url", 20L);
+        p.remove("http://localhost/test3.url");
+        p.save(null);
+        p.close();
+
+        p = new JournalBasedResumableProcessor(journal, 1000L);
+        Map<String, Long> m = p.load();
+        assertEquals(m.size(), 2);
+        assertEquals(m.get("http://localhost/test.url"), Long.valueOf(20L));
+        assertEquals(m.get("http://localhost/test2.url"), Long.valueOf(50L));
+        p.close();
+    }
+
+    @Test
+    public void testTruncatedRecordIsDiscarded() throws Exception {
+        File journal = newJournal();
+        JournalBasedResumableProcessor p = new JournalBasedResumableProcessor(journal, 0L);
+        p.put("http://localhost/test.url", 15L);
+        p.put("http://localhost/test2.url", 50L);
+        p.close();
+
+        // simulate a crash in the middle of the last record
+        RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        p = new JournalBasedResumableProcessor(journal, 0L);
+        assertEquals(p.load().size(), 1);
+        assertEquals(p.load().get("http://localhost/test.url"), Long.valueOf(15L));
+        p.put("http://localhost/test3.url", 7L);
+        p.close();
+
+        p = new JournalBasedResumableProcessor(journal, 0L);
+        assertEquals(p.load().size(), 2);
+        assertEquals(p.load().get("http://localhost/test3.url"), Long.valueOf(7L));
+        p.close();
+    }
+
+    @Test
+    public void testLoadReturnsASnapshot() throws Exception {
+        JournalBasedResumableProcessor p = new JournalBasedResumableProcessor(newJournal(), 0L);
+        p.put("http://localhost/test.url", 15L);
+        Map<String, Long> m = p.load();
+        p.put("http://localhost/test.url", 20L);
+        p.put("http://localhost/test2.url", 50L);
+        assertEquals(m.size(), 1);
+        assertEquals(m.get("http://localhost/test.url"), Long.valueOf(15L));
+        p.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        File journal = newJournal();
+        JournalBasedResumableProcessor p = new JournalBasedResumableProcessor(journal, 1000L);
+        for (int i = 0; i < 50000; i++) {
+            p.put("http://localhost/test" + (i % 10) + ".url", i);
+        }
+        p.sync();
+        long compactedLength = journal.length();
+        p.close();
+
+        assertTrue(compactedLength < 1000L, "Journal wasn't compacted: " + compactedLength);
+        p = new JournalBasedResumableProcessor(journal, 1000L);
+        Map<String, Long> m = p.load();
+        assertEquals(m.size(), 10);
+        assertEquals(m.get("http://localhost/test9.url"), Long.valueOf(49999L));
+        p.close();
+    }
+
+    @Test
+    public void testFailedCompactionKeepsRecords() throws Exception {
+        File journal = newJournal();
+        final AtomicBoolean failRename = new AtomicBoolean(true);
+        JournalBasedResumableProcessor p = new JournalBasedResumableProcessor(journal, 1000L) {
+            @Override
+            boolean rename(File compacted, File journal) {
+                return !failRename.get() && super.rename(compacted, journal);
+            }
+        };
+        for (int i = 0; i < 50000; i++) {
+            p.put("http://localhost/test" + (i % 10) + ".url", i);
+        }
+        p.sync();
+        assertTrue(journal.length() > 1000L, "Journal was compacted");
+        p.put("http://localhost/test0.url", 50000L);
+        p.sync();
+
+        failRename.set(false);
+        p.put("http://localhost/test1.url", 50001L);
+        p.sync();
+        long compactedLength = journal.length();
+        p.close();
+
+        assertTrue(compactedLength < 1000L, "Journal wasn't compacted: " + compactedLength);
+        p = new JournalBasedResumableProcessor(journal, 1000L);
+        Map<String, Long> m = p.load();
+        assertEquals(m.size(), 10);
+        assertEquals(m.get("http://localhost/test0.url"), Long.valueOf(50000L));
+        assertEquals(m.get("http://localhost/test1.url"), Long.valueOf(50001L));
+        assertEquals(m.get("http://localhost/test9.url"), Long.valueOf(49999L));
+        p.close();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.retry;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.testng.annotations.Test;
+
+public class ExponentialBackoffRetryPolicyTest {
+
+    private static Request request(String method, String url) {
+        return new RequestBuilder(method).setUrl(url).build();
+    }
+
+    @Test
+    public void backsOffExponentially() {
+        RetryPolicy policy = new ExponentialBackoffRetryPolicy.Builder().setInitialDelayInMs(100).setMaxDelayInMs(350).setJitter(0.0)
+                .setMaxRetries(10).setRetryBudget(null).build();
+        Request request = request("GET", "http://foo.com");
+        assertEquals(policy.retryDelayInMs(request, 503, null, 0), 100L);
+        assertEquals(policy.retryDelayInMs(request, 503, null, 1), 200L);
+        assertEquals(policy.retryDelayInMs(request, 503, null, 2), 350L);
+    }
+
+    @Test
+    public void jitterShortensTheDelay() {
+        RetryPolicy policy = new ExponentialBackoffRetryPolicy.Builder().setInitialDelayInMs(1000).setJitter(0.5).setRetryBudget(null).build();
+        Request request = request("GET", "http://foo.com");
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.retryDelayInMs(request, 503, null, 0);
+            assertTrue(delay >= 500L && delay <= 1000L, "delay " + delay);
+        }
+    }
+
+    @Test
+    public void onlyRetriesEligibleRequests() {
+        RetryPolicy policy = new ExponentialBackoffRetryPolicy.Builder().setMaxRetries(2).setRetryBudget(null).build();
+        Request get = request("GET", "http://foo.com");
+        assertTrue(policy.retryDelayInMs(get, 503, null, 0) >= 0L);
+        assertTrue(policy.retryDelayInMs(get, -1, new IOException(), 0) >= 0L);
+        assertTrue(policy.retryDelayInMs(get, 500, null, 0) < 0L);
+        assertTrue(policy.retryDelayInMs(get, -1, new IllegalStateException(), 0) < 0L);
+        assertTrue(policy.retryDelayInMs(get, 503, null, 2) < 0L);
+        assertTrue(policy.retryDelayInMs(request("POST", "http://foo.com"), 503, null, 0) < 0L);
+    }
+
+    @Test
+    public void budgetIsPerHost() {
+        RetryBudget budget = new RetryBudget(0.5, 0.0, 10);
+        RetryPolicy policy = new ExponentialBackoffRetryPolicy.Builder().setRetryBudget(budget).build();
+        Request foo = request("GET", "http://foo.com");
+        Request bar = request("GET", "http://bar.com");
+        policy.onRequest(foo);
+        policy.onRequest(foo);
+        assertEquals(budget.getBalance(foo), 1.0);
+        assertTrue(policy.retryDelayInMs(foo, 503, null, 0) >= 0L);
+        assertTrue(policy.retryDelayInMs(foo, 503, null, 0) < 0L);
+        assertTrue(policy.retryDelayInMs(bar, 503, null, 0) < 0L);
+    }
+
+    @Test
+    public void budgetIsCapped() {
+        RetryBudget budget = new RetryBudget(1.0, 0.0, 2);
+        Request foo = request("GET", "http://foo.com");
+        for (int i = 0; i < 10; i++) {
+            budget.deposit(foo);
+        }
+        assertTrue(budget.tryWithdraw(foo));
+        assertTrue(budget.tryWithdraw(foo));
+        assertFalse(budget.tryWithdraw(foo));
+    }
+
+    @Test
+    public void budgetAllowsAMinimumRate() {
+        RetryBudget budget = new RetryBudget(0.1, 1.0, 10);
+        Request foo = request("GET", "http://foo.com");
+        assertTrue(budget.tryWithdraw(foo));
+        assertFalse(budget.tryWithdraw(foo));
+    }
+}
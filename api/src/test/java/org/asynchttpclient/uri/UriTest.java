@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.uri;
+
+import static org.testng.Assert.*;
+
+import java.net.URI;
+
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.util.AsyncHttpProviderUtils;
+import org.testng.annotations.Test;
+
+public class UriTest {
+
+    @Test(groups = "fast")
+    public void createSplitsTheUrl() {
+        Uri uri = Uri.create("https://user@example.com:8443/a%20b/c?x=1&y=%2F");
+        assertEquals(uri.getScheme(), "https");
+        assertEquals(uri.getAuthority(), "user@example.com:8443");
+        assertEquals(uri.getHost(), "example.com");
+        assertEquals(uri.getPort(), 8443);
+        assertEquals(uri.getExplicitPort(), 8443);
+        assertEquals(uri.getPath(), "/a%20b/c");
+        assertEquals(uri.getQuery(), "x=1&y=%2F");
+        assertEquals(uri.getRequestTarget(), "/a%20b/c?x=1&y=%2F");
+        assertEquals(uri.toUrl(), "https://user@example.com:8443/a%20b/c?x=1&y=%2F");
+        assertTrue(uri.isSecure());
+        assertFalse(uri.isWebSocket());
+    }
+
+    @Test(groups = "fast")
+    public void missingPathAndPortGetDefaults() {
+        Uri uri = Uri.create("ws://example.com");
+        assertEquals(uri.getPath(), "/");
+        assertNull(uri.getQuery());
+        assertEquals(uri.getRequestTarget(), "/");
+        assertEquals(uri.getPort(), -1);
+        assertEquals(uri.getExplicitPort(), 80);
+        assertEquals(uri.toUrl(), "ws://example.com/");
+        assertTrue(uri.isWebSocket());
+    }
+
+    @Test(groups = "fast")
+    public void baseUrlMatchesTheDefaultPoolKey() {
+        for (String url : new String[] { "http://example.com/foo", "https://example.com/foo", "http://example.com:8080/foo?bar" }) {
+            assertEquals(Uri.create(url).getBaseUrl(), AsyncHttpProviderUtils.getBaseUrl(URI.create(url)));
+        }
+    }
+
+    @Test(groups = "fast")
+    public void javaNetUriIsParsedOnce() {
+        URI javaNetUri = URI.create("http://example.com/foo?bar=baz");
+        Uri uri = Uri.create(javaNetUri);
+        assertSame(uri.toJavaNetURI(), javaNetUri);
+
+        Uri built = new Uri("http", "example.com", "example.com", -1, "", null);
+        assertEquals(built.toJavaNetURI(), URI.create("http://example.com/"));
+        assertSame(built.toJavaNetURI(), built.toJavaNetURI());
+    }
+
+    @Test(groups = "fast", expectedExceptions = IllegalArgumentException.class)
+    public void unsupportedSchemeIsRejected() {
+        Uri.create("ftp://example.com/");
+    }
+
+    @Test(groups = "fast")
+    public void requestCachesItsUri() {
+        RequestBuilder builder = new RequestBuilder("GET").setUrl("http://example.com/foo/").addQueryParameter("a", "b c");
+        Request request = builder.build();
+        assertSame(request.getUri(), request.getUri());
+        assertEquals(request.getUri().toUrl(), "http://example.com/foo/?a=b%20c");
+        assertEquals(request.getUrl(), "http://example.com/foo/?a=b%20c");
+        assertEquals(request.getRawUri().getQuery(), "a=b c");
+        assertEquals(request.getURI(), URI.create("http://example.com/foo/?a=b%20c"));
+
+        // changing the query invalidates the cached values
+        builder.addQueryParameter("d", "e");
+        assertEquals(request.getUrl(), "http://example.com/foo/?a=b%20c&d=e");
+        assertEquals(request.getURI().getRawQuery(), "a=b%20c&d=e");
+    }
+}
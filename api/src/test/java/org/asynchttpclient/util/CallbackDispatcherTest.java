@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.util;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.CallbackExecutionPolicy;
+import org.testng.annotations.Test;
+
+public class CallbackDispatcherTest {
+
+    @Test
+    public void runsInlineByDefault() {
+        CallbackDispatcher dispatcher = new CallbackDispatcher(new AsyncHttpClientConfig.Builder().build());
+        assertTrue(dispatcher.isInline());
+        assertNull(dispatcher.getExecutor());
+
+        final Thread caller = Thread.currentThread();
+        final List<Thread> threads = new ArrayList<Thread>();
+        dispatcher.dispatch(new Runnable() {
+            public void run() {
+                threads.add(Thread.currentThread());
+            }
+        });
+        assertEquals(threads, Collections.singletonList(caller));
+    }
+
+    @Test
+    public void orderedKeepsSubmissionOrder() throws InterruptedException {
+        CallbackDispatcher dispatcher = new CallbackDispatcher(new AsyncHttpClientConfig.Builder()
+                .setCallbackExecutionPolicy(CallbackExecutionPolicy.ORDERED).build());
+        try {
+            assertTrue(dispatcher.getExecutor() instanceof CallbackExecutor);
+
+            final int count = 1000;
+            final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+            final CountDownLatch latch = new CountDownLatch(count);
+            for (int i = 0; i < count; i++) {
+                final int n = i;
+                dispatcher.dispatch(new Runnable() {
+                    public void run() {
+                        order.add(n);
+                        latch.countDown();
+                    }
+                });
+            }
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < count; i++) {
+                assertEquals(order.get(i).intValue(), i);
+            }
+        } finally {
+            dispatcher.close();
+        }
+        assertTrue(((CallbackExecutor) dispatcher.getExecutor()).isShutdown());
+    }
+
+    @Test
+    public void saturatedExecutorRunsOnCaller() throws InterruptedException {
+        CallbackExecutor executor = new CallbackExecutor("test", 1, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = new Runnable() {
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            // one running, one queued
+            executor.execute(blocking);
+            executor.execute(blocking);
+            assertEquals(executor.getQueueLength(), 1);
+            assertEquals(executor.getQueueRemainingCapacity(), 0);
+
+            final List<Thread> threads = new ArrayList<Thread>();
+            executor.execute(new Runnable() {
+                public void run() {
+                    threads.add(Thread.currentThread());
+                }
+            });
+            assertEquals(threads, Collections.singletonList(Thread.currentThread()));
+            assertEquals(executor.getCallerRunsCount(), 1L);
+            assertEquals(executor.getPoolSize(), 1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.listenable.ExecutionList;
+
+public final class CompletableFutures {
+
+    private CompletableFutures() {
+    }
+
+    /**
+     * The returned future is completed inline, on the thread completing the AHC future, usually an I/O thread, so stages
+     * that block or take long should use the <code>*Async</code> variants. Cancelling it cancels the request.
+     * 
+     * @param future an AHC ListenableFuture
+     * @return a CompletableFuture
+     */
+    public static <V> CompletableFuture<V> toCompletableFuture(final ListenableFuture<V> future) {
+
+        final CompletableFuture<V> completable = new CompletableFuture<V>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                // cancelled first, so the listener of the cancelled AHC future finds it done
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                future.cancel(mayInterruptIfRunning);
+                return cancelled;
+            }
+        };
+
+        // no lambda, the bundle plugin can't read invokedynamic
+        future.addListener(new Runnable() {
+            public void run() {
+                complete(future, completable);
+            }
+        }, ExecutionList.SAME_THREAD_EXECUTOR);
+        return completable;
+    }
+
+    private static <V> void complete(ListenableFuture<V> future, CompletableFuture<V> completable) {
+        // the get() of a cancelled provider future doesn't always throw a CancellationException
+        if (future.isCancelled()) {
+            completable.cancel(false);
+            return;
+        }
+        try {
+            completable.complete(future.get());
+        } catch (ExecutionException e) {
+            completable.completeExceptionally(e.getCause());
+        } catch (CancellationException e) {
+            completable.cancel(false);
+        } catch (InterruptedException e) {
+            // can't happen, the future is done
+            Thread.currentThread().interrupt();
+            completable.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.extra;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.listenable.SettableListenableFuture;
+import org.asynchttpclient.providers.netty.NettyAsyncHttpProvider;
+import org.testng.annotations.Test;
+
+public class CompletableFuturesTest {
+
+    @Test
+    public void completesWithTheValue() throws Exception {
+        SettableListenableFuture<String> future = new SettableListenableFuture<String>();
+        CompletableFuture<Integer> length = CompletableFutures.toCompletableFuture(future).thenApply(String::length);
+        assertFalse(length.isDone());
+        future.set("foo");
+        assertEquals(length.getNow(-1), Integer.valueOf(3));
+    }
+
+    @Test
+    public void completesWithTheFailure() throws Exception {
+        SettableListenableFuture<String> future = new SettableListenableFuture<String>();
+        future.setException(new IOException("boom"));
+        // the listener runs right away once the future is done
+        CompletableFuture<String> completable = CompletableFutures.toCompletableFuture(future);
+        try {
+            completable.get();
+            fail("should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void cancellationIsPropagated() {
+        SettableListenableFuture<String> future = new SettableListenableFuture<String>();
+        CompletableFuture<String> completable = CompletableFutures.toCompletableFuture(future);
+        completable.cancel(true);
+        assertTrue(future.isCancelled());
+
+        SettableListenableFuture<String> other = new SettableListenableFuture<String>();
+        CompletableFuture<String> otherCompletable = CompletableFutures.toCompletableFuture(other);
+        other.cancel(true);
+        assertTrue(otherCompletable.isCancelled());
+    }
+
+    @Test
+    public void cancellationOfAProviderFutureIsPropagated() throws Exception {
+        // a server that never answers
+        ServerSocket server = new ServerSocket(0);
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder().build();
+        AsyncHttpClient client = new AsyncHttpClient(new NettyAsyncHttpProvider(config), config);
+        try {
+            String url = "http://127.0.0.1:" + server.getLocalPort() + "/";
+
+            ListenableFuture<Response> future = client.prepareGet(url).execute();
+            CompletableFuture<Response> completable = CompletableFutures.toCompletableFuture(future);
+            Socket first = server.accept();
+            future.cancel(true);
+            assertTrue(completable.isCancelled());
+
+            ListenableFuture<Response> other = client.prepareGet(url).execute();
+            CompletableFuture<Response> otherCompletable = CompletableFutures.toCompletableFuture(other);
+            Socket second = server.accept();
+            assertTrue(otherCompletable.cancel(true));
+            assertTrue(otherCompletable.isCancelled());
+            assertTrue(other.isCancelled());
+
+            first.close();
+            second.close();
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+}
@@ -13,10 +13,18 @@
 
 package org.asynchttpclient.providers.grizzly;
 
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
 import org.asynchttpclient.AsyncHttpClientConfig;
-import org.asynchttpclient.ConnectionPoolKeyStrategy;
+import org.asynchttpclient.PoolKey;
 import org.asynchttpclient.ProxyServer;
 import org.asynchttpclient.Request;
+import org.asynchttpclient.circuitbreaker.CircuitBreaker;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerOpenException;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistry;
+import org.asynchttpclient.providers.grizzly.filters.SwitchingSSLFilter;
+import org.asynchttpclient.uri.Uri;
+import org.asynchttpclient.util.JmxUtils;
 import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.EmptyCompletionHandler;
@@ -30,6 +38,7 @@ import org.glassfish.grizzly.ssl.SSLUtils;
 import org.glassfish.grizzly.utils.Futures;
 import org.glassfish.grizzly.utils.IdleTimeoutFilter;
 
+import javax.management.ObjectName;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSession;
 
@@ -38,11 +47,8 @@ import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
@@ -52,13 +58,17 @@ public class ConnectionManager {
 
     private static final Attribute<Boolean> DO_NOT_CACHE =
         Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(ConnectionManager.class.getName());
+    private static final Attribute<Boolean> NEW_CONNECTION =
+        Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(ConnectionManager.class.getName() + "-NEW");
     private final ConnectionPool connectionPool;
     private final GrizzlyAsyncHttpProvider provider;
     private final boolean canDestroyPool;
-    private final Map<String,EndpointKey<SocketAddress>> endpointKeyMap = new HashMap<String,EndpointKey<SocketAddress>>();
+    private final ConcurrentHashMap<PoolKey,EndpointKey<SocketAddress>> endpointKeyMap = new ConcurrentHashMap<PoolKey,EndpointKey<SocketAddress>>();
     private final FilterChainBuilder secureBuilder;
     private final FilterChainBuilder nonSecureBuilder;
     private final boolean asyncConnect;
+    private final ObjectName connectionPoolStatsName;
+    private final ObjectName circuitBreakersName;
 
 
     // ------------------------------------------------------------ Constructors
@@ -89,6 +99,11 @@ public class ConnectionManager {
         this.secureBuilder = secureBuilder;
         this.nonSecureBuilder = nonSecureBuilder;
         asyncConnect = config.isAsyncConnectMode();
+        connectionPoolStatsName =
+                JmxUtils.registerConnectionPoolStats("grizzly", this.connectionPool);
+        circuitBreakersName = config.getCircuitBreakerRegistry() != null
+                ? JmxUtils.registerCircuitBreakers("grizzly", config.getCircuitBreakerRegistry())
+                : null;
 
     }
 
@@ -100,10 +115,19 @@ public class ConnectionManager {
                                     final GrizzlyResponseFuture requestFuture,
                                     final CompletionHandler<Connection> connectHandler)
     throws IOException {
+        final CircuitBreaker circuitBreaker =
+                getCircuitBreaker(request, requestFuture);
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            final IOException e =
+                    new CircuitBreakerOpenException(circuitBreaker.getKey());
+            requestFuture.getAsyncHandler().onThrowable(e);
+            throw e;
+        }
         final EndpointKey<SocketAddress> key =
-                getEndPointKey(request, requestFuture.getProxyServer());
+                getEndPointKey(request, requestFuture);
         CompletionHandler<Connection> handler =
-                wrapHandler(request, getVerifier(), connectHandler);
+                wrapHandler(request, getVerifier(),
+                        recordingHandler(circuitBreaker, connectHandler));
         if (asyncConnect) {
             connectionPool.take(key, handler);
         } else {
@@ -138,6 +162,7 @@ public class ConnectionManager {
 
         final Connection c = obtainConnection0(request, requestFuture);
         markConnectionAsDoNotCache(c);
+        notifyConnected(c, requestFuture.getAsyncHandler());
         return c;
 
     }
@@ -147,8 +172,8 @@ public class ConnectionManager {
     static CompletionHandler<Connection> wrapHandler(final Request request,
                                                      final HostnameVerifier verifier,
                                                      final CompletionHandler<Connection> delegate) {
-        final URI uri = request.getURI();
-        if (Utils.isSecure(uri) && verifier != null) {
+        final Uri uri = request.getUri();
+        if (uri.isSecure() && verifier != null) {
             return new EmptyCompletionHandler<Connection>() {
                 @Override
                 public void completed(Connection result) {
@@ -182,6 +207,73 @@ public class ConnectionManager {
     }
 
 
+    /**
+     * Record whether a connection could be obtained into the circuit breaker
+     * of its host. Failing for lack of capacity in the pool says nothing of
+     * the host, so it isn't recorded.
+     */
+    static CompletionHandler<Connection> recordingHandler(final CircuitBreaker circuitBreaker,
+                                                          final CompletionHandler<Connection> delegate) {
+        if (circuitBreaker == null) {
+            return delegate;
+        }
+        return new CompletionHandler<Connection>() {
+            @Override
+            public void cancelled() {
+                delegate.cancelled();
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                if (!(throwable instanceof ConnectionPool.MaxCapacityException)) {
+                    circuitBreaker.onFailure();
+                }
+                delegate.failed(throwable);
+            }
+
+            @Override
+            public void completed(Connection result) {
+                circuitBreaker.onSuccess();
+                delegate.completed(result);
+            }
+
+            @Override
+            public void updated(Connection result) {
+                delegate.updated(result);
+            }
+        };
+    }
+
+
+    static void markConnectionAsNew(final Connection c) {
+        NEW_CONNECTION.set(c, Boolean.TRUE);
+    }
+
+    /**
+     * Notify the {@link AsyncHandlerTimingExtensions} whether a connection was
+     * opened for the request or taken from the pool.
+     */
+    static void notifyConnected(final Connection c,
+                                final AsyncHandler handler) {
+        final boolean opened = NEW_CONNECTION.remove(c) != null;
+        if (handler instanceof AsyncHandlerTimingExtensions) {
+            final AsyncHandlerTimingExtensions extensions =
+                    (AsyncHandlerTimingExtensions) handler;
+            final long now = System.nanoTime();
+            if (opened) {
+                // secure connections are returned after the handshake
+                final Long connected = SwitchingSSLFilter.getConnectedNanos(c);
+                extensions.onConnectionOpen(connected != null ? connected : now);
+                final Long handshake = SwitchingSSLFilter.getHandshakeNanos(c);
+                if (handshake != null) {
+                    extensions.onTlsHandshakeDone(handshake);
+                }
+            } else {
+                extensions.onConnectionPooled(now);
+            }
+        }
+    }
+
     static void markConnectionAsDoNotCache(final Connection c) {
         DO_NOT_CACHE.set(c, Boolean.TRUE);
     }
@@ -199,15 +291,18 @@ public class ConnectionManager {
     }
 
     private EndpointKey<SocketAddress> getEndPointKey(final Request request,
-                                                      final ProxyServer proxyServer) {
-        final String stringKey = getPoolKey(request, proxyServer);
-        EndpointKey<SocketAddress> key = endpointKeyMap.get(stringKey);
+                                                      final GrizzlyResponseFuture requestFuture) {
+        final ProxyServer proxyServer = requestFuture.getProxyServer();
+        final PoolKey poolKey = request.getPoolKey(proxyServer);
+        EndpointKey<SocketAddress> key = endpointKeyMap.get(poolKey);
         if (key == null) {
             synchronized (endpointKeyMap) {
-                key = endpointKeyMap.get(stringKey);
+                key = endpointKeyMap.get(poolKey);
                 if (key == null) {
                     SocketAddress address =
                             getRemoteAddress(request, proxyServer);
+                    // the endpoint address is resolved once
+                    notifyDnsResolved(requestFuture.getAsyncHandler());
                     InetAddress localAddress = request.getLocalAddress();
                     InetSocketAddress localSocketAddress = null;
                     if (localAddress != null) {
@@ -225,11 +320,11 @@ public class ConnectionManager {
                                     .proxyServer(proxyServer)
                                     .build();
                     EndpointKey<SocketAddress> localKey =
-                            new EndpointKey<SocketAddress>(stringKey,
+                            new EndpointKey<SocketAddress>(poolKey,
                                                address,
                                                localSocketAddress,
                                                handler);
-                    endpointKeyMap.put(stringKey, localKey);
+                    endpointKeyMap.put(poolKey, localKey);
                     key = localKey;
                 }
             }
@@ -237,32 +332,33 @@ public class ConnectionManager {
         return key;
     }
 
+    private CircuitBreaker getCircuitBreaker(final Request request,
+                                             final GrizzlyResponseFuture requestFuture) {
+        final CircuitBreakerRegistry circuitBreakers =
+                provider.getClientConfig().getCircuitBreakerRegistry();
+        if (circuitBreakers == null) {
+            return null;
+        }
+        return circuitBreakers.getCircuitBreaker(
+                request.getPoolKey(requestFuture.getProxyServer()).getConnectionKey());
+    }
+
     private SocketAddress getRemoteAddress(final Request request,
                                            final ProxyServer proxyServer) {
-        final URI requestUri = request.getURI();
+        final Uri requestUri = request.getUri();
         final String host = ((proxyServer != null)
                 ? proxyServer.getHost()
                 : requestUri.getHost());
-        final int port = ((proxyServer != null)
+        final int port = ((proxyServer != null && proxyServer.getPort() != -1)
                 ? proxyServer.getPort()
-                : requestUri.getPort());
-        return new InetSocketAddress(host, getPort(request.getURI(), port));
+                : requestUri.getExplicitPort());
+        return new InetSocketAddress(host, port);
     }
 
-    private static int getPort(final URI uri, final int p) {
-        int port = p;
-        if (port == -1) {
-            final String protocol = uri.getScheme().toLowerCase(Locale.ENGLISH);
-            if ("http".equals(protocol) || "ws".equals(protocol)) {
-                port = 80;
-            } else if ("https".equals(protocol) || "wss".equals(protocol)) {
-                port = 443;
-            } else {
-                throw new IllegalArgumentException(
-                        "Unknown protocol: " + protocol);
-            }
+    private static void notifyDnsResolved(final AsyncHandler handler) {
+        if (handler instanceof AsyncHandlerTimingExtensions) {
+            ((AsyncHandlerTimingExtensions) handler).onDnsResolved(System.nanoTime());
         }
-        return port;
     }
 
     private Connection obtainConnection0(final Request request,
@@ -275,6 +371,7 @@ public class ConnectionManager {
                 createConnectionCompletionHandler(request, requestFuture, null));
         final ProxyServer proxyServer = requestFuture.getProxyServer();
         final SocketAddress address = getRemoteAddress(request, proxyServer);
+        notifyDnsResolved(requestFuture.getAsyncHandler());
         ProxyAwareConnectorHandler handler = ProxyAwareConnectorHandler
                             .builder(provider.clientTransport)
                             .nonSecureFilterChainTemplate(nonSecureBuilder)
@@ -305,8 +402,14 @@ public class ConnectionManager {
     }
 
 
+    ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
     void destroy() {
 
+        JmxUtils.unregister(connectionPoolStatsName);
+        JmxUtils.unregister(circuitBreakersName);
         if (canDestroyPool) {
             connectionPool.close();
         }
@@ -350,10 +453,4 @@ public class ConnectionManager {
         };
     }
 
-    private static String getPoolKey(final Request request, ProxyServer proxyServer) {
-        final ConnectionPoolKeyStrategy keyStrategy = request.getConnectionPoolKeyStrategy();
-        URI uri = proxyServer != null ? proxyServer.getURI() : request.getURI();
-        return keyStrategy.getKey(uri);
-    }
-
 }
@@ -13,10 +13,17 @@
 
 package org.asynchttpclient.providers.grizzly;
 
+import org.asynchttpclient.ConnectionPoolStats;
+import org.asynchttpclient.util.StripedCounter;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.Closeable;
 import org.glassfish.grizzly.CompletionHandler;
 import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.GrizzlyFuture;
+import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.connectionpool.EndpointKey;
 import org.glassfish.grizzly.connectionpool.MultiEndpointPool;
 import org.glassfish.grizzly.connectionpool.SingleEndpointPool;
@@ -24,16 +31,42 @@ import org.glassfish.grizzly.utils.DelayedExecutor;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Extension of standard Grizzly {@link MultiEndpointPool}.
+ * Extension of standard Grizzly {@link MultiEndpointPool}, which also keeps
+ * the {@link ConnectionPoolStats}.
  *
  * @since 2.0
  * @author The Grizzly Team
  */
-public class ConnectionPool extends MultiEndpointPool<SocketAddress>{
+public class ConnectionPool extends MultiEndpointPool<SocketAddress>
+        implements ConnectionPoolStats {
+
+    private static final Attribute<Boolean> IDLE =
+        Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(ConnectionPool.class.getName() + "-IDLE");
+    private static final Attribute<Boolean> MONITORED =
+        Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(ConnectionPool.class.getName() + "-MONITORED");
 
     private final Object lock = new Object();
+    private final int maxConnectionsTotal;
+    private final StripedCounter offers = new StripedCounter();
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter evictions = new StripedCounter();
+    private volatile boolean closing;
+
+    // counts the idle connections closed while in the pool
+    private final CloseListener evictionListener = new CloseListener<Closeable,CloseType>() {
+        @Override
+        public void onClosed(Closeable closeable, CloseType type)
+        throws IOException {
+            if (IDLE.remove((Connection) closeable) != null && !closing) {
+                evictions.increment();
+            }
+        }
+    };
 
     // ------------------------------------------------------------ Constructors
 
@@ -47,6 +80,7 @@ public class ConnectionPool extends MultiEndpointPool<SocketAddress>{
         super(null, maxConnectionsPerEndpoint,
               maxConnectionsTotal, delayedExecutor, connectTimeoutMillis,
               keepAliveTimeoutMillis, keepAliveCheckIntervalMillis, -1, -1);
+        this.maxConnectionsTotal = maxConnectionsTotal;
     }
 
 
@@ -77,10 +111,12 @@ public class ConnectionPool extends MultiEndpointPool<SocketAddress>{
     @Override
     public GrizzlyFuture<Connection> take(final EndpointKey<SocketAddress> endpointKey) {
         synchronized (lock) {
+            recordLookup(endpointKey);
             final GrizzlyFuture<Connection> f = super.take(endpointKey);
             f.addCompletionHandler(new EmptyCompletionHandler<Connection>() {
                 @Override
                 public void completed(Connection result) {
+                    IDLE.remove(result);
                     if (Utils.isSpdyConnection(result)) {
                         release(result);
                     }
@@ -99,6 +135,7 @@ public class ConnectionPool extends MultiEndpointPool<SocketAddress>{
                 throw new IllegalStateException("CompletionHandler argument cannot be null.");
             }
 
+            recordLookup(endpointKey);
             super.take(endpointKey, new CompletionHandler<Connection>() {
                 @Override
                 public void cancelled() {
@@ -112,7 +149,8 @@ public class ConnectionPool extends MultiEndpointPool<SocketAddress>{
 
                 @Override
                 public void completed(Connection result) {
-                    release(result);
+                    IDLE.remove(result);
+                    releaseUncounted(result);
                     completionHandler.completed(result);
                 }
 
@@ -126,11 +164,119 @@ public class ConnectionPool extends MultiEndpointPool<SocketAddress>{
 
     @Override
     public boolean release(Connection connection) {
+        synchronized (lock) {
+            final boolean released = super.release(connection);
+            if (released) {
+                offers.increment();
+                IDLE.set(connection, Boolean.TRUE);
+                if (!MONITORED.isSet(connection)) {
+                    MONITORED.set(connection, Boolean.TRUE);
+                    connection.addCloseListener(evictionListener);
+                }
+            }
+            return released;
+        }
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        super.close();
+    }
+
+
+    // ---------------------------------------- Methods from ConnectionPoolStats
+
+
+    @Override
+    public int getIdleConnectionCount() {
+        int count = 0;
+        for (SingleEndpointPool<SocketAddress> sePool : endpointToPoolMap.values()) {
+            count += sePool.getReadyConnectionsCount();
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Integer> getIdleConnectionCountPerHost() {
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map.Entry<EndpointKey<SocketAddress>, SingleEndpointPool<SocketAddress>> entry
+                : endpointToPoolMap.entrySet()) {
+            final int count = entry.getValue().getReadyConnectionsCount();
+            if (count > 0) {
+                counts.put(String.valueOf(entry.getKey().getInternalKey()), count);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public int getOpenConnectionCount() {
+        return getOpenConnectionsCount();
+    }
+
+    @Override
+    public int getAvailablePermits() {
+        return maxConnectionsTotal < 0
+                ? -1
+                : Math.max(0, maxConnectionsTotal - size());
+    }
+
+    @Override
+    public long getOfferCount() {
+        return offers.sum();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total > 0L ? (double) hitCount / total : 0.0;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return always 0, the connections lifetime isn't limited by this pool.
+     */
+    @Override
+    public long getExpirationCount() {
+        return 0L;
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private boolean releaseUncounted(final Connection connection) {
         synchronized (lock) {
             return super.release(connection);
         }
     }
 
+    private void recordLookup(final EndpointKey<SocketAddress> endpointKey) {
+        final SingleEndpointPool<SocketAddress> sePool =
+                endpointToPoolMap.get(endpointKey);
+        if (sePool != null && sePool.getReadyConnectionsCount() > 0) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
     // ---------------------------------------------------------- Nested Classes
 
 
@@ -14,6 +14,8 @@
 package org.asynchttpclient.providers.grizzly;
 
 import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandlerExtensions;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.AsyncHttpProviderConfig;
 import org.asynchttpclient.Cookie;
@@ -23,6 +25,8 @@ import org.asynchttpclient.RequestBuilder;
 import org.asynchttpclient.filter.FilterContext;
 import org.asynchttpclient.filter.ResponseFilter;
 import org.asynchttpclient.listener.TransferCompletionHandler;
+import org.asynchttpclient.retry.RetryPolicy;
+import org.asynchttpclient.util.CallbackDispatcher;
 import org.asynchttpclient.org.jboss.netty.handler.codec.http.CookieDecoder;
 import org.asynchttpclient.providers.grizzly.filters.events.ContinueEvent;
 import org.asynchttpclient.providers.grizzly.statushandler.AuthorizationHandler;
@@ -51,6 +55,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.asynchttpclient.AsyncHandler.STATE.ABORT;
@@ -77,14 +82,17 @@ public final class EventHandler {
 
 
     private final AsyncHttpClientConfig config;
+    private final CallbackDispatcher callbackDispatcher;
     GrizzlyAsyncHttpProvider.Cleanup cleanup;
 
 
     // -------------------------------------------------------- Constructors
 
 
-    EventHandler(final AsyncHttpClientConfig config) {
+    EventHandler(final AsyncHttpClientConfig config,
+                 final CallbackDispatcher callbackDispatcher) {
         this.config = config;
+        this.callbackDispatcher = callbackDispatcher;
     }
 
 
@@ -124,6 +132,9 @@ public final class EventHandler {
         if (handler instanceof TransferCompletionHandler) {
             ((TransferCompletionHandler) handler).onHeaderWriteCompleted();
         }
+        if (handler instanceof AsyncHandlerTimingExtensions) {
+            ((AsyncHandlerTimingExtensions) handler).onHeadersWritten(System.nanoTime());
+        }
     }
 
     public void onHttpContentEncoded(HttpContent content, FilterChainContext ctx) {
@@ -146,6 +157,9 @@ public final class EventHandler {
             return;
         }
         final HttpTxContext context = HttpTxContext.get(ctx);
+        if (context.getHandler() instanceof AsyncHandlerTimingExtensions) {
+            ((AsyncHandlerTimingExtensions) context.getHandler()).onFirstByteReceived(System.nanoTime());
+        }
         final int status = ((HttpResponsePacket) httpHeader).getStatus();
         if (HttpStatus.CONINTUE_100.statusMatches(status)) {
             ctx.notifyUpstream(new ContinueEvent(context));
@@ -256,26 +270,25 @@ public final class EventHandler {
             }
             if (fc.replayRequest()) {
                 httpHeader.setSkipRemainder(true);
-                final Request newRequest = fc.getRequest();
-                final AsyncHandler newHandler = fc.getAsyncHandler();
-                try {
-                    final ConnectionManager m =
-                            context.getProvider().getConnectionManager();
-                    final Connection c =
-                            m.obtainConnection(newRequest,
-                                               context.getFuture());
-                    final HttpTxContext newContext =
-                            context.copy();
-                    newContext.setRequest(newRequest);
-                    context.setFuture(null);
-                    context.getProvider().execute(c,
-                                                  newRequest,
-                                                  newHandler,
-                                                  context.getFuture(),
-                                                  newContext);
-                } catch (Exception e) {
-                    context.abort(e);
+                replayRequest(context, fc.getRequest(), fc.getAsyncHandler());
+                return;
+            }
+        }
+        final RetryPolicy retryPolicy = config.getRetryPolicy();
+        // the policy, and its retry budget, are only asked when the
+        // request still has retries left
+        if (retryPolicy != null
+                && context.getRetryCount().get() < config.getMaxRequestRetry()) {
+            final int retries = context.getRetryCount().get();
+            final long delay = retryPolicy.retryDelayInMs(context.getRequest(),
+                    ((HttpResponsePacket) httpHeader).getStatus(), null, retries);
+            if (delay >= 0) {
+                httpHeader.setSkipRemainder(true);
+                context.getRetryCount().incrementAndGet();
+                if (handler instanceof AsyncHandlerExtensions) {
+                    ((AsyncHandlerExtensions) handler).onRetry();
                 }
+                scheduleReplayRequest(context, delay);
                 return;
             }
         }
@@ -365,6 +378,35 @@ public final class EventHandler {
         final HttpTxContext context = HttpTxContext.get(ctx);
         cleanup(ctx);
         final AsyncHandler handler = context.getHandler();
+        if (handler instanceof AsyncHandlerTimingExtensions) {
+            ((AsyncHandlerTimingExtensions) handler).onLastByteReceived(System.nanoTime());
+        }
+        if (callbackDispatcher.isInline()) {
+            complete(context, handler);
+        } else {
+            // the connection may already be serving another request,
+            // failing the callback must not close it
+            final GrizzlyResponseFuture future = context.getFuture();
+            if (future != null) {
+                future.setConnection(null);
+            }
+            callbackDispatcher.dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    complete(context, handler);
+                }
+            });
+        }
+        return false;
+    }
+
+
+    // ----------------------------------------------------- Private Methods
+
+
+    @SuppressWarnings({"unchecked"})
+    private static void complete(final HttpTxContext context,
+                                 final AsyncHandler handler) {
         if (handler != null) {
             try {
                 context.result(handler.onCompleted());
@@ -374,11 +416,55 @@ public final class EventHandler {
         } else {
             context.done();
         }
-        return false;
     }
 
+    @SuppressWarnings({"unchecked"})
+    private static void replayRequest(final HttpTxContext context,
+                                      final Request newRequest,
+                                      final AsyncHandler newHandler) {
+        try {
+            final ConnectionManager m =
+                    context.getProvider().getConnectionManager();
+            final Connection c =
+                    m.obtainConnection(newRequest,
+                                       context.getFuture());
+            final HttpTxContext newContext =
+                    context.copy();
+            newContext.setRequest(newRequest);
+            context.setFuture(null);
+            context.getProvider().execute(c,
+                                          newRequest,
+                                          newHandler,
+                                          context.getFuture(),
+                                          newContext);
+        } catch (Exception e) {
+            context.abort(e);
+        }
+    }
 
-    // ----------------------------------------------------- Private Methods
+    private static void scheduleReplayRequest(final HttpTxContext context,
+                                              final long delayInMs) {
+        if (delayInMs <= 0) {
+            replayRequest(context, context.getRequest(), context.getHandler());
+            return;
+        }
+        // the connection's remaining response is skipped meanwhile, the
+        // replay itself happens on the client's scheduler
+        try {
+            context.getProvider().getClientConfig().reaper().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    final GrizzlyResponseFuture future = context.getFuture();
+                    if (future == null || !future.isDone()) {
+                        replayRequest(context, context.getRequest(),
+                                      context.getHandler());
+                    }
+                }
+            }, delayInMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            context.abort(e);
+        }
+    }
 
     private static void processKeepAlive(final Connection c,
                                          final HttpHeader header) {
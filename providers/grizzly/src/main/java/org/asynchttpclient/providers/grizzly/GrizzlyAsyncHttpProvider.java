@@ -16,16 +16,21 @@ package org.asynchttpclient.providers.grizzly;
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.AsyncHttpProvider;
+import org.asynchttpclient.ConnectionPoolStats;
 import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.ProxyServer;
 import org.asynchttpclient.Request;
+import org.asynchttpclient.compression.ContentDecoderRegistry;
 import org.asynchttpclient.ntlm.NTLMEngine;
 import org.asynchttpclient.providers.grizzly.filters.AsyncHttpClientEventFilter;
 import org.asynchttpclient.providers.grizzly.filters.AsyncHttpClientFilter;
 import org.asynchttpclient.providers.grizzly.filters.AsyncSpdyClientEventFilter;
-import org.asynchttpclient.providers.grizzly.filters.ClientEncodingFilter;
+import org.asynchttpclient.providers.grizzly.filters.ClientContentEncoding;
 import org.asynchttpclient.providers.grizzly.filters.SwitchingSSLFilter;
 import org.asynchttpclient.util.AsyncHttpProviderUtils;
+import org.asynchttpclient.util.CallbackDispatcher;
+import org.asynchttpclient.util.CallbackExecutorMXBean;
+import org.asynchttpclient.util.JmxUtils;
 import org.asynchttpclient.util.ProxyUtils;
 import org.asynchttpclient.util.SslUtils;
 
@@ -38,7 +43,6 @@ import org.glassfish.grizzly.filterchain.FilterChainBuilder;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.TransportFilter;
 import org.glassfish.grizzly.http.ContentEncoding;
-import org.glassfish.grizzly.http.GZipContentEncoding;
 import org.glassfish.grizzly.http.HttpClientFilter;
 import org.glassfish.grizzly.npn.ClientSideNegotiator;
 import org.glassfish.grizzly.spdy.NextProtoNegSupport;
@@ -61,6 +65,7 @@ import org.glassfish.grizzly.websockets.WebSocketClientFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.ObjectName;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import java.io.IOException;
@@ -87,6 +92,8 @@ public class GrizzlyAsyncHttpProvider implements AsyncHttpProvider {
     public final static NTLMEngine NTLM_ENGINE = new NTLMEngine();
 
     private final AsyncHttpClientConfig clientConfig;
+    private final CallbackDispatcher callbackDispatcher;
+    private final ObjectName callbackExecutorName;
 
     private ConnectionManager connectionManager;
     private DelayedExecutor.Resolver<Connection> resolver;
@@ -101,6 +108,10 @@ public class GrizzlyAsyncHttpProvider implements AsyncHttpProvider {
     public GrizzlyAsyncHttpProvider(final AsyncHttpClientConfig clientConfig) {
 
         this.clientConfig = clientConfig;
+        callbackDispatcher = new CallbackDispatcher(clientConfig);
+        callbackExecutorName = callbackDispatcher.getExecutor() instanceof CallbackExecutorMXBean
+                ? JmxUtils.registerCallbackExecutor("grizzly", (CallbackExecutorMXBean) callbackDispatcher.getExecutor())
+                : null;
         final TCPNIOTransportBuilder builder = TCPNIOTransportBuilder.newInstance();
         clientTransport = builder.build();
         initializeTransport(clientConfig);
@@ -142,6 +153,7 @@ public class GrizzlyAsyncHttpProvider implements AsyncHttpProvider {
             public void completed(final Connection c) {
                 try {
                     touchConnection(c, request);
+                    ConnectionManager.notifyConnected(c, handler);
                     execute(c, request, handler, future, null);
                 } catch (Exception e) {
                     failed(e);
@@ -181,6 +193,8 @@ public class GrizzlyAsyncHttpProvider implements AsyncHttpProvider {
                 }
             }
         } catch (IOException ignored) { }
+        JmxUtils.unregister(callbackExecutorName);
+        callbackDispatcher.close();
 
     }
 
@@ -195,6 +209,13 @@ public class GrizzlyAsyncHttpProvider implements AsyncHttpProvider {
         return connectionManager;
     }
 
+    /**
+     * @return the statistics of the connection pool
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return connectionManager.getConnectionPool();
+    }
+
     public DelayedExecutor.Resolver<Connection> getResolver() {
         return resolver;
     }
@@ -300,7 +321,7 @@ public class GrizzlyAsyncHttpProvider implements AsyncHttpProvider {
         }
 
         final AsyncHttpClientEventFilter eventFilter;
-        final EventHandler handler = new EventHandler(clientConfig);
+        final EventHandler handler = new EventHandler(clientConfig, callbackDispatcher);
         if (providerConfig != null) {
             eventFilter =
                     new AsyncHttpClientEventFilter(handler,
@@ -318,10 +339,12 @@ public class GrizzlyAsyncHttpProvider implements AsyncHttpProvider {
             }
         }
         if (clientConfig.isCompressionEnabled()) {
-            eventFilter.addContentEncoding(
-                    new GZipContentEncoding(512,
-                                            512,
-                                            new ClientEncodingFilter()));
+            final ContentDecoderRegistry registry =
+                    clientConfig.getContentDecoderRegistry();
+            for (String encoding : registry.getEncodings()) {
+                eventFilter.addContentEncoding(
+                        new ClientContentEncoding(registry, encoding));
+            }
         }
         secure.add(eventFilter);
         final AsyncHttpClientFilter clientFilter =
@@ -413,7 +436,7 @@ public class GrizzlyAsyncHttpProvider implements AsyncHttpProvider {
         spdyFcb.set(idx, new SpdyFramingFilter());
         final SpdyMode spdyMode = ((npnEnabled) ? SpdyMode.NPN : SpdyMode.PLAIN);
         AsyncSpdyClientEventFilter spdyFilter =
-                new AsyncSpdyClientEventFilter(new EventHandler(clientConfig),
+                new AsyncSpdyClientEventFilter(new EventHandler(clientConfig, callbackDispatcher),
                                                spdyMode,
                                                clientConfig.executorService());
         spdyFilter.setInitialWindowSize(clientConfig.getSpdyInitialWindowSize());
@@ -197,6 +197,10 @@ public class GrizzlyResponseFuture<V> extends AbstractListenableFuture<V> {
 
     }
 
+    AsyncHandler getAsyncHandler() {
+        return handler;
+    }
+
     public ProxyServer getProxyServer() {
         return proxyServer;
     }
@@ -41,6 +41,7 @@ public final class HttpTxContext {
                 Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(HttpTxContext.class.getName());
 
     private final AtomicInteger redirectCount = new AtomicInteger(0);
+    private final AtomicInteger retryCount = new AtomicInteger(0);
 
     private final int maxRedirectCount;
     private final boolean redirectsAllowed;
@@ -133,6 +134,10 @@ public final class HttpTxContext {
         return redirectCount;
     }
 
+    public AtomicInteger getRetryCount() {
+        return retryCount;
+    }
+
     public int getMaxRedirectCount() {
         return maxRedirectCount;
     }
@@ -280,6 +285,7 @@ public final class HttpTxContext {
         newContext.statusHandler = statusHandler;
         newContext.lastRedirectURI = lastRedirectURI;
         newContext.redirectCount.set(redirectCount.get());
+        newContext.retryCount.set(retryCount.get());
         return newContext;
 
     }
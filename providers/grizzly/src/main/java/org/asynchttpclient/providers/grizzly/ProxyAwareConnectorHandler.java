@@ -17,6 +17,7 @@ import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.ProxyServer;
 import org.asynchttpclient.providers.grizzly.filters.ProxyFilter;
 import org.asynchttpclient.providers.grizzly.filters.TunnelFilter;
+import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Processor;
 import org.glassfish.grizzly.filterchain.FilterChain;
 import org.glassfish.grizzly.filterchain.FilterChainBuilder;
@@ -54,6 +55,13 @@ final class ProxyAwareConnectorHandler extends TCPNIOConnectorHandler {
     // ------------------------------------------- Methods from ConnectorHandler
 
 
+    @Override
+    protected void preConfigure(final Connection conn) {
+        super.preConfigure(conn);
+        ConnectionManager.markConnectionAsNew(conn);
+    }
+
+
     @Override
     public Processor getProcessor() {
         return ((proxyServer != null)
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2013 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package org.asynchttpclient.providers.grizzly.filters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.asynchttpclient.compression.ContentDecoder;
+import org.asynchttpclient.compression.ContentDecoderFactory;
+import org.asynchttpclient.compression.ContentDecoderRegistry;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.http.ContentEncoding;
+import org.glassfish.grizzly.http.EncodingFilter;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpHeader;
+import org.glassfish.grizzly.http.ParsingResult;
+import org.glassfish.grizzly.memory.Buffers;
+
+/**
+ * {@link ContentEncoding} decoding the responses with the {@link ContentDecoder}s
+ * of a {@link ContentDecoderRegistry} coding. The request bodies aren't encoded.
+ *
+ * @since 2.0
+ */
+public final class ClientContentEncoding implements ContentEncoding {
+
+    private final String name;
+    private final String[] aliases;
+    private final ContentDecoderRegistry registry;
+    private final EncodingFilter encodingFilter;
+    private final Attribute<ContentDecoder> decoderAttr;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param registry the registry of the supported codings
+     * @param encoding the registered coding to decode
+     */
+    public ClientContentEncoding(final ContentDecoderRegistry registry,
+                                 final String encoding) {
+
+        this.name = encoding;
+        // the codec filter matches the Content-Encoding against the aliases only
+        final List<String> aliasList = new ArrayList<String>();
+        aliasList.add(encoding);
+        aliasList.addAll(registry.getAliases(encoding));
+        this.aliases = aliasList.toArray(new String[aliasList.size()]);
+        this.registry = registry;
+        this.encodingFilter = new ClientEncodingFilter(registry, encoding);
+        this.decoderAttr = Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+                ClientContentEncoding.class.getName() + '.' + encoding);
+
+    }
+
+
+    // -------------------------------------------- Methods from ContentEncoding
+
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String[] getAliases() {
+        return aliases.clone();
+    }
+
+    @Override
+    public boolean wantDecode(final HttpHeader header) {
+        return encodingFilter.applyDecoding(header);
+    }
+
+    @Override
+    public boolean wantEncode(final HttpHeader header) {
+        return encodingFilter.applyEncoding(header);
+    }
+
+    @Override
+    public ParsingResult decode(final Connection connection,
+                                final HttpContent httpContent) {
+
+        final HttpHeader httpHeader = httpContent.getHttpHeader();
+        ContentDecoder decoder = decoderAttr.get(httpHeader);
+        if (decoder == null) {
+            final ContentDecoderFactory factory = registry.get(name);
+            if (factory == null) {
+                // unregistered since the response headers were parsed
+                return ParsingResult.create(httpContent, null);
+            }
+            decoder = factory.newDecoder();
+            decoderAttr.set(httpHeader, decoder);
+        }
+
+        final Buffer input = httpContent.getContent();
+        final boolean last = httpContent.isLast();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (input.hasArray()) {
+                decoder.decode(input.array(),
+                               input.arrayOffset() + input.position(),
+                               input.remaining(),
+                               out);
+            } else {
+                final byte[] bytes = new byte[input.remaining()];
+                input.get(bytes);
+                decoder.decode(bytes, 0, bytes.length, out);
+            }
+            if (last) {
+                decoder.finish(out);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to decode " + name + " content", e);
+        } finally {
+            if (last) {
+                decoder.close();
+                decoderAttr.remove(httpHeader);
+            }
+            input.tryDispose();
+        }
+
+        if (out.size() == 0) {
+            if (!last) {
+                // wait for more input
+                return ParsingResult.create(null, null);
+            }
+            return ParsingResult.create(
+                    HttpContent.create(httpHeader, true, Buffers.EMPTY_BUFFER),
+                    null);
+        }
+        final Buffer decoded = Buffers.wrap(
+                connection.getTransport().getMemoryManager(),
+                out.toByteArray());
+        return ParsingResult.create(
+                HttpContent.create(httpHeader, last, decoded), null);
+
+    }
+
+    @Override
+    public HttpContent encode(final Connection connection,
+                              final HttpContent httpContent) {
+        return httpContent;
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClientContentEncoding)) {
+            return false;
+        }
+        return name.equals(((ClientContentEncoding) o).name);
+
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+}
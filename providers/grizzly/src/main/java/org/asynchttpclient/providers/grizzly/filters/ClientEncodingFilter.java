@@ -13,37 +13,59 @@
 
 package org.asynchttpclient.providers.grizzly.filters;
 
+import org.asynchttpclient.compression.ContentDecoderRegistry;
 import org.glassfish.grizzly.http.EncodingFilter;
 import org.glassfish.grizzly.http.HttpHeader;
-import org.glassfish.grizzly.http.HttpResponsePacket;
-import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http.util.Header;
 
 /**
- * {@link EncodingFilter} to enable gzip encoding.
+ * {@link EncodingFilter} advertising the content codings of a {@link ContentDecoderRegistry}
+ * and decoding the responses using one of them.
  *
  * @since 1.7
  * @author The Grizzly Team
  */
 public final class ClientEncodingFilter implements EncodingFilter {
 
+    private final ContentDecoderRegistry registry;
+    private final String encoding;
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * @param registry the registry of the supported codings
+     * @param encoding the coding this filter decodes
+     */
+    public ClientEncodingFilter(final ContentDecoderRegistry registry,
+                                final String encoding) {
+
+        this.registry = registry;
+        this.encoding = encoding;
+
+    }
+
 
     // --------------------------------------------- Methods from EncodingFilter
 
 
     public boolean applyEncoding(HttpHeader httpPacket) {
 
-       httpPacket.addHeader(Header.AcceptEncoding, "gzip");
-       return false;
+        // called once per registered coding, so the header is set, not added
+        final String acceptEncoding = registry.getAcceptEncoding();
+        if (!acceptEncoding.isEmpty()) {
+            httpPacket.setHeader(Header.AcceptEncoding, acceptEncoding);
+        }
+        return false;
 
     }
 
 
     public boolean applyDecoding(HttpHeader httpPacket) {
 
-        final HttpResponsePacket httpResponse = (HttpResponsePacket) httpPacket;
-        final DataChunk bc = httpResponse.getHeaders().getValue(Header.ContentEncoding);
-        return bc != null && bc.indexOf("gzip", 0) != -1;
+        // the coding was matched against the Content-Encoding header already
+        return registry.get(encoding) != null;
 
     }
 
@@ -44,6 +44,10 @@ public final class SwitchingSSLFilter extends SSLFilter {
         Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(SwitchingSSLFilter.class.getName());
     private static final Attribute<Throwable> HANDSHAKE_ERROR =
         Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(SwitchingSSLFilter.class.getName() + "-HANDSHAKE-ERROR");
+    private static final Attribute<Long> CONNECTED_NANOS =
+        Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(SwitchingSSLFilter.class.getName() + "-CONNECTED-NANOS");
+    private static final Attribute<Long> HANDSHAKE_NANOS =
+        Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(SwitchingSSLFilter.class.getName() + "-HANDSHAKE-NANOS");
 
 
     // ------------------------------------------------------------ Constructors
@@ -72,10 +76,13 @@ public final class SwitchingSSLFilter extends SSLFilter {
         // to determine if a connection is SPDY or HTTP as early as possible.
         ctx.suspend();
         final Connection c = ctx.getConnection();
+        // once per connection, for the phase timings of the first request
+        CONNECTED_NANOS.set(c, System.nanoTime());
         handshake(ctx.getConnection(),
                   new EmptyCompletionHandler<SSLEngine>() {
                       @Override
                       public void completed(SSLEngine result) {
+                          HANDSHAKE_NANOS.set(c, System.nanoTime());
                           // Handshake was successful.  Resume the handleConnect
                           // processing.  We pass in Invoke Action so the filter
                           // chain will call handleConnect on the next filter.
@@ -157,6 +164,24 @@ public final class SwitchingSSLFilter extends SSLFilter {
     }
 
 
+    /**
+     * @return the {@link System#nanoTime()} when the TCP connection was
+     *  established, or <code>null</code> if the connection isn't secure
+     */
+    public static Long getConnectedNanos(final Connection c) {
+        return CONNECTED_NANOS.get(c);
+    }
+
+
+    /**
+     * @return the {@link System#nanoTime()} when the SSL handshake completed,
+     *  or <code>null</code> if the connection isn't secure
+     */
+    public static Long getHandshakeNanos(final Connection c) {
+        return HANDSHAKE_NANOS.get(c);
+    }
+
+
     // --------------------------------------------------------- Private Methods
 
 
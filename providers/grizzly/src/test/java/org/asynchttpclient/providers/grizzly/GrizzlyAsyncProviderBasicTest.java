@@ -33,6 +33,6 @@ public class GrizzlyAsyncProviderBasicTest extends AsyncProvidersBasicTest {
 
     @Override
     protected String acceptEncodingHeader() {
-        return "gzip";
+        return "gzip,deflate";
     }
 }
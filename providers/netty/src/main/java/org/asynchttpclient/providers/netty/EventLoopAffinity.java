@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty;
+
+/**
+ * How the Netty provider assigns the requests to its event loops.
+ * <p/>
+ * With any policy but {@link #NONE}, every event loop owns its connection pool and its share of
+ * {@link org.asynchttpclient.AsyncHttpClientConfig#getMaxTotalConnections()}, and a request only uses the channels of the loop
+ * it's assigned to, so the pooled channels and the connection permits are never contended across loops.
+ */
+public enum EventLoopAffinity {
+
+    /**
+     * No affinity: a single connection pool shared by all the event loops, new channels are spread by Netty.
+     */
+    NONE,
+
+    /**
+     * Requests are assigned to the loops in turn. A request sent from an event loop thread, e.g. from a callback, stays on that
+     * loop.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Requests are assigned to a loop by hashing their connection pool key, so all the connections to a host belong to one loop.
+     */
+    HOST_HASH
+}
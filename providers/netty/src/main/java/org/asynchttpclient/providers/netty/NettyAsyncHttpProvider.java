@@ -21,9 +21,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.AsyncHttpProvider;
+import org.asynchttpclient.ConnectionPoolStats;
 import org.asynchttpclient.ListenableFuture;
 import org.asynchttpclient.Request;
 import org.asynchttpclient.providers.netty.channel.Channels;
+import org.asynchttpclient.providers.netty.channel.EventLoopMonitor;
 import org.asynchttpclient.providers.netty.handler.NettyChannelHandler;
 import org.asynchttpclient.providers.netty.request.NettyRequestSender;
 import org.slf4j.Logger;
@@ -48,7 +50,7 @@ public class NettyAsyncHttpProvider implements AsyncHttpProvider {
                 : new NettyAsyncHttpProviderConfig();
 
         channels = new Channels(config, nettyConfig);
-        requestSender = new NettyRequestSender(closed, config, channels);
+        requestSender = new NettyRequestSender(closed, config, nettyConfig, channels);
         channelHandler = new NettyChannelHandler(config, nettyConfig, requestSender, channels, closed);
         channels.configure(channelHandler);
     }
@@ -60,6 +62,20 @@ public class NettyAsyncHttpProvider implements AsyncHttpProvider {
                 - availablePermits, channels.openChannels.toString(), channels.connectionsPool.toString());
     }
 
+    /**
+     * @return the statistics of the connection pool, or null if the configured pool doesn't provide any
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return channels.getConnectionPoolStats();
+    }
+
+    /**
+     * @return the event loops monitor, or null if {@link NettyAsyncHttpProviderConfig#getEventLoopMonitorIntervalInMs()} is 0
+     */
+    public EventLoopMonitor getEventLoopMonitor() {
+        return channels.getEventLoopMonitor();
+    }
+
     @Override
     public void close() {
         closed.set(true);
@@ -26,6 +26,9 @@ import java.util.Map;
 import java.util.Set;
 
 import org.asynchttpclient.AsyncHttpProviderConfig;
+import org.asynchttpclient.compression.DeflaterPool;
+import org.asynchttpclient.compression.DeflatingBody;
+import org.asynchttpclient.compression.RequestBodyCompression;
 import org.asynchttpclient.providers.netty.response.EagerResponseBodyPart;
 import org.asynchttpclient.providers.netty.response.LazyResponseBodyPart;
 import org.asynchttpclient.providers.netty.response.ResponseBodyPart;
@@ -64,6 +67,51 @@ public class NettyAsyncHttpProviderConfig implements AsyncHttpProviderConfig<Str
      */
     private int maxChunkSize = 8192;
 
+    /**
+     * Size of the chunks read from files that can't be sent with zero-copy, typically because of TLS.
+     * Default is a multiple of the 16 KB maximum TLS record plaintext so the SslHandler emits full records.
+     */
+    private int chunkedFileChunkSize = 64 * 1024;
+
+    /**
+     * Content-Encoding of the compressed request bodies when AsyncHttpClientConfig's requestCompressionLevel is set: gzip or deflate
+     */
+    private String requestCompressionEncoding = DeflatingBody.GZIP;
+
+    /**
+     * Request bodies that are known to be smaller are sent uncompressed
+     */
+    private int requestCompressionMinSize = RequestBodyCompression.DEFAULT_MIN_SIZE;
+
+    private DeflaterPool deflaterPool = DeflaterPool.getDefault();
+
+    /**
+     * How often the event loops are probed for lag, 0 to disable the monitoring. See {@link org.asynchttpclient.providers.netty.channel.EventLoopMonitor}
+     */
+    private long eventLoopMonitorIntervalInMs;
+
+    /**
+     * Lag above which the stack of an event loop's thread is logged
+     */
+    private long slowEventLoopThresholdInMs = 1000L;
+
+    /**
+     * Lag above which new requests are rejected instead of being queued on a stalled event loop, -1 to never reject them
+     */
+    private long maxEventLoopLagInMs = -1L;
+
+    /**
+     * How requests are assigned to the event loops. Anything but {@link EventLoopAffinity#NONE} gives every event loop its own
+     * connection pool and share of the connection limit
+     */
+    private EventLoopAffinity eventLoopAffinity = EventLoopAffinity.NONE;
+
+    /**
+     * Consolidate the flushes of a channel that happen during one run of its event loop, see
+     * {@link org.asynchttpclient.providers.netty.handler.FlushConsolidationHandler}
+     */
+    private boolean consolidateFlushes;
+
     /**
      * Use direct {@link java.nio.ByteBuffer}
      */
@@ -168,6 +216,78 @@ public class NettyAsyncHttpProviderConfig implements AsyncHttpProviderConfig<Str
         this.maxChunkSize = maxChunkSize;
     }
 
+    public int getChunkedFileChunkSize() {
+        return chunkedFileChunkSize;
+    }
+
+    public void setChunkedFileChunkSize(int chunkedFileChunkSize) {
+        this.chunkedFileChunkSize = chunkedFileChunkSize;
+    }
+
+    public String getRequestCompressionEncoding() {
+        return requestCompressionEncoding;
+    }
+
+    public void setRequestCompressionEncoding(String requestCompressionEncoding) {
+        this.requestCompressionEncoding = requestCompressionEncoding;
+    }
+
+    public int getRequestCompressionMinSize() {
+        return requestCompressionMinSize;
+    }
+
+    public void setRequestCompressionMinSize(int requestCompressionMinSize) {
+        this.requestCompressionMinSize = requestCompressionMinSize;
+    }
+
+    public DeflaterPool getDeflaterPool() {
+        return deflaterPool;
+    }
+
+    public void setDeflaterPool(DeflaterPool deflaterPool) {
+        this.deflaterPool = deflaterPool;
+    }
+
+    public long getEventLoopMonitorIntervalInMs() {
+        return eventLoopMonitorIntervalInMs;
+    }
+
+    public void setEventLoopMonitorIntervalInMs(long eventLoopMonitorIntervalInMs) {
+        this.eventLoopMonitorIntervalInMs = eventLoopMonitorIntervalInMs;
+    }
+
+    public long getSlowEventLoopThresholdInMs() {
+        return slowEventLoopThresholdInMs;
+    }
+
+    public void setSlowEventLoopThresholdInMs(long slowEventLoopThresholdInMs) {
+        this.slowEventLoopThresholdInMs = slowEventLoopThresholdInMs;
+    }
+
+    public long getMaxEventLoopLagInMs() {
+        return maxEventLoopLagInMs;
+    }
+
+    public void setMaxEventLoopLagInMs(long maxEventLoopLagInMs) {
+        this.maxEventLoopLagInMs = maxEventLoopLagInMs;
+    }
+
+    public EventLoopAffinity getEventLoopAffinity() {
+        return eventLoopAffinity;
+    }
+
+    public void setEventLoopAffinity(EventLoopAffinity eventLoopAffinity) {
+        this.eventLoopAffinity = eventLoopAffinity;
+    }
+
+    public boolean isConsolidateFlushes() {
+        return consolidateFlushes;
+    }
+
+    public void setConsolidateFlushes(boolean consolidateFlushes) {
+        this.consolidateFlushes = consolidateFlushes;
+    }
+
     public AdditionalChannelInitializer getHttpAdditionalChannelInitializer() {
         return httpAdditionalChannelInitializer;
     }
@@ -27,8 +27,6 @@ import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.HttpClientCodec;
-import io.netty.handler.codec.http.HttpContentCompressor;
-import io.netty.handler.codec.http.HttpContentDecompressor;
 import io.netty.handler.codec.http.HttpRequestEncoder;
 import io.netty.handler.codec.http.HttpResponseDecoder;
 import io.netty.handler.codec.http.websocketx.WebSocket08FrameDecoder;
@@ -40,25 +38,35 @@ import io.netty.util.AttributeKey;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
-import java.net.URI;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Semaphore;
 
+import javax.management.ObjectName;
 import javax.net.ssl.SSLEngine;
 
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.AsyncHttpClientConfig;
-import org.asynchttpclient.ConnectionPoolKeyStrategy;
+import org.asynchttpclient.ConnectionPoolStats;
 import org.asynchttpclient.ConnectionsPool;
+import org.asynchttpclient.PoolKey;
 import org.asynchttpclient.providers.netty.Callback;
 import org.asynchttpclient.providers.netty.DiscardEvent;
+import org.asynchttpclient.providers.netty.EventLoopAffinity;
 import org.asynchttpclient.providers.netty.NettyAsyncHttpProviderConfig;
 import org.asynchttpclient.providers.netty.future.NettyResponseFuture;
+import org.asynchttpclient.providers.netty.handler.ChunkedWriteFlushHandler;
+import org.asynchttpclient.providers.netty.handler.FlushConsolidationHandler;
 import org.asynchttpclient.providers.netty.handler.NettyChannelHandler;
+import org.asynchttpclient.providers.netty.handler.NettyContentDecompressor;
 import org.asynchttpclient.providers.netty.util.CleanupChannelGroup;
+import org.asynchttpclient.util.CallbackDispatcher;
+import org.asynchttpclient.util.CallbackExecutorMXBean;
+import org.asynchttpclient.util.JmxUtils;
 import org.asynchttpclient.util.SslUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,13 +77,15 @@ public class Channels {
     public static final String HTTP_HANDLER = "httpHandler";
     public static final String SSL_HANDLER = "sslHandler";
     public static final String AHC_HANDLER = "httpProcessor";
-    public static final String DEFLATER_HANDLER = "deflater";
     public static final String INFLATER_HANDLER = "inflater";
     public static final String CHUNKED_WRITER_HANDLER = "chunkedWriter";
+    public static final String CHUNKED_WRITER_FLUSH_HANDLER = "chunkedWriterFlush";
+    public static final String CHUNKED_WRITER_FLUSH_BELOW_HANDLER = "chunkedWriterFlushBelow";
     public static final String HTTP_DECODER_HANDLER = "http-decoder";
     public static final String HTTP_ENCODER_HANDLER = "http-encoder";
     public static final String WS_DECODER_HANDLER = "ws-decoder";
     public static final String WS_ENCODER_HANDLER = "ws-encoder";
+    public static final String FLUSH_CONSOLIDATION_HANDLER = "flushConsolidation";
 
     private static final AttributeKey<Object> DEFAULT_ATTRIBUTE = AttributeKey.valueOf("default");
 
@@ -90,7 +100,14 @@ public class Channels {
     private final Bootstrap webSocketBootstrap;
     private final Bootstrap secureWebSocketBootstrap;
 
-    public final ConnectionsPool<String, Channel> connectionsPool;
+    public final ConnectionsPool<PoolKey, Channel> connectionsPool;
+    // not null when the requests have an affinity to an event loop
+    private final ShardedConnectionsPool shardedPool;
+    private final ObjectName connectionPoolStatsName;
+    private final ObjectName circuitBreakersName;
+    private final CallbackDispatcher callbackDispatcher;
+    private final ObjectName callbackExecutorName;
+    private final EventLoopMonitor eventLoopMonitor;
     public final Semaphore freeConnections;
     public final boolean trackConnections;
     public final ChannelGroup openChannels = new CleanupChannelGroup("asyncHttpClient") {
@@ -98,7 +115,10 @@ public class Channels {
         public boolean remove(Object o) {
             boolean removed = super.remove(o);
             if (removed && trackConnections) {
-                freeConnections.release();
+                Semaphore permits = o instanceof Channel ? freeConnections((Channel) o) : freeConnections;
+                if (permits != null) {
+                    permits.release();
+                }
             }
             return removed;
         }
@@ -121,13 +141,30 @@ public class Channels {
             allowReleaseEventLoopGroup = false;
         }
 
+        eventLoopMonitor = asyncHttpProviderConfig.getEventLoopMonitorIntervalInMs() > 0 ? new EventLoopMonitor(eventLoopGroup,
+                asyncHttpProviderConfig.getEventLoopMonitorIntervalInMs(), asyncHttpProviderConfig.getSlowEventLoopThresholdInMs(),
+                asyncHttpProviderConfig.getMaxEventLoopLagInMs()) : null;
+
         plainBootstrap = new Bootstrap().channel(NioSocketChannel.class).group(eventLoopGroup);
         secureBootstrap = new Bootstrap().channel(NioSocketChannel.class).group(eventLoopGroup);
         webSocketBootstrap = new Bootstrap().channel(NioSocketChannel.class).group(eventLoopGroup);
         secureWebSocketBootstrap = new Bootstrap().channel(NioSocketChannel.class).group(eventLoopGroup);
 
         // This is dangerous as we can't catch a wrong typed ConnectionsPool
-        ConnectionsPool<String, Channel> cp = (ConnectionsPool<String, Channel>) config.getConnectionsPool();
+        ConnectionsPool<String, Channel> customPool = (ConnectionsPool<String, Channel>) config.getConnectionsPool();
+        ConnectionsPool<PoolKey, Channel> cp = customPool != null ? new StringKeyConnectionsPool(customPool) : null;
+        EventLoopAffinity affinity = asyncHttpProviderConfig.getEventLoopAffinity();
+        if (affinity != null && affinity != EventLoopAffinity.NONE) {
+            if (cp != null) {
+                LOGGER.warn("Ignoring the event loop affinity {} as a custom ConnectionsPool is used", affinity);
+                shardedPool = null;
+            } else {
+                shardedPool = new ShardedConnectionsPool(config, eventLoopGroup, affinity);
+                cp = shardedPool;
+            }
+        } else {
+            shardedPool = null;
+        }
         if (cp == null) {
             if (config.getAllowPoolingConnection()) {
                 cp = new NettyConnectionsPool(config);
@@ -136,13 +173,20 @@ public class Channels {
             }
         }
         this.connectionsPool = cp;
-        if (config.getMaxTotalConnections() != -1) {
-            trackConnections = true;
-            freeConnections = new Semaphore(config.getMaxTotalConnections());
-        } else {
-            trackConnections = false;
-            freeConnections = null;
+        trackConnections = config.getMaxTotalConnections() != -1;
+        // the shards have their own permits
+        freeConnections = trackConnections && shardedPool == null ? new Semaphore(config.getMaxTotalConnections()) : null;
+        if (cp instanceof NettyConnectionsPool) {
+            NettyConnectionsPool.class.cast(cp).trackConnections(openChannels, freeConnections);
+        } else if (shardedPool != null) {
+            shardedPool.trackConnections(openChannels);
         }
+        Object stats = customPool != null ? customPool : cp;
+        connectionPoolStatsName = stats instanceof ConnectionPoolStats ? JmxUtils.registerConnectionPoolStats("netty", (ConnectionPoolStats) stats) : null;
+        circuitBreakersName = config.getCircuitBreakerRegistry() != null ? JmxUtils.registerCircuitBreakers("netty", config.getCircuitBreakerRegistry()) : null;
+        callbackDispatcher = new CallbackDispatcher(config);
+        callbackExecutorName = callbackDispatcher.getExecutor() instanceof CallbackExecutorMXBean ? JmxUtils.registerCallbackExecutor("netty",
+                (CallbackExecutorMXBean) callbackDispatcher.getExecutor()) : null;
 
         Map<String, ChannelOption<Object>> optionMap = new HashMap<String, ChannelOption<Object>>();
         for (Field field : ChannelOption.class.getDeclaredFields()) {
@@ -161,10 +205,9 @@ public class Channels {
                 ChannelOption<Object> key = optionMap.get(entry.getKey());
                 if (key != null) {
                     Object value = entry.getValue();
-                    plainBootstrap.option(key, value);
-                    webSocketBootstrap.option(key, value);
-                    secureBootstrap.option(key, value);
-                    secureWebSocketBootstrap.option(key, value);
+                    for (Bootstrap bootstrap : allBootstraps()) {
+                        bootstrap.option(key, value);
+                    }
                 } else {
                     throw new IllegalArgumentException("Unknown config property " + entry.getKey());
                 }
@@ -172,10 +215,26 @@ public class Channels {
         }
 
         int timeOut = config.getConnectionTimeoutInMs() > 0 ? config.getConnectionTimeoutInMs() : Integer.MAX_VALUE;
-        plainBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeOut);
-        webSocketBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeOut);
-        secureBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeOut);
-        secureWebSocketBootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeOut);
+        for (Bootstrap bootstrap : allBootstraps()) {
+            bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeOut);
+        }
+    }
+
+    private List<Bootstrap> allBootstraps() {
+        List<Bootstrap> bootstraps = new ArrayList<Bootstrap>();
+        bootstraps.add(plainBootstrap);
+        bootstraps.add(webSocketBootstrap);
+        bootstraps.add(secureBootstrap);
+        bootstraps.add(secureWebSocketBootstrap);
+        if (shardedPool != null) {
+            for (EventLoopShard shard : shardedPool.getShards()) {
+                bootstraps.add(shard.plainBootstrap);
+                bootstraps.add(shard.webSocketBootstrap);
+                bootstraps.add(shard.secureBootstrap);
+                bootstraps.add(shard.secureWebSocketBootstrap);
+            }
+        }
+        return bootstraps;
     }
 
     private SSLEngine createSSLEngine() throws IOException, GeneralSecurityException {
@@ -188,29 +247,32 @@ public class Channels {
 
     public void configure(final NettyChannelHandler httpProcessor) {
 
-        plainBootstrap.handler(new ChannelInitializer<Channel>() {
+        ChannelInitializer<Channel> plainInitializer = new ChannelInitializer<Channel>() {
             @Override
             protected void initChannel(Channel ch) throws Exception {
                 ChannelPipeline pipeline = ch.pipeline()//
                         .addLast(HTTP_HANDLER, newHttpClientCodec());
 
-                if (config.getRequestCompressionLevel() > 0) {
-                    pipeline.addLast(DEFLATER_HANDLER, new HttpContentCompressor(config.getRequestCompressionLevel()));
-                }
-
                 if (config.isCompressionEnabled()) {
-                    pipeline.addLast(INFLATER_HANDLER, new HttpContentDecompressor());
+                    pipeline.addLast(INFLATER_HANDLER, new NettyContentDecompressor(config.getContentDecoderRegistry()));
                 }
-                pipeline.addLast(CHUNKED_WRITER_HANDLER, new ChunkedWriteHandler())//
+                ChunkedWriteFlushHandler chunkedWriteFlushHandler = new ChunkedWriteFlushHandler();
+                pipeline.addLast(CHUNKED_WRITER_FLUSH_BELOW_HANDLER, chunkedWriteFlushHandler.below())//
+                        .addLast(CHUNKED_WRITER_HANDLER, new ChunkedWriteHandler())//
+                        .addLast(CHUNKED_WRITER_FLUSH_HANDLER, chunkedWriteFlushHandler)//
                         .addLast(AHC_HANDLER, httpProcessor);
 
+                if (asyncHttpProviderConfig.isConsolidateFlushes()) {
+                    pipeline.addFirst(FLUSH_CONSOLIDATION_HANDLER, new FlushConsolidationHandler());
+                }
+
                 if (asyncHttpProviderConfig.getHttpAdditionalChannelInitializer() != null) {
                     asyncHttpProviderConfig.getHttpAdditionalChannelInitializer().initChannel(ch);
                 }
             }
-        });
+        };
 
-        webSocketBootstrap.handler(new ChannelInitializer<Channel>() {
+        ChannelInitializer<Channel> webSocketInitializer = new ChannelInitializer<Channel>() {
             @Override
             protected void initChannel(Channel ch) throws Exception {
                 ch.pipeline()//
@@ -218,13 +280,17 @@ public class Channels {
                         .addLast(HTTP_ENCODER_HANDLER, new HttpRequestEncoder())//
                         .addLast(AHC_HANDLER, httpProcessor);
 
+                if (asyncHttpProviderConfig.isConsolidateFlushes()) {
+                    ch.pipeline().addFirst(FLUSH_CONSOLIDATION_HANDLER, new FlushConsolidationHandler());
+                }
+
                 if (asyncHttpProviderConfig.getWsAdditionalChannelInitializer() != null) {
                     asyncHttpProviderConfig.getWsAdditionalChannelInitializer().initChannel(ch);
                 }
             }
-        });
+        };
 
-        secureBootstrap.handler(new ChannelInitializer<Channel>() {
+        ChannelInitializer<Channel> secureInitializer = new ChannelInitializer<Channel>() {
 
             @Override
             protected void initChannel(Channel ch) throws Exception {
@@ -233,18 +299,26 @@ public class Channels {
                         .addLast(HTTP_HANDLER, newHttpClientCodec());
 
                 if (config.isCompressionEnabled()) {
-                    pipeline.addLast(INFLATER_HANDLER, new HttpContentDecompressor());
+                    pipeline.addLast(INFLATER_HANDLER, new NettyContentDecompressor(config.getContentDecoderRegistry()));
                 }
-                pipeline.addLast(CHUNKED_WRITER_HANDLER, new ChunkedWriteHandler())//
+                ChunkedWriteFlushHandler chunkedWriteFlushHandler = new ChunkedWriteFlushHandler();
+                pipeline.addLast(CHUNKED_WRITER_FLUSH_BELOW_HANDLER, chunkedWriteFlushHandler.below())//
+                        .addLast(CHUNKED_WRITER_HANDLER, new ChunkedWriteHandler())//
+                        .addLast(CHUNKED_WRITER_FLUSH_HANDLER, chunkedWriteFlushHandler)//
                         .addLast(AHC_HANDLER, httpProcessor);
 
+                if (asyncHttpProviderConfig.isConsolidateFlushes()) {
+                    // below the SslHandler, so fewer and larger TLS records are produced
+                    ch.pipeline().addAfter(SSL_HANDLER, FLUSH_CONSOLIDATION_HANDLER, new FlushConsolidationHandler());
+                }
+
                 if (asyncHttpProviderConfig.getHttpsAdditionalChannelInitializer() != null) {
                     asyncHttpProviderConfig.getHttpsAdditionalChannelInitializer().initChannel(ch);
                 }
             }
-        });
+        };
 
-        secureWebSocketBootstrap.handler(new ChannelInitializer<Channel>() {
+        ChannelInitializer<Channel> secureWebSocketInitializer = new ChannelInitializer<Channel>() {
 
             @Override
             protected void initChannel(Channel ch) throws Exception {
@@ -254,18 +328,100 @@ public class Channels {
                         .addLast(HTTP_ENCODER_HANDLER, new HttpRequestEncoder())//
                         .addLast(AHC_HANDLER, httpProcessor);
 
+                if (asyncHttpProviderConfig.isConsolidateFlushes()) {
+                    // below the SslHandler, so fewer and larger TLS records are produced
+                    ch.pipeline().addAfter(SSL_HANDLER, FLUSH_CONSOLIDATION_HANDLER, new FlushConsolidationHandler());
+                }
+
                 if (asyncHttpProviderConfig.getWssAdditionalChannelInitializer() != null) {
                     asyncHttpProviderConfig.getWssAdditionalChannelInitializer().initChannel(ch);
                 }
             }
-        });
+        };
+
+        plainBootstrap.handler(plainInitializer);
+        webSocketBootstrap.handler(webSocketInitializer);
+        secureBootstrap.handler(secureInitializer);
+        secureWebSocketBootstrap.handler(secureWebSocketInitializer);
+        if (shardedPool != null) {
+            for (EventLoopShard shard : shardedPool.getShards()) {
+                shard.plainBootstrap.handler(plainInitializer);
+                shard.webSocketBootstrap.handler(webSocketInitializer);
+                shard.secureBootstrap.handler(secureInitializer);
+                shard.secureWebSocketBootstrap.handler(secureWebSocketInitializer);
+            }
+        }
     }
 
-    public Bootstrap getBootstrap(String url, boolean useSSl) {
+    /**
+     * @param shard the shard of the request, or null if the requests have no event loop affinity
+     */
+    public Bootstrap getBootstrap(String url, boolean useSSl, EventLoopShard shard) {
+        if (shard != null) {
+            return url.startsWith(WEBSOCKET) ? (useSSl ? shard.secureWebSocketBootstrap : shard.webSocketBootstrap)
+                    : (useSSl ? shard.secureBootstrap : shard.plainBootstrap);
+        }
         return url.startsWith(WEBSOCKET) ? (useSSl ? secureWebSocketBootstrap : webSocketBootstrap) : (useSSl ? secureBootstrap : plainBootstrap);
     }
 
+    /**
+     * @return true if the requests have an event loop affinity, see {@link EventLoopAffinity}
+     */
+    public boolean isSharded() {
+        return shardedPool != null;
+    }
+
+    /**
+     * @param poolKey the connection pool key of a new request
+     * @return the shard the request is assigned to, or null if the requests have no event loop affinity
+     */
+    public EventLoopShard selectShard(PoolKey poolKey) {
+        return shardedPool != null ? shardedPool.select(poolKey) : null;
+    }
+
+    /**
+     * @return the shard owning the channel, or null if the requests have no event loop affinity
+     */
+    public EventLoopShard shardOf(Channel channel) {
+        return shardedPool != null ? shardedPool.shardOf(channel) : null;
+    }
+
+    private Semaphore freeConnections(Channel channel) {
+        if (shardedPool != null) {
+            EventLoopShard shard = shardedPool.shardOf(channel);
+            return shard != null ? shard.getFreeConnections() : null;
+        }
+        return freeConnections;
+    }
+
+    /**
+     * @return the statistics of the connection pool, or null if it doesn't provide any
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return connectionsPool instanceof ConnectionPoolStats ? (ConnectionPoolStats) connectionsPool : null;
+    }
+
+    /**
+     * @return the event loops monitor, or null if the monitoring is disabled
+     */
+    public EventLoopMonitor getEventLoopMonitor() {
+        return eventLoopMonitor;
+    }
+
+    /**
+     * @return the dispatcher the responses are completed with
+     */
+    public CallbackDispatcher getCallbackDispatcher() {
+        return callbackDispatcher;
+    }
+
     public void close() {
+        if (eventLoopMonitor != null) {
+            eventLoopMonitor.stop();
+        }
+        JmxUtils.unregister(connectionPoolStatsName);
+        JmxUtils.unregister(circuitBreakersName);
+        JmxUtils.unregister(callbackExecutorName);
         connectionsPool.destroy();
         for (Channel channel : openChannels) {
             Object attribute = getDefaultAttribute(channel);
@@ -278,6 +434,7 @@ public class Channels {
         if (allowReleaseEventLoopGroup) {
             eventLoopGroup.shutdownGracefully();
         }
+        callbackDispatcher.close();
     }
 
     // some servers can use the same port for HTTP and HTTPS
@@ -330,11 +487,12 @@ public class Channels {
         ctx.pipeline().replace(Channels.HTTP_DECODER_HANDLER, Channels.WS_DECODER_HANDLER, new WebSocket08FrameDecoder(false, false, 10 * 1024));
     }
 
-    public Channel lookupInCache(URI uri, ConnectionPoolKeyStrategy connectionPoolKeyStrategy) {
-        final Channel channel = connectionsPool.poll(connectionPoolKeyStrategy.getKey(uri));
+    public Channel lookupInCache(PoolKey poolKey, String scheme, EventLoopShard shard) {
+        ConnectionsPool<PoolKey, Channel> pool = shard != null ? shard.getConnectionsPool() : connectionsPool;
+        final Channel channel = pool.poll(poolKey);
 
         if (channel != null) {
-            LOGGER.debug("Using cached Channel {}\n for uri {}\n", channel, uri);
+            LOGGER.debug("Using cached Channel {}\n for {}\n", channel, poolKey);
 
             try {
                 // Always make sure the channel who got cached support the
@@ -342,7 +500,7 @@ public class Channels {
                 // only occurs when a HttpMethod.CONNECT is used against a proxy
                 // that require upgrading from http to
                 // https.
-                return verifyChannelPipeline(channel, uri.getScheme());
+                return verifyChannelPipeline(channel, scheme);
             } catch (Exception ex) {
                 LOGGER.debug(ex.getMessage(), ex);
             }
@@ -350,9 +508,10 @@ public class Channels {
         return null;
     }
 
-    public boolean acquireConnection(AsyncHandler<?> asyncHandler) throws IOException {
+    public boolean acquireConnection(AsyncHandler<?> asyncHandler, EventLoopShard shard) throws IOException {
 
-        if (!connectionsPool.canCacheConnection()) {
+        ConnectionsPool<PoolKey, Channel> pool = shard != null ? shard.getConnectionsPool() : connectionsPool;
+        if (!pool.canCacheConnection()) {
             IOException ex = new IOException("Too many connections " + config.getMaxTotalConnections());
             try {
                 asyncHandler.onThrowable(ex);
@@ -363,7 +522,8 @@ public class Channels {
         }
 
         if (trackConnections) {
-            if (freeConnections.tryAcquire()) {
+            Semaphore permits = shard != null ? shard.getFreeConnections() : freeConnections;
+            if (permits.tryAcquire()) {
                 return true;
             } else {
                 IOException ex = new IOException("Too many connections " + config.getMaxTotalConnections());
@@ -383,12 +543,12 @@ public class Channels {
         openChannels.add(channel);
     }
 
-    public boolean offerToPool(String key, Channel channel) {
+    public boolean offerToPool(PoolKey key, Channel channel) {
         return connectionsPool.offer(key, channel);
     }
 
-    public void releaseFreeConnections() {
-        freeConnections.release();
+    public void releaseFreeConnections(EventLoopShard shard) {
+        (shard != null ? shard.getFreeConnections() : freeConnections).release();
     }
 
     public void removeFromPool(ChannelHandlerContext ctx) {
@@ -432,9 +592,9 @@ public class Channels {
         });
     }
 
-    public String getPoolKey(NettyResponseFuture<?> future) {
-        URI uri = future.getProxyServer() != null ? future.getProxyServer().getURI() : future.getURI();
-        return future.getConnectionPoolKeyStrategy().getKey(uri);
+    public PoolKey getPoolKey(NettyResponseFuture<?> future) {
+        PoolKey poolKey = future.getPoolKey();
+        return poolKey != null ? poolKey : future.getRequest().getPoolKey(future.getProxyServer());
     }
 
     public void removeAll(Channel channel) {
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.channel;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.asynchttpclient.providers.netty.util.LagHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Monitors the health of the event loops of an {@link EventLoopGroup}.
+ * <p/>
+ * Every interval, a probe task is submitted to each loop which doesn't already have one pending. The time the probe waits
+ * before running, i.e. the loop's lag, is recorded into a {@link LagHistogram}. A loop blocked by a slow callback stalls
+ * every channel registered on it: when a probe waits longer than the slow threshold, the stack of the loop's thread is
+ * logged, which usually points at the culprit.
+ * <p/>
+ * Optionally, {@link #isOverloaded(EventLoop)} reports the loops lagging more than a maximum, so new requests can be
+ * rejected instead of piling up behind a blocked callback.
+ */
+public class EventLoopMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLoopMonitor.class);
+
+    private final Map<EventExecutor, LoopState> states = new IdentityHashMap<EventExecutor, LoopState>();
+    private final LagHistogram histogram = new LagHistogram();
+    private final long slowThresholdNanos;
+    private final long maxLagNanos;
+    private final ScheduledExecutorService scheduler;
+
+    private static class LoopState {
+        final EventExecutor loop;
+        // 0 when no probe is pending
+        volatile long probeSubmitted;
+        volatile long lag;
+        volatile Thread thread;
+        boolean slowLogged;
+
+        LoopState(EventExecutor loop) {
+            this.loop = loop;
+        }
+
+        long currentLag(long now) {
+            long submitted = probeSubmitted;
+            return submitted != 0L ? Math.max(lag, now - submitted) : lag;
+        }
+    }
+
+    /**
+     * @param group the loops to monitor
+     * @param intervalInMs how often the loops are probed
+     * @param slowThresholdInMs the lag above which the stack of a loop's thread is logged
+     * @param maxLagInMs the lag above which a loop is considered overloaded, -1 to never consider it overloaded
+     */
+    public EventLoopMonitor(EventLoopGroup group, long intervalInMs, long slowThresholdInMs, long maxLagInMs) {
+        for (Iterator<EventExecutor> it = group.iterator(); it.hasNext();) {
+            EventExecutor loop = it.next();
+            states.put(loop, new LoopState(loop));
+        }
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdInMs);
+        this.maxLagNanos = maxLagInMs >= 0 ? TimeUnit.MILLISECONDS.toNanos(maxLagInMs) : -1L;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AsyncHttpClient-EventLoopMonitor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                probe();
+            }
+        }, intervalInMs, intervalInMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe() {
+        for (final LoopState state : states.values()) {
+            final long now = System.nanoTime();
+            long submitted = state.probeSubmitted;
+            if (submitted != 0L) {
+                // the previous probe is still waiting
+                long lag = now - submitted;
+                if (lag > slowThresholdNanos && !state.slowLogged) {
+                    state.slowLogged = true;
+                    logSlowLoop(state, lag);
+                }
+                continue;
+            }
+
+            state.slowLogged = false;
+            state.probeSubmitted = now;
+            try {
+                state.loop.execute(new Runnable() {
+                    public void run() {
+                        long lag = System.nanoTime() - now;
+                        histogram.record(lag);
+                        state.lag = lag;
+                        state.thread = Thread.currentThread();
+                        state.probeSubmitted = 0L;
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the loop is shutting down
+                state.probeSubmitted = 0L;
+            }
+        }
+    }
+
+    private void logSlowLoop(LoopState state, long lagNanos) {
+        Thread thread = state.thread;
+        if (thread == null) {
+            LOGGER.warn("Event loop {} didn't run a task for {} ms", state.loop, TimeUnit.NANOSECONDS.toMillis(lagNanos));
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement element : thread.getStackTrace()) {
+            sb.append("\n\tat ").append(element);
+        }
+        LOGGER.warn("Event loop thread {} didn't run a task for {} ms, a callback might be blocking it:{}", thread.getName(),
+                TimeUnit.NANOSECONDS.toMillis(lagNanos), sb);
+    }
+
+    /**
+     * @return true if the loop's lag exceeds the maximum lag, including the lag of a probe that's still waiting
+     */
+    public boolean isOverloaded(EventLoop loop) {
+        if (maxLagNanos < 0L) {
+            return false;
+        }
+        LoopState state = states.get(loop);
+        return state != null && state.currentLag(System.nanoTime()) > maxLagNanos;
+    }
+
+    /**
+     * @return true if every monitored loop is overloaded, e.g. for rejecting requests before knowing which loop will handle them
+     */
+    public boolean isOverloaded() {
+        if (maxLagNanos < 0L || states.isEmpty()) {
+            return false;
+        }
+        long now = System.nanoTime();
+        for (LoopState state : states.values()) {
+            if (state.currentLag(now) <= maxLagNanos) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the lag of the loop in nanoseconds, as of the last probe or the probe still waiting
+     */
+    public long getLagNanos(EventLoop loop) {
+        LoopState state = states.get(loop);
+        return state != null ? state.currentLag(System.nanoTime()) : 0L;
+    }
+
+    /**
+     * @return the lags of the monitored loops in nanoseconds
+     */
+    public List<Long> getLagsNanos() {
+        long now = System.nanoTime();
+        List<Long> lags = new ArrayList<Long>(states.size());
+        for (LoopState state : states.values()) {
+            lags.add(state.currentLag(now));
+        }
+        return lags;
+    }
+
+    /**
+     * @return the histogram of all the lags measured so far
+     */
+    public LagHistogram getLagHistogram() {
+        return histogram;
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+}
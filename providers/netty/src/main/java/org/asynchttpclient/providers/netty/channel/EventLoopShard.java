@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.util.concurrent.Semaphore;
+
+import org.asynchttpclient.ConnectionsPool;
+import org.asynchttpclient.PoolKey;
+
+/**
+ * The state owned by a single event loop when the requests have an
+ * {@link org.asynchttpclient.providers.netty.EventLoopAffinity}: its connection pool, its connection permits and the bootstraps
+ * creating the channels on that loop.
+ */
+public class EventLoopShard {
+
+    private final EventLoop eventLoop;
+    private final ConnectionsPool<PoolKey, Channel> connectionsPool;
+    private final Semaphore freeConnections;
+
+    final Bootstrap plainBootstrap;
+    final Bootstrap secureBootstrap;
+    final Bootstrap webSocketBootstrap;
+    final Bootstrap secureWebSocketBootstrap;
+
+    /**
+     * @param eventLoop the loop owning the shard
+     * @param connectionsPool the pool of the idle channels of that loop
+     * @param freeConnections the permits for opening channels on that loop, possibly shared with other shards, null for no limit
+     */
+    EventLoopShard(EventLoop eventLoop, ConnectionsPool<PoolKey, Channel> connectionsPool, Semaphore freeConnections) {
+        this.eventLoop = eventLoop;
+        this.connectionsPool = connectionsPool;
+        this.freeConnections = freeConnections;
+        plainBootstrap = new Bootstrap().channel(NioSocketChannel.class).group(eventLoop);
+        secureBootstrap = new Bootstrap().channel(NioSocketChannel.class).group(eventLoop);
+        webSocketBootstrap = new Bootstrap().channel(NioSocketChannel.class).group(eventLoop);
+        secureWebSocketBootstrap = new Bootstrap().channel(NioSocketChannel.class).group(eventLoop);
+    }
+
+    public EventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    public ConnectionsPool<PoolKey, Channel> getConnectionsPool() {
+        return connectionsPool;
+    }
+
+    /**
+     * @return the permits for opening channels on this loop, shared by all the shards with
+     *         {@link org.asynchttpclient.providers.netty.EventLoopAffinity#HOST_HASH}, or null if the connections aren't limited
+     */
+    public Semaphore getFreeConnections() {
+        return freeConnections;
+    }
+
+    @Override
+    public String toString() {
+        return "EventLoopShard: {eventLoop: " + eventLoop + ", pool: " + connectionsPool + "}";
+    }
+}
@@ -15,31 +15,40 @@ package org.asynchttpclient.providers.netty.channel;
 import static org.asynchttpclient.util.DateUtil.millisTime;
 import io.netty.channel.Channel;
 
+import io.netty.channel.group.ChannelGroup;
+
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.ConnectionPoolStats;
 import org.asynchttpclient.ConnectionsPool;
+import org.asynchttpclient.PoolKey;
 import org.asynchttpclient.providers.netty.DiscardEvent;
 import org.asynchttpclient.providers.netty.future.NettyResponseFuture;
+import org.asynchttpclient.util.StripedCounter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A simple implementation of {@link org.asynchttpclient.ConnectionsPool} based on a {@link java.util.concurrent.ConcurrentHashMap}
  */
-public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
+public class NettyConnectionsPool implements ConnectionsPool<PoolKey, Channel>, ConnectionPoolStats {
 
     private final static Logger log = LoggerFactory.getLogger(NettyConnectionsPool.class);
-    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<IdleChannel>> connectionsPool = new ConcurrentHashMap<String, ConcurrentLinkedQueue<IdleChannel>>();
-    private final ConcurrentHashMap<Channel, IdleChannel> channel2IdleChannel = new ConcurrentHashMap<Channel, IdleChannel>();
-    private final ConcurrentHashMap<Channel, Long> channel2CreationDate = new ConcurrentHashMap<Channel, Long>();
+    private final ConcurrentMap<PoolKey, ConcurrentLinkedQueue<IdleChannel>> connectionsPool = new ConcurrentHashMap<PoolKey, ConcurrentLinkedQueue<IdleChannel>>();
+    private final ConcurrentMap<Channel, IdleChannel> channel2IdleChannel = new ConcurrentHashMap<Channel, IdleChannel>();
+    private final ConcurrentMap<Channel, Long> channel2CreationDate = new ConcurrentHashMap<Channel, Long>();
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private final Timer idleConnectionDetector;
     private final boolean sslConnectionPoolEnabled;
@@ -47,6 +56,13 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
     private final int maxConnectionPerHost;
     private final int maxConnectionLifeTimeInMs;
     private final long maxIdleTime;
+    private final StripedCounter offers = new StripedCounter();
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final StripedCounter evictions = new StripedCounter();
+    private final StripedCounter expirations = new StripedCounter();
+    private volatile ChannelGroup openChannels;
+    private volatile Semaphore freeConnections;
 
     public NettyConnectionsPool(AsyncHttpClientConfig config) {
         this(config.getMaxTotalConnections(), config.getMaxConnectionPerHost(), config.getIdleConnectionInPoolTimeoutInMs(), config.isSslConnectionPoolEnabled(), config.getMaxConnectionLifeTimeInMs(), new Timer(true));
@@ -63,11 +79,11 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
     }
 
     private static class IdleChannel {
-        final String uri;
+        final PoolKey uri;
         final Channel channel;
         final long start;
 
-        IdleChannel(String uri, Channel channel) {
+        IdleChannel(PoolKey uri, Channel channel) {
             this.uri = uri;
             this.channel = channel;
             this.start = millisTime();
@@ -98,9 +114,9 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
                 if (closed.get()) return;
 
                 if (log.isDebugEnabled()) {
-                    Set<String> keys = connectionsPool.keySet();
+                    Set<PoolKey> keys = connectionsPool.keySet();
 
-                    for (String s : keys) {
+                    for (PoolKey s : keys) {
                         log.debug("Entry count for : {} : {}", s, connectionsPool.get(s).size());
                     }
                 }
@@ -135,6 +151,7 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
 
                     if (remove(idleChannel)) {
                         log.debug("Closing Idle Channel {}", idleChannel.channel);
+                        evictions.increment();
                         close(idleChannel.channel);
                     }
                 }
@@ -156,10 +173,10 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
     /**
      * {@inheritDoc}
      */
-    public boolean offer(String uri, Channel channel) {
+    public boolean offer(PoolKey uri, Channel channel) {
         if (closed.get()) return false;
 
-        if (!sslConnectionPoolEnabled && uri.startsWith("https")) {
+        if (!sslConnectionPoolEnabled && uri.getConnectionKey().startsWith("https")) {
             return false;
         }
 
@@ -169,6 +186,7 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
         }
         else if (maxConnectionLifeTimeInMs != -1 && (createTime + maxConnectionLifeTimeInMs) < millisTime() ) {
            log.debug("Channel {} expired", channel);
+           expirations.increment();
            return false;
         }
 
@@ -197,14 +215,18 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
             log.debug("Maximum number of requests per host reached {} for {}", maxConnectionPerHost, uri);
             added = false;
         }
+        if (added) {
+            offers.increment();
+        }
         return added;
     }
 
     /**
      * {@inheritDoc}
      */
-    public Channel poll(String uri) {
-        if (!sslConnectionPoolEnabled && uri.startsWith("https")) {
+    public Channel poll(PoolKey uri) {
+        if (!sslConnectionPoolEnabled && uri.getConnectionKey().startsWith("https")) {
+            misses.increment();
             return null;
         }
 
@@ -226,11 +248,18 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
                     poolEmpty = true;
                 } else if (!idleChannel.channel.isActive() || !idleChannel.channel.isOpen()) {
                     idleChannel = null;
+                    evictions.increment();
                     log.trace("Channel not connected or not opened!");
                 }
             }
         }
-        return idleChannel != null ? idleChannel.channel : null;
+        if (idleChannel != null) {
+            hits.increment();
+            return idleChannel.channel;
+        } else {
+            misses.increment();
+            return null;
+        }
     }
 
     private boolean remove(IdleChannel pooledChannel) {
@@ -292,6 +321,95 @@ public class NettyConnectionsPool implements ConnectionsPool<String, Channel> {
         }
     }
 
+    /**
+     * Let the statistics report the open connections and the free permits, which are tracked outside of the pool.
+     */
+    void trackConnections(ChannelGroup openChannels, Semaphore freeConnections) {
+        this.openChannels = openChannels;
+        this.freeConnections = freeConnections;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getIdleConnectionCount() {
+        return channel2IdleChannel.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Integer> getIdleConnectionCountPerHost() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map.Entry<PoolKey, ConcurrentLinkedQueue<IdleChannel>> entry : connectionsPool.entrySet()) {
+            int size = entry.getValue().size();
+            if (size > 0) {
+                counts.put(entry.getKey().toString(), size);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getOpenConnectionCount() {
+        ChannelGroup channels = openChannels;
+        return channels != null ? channels.size() : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getAvailablePermits() {
+        Semaphore permits = freeConnections;
+        return permits != null ? permits.availablePermits() : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getOfferCount() {
+        return offers.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total > 0L ? (double) hitCount / total : 0.0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
     public final String toString() {
         return String.format("NettyConnectionPool: {pool-size: %d}", channel2IdleChannel.size());
     }
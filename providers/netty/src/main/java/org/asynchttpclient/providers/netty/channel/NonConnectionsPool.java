@@ -18,14 +18,15 @@ package org.asynchttpclient.providers.netty.channel;
 import io.netty.channel.Channel;
 
 import org.asynchttpclient.ConnectionsPool;
+import org.asynchttpclient.PoolKey;
 
-public class NonConnectionsPool implements ConnectionsPool<String, Channel> {
+public class NonConnectionsPool implements ConnectionsPool<PoolKey, Channel> {
 
-    public boolean offer(String uri, Channel connection) {
+    public boolean offer(PoolKey uri, Channel connection) {
         return false;
     }
 
-    public Channel poll(String uri) {
+    public Channel poll(PoolKey uri) {
         return null;
     }
 
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.channel;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.ConnectionPoolStats;
+import org.asynchttpclient.ConnectionsPool;
+import org.asynchttpclient.PoolKey;
+import org.asynchttpclient.providers.netty.EventLoopAffinity;
+
+/**
+ * A {@link ConnectionsPool} made of one {@link NettyConnectionsPool} per event loop.
+ * <p/>
+ * Channels are offered to and removed from the pool of the loop they're registered with, so the callers don't need to know
+ * about the shards. Polling goes to the shard {@link #select(PoolKey) selected} for the key, the request sender selects the shard
+ * itself so that it also opens the new channels on that loop. Each shard gets an equal share of the maximum number of
+ * connections, except with {@link EventLoopAffinity#HOST_HASH}: a host always goes to the same shard, so the shards share a single
+ * pool of permits and a single host can use all the connections. The maximum number of idle connections per host applies to every
+ * shard. When the maximum number of connections is lower than the number of loops, only that many loops get a shard.
+ * <p/>
+ * The idle channels of all the shards are expired by a single timer thread.
+ */
+public class ShardedConnectionsPool implements ConnectionsPool<PoolKey, Channel>, ConnectionPoolStats {
+
+    private final EventLoopShard[] shards;
+    private final Map<EventExecutor, EventLoopShard> shardsByLoop = new IdentityHashMap<EventExecutor, EventLoopShard>();
+    private final EventLoopAffinity affinity;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile ChannelGroup openChannels;
+
+    public ShardedConnectionsPool(AsyncHttpClientConfig config, EventLoopGroup eventLoopGroup, EventLoopAffinity affinity) {
+        this.affinity = affinity;
+
+        List<EventLoop> loops = new ArrayList<EventLoop>();
+        for (Iterator<EventExecutor> it = eventLoopGroup.iterator(); it.hasNext();) {
+            loops.add((EventLoop) it.next());
+        }
+
+        // every shard needs at least one connection
+        int maxTotalConnections = config.getMaxTotalConnections();
+        int count = maxTotalConnections != -1 ? Math.max(1, Math.min(loops.size(), maxTotalConnections)) : loops.size();
+
+        boolean sharedPermits = affinity == EventLoopAffinity.HOST_HASH;
+        Semaphore globalFreeConnections = sharedPermits && maxTotalConnections != -1 ? new Semaphore(maxTotalConnections) : null;
+
+        Timer idleConnectionDetector = new Timer(true);
+        shards = new EventLoopShard[count];
+        for (int i = 0; i < shards.length; i++) {
+            int maxConnections = sharedPermits ? maxTotalConnections : share(maxTotalConnections, i, shards.length);
+            Semaphore freeConnections = sharedPermits ? globalFreeConnections : maxConnections != -1 ? new Semaphore(maxConnections) : null;
+            ConnectionsPool<PoolKey, Channel> pool = config.getAllowPoolingConnection() ? new NettyConnectionsPool(maxConnections,
+                    config.getMaxConnectionPerHost(), config.getIdleConnectionInPoolTimeoutInMs(), config.isSslConnectionPoolEnabled(),
+                    config.getMaxConnectionLifeTimeInMs(), idleConnectionDetector) : new NonConnectionsPool();
+            shards[i] = new EventLoopShard(loops.get(i), pool, freeConnections);
+            shardsByLoop.put(loops.get(i), shards[i]);
+        }
+        if (!config.getAllowPoolingConnection()) {
+            idleConnectionDetector.cancel();
+        }
+    }
+
+    // the remainder goes to the first shards
+    private static int share(int max, int index, int count) {
+        if (max == -1) {
+            return -1;
+        }
+        return max / count + (index < max % count ? 1 : 0);
+    }
+
+    public EventLoopShard[] getShards() {
+        return shards.clone();
+    }
+
+    /**
+     * @param key the connection pool key of a request
+     * @return the shard the request should use
+     */
+    public EventLoopShard select(PoolKey key) {
+        if (affinity == EventLoopAffinity.HOST_HASH) {
+            return shards[(key.hashCode() & Integer.MAX_VALUE) % shards.length];
+        }
+        for (EventLoopShard shard : shards) {
+            if (shard.getEventLoop().inEventLoop()) {
+                return shard;
+            }
+        }
+        return shards[(next.getAndIncrement() & Integer.MAX_VALUE) % shards.length];
+    }
+
+    /**
+     * @return the shard of the loop the channel is registered with, or null if it's not one of the pool's loops
+     */
+    public EventLoopShard shardOf(Channel channel) {
+        return shardsByLoop.get(channel.eventLoop());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean offer(PoolKey key, Channel channel) {
+        EventLoopShard shard = shardOf(channel);
+        return shard != null && shard.getConnectionsPool().offer(key, channel);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Channel poll(PoolKey key) {
+        return select(key).getConnectionsPool().poll(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean removeAll(Channel channel) {
+        EventLoopShard shard = shardOf(channel);
+        return shard != null && shard.getConnectionsPool().removeAll(channel);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canCacheConnection() {
+        for (EventLoopShard shard : shards) {
+            if (shard.getConnectionsPool().canCacheConnection()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void destroy() {
+        for (EventLoopShard shard : shards) {
+            shard.getConnectionsPool().destroy();
+        }
+    }
+
+    /**
+     * Let the statistics report the open connections, which are tracked outside of the pool.
+     */
+    void trackConnections(ChannelGroup openChannels) {
+        this.openChannels = openChannels;
+    }
+
+    private ConnectionPoolStats stats(EventLoopShard shard) {
+        ConnectionsPool<PoolKey, Channel> pool = shard.getConnectionsPool();
+        return pool instanceof ConnectionPoolStats ? (ConnectionPoolStats) pool : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getIdleConnectionCount() {
+        int count = 0;
+        for (EventLoopShard shard : shards) {
+            ConnectionPoolStats stats = stats(shard);
+            if (stats != null) {
+                count += stats.getIdleConnectionCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<String, Integer> getIdleConnectionCountPerHost() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (EventLoopShard shard : shards) {
+            ConnectionPoolStats stats = stats(shard);
+            if (stats != null) {
+                for (Map.Entry<String, Integer> entry : stats.getIdleConnectionCountPerHost().entrySet()) {
+                    Integer count = counts.get(entry.getKey());
+                    counts.put(entry.getKey(), count != null ? count + entry.getValue() : entry.getValue());
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getOpenConnectionCount() {
+        ChannelGroup channels = openChannels;
+        return channels != null ? channels.size() : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getAvailablePermits() {
+        Semaphore first = shards[0].getFreeConnections();
+        if (first == null) {
+            return -1;
+        }
+        if (affinity == EventLoopAffinity.HOST_HASH) {
+            // shared by all the shards
+            return first.availablePermits();
+        }
+        int permits = 0;
+        for (EventLoopShard shard : shards) {
+            permits += shard.getFreeConnections().availablePermits();
+        }
+        return permits;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getOfferCount() {
+        long count = 0L;
+        for (EventLoopShard shard : shards) {
+            ConnectionPoolStats stats = stats(shard);
+            if (stats != null) {
+                count += stats.getOfferCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getHitCount() {
+        long count = 0L;
+        for (EventLoopShard shard : shards) {
+            ConnectionPoolStats stats = stats(shard);
+            if (stats != null) {
+                count += stats.getHitCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getMissCount() {
+        long count = 0L;
+        for (EventLoopShard shard : shards) {
+            ConnectionPoolStats stats = stats(shard);
+            if (stats != null) {
+                count += stats.getMissCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getHitRatio() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return total > 0L ? (double) hitCount / total : 0.0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEvictionCount() {
+        long count = 0L;
+        for (EventLoopShard shard : shards) {
+            ConnectionPoolStats stats = stats(shard);
+            if (stats != null) {
+                count += stats.getEvictionCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getExpirationCount() {
+        long count = 0L;
+        for (EventLoopShard shard : shards) {
+            ConnectionPoolStats stats = stats(shard);
+            if (stats != null) {
+                count += stats.getExpirationCount();
+            }
+        }
+        return count;
+    }
+
+    public final String toString() {
+        return String.format("ShardedConnectionsPool: {shards: %d, pool-size: %d}", shards.length, getIdleConnectionCount());
+    }
+}
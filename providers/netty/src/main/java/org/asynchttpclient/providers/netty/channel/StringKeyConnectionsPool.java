@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.channel;
+
+import io.netty.channel.Channel;
+
+import org.asynchttpclient.ConnectionsPool;
+import org.asynchttpclient.PoolKey;
+
+/**
+ * Adapts a {@link ConnectionsPool} set in the {@link org.asynchttpclient.AsyncHttpClientConfig}, whose keys are strings, to the
+ * {@link PoolKey}s used by the provider.
+ */
+public class StringKeyConnectionsPool implements ConnectionsPool<PoolKey, Channel> {
+
+    private final ConnectionsPool<String, Channel> delegate;
+
+    public StringKeyConnectionsPool(ConnectionsPool<String, Channel> delegate) {
+        this.delegate = delegate;
+    }
+
+    public boolean offer(PoolKey key, Channel connection) {
+        return delegate.offer(key.toString(), connection);
+    }
+
+    public Channel poll(PoolKey key) {
+        return delegate.poll(key.toString());
+    }
+
+    public boolean removeAll(Channel connection) {
+        return delegate.removeAll(connection);
+    }
+
+    public boolean canCacheConnection() {
+        return delegate.canCacheConnection();
+    }
+
+    public void destroy() {
+        delegate.destroy();
+    }
+}
@@ -27,16 +27,16 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.ConnectionPoolKeyStrategy;
+import org.asynchttpclient.PoolKey;
 import org.asynchttpclient.ProxyServer;
 import org.asynchttpclient.Request;
+import org.asynchttpclient.circuitbreaker.CircuitBreaker;
 import org.asynchttpclient.listenable.AbstractListenableFuture;
 import org.asynchttpclient.providers.netty.DiscardEvent;
 import org.asynchttpclient.providers.netty.channel.Channels;
@@ -46,6 +46,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A {@link Future} that can be used to track when an asynchronous HTTP request has been fully processed.
+ * <p/>
+ * There can be a lot of them in flight, so the state mutated from outside the event loop is kept in volatile fields updated with
+ * field updaters instead of atomic objects, and the boolean flags are packed in a single int. The latch blocking {@link #get()} is
+ * only created if someone actually waits.
  * 
  * @param <V>
  */
@@ -64,27 +68,50 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     private final ConnectionPoolKeyStrategy connectionPoolKeyStrategy;
     private final ProxyServer proxyServer;
     private final int maxRetry;
-    private final CountDownLatch latch = new CountDownLatch(1);
+
+    // the bits of the flags field
+    private static final int DONE = 1;
+    private static final int CANCELLED = 1 << 1;
+    private static final int IN_AUTH = 1 << 2;
+    private static final int STATUS_RECEIVED = 1 << 3;
+    private static final int CONTENT_PROCESSED = 1 << 4;
+    private static final int THROWABLE_CALLED = 1 << 5;
+    private static final int RELEASED = 1 << 6;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<NettyResponseFuture> FLAGS_UPDATER = AtomicIntegerFieldUpdater.newUpdater(NettyResponseFuture.class, "flags");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<NettyResponseFuture> REDIRECT_COUNT_UPDATER = AtomicIntegerFieldUpdater.newUpdater(NettyResponseFuture.class,
+            "redirectCount");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<NettyResponseFuture> CURRENT_RETRY_UPDATER = AtomicIntegerFieldUpdater.newUpdater(NettyResponseFuture.class,
+            "currentRetry");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<NettyResponseFuture, Object> CONTENT_UPDATER = AtomicReferenceFieldUpdater.newUpdater(
+            NettyResponseFuture.class, Object.class, "content");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<NettyResponseFuture, ExecutionException> EX_EX_UPDATER = AtomicReferenceFieldUpdater.newUpdater(
+            NettyResponseFuture.class, ExecutionException.class, "exEx");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<NettyResponseFuture, CountDownLatch> LATCH_UPDATER = AtomicReferenceFieldUpdater.newUpdater(
+            NettyResponseFuture.class, CountDownLatch.class, "latch");
 
     // state mutated from outside the event loop
     // TODO check if they are indeed mutated outside the event loop
-    private final AtomicBoolean isDone = new AtomicBoolean(false);
-    private final AtomicBoolean isCancelled = new AtomicBoolean(false);
-    private final AtomicInteger redirectCount = new AtomicInteger();
-    private final AtomicBoolean inAuth = new AtomicBoolean(false);
-    private final AtomicBoolean statusReceived = new AtomicBoolean(false);
-    private final AtomicLong touch = new AtomicLong(millisTime());
-    private final AtomicReference<STATE> state = new AtomicReference<STATE>(STATE.NEW);
-    private final AtomicBoolean contentProcessed = new AtomicBoolean(false);
-    private final AtomicInteger currentRetry = new AtomicInteger(0);
-    private final AtomicBoolean throwableCalled = new AtomicBoolean(false);
-    private final AtomicReference<V> content = new AtomicReference<V>();
-    private final AtomicReference<ExecutionException> exEx = new AtomicReference<ExecutionException>();
+    private volatile int flags;
+    private volatile int redirectCount;
+    private volatile int currentRetry;
+    private volatile long touch = millisTime();
+    private volatile STATE state = STATE.NEW;
+    private volatile Object content;
+    private volatile ExecutionException exEx;
+    private volatile CountDownLatch latch;
     private volatile FutureReaper reaperFuture;
 
     // state mutated only inside the event loop
     private Channel channel;
     private URI uri;
+    private PoolKey poolKey;
     private boolean keepAlive = true;
     private Request request;
     private NettyRequest nettyRequest;
@@ -96,6 +123,7 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     private boolean writeHeaders;
     private boolean writeBody;
     private boolean allowConnect;
+    private CircuitBreaker circuitBreaker;
 
     public NettyResponseFuture(URI uri,//
             Request request,//
@@ -132,6 +160,34 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
         this.uri = uri;
     }
 
+    /**
+     * @return the key of the connections pool partition of the current request, null until it's sent
+     */
+    public PoolKey getPoolKey() {
+        return poolKey;
+    }
+
+    public void setPoolKey(PoolKey poolKey) {
+        this.poolKey = poolKey;
+    }
+
+    /**
+     * @param circuitBreaker the circuit breaker to notify of the first response status, null if nothing must be recorded
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Record a successful attempt with the circuit breaker set by {@link #setCircuitBreaker(CircuitBreaker)}, once.
+     */
+    public void onStatusReceived() {
+        if (circuitBreaker != null) {
+            circuitBreaker.onSuccess();
+            circuitBreaker = null;
+        }
+    }
+
     public ConnectionPoolKeyStrategy getConnectionPoolKeyStrategy() {
         return connectionPoolKeyStrategy;
     }
@@ -142,12 +198,65 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
 
     @Override
     public boolean isDone() {
-        return isDone.get();
+        return isSet(DONE);
     }
 
     @Override
     public boolean isCancelled() {
-        return isCancelled.get();
+        return isSet(CANCELLED);
+    }
+
+    private boolean isSet(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * @return the previous value of the flag
+     */
+    private boolean getAndSet(int flag, boolean value) {
+        for (;;) {
+            int current = flags;
+            int update = value ? current | flag : current & ~flag;
+            if (current == update || FLAGS_UPDATER.compareAndSet(this, current, update)) {
+                return (current & flag) != 0;
+            }
+        }
+    }
+
+    private CountDownLatch getOrCreateLatch() {
+        CountDownLatch current = latch;
+        if (current == null) {
+            CountDownLatch newLatch = new CountDownLatch(1);
+            current = LATCH_UPDATER.compareAndSet(this, null, newLatch) ? newLatch : latch;
+        }
+        return current;
+    }
+
+    private void releaseLatch() {
+        // the flag is set before reading the latch, and the waiters check it after creating the latch, so one of them sees the other
+        getAndSet(RELEASED, true);
+        CountDownLatch current = latch;
+        if (current != null) {
+            current.countDown();
+        }
+    }
+
+    /**
+     * @return true if the future was completed before the timeout
+     */
+    private boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        if (isSet(RELEASED)) {
+            return true;
+        }
+        CountDownLatch current = getOrCreateLatch();
+        if (isSet(RELEASED)) {
+            return true;
+        }
+        if (timeout == -1) {
+            current.await();
+            return true;
+        }
+        return current.await(timeout, unit);
     }
 
     public void setAsyncHandler(AsyncHandler<V> asyncHandler) {
@@ -158,7 +267,7 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     public boolean cancel(boolean force) {
         cancelReaper();
 
-        if (isCancelled.get())
+        if (isCancelled())
             return false;
 
         try {
@@ -167,15 +276,15 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
         } catch (Throwable t) {
             // Ignore
         }
-        if (!throwableCalled.getAndSet(true)) {
+        if (!getAndSet(THROWABLE_CALLED, true)) {
             try {
                 asyncHandler.onThrowable(new CancellationException());
             } catch (Throwable t) {
                 logger.warn("cancel", t);
             }
         }
-        latch.countDown();
-        isCancelled.set(true);
+        releaseLatch();
+        getAndSet(CANCELLED, true);
         runListeners();
         return true;
     }
@@ -191,7 +300,7 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     }
 
     public boolean hasConnectionIdleTimedOut(long now) {
-        return config.getIdleConnectionTimeoutInMs() != -1 && (now - touch.get()) >= config.getIdleConnectionTimeoutInMs();
+        return config.getIdleConnectionTimeoutInMs() != -1 && (now - touch) >= config.getIdleConnectionTimeoutInMs();
     }
 
     public boolean hasRequestTimedOut(long now) {
@@ -217,15 +326,10 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     @Override
     public V get(long l, TimeUnit tu) throws InterruptedException, TimeoutException, ExecutionException {
         if (!isDone() && !isCancelled()) {
-            boolean expired = false;
-            if (l == -1) {
-                latch.await();
-            } else {
-                expired = !latch.await(l, tu);
-            }
+            boolean expired = !await(l, tu);
 
             if (expired) {
-                isCancelled.set(true);
+                getAndSet(CANCELLED, true);
                 try {
                     Channels.setDefaultAttribute(channel, DiscardEvent.INSTANCE);
                     channel.close();
@@ -233,7 +337,7 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
                     // Ignore
                 }
                 TimeoutException te = new TimeoutException(String.format("No response received after %s %s", l, tu.name().toLowerCase()));
-                if (!throwableCalled.getAndSet(true)) {
+                if (!getAndSet(THROWABLE_CALLED, true)) {
                     try {
                         try {
                             asyncHandler.onThrowable(te);
@@ -246,9 +350,9 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
                     }
                 }
             }
-            isDone.set(true);
+            getAndSet(DONE, true);
 
-            ExecutionException e = exEx.getAndSet(null);
+            ExecutionException e = EX_EX_UPDATER.getAndSet(this, null);
             if (e != null) {
                 throw e;
             }
@@ -256,20 +360,21 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
         return getContent();
     }
 
+    @SuppressWarnings("unchecked")
     private V getContent() throws ExecutionException {
-        ExecutionException e = exEx.getAndSet(null);
+        ExecutionException e = EX_EX_UPDATER.getAndSet(this, null);
         if (e != null) {
             throw e;
         }
 
-        V update = content.get();
+        V update = (V) content;
         // No more retry
-        currentRetry.set(maxRetry);
-        if (exEx.get() == null && !contentProcessed.getAndSet(true)) {
+        currentRetry = maxRetry;
+        if (exEx == null && !getAndSet(CONTENT_PROCESSED, true)) {
             try {
                 update = asyncHandler.onCompleted();
             } catch (Throwable ex) {
-                if (!throwableCalled.getAndSet(true)) {
+                if (!getAndSet(THROWABLE_CALLED, true)) {
                     try {
                         try {
                             asyncHandler.onThrowable(ex);
@@ -282,7 +387,7 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
                     }
                 }
             }
-            content.compareAndSet(null, update);
+            CONTENT_UPDATER.compareAndSet(this, null, update);
         }
         return update;
     }
@@ -292,19 +397,19 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
         try {
             cancelReaper();
 
-            if (exEx.get() != null) {
+            if (exEx != null) {
                 return;
             }
             getContent();
-            isDone.set(true);
+            getAndSet(DONE, true);
         } catch (ExecutionException t) {
             return;
         } catch (RuntimeException t) {
             Throwable exception = t.getCause() != null ? t.getCause() : t;
-            exEx.compareAndSet(null, new ExecutionException(exception));
+            EX_EX_UPDATER.compareAndSet(this, null, new ExecutionException(exception));
 
         } finally {
-            latch.countDown();
+            releaseLatch();
         }
 
         runListeners();
@@ -313,20 +418,20 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     public final void abort(final Throwable t) {
         cancelReaper();
 
-        if (isDone.get() || isCancelled.get())
+        if (isDone() || isCancelled())
             return;
 
-        exEx.compareAndSet(null, new ExecutionException(t));
-        if (!throwableCalled.getAndSet(true)) {
+        EX_EX_UPDATER.compareAndSet(this, null, new ExecutionException(t));
+        if (!getAndSet(THROWABLE_CALLED, true)) {
             try {
                 asyncHandler.onThrowable(t);
             } catch (Throwable te) {
                 logger.debug("asyncHandler.onThrowable", te);
             } finally {
-                isCancelled.set(true);
+                getAndSet(CANCELLED, true);
             }
         }
-        latch.countDown();
+        releaseLatch();
         runListeners();
     }
 
@@ -363,7 +468,7 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     }
 
     public int incrementAndGetCurrentRedirectCount() {
-        return redirectCount.incrementAndGet();
+        return REDIRECT_COUNT_UPDATER.incrementAndGet(this);
     }
 
     public void setReaperFuture(FutureReaper reaperFuture) {
@@ -372,23 +477,23 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     }
 
     public boolean isInAuth() {
-        return inAuth.get();
+        return isSet(IN_AUTH);
     }
 
     public boolean getAndSetAuth(boolean inDigestAuth) {
-        return inAuth.getAndSet(inDigestAuth);
+        return getAndSet(IN_AUTH, inDigestAuth);
     }
 
     public STATE getState() {
-        return state.get();
+        return state;
     }
 
     public void setState(STATE state) {
-        this.state.set(state);
+        this.state = state;
     }
 
     public boolean getAndSetStatusReceived(boolean sr) {
-        return statusReceived.getAndSet(sr);
+        return getAndSet(STATUS_RECEIVED, sr);
     }
 
     public HttpResponse getPendingResponse() {
@@ -409,7 +514,7 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
 
     @Override
     public void touch() {
-        touch.set(millisTime());
+        touch = millisTime();
     }
 
     @Override
@@ -456,12 +561,26 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     }
 
     public boolean canRetry() {
-        if (currentRetry.incrementAndGet() > maxRetry) {
+        if (CURRENT_RETRY_UPDATER.incrementAndGet(this) > maxRetry) {
             return false;
         }
         return true;
     }
 
+    /**
+     * @return true if {@link #canRetry()} would allow one more retry, without taking it
+     */
+    public boolean hasRetriesLeft() {
+        return currentRetry < maxRetry;
+    }
+
+    /**
+     * @return the number of retries already taken by {@link #canRetry()}
+     */
+    public int getCurrentRetry() {
+        return currentRetry;
+    }
+
     public void setRequest(Request request) {
         this.request = request;
     }
@@ -488,8 +607,8 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
     public String toString() {
         return "NettyResponseFuture{" + //
                 "currentRetry=" + currentRetry + //
-                ",\n\tisDone=" + isDone + //
-                ",\n\tisCancelled=" + isCancelled + //
+                ",\n\tisDone=" + isDone() + //
+                ",\n\tisCancelled=" + isCancelled() + //
                 ",\n\tasyncHandler=" + asyncHandler + //
                 ",\n\trequestTimeoutInMs=" + requestTimeoutInMs + //
                 ",\n\tnettyRequest=" + nettyRequest + //
@@ -500,8 +619,8 @@ public final class NettyResponseFuture<V> extends AbstractListenableFuture<V> {
                 ",\n\texEx=" + exEx + //
                 ",\n\tredirectCount=" + redirectCount + //
                 ",\n\treaperFuture=" + reaperFuture + //
-                ",\n\tinAuth=" + inAuth + //
-                ",\n\tstatusReceived=" + statusReceived + //
+                ",\n\tinAuth=" + isSet(IN_AUTH) + //
+                ",\n\tstatusReceived=" + isSet(STATUS_RECEIVED) + //
                 ",\n\ttouch=" + touch + //
                 '}';
     }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+/**
+ * Turns the flushes a {@link ChunkedWriteHandler} issues after every message it writes into a single one, so the headers, the
+ * body and the last content of a request are sent with one gathering write.
+ * <p/>
+ * This handler goes right above the {@link ChunkedWriteHandler}, and the one returned by {@link #below()} right under it. While
+ * a flush goes through the {@link ChunkedWriteHandler}, the flushes it issues are held by the handler under it and replaced by
+ * a single one once it's done. The {@link ChunkedWriteHandler} stops writing once the channel isn't writable anymore, so the
+ * unflushed messages are bounded by the write buffer high water mark. Flushes issued on their own, e.g. when a transfer is
+ * resumed, are passed through.
+ * <p/>
+ * Not sharable, there's one instance per channel. All the methods run on the channel's event loop.
+ */
+public class ChunkedWriteFlushHandler extends ChannelOutboundHandlerAdapter {
+
+    private final Below below = new Below();
+    private boolean flushing;
+
+    /**
+     * @return the handler that goes right under the {@link ChunkedWriteHandler}
+     */
+    public ChannelHandler below() {
+        return below;
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        flushing = true;
+        try {
+            ctx.flush();
+        } finally {
+            flushing = false;
+        }
+        below.flushIfRequested();
+    }
+
+    private class Below extends ChannelOutboundHandlerAdapter {
+
+        private ChannelHandlerContext ctx;
+        private boolean flushRequested;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            if (flushing) {
+                flushRequested = true;
+            } else {
+                ctx.flush();
+            }
+        }
+
+        private void flushIfRequested() {
+            if (flushRequested && ctx != null) {
+                flushRequested = false;
+                ctx.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Consolidates the flushes of a channel that happen during one run of its event loop into a single one.
+ * <p/>
+ * The first flush schedules a task on the event loop instead of being passed through, and the following ones are dropped
+ * until that task runs. Writes issued from other threads are queued on the event loop as tasks too, so the messages of all
+ * the writes queued before the flush task go out with a single gathering write, e.g. bursts of WebSocket frames or the chunks
+ * of a fed body. Pending writes are flushed before the channel is closed or disconnected.
+ * <p/>
+ * Not sharable, there's one instance per channel. All the methods run on the channel's event loop.
+ */
+public class FlushConsolidationHandler extends ChannelOutboundHandlerAdapter {
+
+    private ChannelHandlerContext ctx;
+    private boolean flushPending;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushIfPending();
+        }
+    };
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfPending();
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (!flushPending) {
+            flushPending = true;
+            ctx.channel().eventLoop().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.close(promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending();
+        ctx.disconnect(promise);
+    }
+
+    private void flushIfPending() {
+        if (flushPending) {
+            flushPending = false;
+            ctx.flush();
+        }
+    }
+}
@@ -35,6 +35,7 @@ import java.util.Map.Entry;
 
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.AsyncHandler.STATE;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.FluentCaseInsensitiveStringsMap;
 import org.asynchttpclient.HttpResponseBodyPart;
@@ -197,7 +198,25 @@ final class HttpProtocol extends Protocol {
         return state;
     }
 
-    private void markAsDone(NettyResponseFuture<?> future, final ChannelHandlerContext ctx) throws MalformedURLException {
+    private void markAsDone(final NettyResponseFuture<?> future, final ChannelHandlerContext ctx) throws MalformedURLException {
+        if (channels.getCallbackDispatcher().isInline()) {
+            done(future);
+        } else {
+            // the response has been fully read, don't let the request timeout fire while the callback is queued
+            future.cancelReaper();
+            channels.getCallbackDispatcher().dispatch(new Runnable() {
+                public void run() {
+                    done(future);
+                }
+            });
+        }
+
+        if (!future.isKeepAlive() || !ctx.channel().isActive()) {
+            channels.closeChannel(ctx);
+        }
+    }
+
+    private void done(NettyResponseFuture<?> future) {
         // We need to make sure everything is OK before adding the
         // connection back to the pool.
         try {
@@ -206,10 +225,6 @@ final class HttpProtocol extends Protocol {
             // Never propagate exception once we know we are done.
             LOGGER.debug(t.getMessage(), t);
         }
-
-        if (!future.isKeepAlive() || !ctx.channel().isActive()) {
-            channels.closeChannel(ctx);
-        }
     }
 
     private boolean handleResponseAndExit(final ChannelHandlerContext ctx, final NettyResponseFuture<?> future, AsyncHandler<?> handler, HttpRequest nettyRequest,
@@ -253,7 +268,7 @@ final class HttpProtocol extends Protocol {
                             .setUsePreemptiveAuth(true).parseWWWAuthenticateHeader(wwwAuth.get(0)).build();
                 }
 
-                final Realm nr = new Realm.RealmBuilder().clone(newRealm).setUri(URI.create(request.getUrl()).getPath()).build();
+                final Realm nr = new Realm.RealmBuilder().clone(newRealm).setUri(request.getURI().getPath()).build();
 
                 LOGGER.debug("Sending authentication to {}", request.getUrl());
                 Callback callback = new Callback(future) {
@@ -358,6 +373,10 @@ final class HttpProtocol extends Protocol {
             if (e instanceof HttpResponse) {
                 HttpResponse response = (HttpResponse) e;
                 LOGGER.debug("\n\nRequest {}\n\nResponse {}\n", nettyRequest.getHttpRequest(), response);
+                future.onStatusReceived();
+                if (handler instanceof AsyncHandlerTimingExtensions) {
+                    AsyncHandlerTimingExtensions.class.cast(handler).onFirstByteReceived(System.nanoTime());
+                }
                 future.setPendingResponse(response);
                 return;
             }
@@ -375,6 +394,10 @@ final class HttpProtocol extends Protocol {
                     boolean interrupt = false;
                     boolean last = chunk instanceof LastHttpContent;
 
+                    if (last && handler instanceof AsyncHandlerTimingExtensions) {
+                        AsyncHandlerTimingExtensions.class.cast(handler).onLastByteReceived(System.nanoTime());
+                    }
+
                     if (last) {
                         LastHttpContent lastChunk = (LastHttpContent) chunk;
                         HttpHeaders trailingHeaders = lastChunk.trailingHeaders();
@@ -119,7 +119,7 @@ public class NettyChannelHandler extends ChannelInboundHandlerAdapter {
             p.onClose(ctx);
 
             if (future != null && !future.isDone() && !future.isCancelled()) {
-                if (!requestSender.retry(ctx.channel(), future)) {
+                if (!requestSender.retry(ctx.channel(), future, AsyncHttpProviderUtils.REMOTELY_CLOSED_EXCEPTION)) {
                     channels.abort(future, AsyncHttpProviderUtils.REMOTELY_CLOSED_EXCEPTION);
                 }
             } else {
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContentDecoder;
+
+import org.asynchttpclient.compression.ContentDecoder;
+import org.asynchttpclient.compression.ContentDecoderFactory;
+import org.asynchttpclient.compression.ContentDecoderRegistry;
+
+/**
+ * Decompresses the response bodies with the {@link ContentDecoder}s of a {@link ContentDecoderRegistry}, instead of the
+ * fixed set of codings of Netty's HttpContentDecompressor. Bodies with a coding that isn't registered are passed through.
+ * <p/>
+ * The decoders run on the channel's event loop, so the pooled inflaters are reused by the channels of the same loop. The content
+ * of direct buffers is copied, in slices, into a scratch array reused by all the responses of the channel.
+ */
+public class NettyContentDecompressor extends HttpContentDecoder {
+
+    // Netty's default maximum chunk size, so a chunk is usually copied at once
+    private static final int SCRATCH_SIZE = 8192;
+
+    private final ContentDecoderRegistry registry;
+    private byte[] scratch;
+
+    public NettyContentDecompressor(ContentDecoderRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected EmbeddedChannel newContentDecoder(String contentEncoding) throws Exception {
+        ContentDecoderFactory factory = registry.get(contentEncoding);
+        return factory != null ? new EmbeddedChannel(new ContentDecoderHandler(factory.newDecoder())) : null;
+    }
+
+    private byte[] scratch() {
+        if (scratch == null) {
+            scratch = new byte[SCRATCH_SIZE];
+        }
+        return scratch;
+    }
+
+    private class ContentDecoderHandler extends ChannelInboundHandlerAdapter {
+
+        private final ContentDecoder decoder;
+
+        private ContentDecoderHandler(ContentDecoder decoder) {
+            this.decoder = decoder;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            ByteBuf in = (ByteBuf) msg;
+            ByteBufOutputStream out = new ByteBufOutputStream(ctx.alloc().heapBuffer());
+            try {
+                if (in.hasArray()) {
+                    decoder.decode(in.array(), in.arrayOffset() + in.readerIndex(), in.readableBytes(), out);
+                } else {
+                    byte[] bytes = scratch();
+                    for (int index = in.readerIndex(), end = in.writerIndex(); index < end;) {
+                        int length = Math.min(bytes.length, end - index);
+                        in.getBytes(index, bytes, 0, length);
+                        decoder.decode(bytes, 0, length, out);
+                        index += length;
+                    }
+                }
+            } catch (Exception e) {
+                out.buffer().release();
+                throw e;
+            } finally {
+                in.release();
+            }
+            fireDecoded(ctx, out.buffer());
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // the body is complete, or the exchange is aborted
+            ByteBufOutputStream out = new ByteBufOutputStream(ctx.alloc().heapBuffer());
+            try {
+                decoder.finish(out);
+            } catch (Exception e) {
+                out.buffer().release();
+                throw e;
+            } finally {
+                decoder.close();
+            }
+            fireDecoded(ctx, out.buffer());
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+            decoder.close();
+        }
+
+        private void fireDecoded(ChannelHandlerContext ctx, ByteBuf decoded) {
+            if (decoded.isReadable()) {
+                ctx.fireChannelRead(decoded);
+            } else {
+                decoded.release();
+            }
+        }
+    }
+}
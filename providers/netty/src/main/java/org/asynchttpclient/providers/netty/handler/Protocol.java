@@ -28,6 +28,7 @@ import org.asynchttpclient.Cookie;
 import org.asynchttpclient.HttpResponseHeaders;
 import org.asynchttpclient.HttpResponseStatus;
 import org.asynchttpclient.MaxRedirectException;
+import org.asynchttpclient.PoolKey;
 import org.asynchttpclient.Request;
 import org.asynchttpclient.RequestBuilder;
 import org.asynchttpclient.filter.FilterContext;
@@ -96,7 +97,7 @@ public abstract class Protocol {
 
                     // in case of a redirect from HTTP to HTTPS, future attributes might change
                     final boolean initialConnectionKeepAlive = future.isKeepAlive();
-                    final String initialPoolKey = channels.getPoolKey(future);
+                    final PoolKey initialPoolKey = channels.getPoolKey(future);
 
                     future.setURI(uri);
                     String newUrl = uri.toString();
@@ -176,6 +177,17 @@ public abstract class Protocol {
                 return true;
             }
         }
+
+        // the policy, and its retry budget, are only asked when the request still has retries left, and as every response goes
+        // through here, the retry is only counted once it's taken
+        if (config.getRetryPolicy() != null && future.hasRetriesLeft()) {
+            long delay = requestSender.retryDelayInMs(future, status.getStatusCode(), null, future.getCurrentRetry());
+            if (delay >= 0L && future.canRetry()) {
+                FilterContext fc = new FilterContext.FilterContextBuilder().asyncHandler(future.getAsyncHandler()).request(future.getRequest()).build();
+                requestSender.replayRequest(future, fc, ctx, delay);
+                return true;
+            }
+        }
         return false;
     }
 }
@@ -20,19 +20,24 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
 
 import java.io.IOException;
 import java.net.ConnectException;
-import java.net.URI;
 import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CancellationException;
 
 import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.ProxyServer;
 import org.asynchttpclient.Request;
+import org.asynchttpclient.circuitbreaker.CircuitBreaker;
 import org.asynchttpclient.providers.netty.channel.Channels;
 import org.asynchttpclient.providers.netty.future.NettyResponseFuture;
 import org.asynchttpclient.providers.netty.future.NettyResponseFutures;
+import org.asynchttpclient.uri.Uri;
 import org.asynchttpclient.util.ProxyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,11 +52,13 @@ final class NettyConnectListener<T> implements ChannelFutureListener {
     private final AsyncHttpClientConfig config;
     private final NettyRequestSender requestSender;
     private final NettyResponseFuture<T> future;
+    private final CircuitBreaker circuitBreaker;
 
-    private NettyConnectListener(AsyncHttpClientConfig config, NettyRequestSender requestSender, NettyResponseFuture<T> future) {
+    private NettyConnectListener(AsyncHttpClientConfig config, NettyRequestSender requestSender, NettyResponseFuture<T> future, CircuitBreaker circuitBreaker) {
         this.requestSender = requestSender;
         this.config = config;
         this.future = future;
+        this.circuitBreaker = circuitBreaker;
     }
 
     public NettyResponseFuture<T> future() {
@@ -59,9 +66,27 @@ final class NettyConnectListener<T> implements ChannelFutureListener {
     }
 
     public void onFutureSuccess(final Channel channel) throws ConnectException {
+        if (circuitBreaker != null) {
+            circuitBreaker.onSuccess();
+        }
         Channels.setDefaultAttribute(channel, future);
         SslHandler sslHandler = Channels.getSslHandler(channel);
 
+        if (future.getAsyncHandler() instanceof AsyncHandlerTimingExtensions) {
+            final AsyncHandlerTimingExtensions extensions = AsyncHandlerTimingExtensions.class.cast(future.getAsyncHandler());
+            extensions.onConnectionOpen(System.nanoTime());
+            if (sslHandler != null) {
+                // the request is written once the handshake completes
+                sslHandler.handshakeFuture().addListener(new GenericFutureListener<Future<Channel>>() {
+                    public void operationComplete(Future<Channel> handshakeFuture) {
+                        if (handshakeFuture.isSuccess()) {
+                            extensions.onTlsHandshakeDone(System.nanoTime());
+                        }
+                    }
+                });
+            }
+        }
+
         if (sslHandler != null && !config.getHostnameVerifier().verify(future.getURI().getHost(), sslHandler.engine().getSession())) {
             ConnectException exception = new ConnectException("HostnameVerifier exception");
             future.abort(exception);
@@ -73,6 +98,10 @@ final class NettyConnectListener<T> implements ChannelFutureListener {
 
     public void onFutureFailure(Channel channel, Throwable cause) {
 
+        if (circuitBreaker != null && !(cause instanceof CancellationException)) {
+            circuitBreaker.onFailure();
+        }
+
         boolean canRetry = future.canRetry();
         LOGGER.debug("Trying to recover a dead cached channel {} with a retry value of {} ", channel, canRetry);
         if (canRetry && cause != null
@@ -80,7 +109,7 @@ final class NettyConnectListener<T> implements ChannelFutureListener {
 
             LOGGER.debug("Retrying {} ", future.getNettyRequest());
             // FIXME Netty 3 use the wrong statement
-            if (requestSender.retry(channel, future)) {
+            if (requestSender.retry(channel, future, cause)) {
                 return;
             }
         }
@@ -110,6 +139,7 @@ final class NettyConnectListener<T> implements ChannelFutureListener {
         private final Request request;
         private final AsyncHandler<T> asyncHandler;
         private NettyResponseFuture<T> future;
+        private CircuitBreaker circuitBreaker;
 
         // FIXME Netty3 useless constructor
         public Builder(AsyncHttpClientConfig config, NettyRequestSender requestSender, Request request, AsyncHandler<T> asyncHandler, NettyResponseFuture<T> future) {
@@ -121,16 +151,24 @@ final class NettyConnectListener<T> implements ChannelFutureListener {
             this.future = future;
         }
 
-        public NettyConnectListener<T> build(final URI uri) throws IOException {
+        /**
+         * Set the {@link CircuitBreaker} recording the outcome of the connect, may be null.
+         */
+        public Builder<T> circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        public NettyConnectListener<T> build(final Uri uri) throws IOException {
             ProxyServer proxyServer = ProxyUtils.getProxyServer(config, request);
-            NettyRequest nettyRequest = NettyRequests.newNettyRequest(config, request, uri, true, proxyServer);
+            NettyRequest nettyRequest = NettyRequests.newNettyRequest(config, requestSender.getNettyConfig(), request, uri, true, proxyServer);
             if (future == null) {
-                future = NettyResponseFutures.newNettyResponseFuture(uri, request, asyncHandler, nettyRequest, config, proxyServer);
+                future = NettyResponseFutures.newNettyResponseFuture(uri.toJavaNetURI(), request, asyncHandler, nettyRequest, config, proxyServer);
             } else {
                 future.setNettyRequest(nettyRequest);
                 future.setRequest(request);
             }
-            return new NettyConnectListener<T>(config, requestSender, future);
+            return new NettyConnectListener<T>(config, requestSender, future, circuitBreaker);
         }
     }
 }
@@ -17,24 +17,35 @@ package org.asynchttpclient.providers.netty.request;
 
 import static org.asynchttpclient.providers.netty.util.HttpUtil.*;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelProgressiveFuture;
+import io.netty.channel.ChannelProgressiveFutureListener;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.FileRegion;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.stream.ChunkedInput;
 import io.netty.handler.stream.ChunkedStream;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.ReferenceCountUtil;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
@@ -43,33 +54,47 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.AsyncHandlerExtensions;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.Body;
 import org.asynchttpclient.BodyGenerator;
-import org.asynchttpclient.ConnectionPoolKeyStrategy;
 import org.asynchttpclient.FluentCaseInsensitiveStringsMap;
 import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.PoolKey;
 import org.asynchttpclient.ProxyServer;
 import org.asynchttpclient.RandomAccessBody;
 import org.asynchttpclient.Request;
+import org.asynchttpclient.circuitbreaker.CircuitBreaker;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerOpenException;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistry;
 import org.asynchttpclient.filter.FilterContext;
 import org.asynchttpclient.filter.FilterException;
 import org.asynchttpclient.filter.IOExceptionFilter;
 import org.asynchttpclient.listener.TransferCompletionHandler;
-import org.asynchttpclient.providers.netty.Constants;
+import org.asynchttpclient.multipart.ByteArrayPart;
+import org.asynchttpclient.multipart.FilePart;
+import org.asynchttpclient.multipart.MultipartBody;
+import org.asynchttpclient.multipart.Part;
+import org.asynchttpclient.providers.netty.NettyAsyncHttpProviderConfig;
 import org.asynchttpclient.providers.netty.channel.Channels;
+import org.asynchttpclient.providers.netty.channel.EventLoopMonitor;
+import org.asynchttpclient.providers.netty.channel.EventLoopShard;
 import org.asynchttpclient.providers.netty.future.FutureReaper;
 import org.asynchttpclient.providers.netty.future.NettyResponseFuture;
 import org.asynchttpclient.providers.netty.future.NettyResponseFutures;
 import org.asynchttpclient.providers.netty.request.body.BodyChunkedInput;
 import org.asynchttpclient.providers.netty.request.body.BodyFileRegion;
+import org.asynchttpclient.providers.netty.request.body.ByteBufPartVisitor;
 import org.asynchttpclient.providers.netty.request.body.FeedableBodyGenerator;
+import org.asynchttpclient.providers.netty.request.body.FileChannelChunkedInput;
 import org.asynchttpclient.providers.netty.request.body.FeedableBodyGenerator.FeedListener;
 import org.asynchttpclient.providers.netty.request.body.NettyBody;
 import org.asynchttpclient.providers.netty.request.body.NettyBodyBody;
 import org.asynchttpclient.providers.netty.request.body.NettyFileBody;
 import org.asynchttpclient.providers.netty.request.body.NettyInputStreamBody;
 import org.asynchttpclient.providers.netty.request.body.NettyMultipartBody;
+import org.asynchttpclient.retry.RetryPolicy;
+import org.asynchttpclient.uri.Uri;
 import org.asynchttpclient.util.AsyncHttpProviderUtils;
 import org.asynchttpclient.util.ProxyUtils;
 import org.asynchttpclient.websocket.WebSocketUpgradeHandler;
@@ -82,15 +107,31 @@ public class NettyRequestSender {
 
     private final AtomicBoolean closed;
     private final AsyncHttpClientConfig config;
+    private final NettyAsyncHttpProviderConfig nettyConfig;
     private final Channels channels;
 
-    public NettyRequestSender(AtomicBoolean closed, AsyncHttpClientConfig config, Channels channels) {
+    public NettyRequestSender(AtomicBoolean closed, AsyncHttpClientConfig config, NettyAsyncHttpProviderConfig nettyConfig, Channels channels) {
         this.closed = closed;
         this.config = config;
+        this.nettyConfig = nettyConfig;
         this.channels = channels;
     }
 
+    public NettyAsyncHttpProviderConfig getNettyConfig() {
+        return nettyConfig;
+    }
+
     public boolean retry(Channel channel, NettyResponseFuture<?> future) {
+        return retry(channel, future, null);
+    }
+
+    /**
+     * Retry the request of a closed channel, as allowed by the {@link RetryPolicy} if there's one.
+     *
+     * @param cause why the channel was closed, if known
+     * @return false if the request can't be retried and must be aborted
+     */
+    public boolean retry(Channel channel, NettyResponseFuture<?> future, Throwable cause) {
 
         boolean success = false;
 
@@ -103,7 +144,9 @@ public class NettyRequestSender {
                     future = (NettyResponseFuture<?>) attachment;
             }
 
-            if (future != null && future.canBeReplayed()) {
+            // canBeReplayed() already counted this retry
+            long delay;
+            if (future != null && future.canBeReplayed() && (delay = retryDelayInMs(future, -1, cause, future.getCurrentRetry() - 1)) >= 0L) {
                 future.setState(NettyResponseFuture.STATE.RECONNECTED);
                 future.getAndSetStatusReceived(false);
 
@@ -113,7 +156,7 @@ public class NettyRequestSender {
                 }
 
                 try {
-                    sendNextRequest(future.getRequest(), future);
+                    sendNextRequest(future.getRequest(), future, delay);
                     success = true;
                 } catch (IOException iox) {
                     future.setState(NettyResponseFuture.STATE.CLOSED);
@@ -154,32 +197,90 @@ public class NettyRequestSender {
         sendRequest(request, f.getAsyncHandler(), f, true);
     }
 
+    /**
+     * Send the next request after <code>delayInMs</code>, on the client's {@link java.util.concurrent.ScheduledExecutorService}
+     * instead of sleeping.
+     */
+    public <T> void sendNextRequest(final Request request, final NettyResponseFuture<T> f, long delayInMs) throws IOException {
+        if (delayInMs <= 0L) {
+            sendNextRequest(request, f);
+            return;
+        }
+
+        LOGGER.debug("Retrying request {} in {} ms", request, delayInMs);
+        try {
+            config.reaper().schedule(new Runnable() {
+                public void run() {
+                    // the request may have timed out or been cancelled meanwhile
+                    if (closed.get() || f.isDone() || f.isCancelled()) {
+                        return;
+                    }
+                    try {
+                        sendNextRequest(request, f);
+                    } catch (IOException e) {
+                        f.setState(NettyResponseFuture.STATE.CLOSED);
+                        f.abort(e);
+                    }
+                }
+            }, delayInMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Unable to schedule the retry of " + request, e);
+        }
+    }
+
+    /**
+     * @param retries the number of retries already done
+     * @return the delay before retrying the future's request, 0 without a {@link RetryPolicy}, or a negative value if the policy
+     *         forbids it
+     */
+    public long retryDelayInMs(NettyResponseFuture<?> future, int statusCode, Throwable cause, int retries) {
+        RetryPolicy retryPolicy = config.getRetryPolicy();
+        if (retryPolicy == null) {
+            return 0L;
+        }
+        return retryPolicy.retryDelayInMs(future.getRequest(), statusCode, cause, retries);
+    }
+
     // FIXME is this useful? Can't we do that when building the request?
     private final boolean validateWebSocketRequest(Request request, AsyncHandler<?> asyncHandler) {
         return request.getMethod().equals(HttpMethod.GET.name()) && asyncHandler instanceof WebSocketUpgradeHandler;
     }
 
-    private Channel getCachedChannel(NettyResponseFuture<?> future, URI uri, ConnectionPoolKeyStrategy poolKeyGen, ProxyServer proxyServer) {
+    private Channel getCachedChannel(NettyResponseFuture<?> future, Uri uri, PoolKey poolKey, ProxyServer proxyServer, EventLoopShard shard) {
 
         if (future != null && future.reuseChannel() && future.channel() != null) {
             return future.channel();
         } else {
-            URI connectionKeyUri = proxyServer != null ? proxyServer.getURI() : uri;
-            return channels.lookupInCache(connectionKeyUri, poolKeyGen);
+            String scheme = proxyServer != null ? proxyServer.getURI().getScheme() : uri.getScheme();
+            return channels.lookupInCache(poolKey, scheme, shard);
         }
     }
 
-    private <T> ListenableFuture<T> sendRequestWithCachedChannel(Channel channel, Request request, URI uri, ProxyServer proxy, NettyResponseFuture<T> future,
-            AsyncHandler<T> asyncHandler) throws IOException {
+    private EventLoopShard getShard(NettyResponseFuture<?> future, PoolKey poolKey) {
+        // redirects and retries stay on the loop of the original request
+        if (future != null && future.channel() != null) {
+            EventLoopShard shard = channels.shardOf(future.channel());
+            if (shard != null) {
+                return shard;
+            }
+        }
+        return channels.selectShard(poolKey);
+    }
+
+    private <T> ListenableFuture<T> sendRequestWithCachedChannel(Channel channel, Request request, Uri uri, PoolKey poolKey, ProxyServer proxy,
+            NettyResponseFuture<T> future, AsyncHandler<T> asyncHandler, CircuitBreaker circuitBreaker) throws IOException {
         NettyRequest nettyRequest = null;
 
         if (future == null) {
-            nettyRequest = NettyRequests.newNettyRequest(config, request, uri, false, proxy);
-            future = NettyResponseFutures.newNettyResponseFuture(uri, request, asyncHandler, nettyRequest, config, proxy);
+            nettyRequest = NettyRequests.newNettyRequest(config, nettyConfig, request, uri, false, proxy);
+            future = NettyResponseFutures.newNettyResponseFuture(uri.toJavaNetURI(), request, asyncHandler, nettyRequest, config, proxy);
         } else {
-            nettyRequest = NettyRequests.newNettyRequest(config, request, uri, future.isConnectAllowed(), proxy);
+            nettyRequest = NettyRequests.newNettyRequest(config, nettyConfig, request, uri, future.isConnectAllowed(), proxy);
             future.setNettyRequest(nettyRequest);
         }
+        future.setPoolKey(poolKey);
+        // a pooled channel may be dead, the attempt only succeeded once the server answered
+        future.setCircuitBreaker(circuitBreaker);
         future.setState(NettyResponseFuture.STATE.POOLED);
         future.attachChannel(channel, false);
 
@@ -207,14 +308,20 @@ public class NettyRequestSender {
         return future;
     }
 
-    private ChannelFuture connect(Request request, URI uri, ProxyServer proxy, Bootstrap bootstrap) {
+    private ChannelFuture connect(Request request, Uri uri, ProxyServer proxy, Bootstrap bootstrap, AsyncHandler<?> asyncHandler) {
         InetSocketAddress remoteAddress;
         if (request.getInetAddress() != null) {
-            remoteAddress = new InetSocketAddress(request.getInetAddress(), AsyncHttpProviderUtils.getPort(uri));
-        } else if (proxy == null || ProxyUtils.avoidProxy(proxy, uri.getHost())) {
-            remoteAddress = new InetSocketAddress(AsyncHttpProviderUtils.getHost(uri), AsyncHttpProviderUtils.getPort(uri));
+            remoteAddress = new InetSocketAddress(request.getInetAddress(), uri.getExplicitPort());
         } else {
-            remoteAddress = new InetSocketAddress(proxy.getHost(), proxy.getPort());
+            // resolves the host name
+            if (proxy == null || ProxyUtils.avoidProxy(proxy, uri.getHost())) {
+                remoteAddress = new InetSocketAddress(uri.getHost(), uri.getExplicitPort());
+            } else {
+                remoteAddress = new InetSocketAddress(proxy.getHost(), proxy.getPort());
+            }
+            if (asyncHandler instanceof AsyncHandlerTimingExtensions) {
+                AsyncHandlerTimingExtensions.class.cast(asyncHandler).onDnsResolved(System.nanoTime());
+            }
         }
 
         if (request.getLocalAddress() != null) {
@@ -224,25 +331,31 @@ public class NettyRequestSender {
         }
     }
 
-    private <T> ListenableFuture<T> sendRequestWithNewChannel(Request request, URI uri, ProxyServer proxy, NettyResponseFuture<T> future, AsyncHandler<T> asyncHandler,
-            boolean reclaimCache) throws IOException {
+    private <T> ListenableFuture<T> sendRequestWithNewChannel(Request request, Uri uri, PoolKey poolKey, ProxyServer proxy, NettyResponseFuture<T> future,
+            AsyncHandler<T> asyncHandler, boolean reclaimCache, CircuitBreaker circuitBreaker, EventLoopShard shard) throws IOException {
 
-        boolean useSSl = isSecure(uri) && proxy == null;
+        boolean useSSl = uri.isSecure() && proxy == null;
 
         // Do not throw an exception when we need an extra connection for a redirect
         // FIXME why? This violate the max connection per host handling, right?
-        boolean acquiredConnection = !reclaimCache && channels.acquireConnection(asyncHandler);
-        Bootstrap bootstrap = channels.getBootstrap(request.getUrl(), useSSl);
+        boolean acquiredConnection = !reclaimCache && channels.acquireConnection(asyncHandler, shard);
+        Bootstrap bootstrap = channels.getBootstrap(request.getUrl(), useSSl, shard);
 
-        NettyConnectListener<T> cl = new NettyConnectListener.Builder<T>(config, this, request, asyncHandler, future).build(uri);
+        NettyConnectListener<T> cl = new NettyConnectListener.Builder<T>(config, this, request, asyncHandler, future).circuitBreaker(circuitBreaker).build(uri);
+        cl.future().setPoolKey(poolKey);
+        // the connect listener records the outcome
+        cl.future().setCircuitBreaker(null);
 
         ChannelFuture channelFuture;
         try {
-            channelFuture = connect(request, uri, proxy, bootstrap);
+            channelFuture = connect(request, uri, proxy, bootstrap, asyncHandler);
 
         } catch (Throwable t) {
             if (acquiredConnection) {
-                channels.releaseFreeConnections();
+                channels.releaseFreeConnections(shard);
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onFailure();
             }
             channels.abort(cl.future(), t.getCause() == null ? t : t.getCause());
             return cl.future();
@@ -270,15 +383,67 @@ public class NettyRequestSender {
             throw new IOException("WebSocket method must be a GET");
         }
 
-        URI uri = config.isUseRawUrl() ? request.getRawURI() : request.getURI();
+        Uri uri = config.isUseRawUrl() ? request.getRawUri() : request.getUri();
         ProxyServer proxy = ProxyUtils.getProxyServer(config, request);
-        Channel channel = getCachedChannel(future, uri, request.getConnectionPoolKeyStrategy(), proxy);
+        PoolKey poolKey = request.getPoolKey(proxy);
+        EventLoopShard shard = channels.isSharded() ? getShard(future, poolKey) : null;
+        Channel channel = getCachedChannel(future, uri, poolKey, proxy, shard);
+        EventLoopMonitor eventLoopMonitor = future == null ? channels.getEventLoopMonitor() : null;
+        CircuitBreaker circuitBreaker = getCircuitBreaker(poolKey);
 
+        // the overload checks come first: once the circuit breaker let the request through, an outcome must be reported
         if (channel != null && channel.isOpen() && channel.isActive()) {
-            return sendRequestWithCachedChannel(channel, request, uri, proxy, future, asyncHandler);
+            if (eventLoopMonitor != null && eventLoopMonitor.isOverloaded(channel.eventLoop())) {
+                channels.offerToPool(poolKey, channel);
+                rejectOverloaded(asyncHandler, eventLoopMonitor.getLagNanos(channel.eventLoop()));
+            }
+            // only new requests are shed, not the redirects and retries of the ones already accepted
+            if (circuitBreaker != null && future == null && !circuitBreaker.tryAcquire()) {
+                channels.offerToPool(poolKey, channel);
+                rejectOpenCircuit(asyncHandler, circuitBreaker);
+            }
+            if (asyncHandler instanceof AsyncHandlerTimingExtensions) {
+                AsyncHandlerTimingExtensions.class.cast(asyncHandler).onConnectionPooled(System.nanoTime());
+            }
+            return sendRequestWithCachedChannel(channel, request, uri, poolKey, proxy, future, asyncHandler, circuitBreaker);
         } else {
-            return sendRequestWithNewChannel(request, uri, proxy, future, asyncHandler, reclaimCache);
+            // the loop of a new channel isn't known yet, only reject when they're all lagging
+            if (eventLoopMonitor != null && eventLoopMonitor.isOverloaded()) {
+                rejectOverloaded(asyncHandler, Collections.min(eventLoopMonitor.getLagsNanos()));
+            }
+            if (circuitBreaker != null && future == null && !circuitBreaker.tryAcquire()) {
+                rejectOpenCircuit(asyncHandler, circuitBreaker);
+            }
+            return sendRequestWithNewChannel(request, uri, poolKey, proxy, future, asyncHandler, reclaimCache, circuitBreaker, shard);
+        }
+    }
+
+    private CircuitBreaker getCircuitBreaker(PoolKey poolKey) {
+        CircuitBreakerRegistry circuitBreakers = config.getCircuitBreakerRegistry();
+        if (circuitBreakers == null) {
+            return null;
+        }
+        return circuitBreakers.getCircuitBreaker(poolKey.getConnectionKey());
+    }
+
+    private void rejectOpenCircuit(AsyncHandler<?> asyncHandler, CircuitBreaker circuitBreaker) throws IOException {
+        IOException ex = new CircuitBreakerOpenException(circuitBreaker.getKey());
+        try {
+            asyncHandler.onThrowable(ex);
+        } catch (Throwable t) {
+            LOGGER.warn("rejectOpenCircuit", t);
+        }
+        throw ex;
+    }
+
+    private void rejectOverloaded(AsyncHandler<?> asyncHandler, long lagNanos) throws IOException {
+        IOException ex = new IOException("Event loop overloaded, lag is " + TimeUnit.NANOSECONDS.toMillis(lagNanos) + " ms");
+        try {
+            asyncHandler.onThrowable(ex);
+        } catch (Throwable t) {
+            LOGGER.warn("rejectOverloaded", t);
         }
+        throw ex;
     }
 
     private void sendFileBody(Channel channel, NettyFileBody fileBody, NettyResponseFuture<?> future) throws IOException {
@@ -287,7 +452,8 @@ public class NettyRequestSender {
         try {
             ChannelFuture writeFuture;
             if (Channels.getSslHandler(channel) != null) {
-                writeFuture = channel.write(new ChunkedFile(raf, fileBody.getOffset(), fileBody.getContentLength(), Constants.MAX_BUFFERED_BYTES), channel.newProgressivePromise());
+                ChunkedInput<ByteBuf> input = new FileChannelChunkedInput(raf.getChannel(), fileBody.getOffset(), fileBody.getContentLength(), nettyConfig.getChunkedFileChunkSize());
+                writeFuture = channel.write(input, channel.newProgressivePromise());
             } else {
                 FileRegion region = new DefaultFileRegion(raf.getChannel(), fileBody.getOffset(), fileBody.getContentLength());
                 writeFuture = channel.write(region, channel.newProgressivePromise());
@@ -304,7 +470,7 @@ public class NettyRequestSender {
                 }
             });
             channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-        } catch (IOException ex) {
+        } catch (RuntimeException ex) {
             if (raf != null) {
                 try {
                     raf.close();
@@ -345,6 +511,126 @@ public class NettyRequestSender {
         return false;
     }
 
+    /**
+     * Write a multipart body as a sequence of messages: part boundaries and headers go into small pooled buffers, byte array parts are wrapped
+     * without copy, and file parts are sent as a zero-copy {@link DefaultFileRegion}, or as a {@link FileChannelChunkedInput} when TLS is used.
+     */
+    private void sendMultipartBody(Channel channel, NettyMultipartBody nettyMultipartBody, NettyResponseFuture<?> future) throws IOException {
+
+        MultipartBody multipartBody = nettyMultipartBody.getMultipartBody();
+        byte[] boundary = multipartBody.getBoundary();
+        boolean ssl = Channels.getSslHandler(channel) != null;
+
+        List<Object> messages = new ArrayList<Object>();
+        ByteBuf buffer = channel.alloc().buffer();
+        try {
+            for (Part part : multipartBody.getParts()) {
+                if (part instanceof FilePart) {
+                    FilePart filePart = (FilePart) part;
+                    filePart.visitHeaders(new ByteBufPartVisitor(buffer), boundary);
+                    messages.add(buffer);
+                    buffer = null;
+
+                    File file = filePart.getFile();
+                    long length = file.length();
+                    if (length > 0) {
+                        FileChannel fileChannel = new RandomAccessFile(file, "r").getChannel();
+                        messages.add(ssl ? new FileChannelChunkedInput(fileChannel, 0, length, nettyConfig.getChunkedFileChunkSize()) : new DefaultFileRegion(fileChannel, 0, length));
+                    }
+
+                    buffer = channel.alloc().buffer();
+                    filePart.visitTrailer(new ByteBufPartVisitor(buffer));
+
+                } else if (part instanceof ByteArrayPart) {
+                    ByteArrayPart byteArrayPart = (ByteArrayPart) part;
+                    byteArrayPart.visitHeaders(new ByteBufPartVisitor(buffer), boundary);
+                    messages.add(buffer);
+                    buffer = null;
+
+                    messages.add(Unpooled.wrappedBuffer(byteArrayPart.getBytes()));
+
+                    buffer = channel.alloc().buffer();
+                    byteArrayPart.visitTrailer(new ByteBufPartVisitor(buffer));
+
+                } else {
+                    Part.sendPart(new ByteBufOutputStream(buffer), part, boundary);
+                }
+            }
+            Part.sendMessageEnd(new ByteBufOutputStream(buffer), boundary);
+            messages.add(buffer);
+            buffer = null;
+
+        } catch (IOException e) {
+            if (buffer != null)
+                buffer.release();
+            for (Object message : messages) {
+                if (message instanceof FileChannelChunkedInput) {
+                    try {
+                        FileChannelChunkedInput.class.cast(message).close();
+                    } catch (Exception ignore) {
+                    }
+                } else {
+                    ReferenceCountUtil.release(message);
+                }
+            }
+            throw e;
+        }
+
+        ProgressListener progressListener = new ProgressListener(config, false, future.getAsyncHandler(), future);
+        long total = multipartBody.getContentLength();
+        long offset = 0L;
+        int last = messages.size() - 1;
+        AtomicBoolean completed = new AtomicBoolean();
+        for (int i = 0; i <= last; i++) {
+            Object message = messages.get(i);
+            channel.write(message, channel.newProgressivePromise()).addListener(
+                    new MultipartProgressListener(progressListener, completed, offset, total, i == last));
+            offset += messageLength(message);
+        }
+        channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
+
+    private static long messageLength(Object message) {
+        if (message instanceof ByteBuf)
+            return ByteBuf.class.cast(message).readableBytes();
+        else if (message instanceof FileRegion)
+            return FileRegion.class.cast(message).count();
+        else
+            return FileChannelChunkedInput.class.cast(message).endOffset();
+    }
+
+    /**
+     * Reports the progress of one multipart message as the progress of the whole body, and completes the request once the last one is written,
+     * or once any of them failed. The listeners of a body share the completed flag, so the request is only completed once.
+     */
+    private static class MultipartProgressListener implements ChannelProgressiveFutureListener {
+
+        private final ProgressListener delegate;
+        private final AtomicBoolean completed;
+        private final long offset;
+        private final long total;
+        private final boolean last;
+
+        public MultipartProgressListener(ProgressListener delegate, AtomicBoolean completed, long offset, long total, boolean last) {
+            this.delegate = delegate;
+            this.completed = completed;
+            this.offset = offset;
+            this.total = total;
+            this.last = last;
+        }
+
+        @Override
+        public void operationProgressed(ChannelProgressiveFuture future, long progress, long total) {
+            delegate.operationProgressed(future, offset + progress, this.total);
+        }
+
+        @Override
+        public void operationComplete(ChannelProgressiveFuture future) {
+            if ((last || !future.isSuccess()) && completed.compareAndSet(false, true))
+                delegate.operationComplete(future);
+        }
+    }
+
     public void sendBody(final Channel channel, final Body body, NettyResponseFuture<?> future) {
         Object msg;
 
@@ -426,13 +712,26 @@ public class NettyRequestSender {
 
             // Leave it to true.
             // FIXME That doesn't just leave to true, the set is always done? and what's the point of not having a is/get?
-            if (future.getAndSetWriteHeaders(true)) {
+            boolean writeHeaders = future.getAndSetWriteHeaders(true);
+            // FIXME OK, why? and what's the point of not having a is/get?
+            boolean writeBody = future.getAndSetWriteBody(true) && !httpRequest.getMethod().equals(HttpMethod.CONNECT)
+                    && nettyRequest.getBody() != null;
+
+            if (writeHeaders) {
                 try {
                     if (future.getAsyncHandler() instanceof AsyncHandlerExtensions) {
                         AsyncHandlerExtensions.class.cast(future.getAsyncHandler()).onRequestSent();
                     }
-                    channel.writeAndFlush(httpRequest, channel.newProgressivePromise()).addListener(
-                            new ProgressListener(config, true, future.getAsyncHandler(), future));
+                    // when the body follows, the headers are flushed together with it by its last content
+                    ChannelPromise promise = channel.newProgressivePromise();
+                    // registered before writing, otherwise a write completed from outside the event loop notifies it later, possibly
+                    // after the response was received
+                    promise.addListener(new ProgressListener(config, true, future.getAsyncHandler(), future));
+                    if (writeBody) {
+                        channel.write(httpRequest, promise);
+                    } else {
+                        channel.writeAndFlush(httpRequest, promise);
+                    }
                 } catch (Throwable cause) {
                     // FIXME why not notify?
                     LOGGER.debug(cause.getMessage(), cause);
@@ -445,27 +744,28 @@ public class NettyRequestSender {
                 }
             }
 
-            // FIXME OK, why? and what's the point of not having a is/get?
-            if (future.getAndSetWriteBody(true)) {
-                if (!httpRequest.getMethod().equals(HttpMethod.CONNECT)) {
+            if (writeBody) {
+                NettyBody nettyBody = nettyRequest.getBody();
 
-                    NettyBody nettyBody = nettyRequest.getBody();
+                if (nettyBody instanceof NettyFileBody) {
+                    sendFileBody(channel, (NettyFileBody) nettyBody, future);
 
-                    if (nettyBody instanceof NettyFileBody) {
-                        sendFileBody(channel, (NettyFileBody) nettyBody, future);
+                } else if (nettyBody instanceof NettyInputStreamBody) {
+                    if (sendStreamAndExit(channel, (NettyInputStreamBody) nettyBody, future)) {
+                        // nothing was written after the headers
+                        channel.flush();
+                        // FIXME why bypassing scheduling the reaper when using a stream?
+                        return;
+                    }
 
-                    } else if (nettyBody instanceof NettyInputStreamBody) {
-                        if (sendStreamAndExit(channel, (NettyInputStreamBody) nettyBody, future))
-                            // FIXME why bypassing scheduling the reaper when using a stream?
-                            return;
+                } else if (nettyBody instanceof NettyMultipartBody) {
+                    sendMultipartBody(channel, (NettyMultipartBody) nettyBody, future);
 
-                    } else if (nettyBody instanceof NettyMultipartBody) {
-                        // FIXME use dedicated implementation
-                        sendBody(channel, NettyMultipartBody.class.cast(nettyBody).getMultipartBody(), future);
+                } else if (nettyBody instanceof NettyBodyBody) {
+                    sendBody(channel, NettyBodyBody.class.cast(nettyBody).getBody(), future);
 
-                    } else if (nettyBody instanceof NettyBodyBody) {
-                        sendBody(channel, NettyBodyBody.class.cast(nettyBody).getBody(), future);
-                    }
+                } else {
+                    channel.flush();
                 }
             }
 
@@ -481,6 +781,10 @@ public class NettyRequestSender {
     }
 
     public void replayRequest(final NettyResponseFuture<?> future, FilterContext fc, ChannelHandlerContext ctx) throws IOException {
+        replayRequest(future, fc, ctx, 0L);
+    }
+
+    public void replayRequest(final NettyResponseFuture<?> future, FilterContext fc, ChannelHandlerContext ctx, long delayInMs) throws IOException {
         Request newRequest = fc.getRequest();
         future.setAsyncHandler(fc.getAsyncHandler());
         future.setState(NettyResponseFuture.STATE.NEW);
@@ -491,6 +795,6 @@ public class NettyRequestSender {
             AsyncHandlerExtensions.class.cast(future.getAsyncHandler()).onRetry();
         }
         channels.drainChannel(ctx, future);
-        sendNextRequest(newRequest, future);
+        sendNextRequest(newRequest, future, delayInMs);
     }
 }
@@ -29,7 +29,6 @@ import io.netty.handler.codec.http.HttpVersion;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
 import java.nio.charset.Charset;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
@@ -38,34 +37,41 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Body;
 import org.asynchttpclient.ProxyServer;
 import org.asynchttpclient.Realm;
 import org.asynchttpclient.Request;
+import org.asynchttpclient.compression.DeflatingBody;
+import org.asynchttpclient.compression.RequestBodyCompression;
+import org.asynchttpclient.generators.ByteArrayBodyGenerator;
 import org.asynchttpclient.generators.FileBodyGenerator;
 import org.asynchttpclient.generators.InputStreamBodyGenerator;
+import org.asynchttpclient.multipart.MultipartBody;
 import org.asynchttpclient.ntlm.NTLMEngine;
 import org.asynchttpclient.ntlm.NTLMEngineException;
 import org.asynchttpclient.org.jboss.netty.handler.codec.http.CookieEncoder;
 import org.asynchttpclient.providers.netty.NettyAsyncHttpProvider;
+import org.asynchttpclient.providers.netty.NettyAsyncHttpProviderConfig;
 import org.asynchttpclient.providers.netty.request.body.NettyBody;
 import org.asynchttpclient.providers.netty.request.body.NettyBodyBody;
+import org.asynchttpclient.providers.netty.request.body.NettyCompressedBody;
 import org.asynchttpclient.providers.netty.request.body.NettyFileBody;
 import org.asynchttpclient.providers.netty.request.body.NettyInputStreamBody;
 import org.asynchttpclient.providers.netty.request.body.NettyMultipartBody;
 import org.asynchttpclient.providers.netty.ws.WebSocketUtil;
 import org.asynchttpclient.spnego.SpnegoEngine;
+import org.asynchttpclient.uri.Uri;
 import org.asynchttpclient.util.AsyncHttpProviderUtils;
 import org.asynchttpclient.util.AuthenticatorUtils;
 import org.asynchttpclient.util.UTF8UrlEncoder;
 
 public class NettyRequests {
 
-    public static final String GZIP_DEFLATE = HttpHeaders.Values.GZIP + "," + HttpHeaders.Values.DEFLATE;
-
-    public static NettyRequest newNettyRequest(AsyncHttpClientConfig config, Request request, URI uri, boolean allowConnect, ProxyServer proxyServer) throws IOException {
+    public static NettyRequest newNettyRequest(AsyncHttpClientConfig config, NettyAsyncHttpProviderConfig nettyConfig, Request request, Uri uri, boolean allowConnect,
+            ProxyServer proxyServer) throws IOException {
 
         HttpMethod method = null;
-        if (allowConnect && proxyServer != null && isSecure(uri))
+        if (allowConnect && proxyServer != null && uri.isSecure())
             method = HttpMethod.CONNECT;
         else
             method = HttpMethod.valueOf(request.getMethod());
@@ -76,31 +82,30 @@ public class NettyRequests {
         Map<String, Object> headers = new HashMap<String, Object>();
         String authorizationHeader = null;
         ByteBuf content = null;
-        boolean webSocket = isWebSocket(uri);
+        byte[] bytes = null;
+        boolean webSocket = uri.isWebSocket();
 
         if (request.getVirtualHost() != null) {
             host = request.getVirtualHost();
         } else {
-            host = AsyncHttpProviderUtils.getHost(uri);
+            host = uri.getHost();
         }
 
         if (method == HttpMethod.CONNECT) {
             httpVersion = HttpVersion.HTTP_1_0;
-            requestUri = AsyncHttpProviderUtils.getAuthority(uri);
+            requestUri = uri.getPort() == -1 ? uri.getAuthority() + ":" + uri.getExplicitPort() : uri.getAuthority();
         } else {
             httpVersion = HttpVersion.HTTP_1_1;
-            if (proxyServer != null && !(isSecure(uri) && config.isUseRelativeURIsWithSSLProxies()))
-                requestUri = uri.toString();
-            else if (uri.getRawQuery() != null)
-                requestUri = uri.getRawPath() + "?" + uri.getRawQuery();
+            if (proxyServer != null && !(uri.isSecure() && config.isUseRelativeURIsWithSSLProxies()))
+                requestUri = uri.toUrl();
             else
-                requestUri = uri.getRawPath();
+                requestUri = uri.getRequestTarget();
         }
 
         if (webSocket) {
             headers.put(HttpHeaders.Names.UPGRADE, HttpHeaders.Values.WEBSOCKET);
             headers.put(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.UPGRADE);
-            headers.put(HttpHeaders.Names.ORIGIN, "http://" + uri.getHost() + ":" + (uri.getPort() == -1 ? isSecure(uri.getScheme()) ? 443 : 80 : uri.getPort()));
+            headers.put(HttpHeaders.Names.ORIGIN, "http://" + uri.getHost() + ":" + (uri.getPort() == -1 ? uri.isSecure() ? 443 : 80 : uri.getPort()));
             headers.put(HttpHeaders.Names.SEC_WEBSOCKET_KEY, WebSocketUtil.getKey());
             headers.put(HttpHeaders.Names.SEC_WEBSOCKET_VERSION, "13");
         }
@@ -117,7 +122,10 @@ public class NettyRequests {
 
         if (method != HttpMethod.CONNECT) {
             if (config.isCompressionEnabled()) {
-                headers.put(HttpHeaders.Names.ACCEPT_ENCODING, GZIP_DEFLATE);
+                String acceptEncoding = config.getContentDecoderRegistry().getAcceptEncoding();
+                if (!acceptEncoding.isEmpty()) {
+                    headers.put(HttpHeaders.Names.ACCEPT_ENCODING, acceptEncoding);
+                }
             }
         } else {
             List<String> auth = request.getHeaders().get(HttpHeaders.Names.PROXY_AUTHORIZATION);
@@ -231,11 +239,12 @@ public class NettyRequests {
             Charset bodyCharset = request.getBodyEncoding() == null ? DEFAULT_CHARSET : Charset.forName(request.getBodyEncoding());
 
             if (request.getByteData() != null) {
-                headers.put(HttpHeaders.Names.CONTENT_LENGTH, request.getByteData().length);
-                content = Unpooled.wrappedBuffer(request.getByteData());
+                bytes = request.getByteData();
+                headers.put(HttpHeaders.Names.CONTENT_LENGTH, bytes.length);
+                content = Unpooled.wrappedBuffer(bytes);
 
             } else if (request.getStringData() != null) {
-                byte[] bytes = request.getStringData().getBytes(bodyCharset);
+                bytes = request.getStringData().getBytes(bodyCharset);
                 headers.put(HttpHeaders.Names.CONTENT_LENGTH, bytes.length);
                 content = Unpooled.wrappedBuffer(bytes);
 
@@ -254,7 +263,7 @@ public class NettyRequests {
                     }
                 }
                 sb.setLength(sb.length() - 1);
-                byte[] bytes = sb.toString().getBytes(bodyCharset);
+                bytes = sb.toString().getBytes(bodyCharset);
                 headers.put(HttpHeaders.Names.CONTENT_LENGTH, bytes.length);
                 content = Unpooled.wrappedBuffer(bytes);
 
@@ -283,6 +292,14 @@ public class NettyRequests {
             } else if (request.getBodyGenerator() != null) {
                 nettyBody = new NettyBodyBody(request.getBodyGenerator().createBody());
             }
+
+            if (config.getRequestCompressionLevel() > 0 && (bytes != null || nettyBody != null)) {
+                NettyBody compressedBody = compressedBody(config, nettyConfig, request, bytes, nettyBody, headers);
+                if (compressedBody != null) {
+                    content = null;
+                    nettyBody = compressedBody;
+                }
+            }
         }
 
         HttpRequest httpRequest;
@@ -316,6 +333,11 @@ public class NettyRequests {
             httpRequest.headers().set(header.getKey(), header.getValue());
         }
 
+        if (nettyBody instanceof NettyCompressedBody) {
+            // the compressed length isn't known, the body is chunked
+            httpRequest.headers().remove(HttpHeaders.Names.CONTENT_LENGTH);
+        }
+
         if (authorizationHeader != null) {
             // don't override authorization but append
             httpRequest.headers().add(HttpHeaders.Names.AUTHORIZATION, authorizationHeader);
@@ -323,4 +345,57 @@ public class NettyRequests {
 
         return new NettyRequest(httpRequest, nettyBody);
     }
+
+    /**
+     * Wrap the request body into a streaming gzip or deflate encoder, unless it's small or already compressed.
+     *
+     * @return the compressed body, or null if the body should be sent as is
+     */
+    private static NettyBody compressedBody(AsyncHttpClientConfig config, NettyAsyncHttpProviderConfig nettyConfig, Request request, byte[] bytes,
+            NettyBody nettyBody, Map<String, Object> headers) throws IOException {
+
+        int minSize = nettyConfig.getRequestCompressionMinSize();
+        Object formContentType = headers.get(HttpHeaders.Names.CONTENT_TYPE);
+        String contentType = formContentType != null ? formContentType.toString() : null;
+
+        Body body;
+        if (bytes != null) {
+            if (!RequestBodyCompression.shouldCompress(request.getHeaders(), bytes.length, contentType, minSize))
+                return null;
+            body = new ByteArrayBodyGenerator(bytes).createBody();
+
+        } else if (nettyBody instanceof NettyFileBody) {
+            NettyFileBody fileBody = (NettyFileBody) nettyBody;
+            if (!RequestBodyCompression.isCompressible(fileBody.getFile())
+                    || !RequestBodyCompression.shouldCompress(request.getHeaders(), fileBody.getContentLength(), null, minSize))
+                return null;
+            body = new FileBodyGenerator(fileBody.getFile(), fileBody.getOffset(), fileBody.getContentLength()).createBody();
+
+        } else if (nettyBody instanceof NettyMultipartBody) {
+            MultipartBody multipartBody = NettyMultipartBody.class.cast(nettyBody).getMultipartBody();
+            contentType = multipartBody.getContentType();
+            if (!RequestBodyCompression.shouldCompress(request.getHeaders(), multipartBody.getContentLength(), contentType, minSize))
+                return null;
+            body = multipartBody;
+
+        } else if (nettyBody instanceof NettyInputStreamBody) {
+            if (!RequestBodyCompression.shouldCompress(request.getHeaders(), -1L, null, minSize))
+                return null;
+            body = new InputStreamBodyGenerator(NettyInputStreamBody.class.cast(nettyBody).getInputStream()).createBody();
+
+        } else if (nettyBody instanceof NettyBodyBody) {
+            body = NettyBodyBody.class.cast(nettyBody).getBody();
+            if (!RequestBodyCompression.shouldCompress(request.getHeaders(), body.getContentLength(), null, minSize))
+                return null;
+
+        } else {
+            return null;
+        }
+
+        String encoding = nettyConfig.getRequestCompressionEncoding();
+        headers.remove(HttpHeaders.Names.CONTENT_LENGTH);
+        headers.put(HttpHeaders.Names.CONTENT_ENCODING, encoding);
+        DeflatingBody deflatingBody = new DeflatingBody(body, encoding, config.getRequestCompressionLevel(), nettyConfig.getDeflaterPool());
+        return new NettyCompressedBody(deflatingBody, contentType);
+    }
 }
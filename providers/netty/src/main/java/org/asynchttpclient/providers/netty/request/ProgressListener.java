@@ -22,6 +22,7 @@ import java.nio.channels.ClosedChannelException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHandlerTimingExtensions;
 import org.asynchttpclient.AsyncHttpClientConfig;
 import org.asynchttpclient.ProgressAsyncHandler;
 import org.asynchttpclient.Realm;
@@ -83,6 +84,10 @@ public class ProgressListener implements ChannelProgressiveFutureListener {
         }
         future.touch();
 
+        if (notifyHeaders && asyncHandler instanceof AsyncHandlerTimingExtensions) {
+            AsyncHandlerTimingExtensions.class.cast(asyncHandler).onHeadersWritten(System.nanoTime());
+        }
+
         /**
          * We need to make sure we aren't in the middle of an authorization process before publishing events as we will re-publish again the same event after the authorization,
          * causing unpredictable behavior.
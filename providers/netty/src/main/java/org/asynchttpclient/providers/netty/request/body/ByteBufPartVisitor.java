@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.request.body;
+
+import io.netty.buffer.ByteBuf;
+
+import org.asynchttpclient.multipart.PartVisitor;
+
+/**
+ * A {@link PartVisitor} that writes the multipart boundaries and headers straight into a {@link ByteBuf}.
+ */
+public class ByteBufPartVisitor implements PartVisitor {
+
+    private final ByteBuf target;
+
+    public ByteBufPartVisitor(ByteBuf target) {
+        this.target = target;
+    }
+
+    @Override
+    public void withBytes(byte[] bytes) {
+        target.writeBytes(bytes);
+    }
+}
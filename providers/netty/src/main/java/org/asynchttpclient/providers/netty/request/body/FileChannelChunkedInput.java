@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.request.body;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link ChunkedInput} that reads a file region with positional {@link FileChannel} reads straight into direct buffers, taken from the
+ * channel's allocator unless one is given.
+ * 
+ * Used when zero-copy can't be used, typically over TLS: the chunk is read once from the page cache into native memory that the
+ * SslHandler encrypts from, without going through a heap byte array.
+ */
+public class FileChannelChunkedInput implements ChunkedInput<ByteBuf> {
+
+    private final FileChannel fileChannel;
+    private final long endOffset;
+    private final int chunkSize;
+    private final ByteBufAllocator allocator;
+    private long offset;
+
+    public FileChannelChunkedInput(FileChannel fileChannel, long offset, long length, int chunkSize) {
+        this(fileChannel, offset, length, chunkSize, null);
+    }
+
+    /**
+     * @param allocator the allocator of the chunks, or null for the allocator of the channel the file is written to
+     */
+    public FileChannelChunkedInput(FileChannel fileChannel, long offset, long length, int chunkSize, ByteBufAllocator allocator) {
+        if (fileChannel == null) {
+            throw new NullPointerException("fileChannel");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("offset: " + offset + ", length: " + length);
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize + " (expected: a positive integer)");
+        }
+        this.fileChannel = fileChannel;
+        this.offset = offset;
+        this.endOffset = offset + length;
+        this.chunkSize = chunkSize;
+        this.allocator = allocator;
+    }
+
+    public long currentOffset() {
+        return offset;
+    }
+
+    public long endOffset() {
+        return endOffset;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return offset >= endOffset || !fileChannel.isOpen();
+    }
+
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+        if (offset >= endOffset) {
+            return null;
+        }
+
+        int length = (int) Math.min(chunkSize, endOffset - offset);
+        ByteBuf buffer = (allocator != null ? allocator : ctx.alloc()).directBuffer(length);
+        boolean release = true;
+        try {
+            ByteBuffer nioBuffer = buffer.nioBuffer(buffer.writerIndex(), length);
+            int read = 0;
+            while (read < length) {
+                int n = fileChannel.read(nioBuffer, offset + read);
+                if (n < 0) {
+                    throw new EOFException("File was truncated while being sent, expected " + (endOffset - offset) + " more bytes");
+                }
+                read += n;
+            }
+            buffer.writerIndex(buffer.writerIndex() + length);
+            offset += length;
+            release = false;
+            return buffer;
+        } finally {
+            if (release) {
+                buffer.release();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+}
@@ -24,6 +24,9 @@ import java.nio.ByteBuffer;
 
 /**
  * A callback class used when an HTTP response body is received.
+ * <p/>
+ * The underlying ByteBuf is released once the handler callback returns, so {@link #getBodyByteBuffer()} is only a view that's
+ * valid during the callback.
  */
 public class LazyResponseBodyPart extends ResponseBodyPart {
 
@@ -57,7 +60,7 @@ public class LazyResponseBodyPart extends ResponseBodyPart {
 
     @Override
     public int length() {
-        throw new UnsupportedOperationException(ERROR_MESSAGE);
+        return buf.readableBytes();
     }
 
     @Override
@@ -65,8 +68,13 @@ public class LazyResponseBodyPart extends ResponseBodyPart {
         throw new UnsupportedOperationException(ERROR_MESSAGE);
     }
 
+    /**
+     * Return a view over the underlying ByteBuf, without copying. It must not be used once the callback has returned.
+     * 
+     * @return a view over the underlying ByteBuf
+     */
     @Override
     public ByteBuffer getBodyByteBuffer() {
-        throw new UnsupportedOperationException(ERROR_MESSAGE);
+        return buf.nioBuffer();
     }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.providers.netty;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.DefaultConnectionPoolStrategy;
+import org.asynchttpclient.async.CircuitBreakerTest;
+import org.asynchttpclient.circuitbreaker.CircuitBreaker;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistry;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.Test;
+
+public class NettyCircuitBreakerTest extends CircuitBreakerTest {
+
+    @Override
+    public AsyncHttpClient getAsyncHttpClient(AsyncHttpClientConfig config) {
+        return NettyProviderUtil.nettyProvider(config);
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new AbstractHandler() {
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException,
+                    ServletException {
+                if (target.endsWith("/close")) {
+                    // drop the connection without answering
+                    baseRequest.getHttpChannel().getEndPoint().close();
+                    return;
+                }
+                baseRequest.setHandled(true);
+                response.setStatus(200);
+            }
+        };
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void pooledChannelWithoutResponseIsNotASuccess() throws Exception {
+        CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry.Builder().setFailureThreshold(1).setOpenDurationInMs(200)
+                .build();
+        AsyncHttpClient client = getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setCircuitBreakerRegistry(circuitBreakers)
+                .setMaxRequestRetry(0).build());
+        try {
+            // pools a channel
+            assertEquals(client.prepareGet(getTargetUrl()).execute().get().getStatusCode(), 200);
+
+            CircuitBreaker circuitBreaker = circuitBreakers.getCircuitBreaker(DefaultConnectionPoolStrategy.INSTANCE.getKey(new URI(getTargetUrl())));
+            circuitBreaker.onFailure();
+            Thread.sleep(300);
+            try {
+                client.prepareGet(getTargetUrl() + "/close").execute().get();
+                fail("The server closed the connection");
+            } catch (ExecutionException e) {
+                // the probe went through the pooled channel, but got no response
+            }
+            assertEquals(circuitBreaker.getState(), CircuitBreaker.State.HALF_OPEN);
+
+            // the probe never reported back, another one is let through after the open duration
+            Thread.sleep(300);
+            assertEquals(client.prepareGet(getTargetUrl()).execute().get().getStatusCode(), 200);
+            assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.providers.netty;
+
+import static org.testng.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.async.ContentDecoderTest;
+import org.asynchttpclient.compression.ContentDecoderRegistry;
+import org.asynchttpclient.providers.netty.handler.NettyContentDecompressor;
+import org.testng.annotations.Test;
+
+public class NettyContentDecoderTest extends ContentDecoderTest {
+
+    @Override
+    public AsyncHttpClient getAsyncHttpClient(AsyncHttpClientConfig config) {
+        return NettyProviderUtil.nettyProvider(config);
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void decodesLargeDirectBuffers() throws Exception {
+        // random bytes don't compress, so the direct buffer is much larger than a scratch array
+        byte[] body = new byte[64 * 1024];
+        new Random(42L).nextBytes(body);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(gzipped);
+        gzip.write(body);
+        gzip.close();
+        ByteBuf content = Unpooled.directBuffer(gzipped.size());
+        content.writeBytes(gzipped.toByteArray());
+        assertFalse(content.hasArray());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new NettyContentDecompressor(new ContentDecoderRegistry()));
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().set(HttpHeaders.Names.CONTENT_ENCODING, "gzip");
+        channel.writeInbound(response, new DefaultLastHttpContent(content));
+        channel.finish();
+
+        assertTrue(channel.readInbound() instanceof HttpResponse);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        for (Object msg = channel.readInbound(); msg != null; msg = channel.readInbound()) {
+            ByteBuf buf = ((HttpContent) msg).content();
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            decoded.write(bytes);
+            buf.release();
+        }
+        assertTrue(Arrays.equals(decoded.toByteArray(), body));
+    }
+}
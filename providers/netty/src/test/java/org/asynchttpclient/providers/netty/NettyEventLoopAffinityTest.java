@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+
+package org.asynchttpclient.providers.netty;
+
+import static org.testng.Assert.*;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncCompletionHandler;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.ConnectionPoolStats;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.async.AbstractBasicTest;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.Test;
+
+public class NettyEventLoopAffinityTest extends AbstractBasicTest {
+
+    private static final int LOOPS = 4;
+
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Override
+    public AsyncHttpClient getAsyncHttpClient(AsyncHttpClientConfig config) {
+        return NettyProviderUtil.nettyProvider(config);
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new AbstractHandler() {
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException,
+                    ServletException {
+                try {
+                    // hold the response until all the requests are sent
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new ServletException(e);
+                }
+                baseRequest.setHandled(true);
+                response.setStatus(200);
+            }
+        };
+    }
+
+    private static class ThreadRecordingHandler extends AsyncCompletionHandler<Response> {
+        private final AtomicReference<String> thread = new AtomicReference<String>();
+
+        @Override
+        public Response onCompleted(Response response) throws Exception {
+            thread.set(Thread.currentThread().getName());
+            return response;
+        }
+    }
+
+    private Set<String> completingThreads(AsyncHttpClient client, int requests) throws Exception {
+        List<ThreadRecordingHandler> handlers = new ArrayList<ThreadRecordingHandler>();
+        List<Future<Response>> futures = new ArrayList<Future<Response>>();
+        for (int i = 0; i < requests; i++) {
+            ThreadRecordingHandler handler = new ThreadRecordingHandler();
+            handlers.add(handler);
+            futures.add(client.prepareGet(getTargetUrl()).execute(handler));
+        }
+        Set<String> threads = new HashSet<String>();
+        for (int i = 0; i < requests; i++) {
+            assertEquals(futures.get(i).get().getStatusCode(), 200);
+            threads.add(handlers.get(i).thread.get());
+        }
+        return threads;
+    }
+
+    private NettyAsyncHttpProviderConfig nettyConfig(EventLoopGroup group, EventLoopAffinity affinity) {
+        NettyAsyncHttpProviderConfig nettyConfig = new NettyAsyncHttpProviderConfig();
+        nettyConfig.setEventLoopGroup(group);
+        nettyConfig.setEventLoopAffinity(affinity);
+        return nettyConfig;
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void hostHashKeepsAHostOnOneLoop() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(LOOPS);
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()
+                .setAsyncHttpClientProviderConfig(nettyConfig(group, EventLoopAffinity.HOST_HASH)).build();
+        AsyncHttpClient client = getAsyncHttpClient(config);
+        try {
+            assertEquals(completingThreads(client, 2 * LOOPS).size(), 1);
+        } finally {
+            client.close();
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void hostHashLetsOneHostUseAllTheConnections() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(LOOPS);
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder().setMaximumConnectionsTotal(2 * LOOPS)
+                .setAsyncHttpClientProviderConfig(nettyConfig(group, EventLoopAffinity.HOST_HASH)).build();
+        NettyAsyncHttpProvider provider = new NettyAsyncHttpProvider(config);
+        AsyncHttpClient client = new AsyncHttpClient(provider, config);
+        try {
+            release = new CountDownLatch(1);
+            List<Future<Response>> futures = new ArrayList<Future<Response>>();
+            for (int i = 0; i < 2 * LOOPS; i++) {
+                futures.add(client.prepareGet(getTargetUrl()).execute());
+            }
+            assertEquals(provider.getConnectionPoolStats().getAvailablePermits(), 0);
+            release.countDown();
+
+            for (Future<Response> future : futures) {
+                assertEquals(future.get(10, TimeUnit.SECONDS).getStatusCode(), 200);
+            }
+        } finally {
+            release.countDown();
+            client.close();
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void roundRobinSplitsTheConnectionLimit() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(LOOPS);
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder().setMaximumConnectionsTotal(2 * LOOPS)
+                .setAsyncHttpClientProviderConfig(nettyConfig(group, EventLoopAffinity.ROUND_ROBIN)).build();
+        NettyAsyncHttpProvider provider = new NettyAsyncHttpProvider(config);
+        AsyncHttpClient client = new AsyncHttpClient(provider, config);
+        try {
+            assertTrue(completingThreads(client, 2 * LOOPS).size() > 1);
+
+            ConnectionPoolStats stats = provider.getConnectionPoolStats();
+            assertNotNull(stats);
+            assertEquals(stats.getAvailablePermits() + stats.getOpenConnectionCount(), 2 * LOOPS);
+            assertEquals(stats.getIdleConnectionCount(), stats.getOpenConnectionCount());
+        } finally {
+            client.close();
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void nestedRequestStaysOnTheCallersLoop() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(LOOPS);
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()
+                .setAsyncHttpClientProviderConfig(nettyConfig(group, EventLoopAffinity.ROUND_ROBIN)).build();
+        final AsyncHttpClient client = getAsyncHttpClient(config);
+        try {
+            final ThreadRecordingHandler nested = new ThreadRecordingHandler();
+            final AtomicReference<Future<Response>> nestedFuture = new AtomicReference<Future<Response>>();
+            final AtomicReference<String> outerThread = new AtomicReference<String>();
+            client.prepareGet(getTargetUrl()).execute(new AsyncCompletionHandler<Response>() {
+                @Override
+                public Response onCompleted(Response response) throws Exception {
+                    outerThread.set(Thread.currentThread().getName());
+                    nestedFuture.set(client.prepareGet(getTargetUrl()).execute(nested));
+                    return response;
+                }
+            }).get();
+
+            assertEquals(nestedFuture.get().get().getStatusCode(), 200);
+            assertEquals(nested.thread.get(), outerThread.get());
+        } finally {
+            client.close();
+            group.shutdownGracefully();
+        }
+    }
+}
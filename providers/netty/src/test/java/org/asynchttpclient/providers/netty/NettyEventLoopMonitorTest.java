@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+
+package org.asynchttpclient.providers.netty;
+
+import static org.testng.Assert.*;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.DefaultConnectionPoolStrategy;
+import org.asynchttpclient.async.AbstractBasicTest;
+import org.asynchttpclient.circuitbreaker.CircuitBreaker;
+import org.asynchttpclient.circuitbreaker.CircuitBreakerRegistry;
+import org.asynchttpclient.providers.netty.channel.EventLoopMonitor;
+import org.testng.annotations.Test;
+
+public class NettyEventLoopMonitorTest extends AbstractBasicTest {
+
+    @Override
+    public AsyncHttpClient getAsyncHttpClient(AsyncHttpClientConfig config) {
+        return NettyProviderUtil.nettyProvider(config);
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void requestsAreRejectedWhileTheLoopIsBlocked() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        NettyAsyncHttpProviderConfig nettyConfig = new NettyAsyncHttpProviderConfig();
+        nettyConfig.setEventLoopGroup(group);
+        nettyConfig.setEventLoopMonitorIntervalInMs(10);
+        nettyConfig.setSlowEventLoopThresholdInMs(100);
+        nettyConfig.setMaxEventLoopLagInMs(100);
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder().setAsyncHttpClientProviderConfig(nettyConfig).build();
+        NettyAsyncHttpProvider provider = new NettyAsyncHttpProvider(config);
+        AsyncHttpClient client = new AsyncHttpClient(provider, config);
+        try {
+            EventLoopMonitor monitor = provider.getEventLoopMonitor();
+            assertNotNull(monitor);
+
+            Response response = client.prepareGet(getTargetUrl()).execute().get();
+            assertEquals(response.getStatusCode(), 200);
+
+            // a callback blocking the only loop
+            group.next().execute(new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            Thread.sleep(300);
+            assertTrue(monitor.isOverloaded());
+
+            try {
+                client.prepareGet(getTargetUrl()).execute().get();
+                fail("The request should have been rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+                assertTrue(e.getCause().getMessage().startsWith("Event loop overloaded"));
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Event loop overloaded"));
+            }
+
+            // the loop recovers once the next probe runs
+            long deadline = System.currentTimeMillis() + 5000;
+            while (monitor.isOverloaded() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertFalse(monitor.isOverloaded());
+            response = client.prepareGet(getTargetUrl()).execute().get();
+            assertEquals(response.getStatusCode(), 200);
+
+            assertTrue(monitor.getLagHistogram().getCount() > 0);
+            assertTrue(monitor.getLagHistogram().getMaxNanos() >= 700L * 1000 * 1000);
+        } finally {
+            client.close();
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void overloadRejectionsDontTakeTheHalfOpenProbe() throws Exception {
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        NettyAsyncHttpProviderConfig nettyConfig = new NettyAsyncHttpProviderConfig();
+        nettyConfig.setEventLoopGroup(group);
+        nettyConfig.setEventLoopMonitorIntervalInMs(10);
+        nettyConfig.setSlowEventLoopThresholdInMs(100);
+        nettyConfig.setMaxEventLoopLagInMs(100);
+        CircuitBreakerRegistry circuitBreakers = new CircuitBreakerRegistry.Builder().setFailureThreshold(1).setOpenDurationInMs(1000)
+                .setHalfOpenProbes(1).build();
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder().setAsyncHttpClientProviderConfig(nettyConfig)
+                .setCircuitBreakerRegistry(circuitBreakers).build();
+        NettyAsyncHttpProvider provider = new NettyAsyncHttpProvider(config);
+        AsyncHttpClient client = new AsyncHttpClient(provider, config);
+        try {
+            EventLoopMonitor monitor = provider.getEventLoopMonitor();
+            CircuitBreaker circuitBreaker = circuitBreakers.getCircuitBreaker(DefaultConnectionPoolStrategy.INSTANCE.getKey(new URI(getTargetUrl())));
+            circuitBreaker.onFailure();
+            assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+            Thread.sleep(1100);
+
+            group.next().execute(new Runnable() {
+                public void run() {
+                    try {
+                        Thread.sleep(400);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            Thread.sleep(200);
+            assertTrue(monitor.isOverloaded());
+
+            try {
+                client.prepareGet(getTargetUrl()).execute().get();
+                fail("The request should have been rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause().getMessage().startsWith("Event loop overloaded"));
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Event loop overloaded"));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (monitor.isOverloaded() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // the probe is still available, well before the open duration elapsed again
+            Response response = client.prepareGet(getTargetUrl()).execute().get();
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+        } finally {
+            client.close();
+            group.shutdownGracefully();
+        }
+    }
+}
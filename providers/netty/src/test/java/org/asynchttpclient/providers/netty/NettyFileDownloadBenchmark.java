@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty;
+
+import static org.asynchttpclient.async.util.TestUtils.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncHandler;
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.extra.FileChannelAsyncHandler;
+import org.asynchttpclient.extra.ResumableRandomAccessFileListener;
+import org.asynchttpclient.providers.netty.NettyAsyncHttpProviderConfig.LazyResponseBodyPartFactory;
+import org.asynchttpclient.resumable.ResumableAsyncHandler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * Downloads a large body from a local Jetty stub server into a file with the {@link ResumableAsyncHandler} and with the
+ * {@link FileChannelAsyncHandler}, with eager and lazy body parts, and prints the throughput.
+ * 
+ * Not a test, run it manually: <code>java NettyFileDownloadBenchmark [sizeInMB] [iterations]</code>
+ */
+public class NettyFileDownloadBenchmark {
+
+    private static final String SIZE_PARAM = "size";
+
+    public static void main(String[] args) throws Exception {
+        int sizeInMB = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        int port = findFreePort();
+        Server server = newJettyHttpServer(port);
+        server.setHandler(new GeneratingHandler());
+        server.start();
+
+        File file = File.createTempFile("download", ".bin");
+        file.deleteOnExit();
+
+        try {
+            String url = String.format("http://127.0.0.1:%d/download?%s=%d", port, SIZE_PARAM, sizeInMB * 1024L * 1024L);
+            run("ResumableAsyncHandler, eager parts", false, false, url, file, iterations);
+            run("FileChannelAsyncHandler, eager parts", false, true, url, file, iterations);
+            run("FileChannelAsyncHandler, lazy parts", true, true, url, file, iterations);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(String name, boolean lazy, boolean fileChannel, String url, File file, int iterations) throws Exception {
+        NettyAsyncHttpProviderConfig nettyConfig = new NettyAsyncHttpProviderConfig();
+        if (lazy) {
+            nettyConfig.setBodyPartFactory(new LazyResponseBodyPartFactory());
+        }
+        AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()//
+                .setRequestTimeoutInMs(-1)//
+                .setAsyncHttpClientProviderConfig(nettyConfig)//
+                .build();
+        AsyncHttpClient client = NettyProviderUtil.nettyProvider(config);
+        try {
+            // warm up the connection and the JIT
+            download(client, url, file, fileChannel);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                download(client, url, file, fileChannel);
+            }
+            double seconds = (System.nanoTime() - start) / 1000000000.0;
+            double mbPerSecond = file.length() * iterations / (1024.0 * 1024.0) / seconds;
+            System.out.printf("%-40s %8.1f MB/s%n", name, mbPerSecond);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void download(AsyncHttpClient client, String url, File file, boolean fileChannel) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            AsyncHandler<Response> handler;
+            if (fileChannel) {
+                handler = new FileChannelAsyncHandler(raf.getChannel());
+            } else {
+                ResumableAsyncHandler resumableHandler = new ResumableAsyncHandler();
+                resumableHandler.setResumableListener(new ResumableRandomAccessFileListener(raf));
+                handler = resumableHandler;
+            }
+            Response response = client.prepareGet(url).execute(handler).get();
+            if (response.getStatusCode() != 200) {
+                throw new IllegalStateException("Unexpected status " + response.getStatusCode());
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static class GeneratingHandler extends AbstractHandler {
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            long size = Long.parseLong(request.getParameter(SIZE_PARAM));
+            byte[] bytes = new byte[64 * 1024];
+            response.setStatus(200);
+            response.setHeader("Content-Length", String.valueOf(size));
+            OutputStream out = response.getOutputStream();
+            for (long remaining = size; remaining > 0; remaining -= bytes.length) {
+                out.write(bytes, 0, (int) Math.min(bytes.length, remaining));
+            }
+            out.flush();
+            baseRequest.setHandled(true);
+        }
+    }
+}
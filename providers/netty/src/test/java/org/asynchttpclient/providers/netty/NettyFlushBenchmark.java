@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty;
+
+import static org.asynchttpclient.async.util.TestUtils.*;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.ListenableFuture;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.generators.InputStreamBodyGenerator;
+import org.asynchttpclient.multipart.ByteArrayPart;
+import org.asynchttpclient.providers.netty.NettyAsyncHttpProviderConfig.AdditionalChannelInitializer;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * Sends small requests with every kind of body to a local Jetty stub server, with and without flush consolidation, and prints
+ * the number of flushes reaching the socket per request, i.e. the number of write syscalls, and the request rate.
+ * 
+ * Not a test, run it manually: <code>java NettyFlushBenchmark [requests] [concurrency]</code>
+ */
+public class NettyFlushBenchmark {
+
+    private static final byte[] BODY = new byte[512];
+
+    private enum BodyKind {
+        BYTES, STREAM, FILE, GENERATOR, MULTIPART
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        File file = createTempFile(BODY.length);
+        int port = findFreePort();
+        Server server = newJettyHttpServer(port);
+        server.setHandler(new DiscardHandler());
+        server.start();
+
+        try {
+            String url = String.format("http://127.0.0.1:%d/upload", port);
+            for (boolean consolidateFlushes : new boolean[] { false, true }) {
+                final AtomicLong flushes = new AtomicLong();
+                NettyAsyncHttpProviderConfig nettyConfig = new NettyAsyncHttpProviderConfig();
+                nettyConfig.setConsolidateFlushes(consolidateFlushes);
+                nettyConfig.setHttpAdditionalChannelInitializer(new AdditionalChannelInitializer() {
+                    public void initChannel(Channel ch) throws Exception {
+                        ch.pipeline().addFirst("flushCounter", new FlushCounter(flushes));
+                    }
+                });
+                AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()//
+                        .setMaximumConnectionsPerHost(concurrency)//
+                        .setAsyncHttpClientProviderConfig(nettyConfig)//
+                        .build();
+                AsyncHttpClient client = NettyProviderUtil.nettyProvider(config);
+                try {
+                    for (BodyKind kind : BodyKind.values()) {
+                        // warm up the connections and the JIT
+                        send(client, url, file, kind, concurrency, concurrency);
+
+                        flushes.set(0L);
+                        long start = System.nanoTime();
+                        send(client, url, file, kind, requests, concurrency);
+                        double seconds = (System.nanoTime() - start) / 1000000000.0;
+                        System.out.printf("consolidateFlushes=%-5s  body=%-9s  %5.2f flushes/request  %8.0f requests/s%n", consolidateFlushes, kind,
+                                flushes.get() / (double) requests, requests / seconds);
+                    }
+                } finally {
+                    client.close();
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void send(AsyncHttpClient client, String url, File file, BodyKind kind, int requests, int concurrency) throws Exception {
+        List<ListenableFuture<Response>> futures = new ArrayList<ListenableFuture<Response>>(concurrency);
+        for (int sent = 0; sent < requests;) {
+            futures.clear();
+            for (int i = 0; i < concurrency && sent < requests; i++, sent++) {
+                futures.add(client.executeRequest(request(url, file, kind)));
+            }
+            for (ListenableFuture<Response> future : futures) {
+                Response response = future.get();
+                if (response.getStatusCode() != 200) {
+                    throw new IllegalStateException("Unexpected status " + response.getStatusCode());
+                }
+            }
+        }
+    }
+
+    private static org.asynchttpclient.Request request(String url, File file, BodyKind kind) {
+        RequestBuilder builder = new RequestBuilder("POST").setUrl(url);
+        switch (kind) {
+        case BYTES:
+            builder.setBody(BODY);
+            break;
+        case STREAM:
+            builder.setBody(new ByteArrayInputStream(BODY));
+            break;
+        case FILE:
+            builder.setBody(file);
+            break;
+        case GENERATOR:
+            builder.setBody(new InputStreamBodyGenerator(new ByteArrayInputStream(BODY)));
+            break;
+        case MULTIPART:
+            builder.addBodyPart(new ByteArrayPart("part", BODY, "application/octet-stream", "UTF-8", "part.bin"));
+            break;
+        }
+        return builder.build();
+    }
+
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+
+        private final AtomicLong flushes;
+
+        private FlushCounter(AtomicLong flushes) {
+            this.flushes = flushes;
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes.incrementAndGet();
+            ctx.flush();
+        }
+    }
+
+    private static class DiscardHandler extends AbstractHandler {
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            byte[] bytes = new byte[4 * 1024];
+            InputStream in = request.getInputStream();
+            while (in.read(bytes) != -1)
+                ;
+            response.setStatus(200);
+            baseRequest.setHandled(true);
+        }
+    }
+}
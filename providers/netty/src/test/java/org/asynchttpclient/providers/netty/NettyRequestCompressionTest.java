@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2010-2012 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.asynchttpclient.providers.netty;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.async.AbstractBasicTest;
+import org.asynchttpclient.compression.DeflatingBody;
+import org.asynchttpclient.generators.InputStreamBodyGenerator;
+import org.asynchttpclient.multipart.StringPart;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.testng.annotations.Test;
+
+public class NettyRequestCompressionTest extends AbstractBasicTest {
+
+    private static final String TEXT;
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("line ").append(i).append(" of a quite compressible request body\n");
+        }
+        TEXT = sb.toString();
+    }
+
+    @Override
+    public AsyncHttpClient getAsyncHttpClient(AsyncHttpClientConfig config) {
+        return NettyProviderUtil.nettyProvider(config);
+    }
+
+    /**
+     * Echoes the decoded request body along with the request headers describing it.
+     */
+    private static class DecodingHandler extends AbstractHandler {
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            String encoding = request.getHeader("Content-Encoding");
+            InputStream in = request.getInputStream();
+            if ("gzip".equals(encoding)) {
+                in = new GZIPInputStream(in);
+            } else if ("deflate".equals(encoding)) {
+                in = new InflaterInputStream(in);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                body.write(buffer, 0, read);
+            }
+
+            response.setStatus(200);
+            response.setHeader("X-Content-Encoding", String.valueOf(encoding));
+            response.setHeader("X-Content-Length", String.valueOf(request.getHeader("Content-Length")));
+            response.setHeader("X-Content-Type", String.valueOf(request.getContentType()));
+            response.getOutputStream().write(body.toByteArray());
+            baseRequest.setHandled(true);
+        }
+    }
+
+    @Override
+    public AbstractHandler configureHandler() throws Exception {
+        return new DecodingHandler();
+    }
+
+    private AsyncHttpClient compressingClient(String encoding) {
+        NettyAsyncHttpProviderConfig nettyConfig = new NettyAsyncHttpProviderConfig();
+        nettyConfig.setRequestCompressionEncoding(encoding);
+        return getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setRequestCompressionLevel(6).setAsyncHttpClientProviderConfig(nettyConfig).build());
+    }
+
+    private static File tmpFile(String suffix, byte[] content) throws IOException {
+        File file = File.createTempFile("ahc-compression", suffix);
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void compressesByteAndStringBodies() throws Exception {
+        AsyncHttpClient client = compressingClient(DeflatingBody.GZIP);
+        try {
+            Response response = client.preparePost(getTargetUrl()).setBody(TEXT.getBytes("UTF-8")).execute().get();
+            assertEquals(response.getHeader("X-Content-Encoding"), "gzip");
+            assertEquals(response.getHeader("X-Content-Length"), "null");
+            assertEquals(response.getResponseBody("UTF-8"), TEXT);
+
+            response = client.preparePut(getTargetUrl()).setBody(TEXT).setHeader("Content-Type", "text/plain").execute().get();
+            assertEquals(response.getHeader("X-Content-Encoding"), "gzip");
+            assertEquals(response.getResponseBody("UTF-8"), TEXT);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void skipsSmallAndEncodedBodies() throws Exception {
+        AsyncHttpClient client = compressingClient(DeflatingBody.GZIP);
+        try {
+            Response response = client.preparePost(getTargetUrl()).setBody("small").execute().get();
+            assertEquals(response.getHeader("X-Content-Encoding"), "null");
+            assertEquals(response.getHeader("X-Content-Length"), "5");
+            assertEquals(response.getResponseBody(), "small");
+
+            response = client.preparePost(getTargetUrl()).setBody(TEXT).setHeader("Content-Type", "image/png").execute().get();
+            assertEquals(response.getHeader("X-Content-Encoding"), "null");
+            assertEquals(response.getResponseBody("UTF-8"), TEXT);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void compressesFileBodies() throws Exception {
+        byte[] content = TEXT.getBytes("UTF-8");
+        AsyncHttpClient client = compressingClient(DeflatingBody.DEFLATE);
+        try {
+            Response response = client.preparePost(getTargetUrl()).setBody(tmpFile(".txt", content)).execute().get();
+            assertEquals(response.getHeader("X-Content-Encoding"), "deflate");
+            assertEquals(response.getResponseBodyAsBytes(), content);
+
+            // already compressed format
+            response = client.preparePost(getTargetUrl()).setBody(tmpFile(".gz", content)).execute().get();
+            assertEquals(response.getHeader("X-Content-Encoding"), "null");
+            assertEquals(response.getResponseBodyAsBytes(), content);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void compressesMultipartAndGeneratedBodies() throws Exception {
+        AsyncHttpClient client = compressingClient(DeflatingBody.GZIP);
+        try {
+            Response response = client.preparePost(getTargetUrl()).addBodyPart(new StringPart("text", TEXT, "UTF-8")).execute().get();
+            assertEquals(response.getHeader("X-Content-Encoding"), "gzip");
+            assertTrue(response.getHeader("X-Content-Type").startsWith("multipart/form-data; boundary="));
+            assertTrue(response.getResponseBody("UTF-8").contains(TEXT));
+
+            InputStream in = new ByteArrayInputStream(TEXT.getBytes("UTF-8"));
+            response = client.preparePost(getTargetUrl()).setBody(new InputStreamBodyGenerator(in)).execute().get();
+            assertEquals(response.getHeader("X-Content-Encoding"), "gzip");
+            assertEquals(response.getResponseBody("UTF-8"), TEXT);
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty;
+
+import static org.asynchttpclient.async.util.TestUtils.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Response;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * Uploads a large file over TLS to a local Jetty stub server with several file chunk sizes and prints the throughput.
+ * 
+ * Not a test, run it manually: <code>java NettyTlsUploadBenchmark [sizeInMB] [iterations]</code>
+ */
+public class NettyTlsUploadBenchmark {
+
+    private static final int[] CHUNK_SIZES = { 8 * 1024, 16 * 1024, 64 * 1024, 256 * 1024 };
+
+    public static void main(String[] args) throws Exception {
+        int sizeInMB = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File file = createTempFile(sizeInMB * 1024 * 1024);
+        int port = findFreePort();
+        Server server = newJettyHttpsServer(port);
+        server.setHandler(new DiscardHandler());
+        server.start();
+
+        try {
+            String url = String.format("https://127.0.0.1:%d/upload", port);
+            for (int chunkSize : CHUNK_SIZES) {
+                NettyAsyncHttpProviderConfig nettyConfig = new NettyAsyncHttpProviderConfig();
+                nettyConfig.setChunkedFileChunkSize(chunkSize);
+                AsyncHttpClientConfig config = new AsyncHttpClientConfig.Builder()//
+                        .setSSLContext(createSSLContext(new AtomicBoolean(true)))//
+                        .setRequestTimeoutInMs(-1)//
+                        .setAsyncHttpClientProviderConfig(nettyConfig)//
+                        .build();
+                AsyncHttpClient client = NettyProviderUtil.nettyProvider(config);
+                try {
+                    // warm up the connection and the JIT
+                    upload(client, url, file);
+
+                    long start = System.nanoTime();
+                    for (int i = 0; i < iterations; i++) {
+                        upload(client, url, file);
+                    }
+                    double seconds = (System.nanoTime() - start) / 1000000000.0;
+                    double mbPerSecond = file.length() * iterations / (1024.0 * 1024.0) / seconds;
+                    System.out.printf("chunkSize=%7d  %8.1f MB/s%n", chunkSize, mbPerSecond);
+                } finally {
+                    client.close();
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void upload(AsyncHttpClient client, String url, File file) throws Exception {
+        Response response = client.preparePut(url).setBody(file).execute().get();
+        if (response.getStatusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.getStatusCode());
+        }
+    }
+
+    private static class DiscardHandler extends AbstractHandler {
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+            byte[] bytes = new byte[64 * 1024];
+            InputStream in = request.getInputStream();
+            while (in.read(bytes) != -1)
+                ;
+            response.setStatus(200);
+            baseRequest.setHandled(true);
+        }
+    }
+}
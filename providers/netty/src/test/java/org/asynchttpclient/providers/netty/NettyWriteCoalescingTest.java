@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty;
+
+import static org.asynchttpclient.async.util.TestUtils.*;
+import static org.testng.Assert.*;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.AsyncHttpClientConfig;
+import org.asynchttpclient.Request;
+import org.asynchttpclient.RequestBuilder;
+import org.asynchttpclient.Response;
+import org.asynchttpclient.async.AbstractBasicTest;
+import org.asynchttpclient.generators.InputStreamBodyGenerator;
+import org.asynchttpclient.providers.netty.NettyAsyncHttpProviderConfig.AdditionalChannelInitializer;
+import org.testng.annotations.Test;
+
+public class NettyWriteCoalescingTest extends AbstractBasicTest {
+
+    private static final String BODY = "FooBarBazQix";
+
+    @Override
+    public AsyncHttpClient getAsyncHttpClient(AsyncHttpClientConfig config) {
+        return NettyProviderUtil.nettyProvider(config);
+    }
+
+    private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+
+        private final AtomicInteger flushes;
+
+        private FlushCounter(AtomicInteger flushes) {
+            this.flushes = flushes;
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) throws Exception {
+            flushes.incrementAndGet();
+            ctx.flush();
+        }
+    }
+
+    private AsyncHttpClient flushCountingClient(final AtomicInteger flushes, boolean consolidateFlushes) {
+        NettyAsyncHttpProviderConfig nettyConfig = new NettyAsyncHttpProviderConfig();
+        nettyConfig.setConsolidateFlushes(consolidateFlushes);
+        nettyConfig.setHttpAdditionalChannelInitializer(new AdditionalChannelInitializer() {
+            public void initChannel(Channel ch) throws Exception {
+                ch.pipeline().addFirst("flushCounter", new FlushCounter(flushes));
+            }
+        });
+        return getAsyncHttpClient(new AsyncHttpClientConfig.Builder().setAsyncHttpClientProviderConfig(nettyConfig).build());
+    }
+
+    private void assertSingleFlush(boolean consolidateFlushes) throws Exception {
+        AtomicInteger flushes = new AtomicInteger();
+        AsyncHttpClient client = flushCountingClient(flushes, consolidateFlushes);
+        try {
+            Request[] requests = {
+                    new RequestBuilder("POST").setUrl(getTargetUrl()).setBody(new ByteArrayInputStream(BODY.getBytes())).build(),
+                    new RequestBuilder("POST").setUrl(getTargetUrl()).setBody(new InputStreamBodyGenerator(new ByteArrayInputStream(BODY.getBytes()))).build(),
+                    new RequestBuilder("POST").setUrl(getTargetUrl()).setBody(SIMPLE_TEXT_FILE).build() };
+
+            for (Request request : requests) {
+                flushes.set(0);
+                Response response = client.executeRequest(request).get();
+                assertEquals(response.getStatusCode(), 200);
+                assertTrue(response.getResponseBody().length() > 0);
+                assertEquals(flushes.get(), 1, "Unexpected flushes for " + request.getUrl());
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void headersBodyAndLastContentAreFlushedOnce() throws Exception {
+        assertSingleFlush(false);
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void consolidatedFlushesAreFlushedOnce() throws Exception {
+        assertSingleFlush(true);
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void largeBodyIsFullyWritten() throws Exception {
+        for (boolean consolidateFlushes : new boolean[] { false, true }) {
+            AtomicInteger flushes = new AtomicInteger();
+            AsyncHttpClient client = flushCountingClient(flushes, consolidateFlushes);
+            try {
+                Response response = client.preparePost(getTargetUrl()).setBody(new ByteArrayInputStream(LARGE_IMAGE_BYTES)).execute().get();
+                assertEquals(response.getStatusCode(), 200);
+                assertEquals(response.getResponseBodyAsBytes(), LARGE_IMAGE_BYTES);
+                assertTrue(flushes.get() >= 1);
+            } finally {
+                client.close();
+            }
+        }
+    }
+}
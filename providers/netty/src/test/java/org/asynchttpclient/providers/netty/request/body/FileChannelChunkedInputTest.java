@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010-2013 Ning, Inc.
+ *
+ * Ning licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.asynchttpclient.providers.netty.request.body;
+
+import static org.asynchttpclient.async.util.TestUtils.*;
+import static org.testng.Assert.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+public class FileChannelChunkedInputTest {
+
+    private static ChannelHandlerContext channelContext() {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        channel.config().setAllocator(new UnpooledByteBufAllocator(true));
+        return channel.pipeline().firstContext();
+    }
+
+    @Test(groups = { "standalone", "netty_provider" })
+    public void readsRegionInChunks() throws Exception {
+        File file = createTempFile(100 * 1024);
+        byte[] expected = FileUtils.readFileToByteArray(file);
+        int offset = 17;
+        int length = expected.length - 42;
+
+        FileChannel fileChannel = new RandomAccessFile(file, "r").getChannel();
+        FileChannelChunkedInput input = new FileChannelChunkedInput(fileChannel, offset, length, 16 * 1024);
+        ChannelHandlerContext ctx = channelContext();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int chunks = 0;
+        while (!input.isEndOfInput()) {
+            ByteBuf chunk = input.readChunk(ctx);
+            assertTrue(chunk.isDirect());
+            assertSame(chunk.alloc(), ctx.alloc());
+            assertTrue(chunk.readableBytes() <= 16 * 1024);
+            chunk.readBytes(out, chunk.readableBytes());
+            chunk.release();
+            chunks++;
+        }
+        assertNull(input.readChunk(ctx));
+        input.close();
+
+        assertEquals(chunks, (length + 16 * 1024 - 1) / (16 * 1024));
+        byte[] actual = out.toByteArray();
+        assertEquals(actual.length, length);
+        for (int i = 0; i < length; i++) {
+            assertEquals(actual[i], expected[offset + i], "Mismatch at " + i);
+        }
+        assertFalse(fileChannel.isOpen());
+    }
+}